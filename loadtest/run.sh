@@ -0,0 +1,51 @@
+#!/bin/bash
+# Нагрузочный прогон на одной машине: собирает jar, поднимает приложение против локальной PostgreSQL,
+# наполняет данные через REST API, крутит смесь запросов и останавливает приложение.
+#
+# Переменные окружения:
+#   DB_URL, DB_USERNAME, DB_PASSWORD - подключение к локальной базе (по умолчанию база avi_too_too_loadtest)
+#   LOADTEST_RECREATE_DB=1          - пересоздать базу перед прогоном (нужны dropdb/createdb), для воспроизводимости
+#   LOADTEST_PORT                   - порт приложения (8090)
+#   APP_JAVA_OPTS                   - опции JVM приложения
+# Параметры прогона передаются системными свойствами loadtest.*, например:
+#   loadtest/run.sh -Dloadtest.users=1000 -Dloadtest.advertisements=50000 -Dloadtest.threads=64
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+export DB_URL="${DB_URL:-jdbc:postgresql://localhost:5432/avi_too_too_loadtest}"
+export DB_USERNAME="${DB_USERNAME:-postgres}"
+export DB_PASSWORD="${DB_PASSWORD:-postgres}"
+PORT="${LOADTEST_PORT:-8090}"
+LOG_FILE=target/loadtest-app.log
+
+if [ "${LOADTEST_RECREATE_DB:-0}" = "1" ]; then
+    DB_NAME="${DB_URL##*/}"
+    DB_NAME="${DB_NAME%%\?*}"
+    echo "recreating database $DB_NAME"
+    PGPASSWORD="$DB_PASSWORD" dropdb --if-exists -h localhost -U "$DB_USERNAME" "$DB_NAME"
+    PGPASSWORD="$DB_PASSWORD" createdb -h localhost -U "$DB_USERNAME" "$DB_NAME"
+fi
+
+chmod +x ./mvnw
+./mvnw -q -DskipTests -Dcheckstyle.skip=true package
+
+mkdir -p target
+java ${APP_JAVA_OPTS:-} -jar target/AviTooToo-0.0.1-SNAPSHOT.jar --server.port="$PORT" > "$LOG_FILE" 2>&1 &
+APP_PID=$!
+trap 'kill "$APP_PID" 2>/dev/null || true; wait "$APP_PID" 2>/dev/null || true' EXIT
+
+echo "waiting for application on port $PORT (log: $LOG_FILE)"
+for _ in $(seq 1 120); do
+    if curl -fs "http://localhost:$PORT/actuator/health" > /dev/null; then
+        break
+    fi
+    if ! kill -0 "$APP_PID" 2>/dev/null; then
+        echo "application exited, see $LOG_FILE"
+        exit 1
+    fi
+    sleep 1
+done
+
+./mvnw -P loadtest -DskipTests -Dcheckstyle.skip=true test-compile exec:exec \
+    -Dloadtest.args="-Dloadtest.base-url=http://localhost:$PORT $*"
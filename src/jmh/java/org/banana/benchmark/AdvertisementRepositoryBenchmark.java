@@ -0,0 +1,94 @@
+package org.banana.benchmark;
+
+import org.banana.dto.advertisement.AdvertisementCursor;
+import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.banana.dto.advertisement.AdvertisementResponseDto;
+import org.banana.repository.AdvertisementRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выдача объявлений {@link AdvertisementRepository#findAllFiltered} на разных комбинациях фильтра и глубине страницы,
+ * для сравнения - та же выдача по курсору {@link AdvertisementRepository#findAllFilteredAfter}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class AdvertisementRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"ALL", "CITY_AND_TYPE", "PRICE", "SEARCH", "FUZZY_SEARCH"})
+    private String filterType;
+
+    @Param({"0", "50"})
+    private int page;
+
+    private AdvertisementRepository advertisementRepository;
+    private TransactionTemplate transaction;
+    private AdvertisementFilterDto filter;
+    private AdvertisementCursor cursor;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkApplicationState application) {
+        advertisementRepository = application.getBean(AdvertisementRepository.class);
+        transaction = application.readOnlyTransaction();
+        filter = createFilter(application.getDataset());
+
+        // курсор на последнюю строку страницы, предшествующей измеряемой
+        List<AdvertisementResponseDto> previous = page == 0 ? List.of()
+                : transaction.execute(status -> advertisementRepository.findAllFiltered(filter, page - 1, PAGE_SIZE));
+        cursor = previous == null || previous.isEmpty() ? null : AdvertisementCursor.of(previous.get(previous.size() - 1));
+    }
+
+    @Benchmark
+    public List<AdvertisementResponseDto> findAllFiltered() {
+        return transaction.execute(status -> advertisementRepository.findAllFiltered(filter, page, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public List<AdvertisementResponseDto> findAllFilteredAfterCursor() {
+        return transaction.execute(status -> advertisementRepository.findAllFilteredAfter(filter, cursor, PAGE_SIZE));
+    }
+
+    private AdvertisementFilterDto createFilter(BenchmarkDataGenerator.Dataset dataset) {
+        AdvertisementFilterDto dto = new AdvertisementFilterDto();
+        switch (filterType) {
+            case "CITY_AND_TYPE" -> {
+                dto.setCityIds(List.of(dataset.getCityId()));
+                dto.setAdvertisementTypeIds(List.of(dataset.getAdvertisementTypeId()));
+            }
+            case "PRICE" -> {
+                dto.setMinPrice(BigDecimal.valueOf(1000));
+                dto.setMaxPrice(BigDecimal.valueOf(5000));
+            }
+            case "SEARCH" -> dto.setSearchParam("велосипед");
+            case "FUZZY_SEARCH" -> {
+                dto.setSearchParam("велосипет");
+                dto.setFuzzySearch(true);
+            }
+            default -> {
+                // без фильтров: только открытые объявления
+            }
+        }
+        return dto;
+    }
+}
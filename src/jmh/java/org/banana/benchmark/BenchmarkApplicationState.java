@@ -0,0 +1,52 @@
+package org.banana.benchmark;
+
+import org.banana.Application;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Поднимает приложение целиком (подключение к БД берется из DB_URL, DB_USERNAME, DB_PASSWORD, миграции Flyway
+ * применяются при старте) и один раз на форк наполняет базу через {@link BenchmarkDataGenerator}
+ */
+@State(Scope.Benchmark)
+public class BenchmarkApplicationState {
+
+    private ConfigurableApplicationContext context;
+    private BenchmarkDataGenerator.Dataset dataset;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(Application.class)
+                .run("--server.port=0", "--spring.main.banner-mode=off",
+                        "--logging.config=classpath:logback-benchmark.xml");
+        dataset = new BenchmarkDataGenerator(context.getBean(DataSource.class)).seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate template = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+        template.setReadOnly(true);
+        return template;
+    }
+
+    public BenchmarkDataGenerator.Dataset getDataset() {
+        return dataset;
+    }
+}
@@ -0,0 +1,282 @@
+package org.banana.benchmark;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Наполняет локальную PostgreSQL данными для бенчмарков: пользователи, объявления, оценки, комментарии и сообщения.
+ * Объем задается системными свойствами benchmark.users, benchmark.advertisements, benchmark.ratings,
+ * benchmark.comments и benchmark.messages. Все сгенерированные пользователи имеют username вида bench*@example.com,
+ * поэтому при смене объема старые данные удаляются каскадом вместе с ними, а при совпадении объема переиспользуются
+ */
+@Slf4j
+public class BenchmarkDataGenerator {
+
+    private static final String BENCH_USERS = "username like 'bench%@example.com'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int users;
+    private final int advertisements;
+    private final int ratings;
+    private final int comments;
+    private final int messages;
+
+    public BenchmarkDataGenerator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.users = Math.max(2, Integer.getInteger("benchmark.users", 1000));
+        this.advertisements = Math.max(1, Integer.getInteger("benchmark.advertisements", 20000));
+        this.ratings = Math.min(Integer.getInteger("benchmark.ratings", 10000), users * (users - 1));
+        this.comments = Math.max(3, Integer.getInteger("benchmark.comments", 50000));
+        this.messages = Math.max(1, Integer.getInteger("benchmark.messages", 50000));
+    }
+
+    public Dataset seed() {
+        if (isSeeded()) {
+            log.warn("benchmark data already present, reusing it");
+        } else {
+            log.warn("seeding benchmark data: {} users, {} advertisements, {} ratings, {} comments, {} messages",
+                    users, advertisements, ratings, comments, messages);
+            jdbcTemplate.update("delete from \"user\" where " + BENCH_USERS);
+            insertUsers();
+            insertRatings();
+            insertAdvertisements();
+            insertComments();
+            insertMessages();
+            insertConversations();
+            jdbcTemplate.execute("analyze");
+        }
+        return loadDataset();
+    }
+
+    private boolean isSeeded() {
+        Long[] counts = jdbcTemplate.queryForObject("""
+                select (select count(*) from "user" u where u.%1$s),
+                       (select count(*) from advertisement a join "user" u using (user_id) where u.%1$s),
+                       (select count(*) from rating r join "user" u using (user_id) where u.%1$s),
+                       (select count(*) from comment c join advertisement a using (advertisement_id)
+                            join "user" u on u.user_id = a.user_id where u.%1$s),
+                       (select count(*) from message m join "user" u on u.user_id = m.sender_id where u.%1$s)
+                """.formatted(BENCH_USERS),
+                (rs, rowNum) -> new Long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5)});
+        return counts != null && counts[0] == users && counts[1] == advertisements && counts[2] == ratings
+               && counts[3] == comments && counts[4] == messages;
+    }
+
+    private void insertUsers() {
+        jdbcTemplate.update("""
+                insert into "user" (first_name, last_name, phone, username, password, role)
+                select 'first' || i, 'last' || i, '+7999' || lpad(i::text, 7, '0'), 'bench' || i || '@example.com',
+                       'password', 'ROLE_USER'
+                from generate_series(1, ?) i""", users);
+    }
+
+    // пары (пользователь, оценщик) не повторяются: при фиксированном сдвиге 1..users-1 индексы пользователей различны
+    private void insertRatings() {
+        jdbcTemplate.update("""
+                insert into rating (user_id, rater_id, rating_value)
+                select u.ids[1 + i % u.n], u.ids[1 + (i % u.n + 1 + i / u.n) % u.n], 1 + (i * 7) % 5
+                from generate_series(0, ? - 1) i,
+                     (select array_agg(user_id order by username) as ids, count(*)::int as n
+                      from "user" where %s) u""".formatted(BENCH_USERS), ratings);
+    }
+
+    private void insertAdvertisements() {
+        jdbcTemplate.update("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity,
+                                           is_promoted, create_date, close_date)
+                select u.ids[1 + i % cardinality(u.ids)],
+                       c.ids[1 + i % cardinality(c.ids)],
+                       t.ids[1 + (i / 7) % cardinality(t.ids)],
+                       'Продам ' || w.words[1 + i % cardinality(w.words)] || ' ' || i,
+                       'Отличный ' || w.words[1 + (i / 3) % cardinality(w.words)] || ', почти новый, торг уместен',
+                       100 + i % 100000, 1 + i % 10,
+                       i % 100 = 0,
+                       now() - make_interval(mins => i),
+                       case when i % 10 = 0 then now() end
+                from generate_series(1, ?) i,
+                     (select array_agg(user_id order by username) as ids from "user" where %s) u,
+                     (select array_agg(city_id) as ids from city) c,
+                     (select array_agg(advertisement_type_id) as ids from advertisement_type) t,
+                     (select array['велосипед', 'гараж', 'диван', 'ноутбук', 'телефон', 'холодильник'] as words) w
+                """.formatted(BENCH_USERS), advertisements);
+    }
+
+    // треть комментариев - корневые, сосредоточены на первом проценте объявлений; остальные - ответы на них
+    private void insertComments() {
+        int roots = comments / 3;
+        jdbcTemplate.update("""
+                insert into comment (advertisement_id, commenter_id, comment_text, comment_date)
+                select a.ids[1 + i % greatest(1, cardinality(a.ids) / 100)],
+                       u.ids[1 + i % cardinality(u.ids)],
+                       'Комментарий ' || i,
+                       now() - make_interval(mins => i)
+                from generate_series(1, ?) i,
+                     (select array_agg(advertisement_id order by create_date desc, advertisement_id) as ids
+                      from advertisement a join "user" bu using (user_id) where bu.%1$s) a,
+                     (select array_agg(user_id order by username) as ids from "user" where %1$s) u
+                """.formatted(BENCH_USERS), roots);
+        jdbcTemplate.update("""
+                insert into comment (advertisement_id, commenter_id, root_comment_id, parent_comment_id, comment_text, comment_date)
+                select r.ads[1 + i % cardinality(r.ids)],
+                       u.ids[1 + (i * 31) % cardinality(u.ids)],
+                       r.ids[1 + i % cardinality(r.ids)],
+                       r.ids[1 + i % cardinality(r.ids)],
+                       'Ответ ' || i,
+                       now() - make_interval(secs => i)
+                from generate_series(1, ?) i,
+                     (select array_agg(c.comment_id order by c.comment_id) as ids,
+                             array_agg(c.advertisement_id order by c.comment_id) as ads
+                      from comment c join "user" cu on cu.user_id = c.commenter_id
+                      where c.root_comment_id is null and cu.%1$s) r,
+                     (select array_agg(user_id order by username) as ids from "user" where %1$s) u
+                """.formatted(BENCH_USERS), comments - roots);
+    }
+
+    // переписка идет в парах соседних пользователей по объявлению первого из них, собеседники отвечают по очереди
+    private void insertMessages() {
+        int conversations = Math.max(1, Math.min(users - 1, users / 10));
+        jdbcTemplate.update("""
+                insert into message (advertisement_id, sender_id, recipient_id, message_text, message_date_time,
+                                     conversation_key)
+                select a.ids[1 + k],
+                       case when (i / ?) % 2 = 0 then u.ids[1 + k] else u.ids[2 + k] end,
+                       case when (i / ?) % 2 = 0 then u.ids[2 + k] else u.ids[1 + k] end,
+                       'Сообщение ' || i,
+                       now() - make_interval(secs => ? - i),
+                       conversation_key(u.ids[1 + k], u.ids[2 + k], a.ids[1 + k])
+                from generate_series(0, ? - 1) i
+                cross join lateral (select i % ? as k) c,
+                     (select array_agg(user_id order by username) as ids from "user" where %1$s) u,
+                     (select array_agg(a.advertisement_id order by bu.username) as ids
+                      from "user" bu
+                      cross join lateral (select advertisement_id from advertisement a
+                                          where a.user_id = bu.user_id limit 1) a
+                      where bu.%1$s) a
+                """.formatted(BENCH_USERS),
+                conversations, conversations, messages, messages, conversations);
+    }
+
+    // сводка переписок (V1.8, V1.10, V1.12): отметка прочтения участника стоит на его последнем отправленном сообщении,
+    // непрочитанные - сообщения собеседника после нее
+    private void insertConversations() {
+        jdbcTemplate.update("""
+                with bench_message as (
+                    select m.*
+                    from message m
+                    join "user" u on u.user_id = m.sender_id
+                    where u.%s
+                ), last_sent as (
+                    select distinct on (m.conversation_key, m.sender_id)
+                           m.conversation_key, m.sender_id, m.message_date_time, m.message_id
+                    from bench_message m
+                    order by m.conversation_key, m.sender_id, m.message_date_time desc, m.message_id desc
+                ), last_message as (
+                    select distinct on (m.conversation_key) m.*
+                    from bench_message m
+                    order by m.conversation_key, m.message_date_time desc, m.message_id desc
+                ), summary as (
+                    select m.conversation_key,
+                           least(m.sender_id, m.recipient_id) as first_user_id,
+                           greatest(m.sender_id, m.recipient_id) as second_user_id,
+                           count(*) as message_count,
+                           count(*) filter (where m.recipient_id < m.sender_id and (r.message_id is null
+                               or (m.message_date_time, m.message_id) > (r.message_date_time, r.message_id))) as first_unread,
+                           count(*) filter (where m.recipient_id > m.sender_id and (r.message_id is null
+                               or (m.message_date_time, m.message_id) > (r.message_date_time, r.message_id))) as second_unread
+                    from bench_message m
+                    left join last_sent r on r.conversation_key = m.conversation_key and r.sender_id = m.recipient_id
+                    group by 1, 2, 3
+                )
+                insert into conversation (conversation_id, first_user_id, second_user_id, advertisement_id,
+                                          last_message_id, last_message_sender_id, last_message_text, last_message_date_time,
+                                          first_user_unread_count, second_user_unread_count, message_count,
+                                          first_user_last_read_date_time, first_user_last_read_message_id,
+                                          second_user_last_read_date_time, second_user_last_read_message_id)
+                select s.conversation_key, s.first_user_id, s.second_user_id, l.advertisement_id,
+                       l.message_id, l.sender_id, l.message_text, l.message_date_time,
+                       s.first_unread, s.second_unread, s.message_count,
+                       f.message_date_time, f.message_id, sc.message_date_time, sc.message_id
+                from summary s
+                join last_message l on l.conversation_key = s.conversation_key
+                left join last_sent f on f.conversation_key = s.conversation_key and f.sender_id = s.first_user_id
+                left join last_sent sc on sc.conversation_key = s.conversation_key and sc.sender_id = s.second_user_id
+                """.formatted(BENCH_USERS));
+    }
+
+    private Dataset loadDataset() {
+        Dataset dataset = jdbcTemplate.queryForObject("""
+                with reference as (
+                    select a.city_id, a.advertisement_type_id
+                    from advertisement a
+                    group by 1, 2
+                    order by count(*) desc
+                    limit 1
+                ), commented as (
+                    select c.advertisement_id
+                    from comment c
+                    where c.root_comment_id is null
+                    group by 1
+                    order by count(*) desc
+                    limit 1
+                ), conversation as (
+                    select least(m.sender_id, m.recipient_id) as first_user_id,
+                           greatest(m.sender_id, m.recipient_id) as second_user_id,
+                           m.advertisement_id
+                    from message m
+                    group by 1, 2, 3
+                    order by count(*) desc
+                    limit 1
+                ), middle as (
+                    select m.message_date_time, m.message_id
+                    from message m, conversation cv
+                    where m.advertisement_id = cv.advertisement_id
+                      and least(m.sender_id, m.recipient_id) = cv.first_user_id
+                      and greatest(m.sender_id, m.recipient_id) = cv.second_user_id
+                    order by m.message_date_time, m.message_id
+                    offset (select count(*) / 2 from message m, conversation cv
+                            where m.advertisement_id = cv.advertisement_id
+                              and least(m.sender_id, m.recipient_id) = cv.first_user_id
+                              and greatest(m.sender_id, m.recipient_id) = cv.second_user_id)
+                    limit 1
+                )
+                select r.city_id, r.advertisement_type_id, cm.advertisement_id, cv.first_user_id, cv.second_user_id,
+                       cv.advertisement_id, md.message_date_time, md.message_id
+                from reference r, commented cm, conversation cv, middle md
+                """,
+                (rs, rowNum) -> new Dataset(
+                        rs.getObject(1, UUID.class),
+                        rs.getObject(2, UUID.class),
+                        rs.getObject(3, UUID.class),
+                        rs.getObject(4, UUID.class),
+                        rs.getObject(5, UUID.class),
+                        rs.getObject(6, UUID.class),
+                        rs.getObject(7, LocalDateTime.class),
+                        rs.getObject(8, UUID.class)));
+        log.warn("benchmark dataset: {}", dataset);
+        return dataset;
+    }
+
+    /**
+     * Идентификаторы из сгенерированных данных, на которых меряются запросы
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Dataset {
+        private final UUID cityId;
+        private final UUID advertisementTypeId;
+        private final UUID commentedAdvertisementId;
+        private final UUID conversationFirstUserId;
+        private final UUID conversationSecondUserId;
+        private final UUID conversationAdvertisementId;
+        private final LocalDateTime middleMessageDateTime;
+        private final UUID middleMessageId;
+    }
+}
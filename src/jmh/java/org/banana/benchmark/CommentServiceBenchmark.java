@@ -0,0 +1,52 @@
+package org.banana.benchmark;
+
+import org.banana.dto.comment.CommentResponseDto;
+import org.banana.service.CommentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дерево комментариев объявления {@link CommentService#findAllByAdvertisementId} на самом обсуждаемом объявлении
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CommentServiceBenchmark {
+
+    @Param({"0", "5"})
+    private int page;
+
+    @Param({"10", "50"})
+    private int size;
+
+    private CommentService commentService;
+    private UUID advertisementId;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkApplicationState application) {
+        commentService = application.getBean(CommentService.class);
+        advertisementId = application.getDataset().getCommentedAdvertisementId();
+    }
+
+    @Benchmark
+    public List<CommentResponseDto> findAllByAdvertisementId() {
+        return commentService.findAllByAdvertisementId(advertisementId, page, size);
+    }
+}
@@ -0,0 +1,154 @@
+package org.banana.benchmark;
+
+import org.banana.entity.Message;
+import org.banana.repository.MessageRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Пакетные методы CrudRepository на сообщениях: saveAll, findAllById и deleteAllById против поштучных
+ * save/findById/deleteById (ONE_BY_ONE, для save пакет JDBC отключен размером 1). Кроме времени
+ * выводится счетчик statements - число подготовленных JDBC-выражений за операцию по статистике Hibernate,
+ * то есть обращений к базе. Все изменения откатываются, набор данных не меняется
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CrudRepositoryBatchBenchmark {
+
+    @Param({"ONE_BY_ONE", "BATCH"})
+    private String mode;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private MessageRepository messageRepository;
+    private SessionFactory sessionFactory;
+    private TransactionTemplate transaction;
+    private UUID senderId;
+    private UUID recipientId;
+    private UUID advertisementId;
+    private List<UUID> messageIds;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkApplicationState application) {
+        messageRepository = application.getBean(MessageRepository.class);
+        sessionFactory = application.getBean(SessionFactory.class);
+        transaction = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+
+        BenchmarkDataGenerator.Dataset dataset = application.getDataset();
+        senderId = dataset.getConversationFirstUserId();
+        recipientId = dataset.getConversationSecondUserId();
+        advertisementId = dataset.getConversationAdvertisementId();
+        messageIds = new JdbcTemplate(application.getBean(DataSource.class))
+                .queryForList("select message_id from message limit ?", UUID.class, size);
+    }
+
+    @Benchmark
+    public int saveAll(StatementCounter counter) {
+        return counter.count(sessionFactory, () -> transaction.execute(status -> {
+            List<Message> messages = newMessages();
+            if (isBatch()) {
+                messageRepository.saveAll(messages);
+            } else {
+                sessionFactory.getCurrentSession().setJdbcBatchSize(1);
+                messages.forEach(messageRepository::save);
+            }
+            sessionFactory.getCurrentSession().flush();
+            status.setRollbackOnly();
+            return messages.size();
+        }));
+    }
+
+    @Benchmark
+    public int findAllById(StatementCounter counter) {
+        return counter.count(sessionFactory, () -> transaction.execute(status -> {
+            status.setRollbackOnly();
+            if (isBatch()) {
+                return messageRepository.findAllById(messageIds).size();
+            }
+            int found = 0;
+            for (UUID id : messageIds) {
+                found += messageRepository.findById(id).isPresent() ? 1 : 0;
+            }
+            return found;
+        }));
+    }
+
+    /**
+     * Удаление сообщений, вставленных в той же транзакции одним пакетом, поэтому разница режимов - только удаление
+     */
+    @Benchmark
+    public int deleteAllById(StatementCounter counter) {
+        return counter.count(sessionFactory, () -> transaction.execute(status -> {
+            List<UUID> ids = messageRepository.insertAll(newMessages()).stream().map(Message::getId).toList();
+            sessionFactory.getCurrentSession().clear();
+            if (isBatch()) {
+                messageRepository.deleteAllById(ids);
+            } else {
+                ids.forEach(messageRepository::deleteById);
+            }
+            sessionFactory.getCurrentSession().flush();
+            status.setRollbackOnly();
+            return ids.size();
+        }));
+    }
+
+    private boolean isBatch() {
+        return "BATCH".equals(mode);
+    }
+
+    private List<Message> newMessages() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(new Message(advertisementId, senderId, recipientId, "Сообщение " + i, now.plusNanos(i * 1_000_000L)));
+        }
+        return messages;
+    }
+
+    /**
+     * Число подготовленных JDBC-выражений за операцию (Statistics#getPrepareStatementCount)
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCounter {
+
+        public long statements;
+
+        int count(SessionFactory sessionFactory, IntSupplier operation) {
+            Statistics statistics = sessionFactory.getStatistics();
+            long before = statistics.getPrepareStatementCount();
+            int result = operation.getAsInt();
+            statements += statistics.getPrepareStatementCount() - before;
+            return result;
+        }
+    }
+}
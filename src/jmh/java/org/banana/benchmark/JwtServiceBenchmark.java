@@ -0,0 +1,61 @@
+package org.banana.benchmark;
+
+import io.jsonwebtoken.Claims;
+import org.banana.security.UserRole;
+import org.banana.security.dto.UserPrincipal;
+import org.banana.security.service.JwtService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и разбор JWT {@link JwtService} без базы данных и контекста Spring
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "e5sOK79Mtn0KtbCwSMBiNUq+JC1pA1gozzliySnjz+4=";
+
+    private JwtService jwtService;
+    private UserPrincipal principal;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtService = new JwtService(SECRET, 86_400_000L);
+        principal = new UserPrincipal(UUID.randomUUID(), "first", "last", "+79990000001",
+                "bench1@example.com", "password", UserRole.ROLE_USER);
+        token = jwtService.generateToken(principal.getId(), principal.getUsername(), principal.getRole(), principal.getPhone());
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(principal.getId(), principal.getUsername(), principal.getRole(), principal.getPhone());
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtService.parseClaims(token);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtService.validateToken(token, principal);
+    }
+}
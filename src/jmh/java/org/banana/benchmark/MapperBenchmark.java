@@ -0,0 +1,135 @@
+package org.banana.benchmark;
+
+import org.banana.dto.advertisement.AdvertisementMapper;
+import org.banana.dto.advertisement.AdvertisementMapperImpl;
+import org.banana.dto.advertisement.AdvertisementResponseDto;
+import org.banana.dto.comment.CommentMapper;
+import org.banana.dto.comment.CommentMapperImpl;
+import org.banana.dto.comment.CommentResponseDto;
+import org.banana.dto.message.MessageMapper;
+import org.banana.dto.message.MessageMapperImpl;
+import org.banana.dto.message.MessageResponseDto;
+import org.banana.dto.user.UserMapper;
+import org.banana.dto.user.UserMapperImpl;
+import org.banana.dto.user.UserResponseDto;
+import org.banana.entity.Advertisement;
+import org.banana.entity.AdvertisementType;
+import org.banana.entity.City;
+import org.banana.entity.Comment;
+import org.banana.entity.Message;
+import org.banana.entity.User;
+import org.banana.entity.UserRatingView;
+import org.banana.security.UserRole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг сущностей в DTO сгенерированными MapStruct-мапперами. Мапперы берутся из небольшого контекста Spring,
+ * чтобы зависимости между ними (AdvertisementMapper использует UserMapper) внедрялись как в приложении
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class MapperBenchmark {
+
+    private static final int LIST_SIZE = 20;
+
+    private AnnotationConfigApplicationContext context;
+    private AdvertisementMapper advertisementMapper;
+    private UserMapper userMapper;
+    private CommentMapper commentMapper;
+    private MessageMapper messageMapper;
+
+    private User user;
+    private List<Advertisement> advertisements;
+    private List<Comment> comments;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(UserMapperImpl.class, AdvertisementMapperImpl.class,
+                CommentMapperImpl.class, MessageMapperImpl.class);
+        advertisementMapper = context.getBean(AdvertisementMapper.class);
+        userMapper = context.getBean(UserMapper.class);
+        commentMapper = context.getBean(CommentMapper.class);
+        messageMapper = context.getBean(MessageMapper.class);
+
+        user = new User(UUID.randomUUID(), "first", "last", "+79990000001", "bench1@example.com", "password", UserRole.ROLE_USER);
+        user.setUserRatingView(new UserRatingView(user.getId(), BigDecimal.valueOf(4.5), 12));
+        City city = new City(UUID.randomUUID(), "Москва");
+        AdvertisementType type = new AdvertisementType(UUID.randomUUID(), "Электроника");
+
+        advertisements = new ArrayList<>(LIST_SIZE);
+        comments = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            Advertisement advertisement = new Advertisement();
+            advertisement.setId(UUID.randomUUID());
+            advertisement.setUser(user);
+            advertisement.setCity(city);
+            advertisement.setAdvertisementType(type);
+            advertisement.setTitle("Продам велосипед " + i);
+            advertisement.setDescription("Отличный велосипед, почти новый, торг уместен");
+            advertisement.setPrice(BigDecimal.valueOf(1000L + i));
+            advertisement.setQuantity(1);
+            advertisement.setCreateDate(LocalDateTime.now().minusMinutes(i));
+            advertisements.add(advertisement);
+
+            Comment comment = new Comment(advertisement.getId(), null, null, "Комментарий " + i, user, LocalDateTime.now());
+            comment.setId(UUID.randomUUID());
+            comments.add(comment);
+        }
+        message = new Message(UUID.randomUUID(), user.getId(), UUID.randomUUID(), "Сообщение", LocalDateTime.now());
+        message.setId(UUID.randomUUID());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AdvertisementResponseDto advertisementToResponseDto() {
+        return advertisementMapper.advertisementToAdvertisementResponseDto(advertisements.get(0));
+    }
+
+    @Benchmark
+    public List<AdvertisementResponseDto> advertisementListToResponseDtoList() {
+        return advertisementMapper.advertisementListToAdvertisementResponseDtoList(advertisements);
+    }
+
+    @Benchmark
+    public UserResponseDto userToResponseDto() {
+        return userMapper.userToUserResponseDto(user);
+    }
+
+    @Benchmark
+    public List<CommentResponseDto> commentListToResponseDtoList() {
+        return commentMapper.fromCommentListToCommentResponseDtoList(comments);
+    }
+
+    @Benchmark
+    public MessageResponseDto messageToResponseDto() {
+        return messageMapper.messageToMessageResponseDto(message);
+    }
+}
@@ -0,0 +1,67 @@
+package org.banana.benchmark;
+
+import org.banana.dto.message.MessageFilterDto;
+import org.banana.dto.message.MessageResponseDto;
+import org.banana.repository.MessageRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение переписки {@link MessageRepository#findAllByFilter}: последние сообщения и листание от курсора
+ * в середине самой длинной переписки в обе стороны
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class MessageRepositoryBenchmark {
+
+    @Param({"LATEST", "BEFORE_CURSOR", "AFTER_CURSOR"})
+    private String cursorMode;
+
+    @Param({"10", "100"})
+    private int limit;
+
+    private MessageRepository messageRepository;
+    private TransactionTemplate transaction;
+    private MessageFilterDto filter;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkApplicationState application) {
+        messageRepository = application.getBean(MessageRepository.class);
+        transaction = application.readOnlyTransaction();
+
+        BenchmarkDataGenerator.Dataset dataset = application.getDataset();
+        filter = new MessageFilterDto();
+        filter.setLimit(limit);
+        filter.setCurrentUserId(dataset.getConversationFirstUserId());
+        filter.setSecondUserId(dataset.getConversationSecondUserId());
+        filter.setAdvertisementId(dataset.getConversationAdvertisementId());
+        if (!"LATEST".equals(cursorMode)) {
+            filter.setIsBefore("BEFORE_CURSOR".equals(cursorMode));
+            filter.setCursorDateTime(dataset.getMiddleMessageDateTime());
+            filter.setCursorMessageId(dataset.getMiddleMessageId());
+        }
+    }
+
+    @Benchmark
+    public List<MessageResponseDto> findAllByFilter() {
+        return transaction.execute(status -> messageRepository.findAllByFilter(filter));
+    }
+}
@@ -0,0 +1,90 @@
+package org.banana.benchmark;
+
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.banana.repository.SaleHistoryRepository;
+import org.banana.service.StockReservationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Покупки одного объявления из 16 потоков: списание одним запросом под блокировкой строки
+ * ({@link SaleHistoryRepository#insertWithQuantityDecrement}, DATABASE) против пула в памяти
+ * ({@link StockReservationEngine#reserve}, RESERVATION), который пишет продажу строкой журнала в транзакции покупки
+ * и переносит журнал в sale_history фоновыми пакетами.
+ * Объявление создается на время прогона с остатком, которого хватает на все итерации
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class StockReservationBenchmark {
+
+    @Param({"DATABASE", "RESERVATION"})
+    private String mode;
+
+    private SaleHistoryRepository saleHistoryRepository;
+    private StockReservationEngine stockReservationEngine;
+    private TransactionTemplate transaction;
+    private JdbcTemplate jdbcTemplate;
+    private UUID advertisementId;
+    private UUID buyerId;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkApplicationState application) {
+        saleHistoryRepository = application.getBean(SaleHistoryRepository.class);
+        stockReservationEngine = application.getBean(StockReservationEngine.class);
+        transaction = new TransactionTemplate(application.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = new JdbcTemplate(application.getBean(DataSource.class));
+
+        BenchmarkDataGenerator.Dataset dataset = application.getDataset();
+        buyerId = dataset.getConversationSecondUserId();
+        advertisementId = jdbcTemplate.queryForObject("""
+                        insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity)
+                        values (?, ?, ?, 'flash sale', 'flash sale', 100, 1000000000)
+                        returning advertisement_id""", UUID.class,
+                dataset.getConversationFirstUserId(), dataset.getCityId(), dataset.getAdvertisementTypeId());
+        if ("RESERVATION".equals(mode)) {
+            stockReservationEngine.enable(advertisementId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stockReservationEngine.disable(advertisementId);
+        stockReservationEngine.flush();
+        jdbcTemplate.update("delete from advertisement where advertisement_id = ?", advertisementId);
+    }
+
+    @Benchmark
+    public Optional<SaleHistoryResponseDto> addSale() {
+        if ("RESERVATION".equals(mode)) {
+            return transaction.execute(status -> stockReservationEngine.reserve(advertisementId, buyerId, 1));
+        }
+        return transaction.execute(status ->
+                saleHistoryRepository.insertWithQuantityDecrement(advertisementId, buyerId, 1, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,120 @@
+package org.banana.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Тонкая обертка над {@link HttpClient}: JSON в обе стороны, Bearer-токен и замер каждого запроса.
+ * Запрос записывается в статистику под именем эндпоинта (шаблон пути без идентификаторов)
+ */
+class ApiClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private volatile LoadTestStats stats;
+
+    ApiClient(String baseUrl) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.objectMapper = new ObjectMapper();
+        this.baseUrl = baseUrl;
+    }
+
+    void setStats(LoadTestStats stats) {
+        this.stats = stats;
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    Response get(String endpoint, String path, String token) {
+        return send(endpoint, request(path, token).GET());
+    }
+
+    Response post(String endpoint, String path, String token, Object body) {
+        return send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(toJson(body))));
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", "application/json");
+        if (token != null) builder.header("Authorization", "Bearer " + token);
+        return builder;
+    }
+
+    private Response send(String endpoint, HttpRequest.Builder builder) {
+        long start = System.nanoTime();
+        int status = -1;
+        try {
+            HttpResponse<String> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+            return new Response(status, parse(response.body()));
+        } catch (IOException e) {
+            return new Response(status, NullNode.getInstance());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(status, NullNode.getInstance());
+        } finally {
+            LoadTestStats current = stats;
+            if (current != null) current.record(endpoint, status, System.nanoTime() - start);
+        }
+    }
+
+    private JsonNode parse(String body) {
+        if (body == null || body.isBlank()) return NullNode.getInstance();
+        try {
+            return objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            // AuthController отдает токен простой строкой
+            return TextNode.valueOf(body);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param status код ответа, -1 если запрос не дошел до сервера
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Response {
+        private final int status;
+        private final JsonNode body;
+
+        boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        Response expectSuccess(String action) {
+            if (!isSuccessful())
+                throw new IllegalStateException(action + " failed with status " + status + ": " + body);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.banana.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import org.banana.loadtest.SeededDataset.SeededAdvertisement;
+import org.banana.loadtest.SeededDataset.SeededConversation;
+import org.banana.loadtest.SeededDataset.SeededUser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Наполняет приложение данными только через REST API, как это делали бы настоящие пользователи:
+ * регистрация через AuthController, затем объявления, комментарии, переписки, продажи и оценки.
+ * Содержимое определяется loadtest.seed: при одинаковых параметрах получается тот же набор данных
+ * (кроме сгенерированных базой идентификаторов). Имена пользователей содержат метку прогона,
+ * поэтому повторный прогон на той же базе не конфликтует с предыдущим
+ */
+@RequiredArgsConstructor
+class DatasetSeeder {
+
+    static final List<String> WORDS = List.of("велосипед", "гараж", "диван", "ноутбук", "телефон", "холодильник",
+            "коляска", "палатка", "гитара", "самокат");
+    static final int HOT_ADVERTISEMENT_QUANTITY = 1_000_000;
+    private static final String PASSWORD = "loadtest-password";
+
+    private final ApiClient client;
+    private final LoadTestConfig config;
+
+    SeededDataset seed() {
+        if (config.getUsers() < 2 || config.getAdvertisements() < 1)
+            throw new IllegalArgumentException("loadtest needs at least 2 users and 1 advertisement");
+        ExecutorService executor = Executors.newFixedThreadPool(config.getSeedThreads());
+        try {
+            String runTag = String.format("%06d", (System.currentTimeMillis() / 1000) % 1_000_000);
+            List<SeededUser> users = parallel(executor, config.getUsers(), i -> registerUser(runTag, i));
+            log("registered %d users", users.size());
+
+            String token = users.get(0).getToken();
+            List<UUID> cityIds = ids(client.get("GET /city", "/api/v1/city", token).expectSuccess("load cities"));
+            List<UUID> typeIds = ids(client.get("GET /advertisement-type", "/api/v1/advertisement-type", token)
+                    .expectSuccess("load advertisement types"));
+
+            int hot = Math.min(config.getHotAdvertisements(), config.getAdvertisements());
+            List<SeededAdvertisement> advertisements = parallel(executor, config.getAdvertisements(),
+                    i -> createAdvertisement(users, cityIds, typeIds, i, i < hot));
+            List<SeededAdvertisement> hotAdvertisements = advertisements.subList(0, hot);
+            log("created %d advertisements (%d hot)", advertisements.size(), hot);
+
+            seedComments(executor, users, advertisements);
+            log("created %d comments", config.getComments());
+
+            List<SeededConversation> conversations = parallel(executor, config.getConversations(),
+                    i -> createConversation(users, advertisements, i));
+            log("created %d conversations", conversations.size());
+
+            parallel(executor, config.getSales(), i -> createSale(users, advertisements, i));
+            parallel(executor, config.getRatings(), i -> createRating(users, i));
+            log("created %d sales and %d ratings", config.getSales(), config.getRatings());
+
+            return new SeededDataset(users, advertisements, hotAdvertisements, conversations, cityIds, typeIds);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SeededUser registerUser(String runTag, int i) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("firstName", "Load" + i);
+        body.put("lastName", "Test" + i);
+        body.put("phone", "+7" + runTag + String.format("%07d", i));
+        body.put("username", "lt" + runTag + "u" + i + "@example.com");
+        body.put("password", PASSWORD);
+        body.put("matchingPassword", PASSWORD);
+        String token = client.post("POST /auth/register", "/api/v1/auth/register", null, body)
+                .expectSuccess("register user " + i).getBody().asText();
+        return new SeededUser(subjectOf(token), token);
+    }
+
+    private SeededAdvertisement createAdvertisement(List<SeededUser> users, List<UUID> cityIds, List<UUID> typeIds,
+                                                    int i, boolean hot) {
+        Random random = random(1, i);
+        SeededUser owner = users.get(i % users.size());
+        String word = WORDS.get(random.nextInt(WORDS.size()));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("cityId", cityIds.get(random.nextInt(cityIds.size())));
+        body.put("advertisementTypeId", typeIds.get(random.nextInt(typeIds.size())));
+        body.put("title", "Продам " + word + " " + i);
+        body.put("description", "Отличный " + word + ", почти новый, торг уместен. Объявление " + i);
+        body.put("price", 100 + random.nextInt(100_000));
+        body.put("quantity", hot ? HOT_ADVERTISEMENT_QUANTITY : 1 + random.nextInt(10));
+        JsonNode created = client.post("POST /advertisement", "/api/v1/advertisement", owner.getToken(), body)
+                .expectSuccess("create advertisement " + i).getBody();
+        return new SeededAdvertisement(UUID.fromString(created.get("id").asText()), owner);
+    }
+
+    // треть комментариев - корневые на первых 10% объявлений (обсуждаемые), остальные - ответы на них
+    private void seedComments(ExecutorService executor, List<SeededUser> users, List<SeededAdvertisement> advertisements) {
+        int discussed = Math.max(1, advertisements.size() / 10);
+        int roots = Math.max(1, config.getComments() / 3);
+        List<UUID[]> rootComments = parallel(executor, roots, i -> {
+            Random random = random(2, i);
+            UUID advertisementId = advertisements.get(random.nextInt(discussed)).getId();
+            return new UUID[]{advertisementId, createComment(users.get(random.nextInt(users.size())), advertisementId, null, i)};
+        });
+        parallel(executor, Math.max(0, config.getComments() - roots), i -> {
+            Random random = random(3, i);
+            UUID[] root = rootComments.get(random.nextInt(rootComments.size()));
+            return createComment(users.get(random.nextInt(users.size())), root[0], root[1], roots + i);
+        });
+    }
+
+    private UUID createComment(SeededUser commenter, UUID advertisementId, UUID parentCommentId, int i) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("advertisementId", advertisementId);
+        body.put("parentCommentId", parentCommentId);
+        body.put("commentText", "Комментарий " + i);
+        JsonNode created = client.post("POST /comment", "/api/v1/comment", commenter.getToken(), body)
+                .expectSuccess("create comment " + i).getBody();
+        return UUID.fromString(created.get("id").asText());
+    }
+
+    private SeededConversation createConversation(List<SeededUser> users, List<SeededAdvertisement> advertisements, int i) {
+        Random random = random(4, i);
+        SeededAdvertisement advertisement = advertisements.get(random.nextInt(advertisements.size()));
+        SeededUser seller = advertisement.getOwner();
+        SeededUser buyer = users.get(random.nextInt(users.size()));
+        if (buyer == seller) buyer = users.get((users.indexOf(seller) + 1) % users.size());
+
+        SeededConversation conversation = new SeededConversation(buyer, seller, advertisement.getId());
+        for (int message = 0; message < config.getMessagesPerConversation(); message++) {
+            boolean fromBuyer = message % 2 == 0;
+            sendMessage(client, conversation, fromBuyer, "Сообщение " + message).expectSuccess("send message");
+        }
+        return conversation;
+    }
+
+    private Object createSale(List<SeededUser> users, List<SeededAdvertisement> advertisements, int i) {
+        Random random = random(5, i);
+        SeededAdvertisement advertisement = advertisements.get(random.nextInt(advertisements.size()));
+        // продажа может не пройти, если количество в объявлении уже закончилось, это нормально
+        return buy(client, users.get(random.nextInt(users.size())), advertisement.getId());
+    }
+
+    private Object createRating(List<SeededUser> users, int i) {
+        Random random = random(6, i);
+        int rated = random.nextInt(users.size());
+        int rater = (rated + 1 + random.nextInt(users.size() - 1)) % users.size();
+        return rate(client, users.get(rater), users.get(rated), (short) (1 + random.nextInt(5)));
+    }
+
+    static ApiClient.Response sendMessage(ApiClient client, SeededConversation conversation, boolean fromBuyer, String text) {
+        SeededUser sender = fromBuyer ? conversation.getBuyer() : conversation.getSeller();
+        SeededUser recipient = fromBuyer ? conversation.getSeller() : conversation.getBuyer();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("advertisementId", conversation.getAdvertisementId());
+        body.put("recipientId", recipient.getId());
+        body.put("messageText", text);
+        return client.post("POST /message", "/api/v1/message", sender.getToken(), body);
+    }
+
+    static ApiClient.Response buy(ApiClient client, SeededUser buyer, UUID advertisementId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("advertisementId", advertisementId);
+        body.put("quantity", 1);
+        return client.post("POST /sale-history", "/api/v1/sale-history", buyer.getToken(), body);
+    }
+
+    static ApiClient.Response rate(ApiClient client, SeededUser rater, SeededUser rated, short value) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ratedUserId", rated.getId());
+        body.put("ratingValue", value);
+        return client.post("POST /rating", "/api/v1/rating", rater.getToken(), body);
+    }
+
+    private Random random(int stream, int i) {
+        return new Random(config.getSeed() * 1_000_003L + stream * 7_919L + i);
+    }
+
+    private UUID subjectOf(String token) {
+        String[] parts = token.split("\\.");
+        try {
+            JsonNode payload = client.getObjectMapper().readTree(Base64.getUrlDecoder().decode(parts[1]));
+            return UUID.fromString(payload.get("sub").asText());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<UUID> ids(ApiClient.Response response) {
+        List<UUID> ids = new ArrayList<>();
+        response.getBody().forEach(node -> ids.add(UUID.fromString(node.get("id").asText())));
+        if (ids.isEmpty()) throw new IllegalStateException("reference data is empty: " + response.getBody());
+        return ids;
+    }
+
+    private static <T> List<T> parallel(ExecutorService executor, int count, IntFunction<T> task) {
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> task.apply(index)));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("seeding interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("seeding failed", e.getCause());
+        }
+        return results;
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.printf("[seed] " + format + "%n", args);
+    }
+}
@@ -0,0 +1,69 @@
+package org.banana.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасная гистограмма задержек с логарифмическими корзинами: до 1 мс точность 1 мкс,
+ * дальше относительная погрешность около 1%. Память постоянная, поэтому подходит для длинных прогонов
+ */
+class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT_MICROS = 1000;
+    private static final double LOG_BASE = Math.log(1.01);
+    private static final int BUCKETS = LINEAR_LIMIT_MICROS + (int) Math.ceil(Math.log(3_600_000_000.0 / LINEAR_LIMIT_MICROS) / LOG_BASE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    double meanMillis() {
+        long count = total.get();
+        return count == 0 ? 0 : sumMicros.get() / 1000.0 / count;
+    }
+
+    double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * @param percentile от 0 до 100
+     * @return верхняя граница корзины, в которую попал перцентиль, в миллисекундах
+     */
+    double percentileMillis(double percentile) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) return Math.min(upperBoundMicros(bucket), maxMicros.get()) / 1000.0;
+        }
+        return maxMillis();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR_LIMIT_MICROS) return (int) micros;
+        int bucket = LINEAR_LIMIT_MICROS + (int) (Math.log((double) micros / LINEAR_LIMIT_MICROS) / LOG_BASE);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        if (bucket < LINEAR_LIMIT_MICROS) return bucket;
+        return (long) Math.ceil(LINEAR_LIMIT_MICROS * Math.exp((bucket - LINEAR_LIMIT_MICROS + 1) * LOG_BASE));
+    }
+}
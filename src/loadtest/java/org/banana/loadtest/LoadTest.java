@@ -0,0 +1,61 @@
+package org.banana.loadtest;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Нагрузочный прогон REST API /api/v1/**: наполнение данных через API, прогрев и замер смеси запросов.
+ * По каждому эндпоинту печатаются перцентили задержки и пропускная способность, полный отчет пишется в JSON
+ * (loadtest.report). Приложение должно быть уже запущено, см. loadtest/run.sh
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        LoadTestConfig config = new LoadTestConfig();
+        System.out.println("loadtest config: " + config);
+        ApiClient client = new ApiClient(config.getBaseUrl());
+
+        LoadTestStats seedStats = new LoadTestStats("seed");
+        client.setStats(seedStats);
+        seedStats.start();
+        SeededDataset dataset = new DatasetSeeder(client, config).seed();
+        seedStats.finish();
+        seedStats.print(System.out);
+
+        TrafficMix mix = new TrafficMix(client, dataset, config);
+        if (config.getWarmupSeconds() > 0) {
+            client.setStats(new LoadTestStats("warmup"));
+            System.out.printf("%nwarming up for %d s%n", config.getWarmupSeconds());
+            mix.run(config.getThreads(), config.getWarmupSeconds(), 0);
+        }
+
+        LoadTestStats loadStats = new LoadTestStats("load");
+        client.setStats(loadStats);
+        System.out.printf("running %d threads for %d s%n", config.getThreads(), config.getDurationSeconds());
+        loadStats.start();
+        mix.run(config.getThreads(), config.getDurationSeconds(), 1);
+        loadStats.finish();
+        client.setStats(null);
+        loadStats.print(System.out);
+
+        writeReport(client, config, seedStats, loadStats);
+    }
+
+    private static void writeReport(ApiClient client, LoadTestConfig config,
+                                    LoadTestStats seedStats, LoadTestStats loadStats) throws IOException {
+        ObjectNode report = client.getObjectMapper().createObjectNode();
+        report.set("config", client.getObjectMapper().valueToTree(config));
+        report.putArray("phases").add(seedStats.toJson()).add(loadStats.toJson());
+
+        Path path = Path.of(config.getReport());
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        client.getObjectMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+        System.out.println("report written to " + path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,45 @@
+package org.banana.loadtest;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры прогона, задаются системными свойствами loadtest.*
+ */
+@Getter
+@ToString
+class LoadTestConfig {
+
+    private static final String DEFAULT_MIX = "feed:35,view:20,comments:10,chat-poll:15,chat-send:8,sale:7,rate:5";
+
+    private final String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8080");
+    private final long seed = Long.getLong("loadtest.seed", 42L);
+    private final int users = Integer.getInteger("loadtest.users", 200);
+    private final int advertisements = Integer.getInteger("loadtest.advertisements", 2000);
+    private final int hotAdvertisements = Integer.getInteger("loadtest.hot-advertisements", 5);
+    private final int comments = Integer.getInteger("loadtest.comments", 4000);
+    private final int conversations = Integer.getInteger("loadtest.conversations", 300);
+    private final int messagesPerConversation = Integer.getInteger("loadtest.messages-per-conversation", 20);
+    private final int sales = Integer.getInteger("loadtest.sales", 500);
+    private final int ratings = Integer.getInteger("loadtest.ratings", 1000);
+    private final int seedThreads = Integer.getInteger("loadtest.seed-threads", 16);
+    private final int threads = Integer.getInteger("loadtest.threads", 32);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 30);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 120);
+    private final String report = System.getProperty("loadtest.report", "target/loadtest-report.json");
+    private final Map<String, Integer> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("loadtest.mix entry must look like name:weight, got " + entry);
+            weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
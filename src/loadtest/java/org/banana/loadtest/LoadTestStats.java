@@ -0,0 +1,103 @@
+package org.banana.loadtest;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки и коды ответов по эндпоинтам одной фазы прогона (наполнение или нагрузка)
+ */
+class LoadTestStats {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private final String phase;
+    private final ConcurrentMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    LoadTestStats(String phase) {
+        this.phase = phase;
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+    }
+
+    void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    void record(String endpoint, int status, long nanos) {
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, key -> new EndpointStats());
+        stats.latency.record(nanos);
+        stats.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    void print(PrintStream out) {
+        double seconds = elapsedSeconds();
+        out.printf("%n== %s: %.1f s%n", phase, seconds);
+        out.printf("%-40s %9s %9s %8s %8s %8s %8s %8s %8s %8s  %s%n",
+                "endpoint", "requests", "req/s", "mean", "p50", "p90", "p95", "p99", "p99.9", "max", "statuses");
+        new TreeMap<>(endpoints).forEach((endpoint, stats) -> {
+            LatencyHistogram latency = stats.latency;
+            out.printf("%-40s %9d %9.1f %8.2f", endpoint, latency.count(), latency.count() / seconds, latency.meanMillis());
+            for (double percentile : PERCENTILES) {
+                out.printf(" %8.2f", latency.percentileMillis(percentile));
+            }
+            out.printf(" %8.2f  %s%n", latency.maxMillis(), stats.statusesSnapshot());
+        });
+        out.println("(время в миллисекундах)");
+    }
+
+    ObjectNode toJson() {
+        double seconds = elapsedSeconds();
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.put("phase", phase);
+        root.put("durationSeconds", seconds);
+        ArrayNode array = root.putArray("endpoints");
+        new TreeMap<>(endpoints).forEach((endpoint, stats) -> {
+            LatencyHistogram latency = stats.latency;
+            ObjectNode node = array.addObject();
+            node.put("endpoint", endpoint);
+            node.put("requests", latency.count());
+            node.put("throughputPerSecond", latency.count() / seconds);
+            node.put("meanMillis", latency.meanMillis());
+            ObjectNode percentiles = node.putObject("percentilesMillis");
+            for (double percentile : PERCENTILES) {
+                percentiles.put(percentileName(percentile), latency.percentileMillis(percentile));
+            }
+            node.put("maxMillis", latency.maxMillis());
+            ObjectNode statuses = node.putObject("statuses");
+            stats.statusesSnapshot().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+        });
+        return root;
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile % 1 == 0 ? "p" + (int) percentile : "p" + percentile;
+    }
+
+    private double elapsedSeconds() {
+        long end = finishedAt == 0 ? System.nanoTime() : finishedAt;
+        return Math.max(1e-9, (end - startedAt) / 1e9);
+    }
+
+    private static final class EndpointStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        private Map<Integer, Long> statusesSnapshot() {
+            Map<Integer, Long> snapshot = new TreeMap<>();
+            statuses.forEach((status, count) -> snapshot.put(status, count.sum()));
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.banana.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Что создал {@link DatasetSeeder}: пользователи с токенами, объявления, переписки и справочники
+ */
+@Getter
+@AllArgsConstructor
+class SeededDataset {
+
+    private final List<SeededUser> users;
+    private final List<SeededAdvertisement> advertisements;
+    private final List<SeededAdvertisement> hotAdvertisements;
+    private final List<SeededConversation> conversations;
+    private final List<UUID> cityIds;
+    private final List<UUID> advertisementTypeIds;
+
+    @Getter
+    @AllArgsConstructor
+    static class SeededUser {
+        private final UUID id;
+        private final String token;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class SeededAdvertisement {
+        private final UUID id;
+        private final SeededUser owner;
+    }
+
+    /**
+     * Переписка покупателя с владельцем объявления
+     */
+    @Getter
+    @AllArgsConstructor
+    static class SeededConversation {
+        private final SeededUser buyer;
+        private final SeededUser seller;
+        private final UUID advertisementId;
+    }
+}
@@ -0,0 +1,168 @@
+package org.banana.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.banana.loadtest.SeededDataset.SeededAdvertisement;
+import org.banana.loadtest.SeededDataset.SeededConversation;
+import org.banana.loadtest.SeededDataset.SeededUser;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Смесь запросов, которую крутят потоки нагрузки. Сценарии выбираются случайно с весами из loadtest.mix:
+ * <ul>
+ *     <li>feed - лента с фильтрами по городу, типу или поиску, иногда со второй страницей по курсору</li>
+ *     <li>view - просмотр объявления, популярные объявления запрашиваются чаще</li>
+ *     <li>comments - комментарии обсуждаемого объявления</li>
+ *     <li>chat-poll - опрос переписки одним из собеседников</li>
+ *     <li>chat-send - отправка сообщения в существующую переписку</li>
+ *     <li>sale - покупка из нескольких "горячих" объявлений, все потоки конкурируют за одни строки</li>
+ *     <li>rate - оценка случайного пользователя</li>
+ * </ul>
+ */
+class TrafficMix {
+
+    private final ApiClient client;
+    private final SeededDataset dataset;
+    private final long seed;
+    private final String[] scenarios;
+    private final int[] cumulativeWeights;
+    private final AtomicLong messageCounter = new AtomicLong();
+
+    TrafficMix(ApiClient client, SeededDataset dataset, LoadTestConfig config) {
+        this.client = client;
+        this.dataset = dataset;
+        this.seed = config.getSeed();
+        this.scenarios = config.getMix().keySet().toArray(String[]::new);
+        this.cumulativeWeights = new int[scenarios.length];
+        int total = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            total += config.getMix().get(scenarios[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) throw new IllegalArgumentException("loadtest.mix weights must be positive");
+    }
+
+    /**
+     * Запускает threads потоков на durationSeconds секунд и ждет их завершения
+     */
+    void run(int threads, int durationSeconds, int round) throws InterruptedException {
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed * 1_000_003L + round * 10_007L + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                        execute(pick(random), random);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+    }
+
+    private String pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) return scenarios[i];
+        }
+        return scenarios[scenarios.length - 1];
+    }
+
+    private void execute(String scenario, Random random) {
+        switch (scenario) {
+            case "feed" -> feed(random);
+            case "view" -> view(random);
+            case "comments" -> comments(random);
+            case "chat-poll" -> chatPoll(random);
+            case "chat-send" -> chatSend(random);
+            case "sale" -> sale(random);
+            case "rate" -> rate(random);
+            default -> throw new IllegalArgumentException("unknown loadtest scenario: " + scenario);
+        }
+    }
+
+    private void feed(Random random) {
+        SeededUser user = anyUser(random);
+        Map<String, Object> filter = new LinkedHashMap<>();
+        int kind = random.nextInt(10);
+        if (kind >= 4) filter.put("cityIds", List.of(any(dataset.getCityIds(), random)));
+        if (kind >= 7) filter.put("advertisementTypeIds", List.of(any(dataset.getAdvertisementTypeIds(), random)));
+        if (kind == 9) filter.put("searchParam", any(DatasetSeeder.WORDS, random));
+
+        JsonNode page = client.post("POST /advertisement/feed", "/api/v1/advertisement/feed?size=20", user.getToken(), filter)
+                .getBody();
+        JsonNode cursor = page.path("nextCursor");
+        if (random.nextInt(10) < 3 && cursor.isTextual()) {
+            String encoded = URLEncoder.encode(cursor.asText(), StandardCharsets.UTF_8);
+            client.post("POST /advertisement/feed?cursor", "/api/v1/advertisement/feed?size=20&cursor=" + encoded,
+                    user.getToken(), filter);
+        }
+    }
+
+    private void view(Random random) {
+        // квадрат равномерного распределения смещает просмотры к началу списка: часть объявлений популярнее
+        List<SeededAdvertisement> advertisements = dataset.getAdvertisements();
+        double r = random.nextDouble();
+        UUID id = advertisements.get((int) (r * r * advertisements.size())).getId();
+        client.get("GET /advertisement/{id}", "/api/v1/advertisement/" + id, anyUser(random).getToken());
+    }
+
+    private void comments(Random random) {
+        List<SeededAdvertisement> advertisements = dataset.getAdvertisements();
+        UUID id = advertisements.get(random.nextInt(Math.max(1, advertisements.size() / 10))).getId();
+        client.get("GET /comment/advertisement/{id}", "/api/v1/comment/advertisement/" + id + "?page=0&size=10",
+                anyUser(random).getToken());
+    }
+
+    private void chatPoll(Random random) {
+        if (dataset.getConversations().isEmpty()) return;
+        SeededConversation conversation = any(dataset.getConversations(), random);
+        boolean asBuyer = random.nextBoolean();
+        SeededUser reader = asBuyer ? conversation.getBuyer() : conversation.getSeller();
+        SeededUser other = asBuyer ? conversation.getSeller() : conversation.getBuyer();
+        Map<String, Object> filter = new LinkedHashMap<>();
+        filter.put("limit", 20);
+        filter.put("secondUserId", other.getId());
+        filter.put("advertisementId", conversation.getAdvertisementId());
+        client.post("POST /message/chat", "/api/v1/message/chat", reader.getToken(), filter);
+    }
+
+    private void chatSend(Random random) {
+        if (dataset.getConversations().isEmpty()) return;
+        DatasetSeeder.sendMessage(client, any(dataset.getConversations(), random), random.nextBoolean(),
+                "Нагрузочное сообщение " + messageCounter.incrementAndGet());
+    }
+
+    private void sale(Random random) {
+        if (dataset.getHotAdvertisements().isEmpty()) return;
+        DatasetSeeder.buy(client, anyUser(random), any(dataset.getHotAdvertisements(), random).getId());
+    }
+
+    private void rate(Random random) {
+        List<SeededUser> users = dataset.getUsers();
+        int rated = random.nextInt(users.size());
+        int rater = (rated + 1 + random.nextInt(users.size() - 1)) % users.size();
+        DatasetSeeder.rate(client, users.get(rater), users.get(rated), (short) (1 + random.nextInt(5)));
+    }
+
+    private SeededUser anyUser(Random random) {
+        return any(dataset.getUsers(), random);
+    }
+
+    private static <T> T any(List<T> list, Random random) {
+        return list.get(random.nextInt(list.size()));
+    }
+}
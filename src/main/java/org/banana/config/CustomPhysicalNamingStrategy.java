@@ -10,31 +10,31 @@ public class CustomPhysicalNamingStrategy implements PhysicalNamingStrategy {
 
     @Override
     public Identifier toPhysicalCatalogName(final Identifier identifier, final JdbcEnvironment jdbcEnv) {
-        log.info("toPhysicalCatalogName({}) in {}", identifier, getClass().getSimpleName());
+        log.debug("toPhysicalCatalogName({}) in {}", identifier, getClass().getSimpleName());
         return convertToSnakeCase(identifier);
     }
 
     @Override
     public Identifier toPhysicalColumnName(final Identifier identifier, final JdbcEnvironment jdbcEnv) {
-        log.info("toPhysicalColumnName({}) in {}", identifier, getClass().getSimpleName());
+        log.debug("toPhysicalColumnName({}) in {}", identifier, getClass().getSimpleName());
         return convertToSnakeCase(identifier);
     }
 
     @Override
     public Identifier toPhysicalSchemaName(final Identifier identifier, final JdbcEnvironment jdbcEnv) {
-        log.info("toPhysicalSchemaName({}) in {}", identifier, getClass().getSimpleName());
+        log.debug("toPhysicalSchemaName({}) in {}", identifier, getClass().getSimpleName());
         return convertToSnakeCase(identifier);
     }
 
     @Override
     public Identifier toPhysicalSequenceName(final Identifier identifier, final JdbcEnvironment jdbcEnv) {
-        log.info("toPhysicalSequenceName({}) in {}", identifier, getClass().getSimpleName());
+        log.debug("toPhysicalSequenceName({}) in {}", identifier, getClass().getSimpleName());
         return convertToSnakeCase(identifier);
     }
 
     @Override
     public Identifier toPhysicalTableName(final Identifier identifier, final JdbcEnvironment jdbcEnv) {
-        log.info("toPhysicalTableName({}) in {}", identifier, getClass().getSimpleName());
+        log.debug("toPhysicalTableName({}) in {}", identifier, getClass().getSimpleName());
         convertToSnakeCase(identifier);
         return convertToSnakeCase(identifier);
     }
@@ -1,9 +1,17 @@
 package org.banana.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.hibernate.SessionFactory;
+import org.hibernate.stat.HibernateMetrics;
+import org.hibernate.stat.HibernateQueryMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -16,10 +24,54 @@ import java.util.Properties;
 @EnableTransactionManagement
 public class HibernateConfig {
 
+    /**
+     * Регион кэша запросов к справочникам (города, типы объявлений), настраивается в ehcache.xml
+     */
+    public static final String REFERENCE_DATA_QUERY_REGION = "reference-data-queries";
+
+    @Value("${datasource.pool.name:avi-too-too-pool}")
+    private String poolName;
+
+    @Value("${datasource.pool.minimum-idle:5}")
+    private int minimumIdle;
+
+    @Value("${datasource.pool.maximum-size:20}")
+    private int maximumPoolSize;
+
+    @Value("${datasource.pool.connection-timeout:30000}")
+    private long connectionTimeout;
+
+    @Value("${datasource.pool.validation-timeout:5000}")
+    private long validationTimeout;
+
+    @Value("${datasource.pool.idle-timeout:600000}")
+    private long idleTimeout;
+
+    @Value("${datasource.pool.keepalive-time:300000}")
+    private long keepaliveTime;
+
+    @Value("${datasource.pool.max-lifetime:1800000}")
+    private long maxLifetime;
+
+    @Value("${datasource.pool.leak-detection-threshold:60000}")
+    private long leakDetectionThreshold;
+
+    @Value("${datasource.jdbc.batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${diagnostics.sql.show:false}")
+    private boolean showSql;
+
+    @Value("${diagnostics.sql.format:false}")
+    private boolean formatSql;
+
+    @Value("${diagnostics.sql.slow-query-threshold:200}")
+    private long slowQueryThresholdMillis;
+
     @Bean
-    public LocalSessionFactoryBean sessionFactory() {
+    public LocalSessionFactoryBean sessionFactory(DataSource dataSource) {
         LocalSessionFactoryBean sessionFactory = new LocalSessionFactoryBean();
-        sessionFactory.setDataSource(dataSource());
+        sessionFactory.setDataSource(dataSource);
         sessionFactory.setPackagesToScan("org.banana.entity");
         sessionFactory.setHibernateProperties(hibernateProperties());
         return sessionFactory;
@@ -31,9 +83,31 @@ public class HibernateConfig {
         return new HibernateTransactionManager(sessionFactory);
     }
 
+    /**
+     * Статистика Hibernate (в том числе попадания и промахи кэша второго уровня и кэша запросов по регионам)
+     * публикуется в MeterRegistry и доступна через /actuator/metrics
+     */
+    @Bean
+    public MeterBinder hibernateMetrics(SessionFactory sessionFactory) {
+        return new HibernateMetrics(sessionFactory, "sessionFactory", Tags.empty());
+    }
+
+    /**
+     * Счетчики и время выполнения по каждому шаблону запроса HQL/SQL (hibernate.query.executions и др.
+     * с тегом query) из статистики Hibernate
+     */
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+    @ConditionalOnProperty(name = "diagnostics.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+    public MeterBinder hibernateQueryMetrics(SessionFactory sessionFactory) {
+        return new HibernateQueryMetrics(sessionFactory, "sessionFactory", Tags.empty());
+    }
+
+    /**
+     * Пул соединений HikariCP. Метрики пула (hikaricp.connections.active, idle, pending, acquire и т.д.)
+     * публикуются в MeterRegistry и доступны через /actuator/metrics
+     */
+    @Bean(destroyMethod = "close")
+    public DataSource dataSource(MeterRegistry meterRegistry) {
         String url = System.getenv("DB_URL");
         String username = System.getenv("DB_USERNAME");
         String password = System.getenv("DB_PASSWORD");
@@ -41,20 +115,58 @@ public class HibernateConfig {
         if (url == null || username == null || password == null) {
             throw new IllegalStateException("Database environment variables are not set.");
         }
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(poolName);
         dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setUrl(url);
+        dataSource.setJdbcUrl(url);
         dataSource.setUsername(username);
         dataSource.setPassword(password);
+
+        dataSource.setMinimumIdle(minimumIdle);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setConnectionTimeout(connectionTimeout);
+        // проверка соединения (Connection.isValid) перед выдачей из пула и для простаивающих соединений
+        dataSource.setValidationTimeout(validationTimeout);
+        dataSource.setKeepaliveTime(keepaliveTime);
+        dataSource.setIdleTimeout(idleTimeout);
+        dataSource.setMaxLifetime(maxLifetime);
+        // соединение, не возвращенное в пул дольше порога, логируется как возможная утечка
+        dataSource.setLeakDetectionThreshold(leakDetectionThreshold);
+
+        // драйвер PostgreSQL склеивает пакет однотипных insert в многострочные insert ... values (...), (...)
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
+
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
         return dataSource;
     }
 
     private Properties hibernateProperties() {
         Properties props = new Properties();
 
-        props.put("hibernate.show_sql", "true");
-        props.put("hibernate.format_sql", "true");
+        // show_sql пишет каждый запрос синхронно в stdout в обход логгера, по умолчанию выключен;
+        // выборочный лог запросов с параметрами делает SqlSamplingTurboFilter (logback.xml)
+        props.put("hibernate.show_sql", String.valueOf(showSql));
+        props.put("hibernate.format_sql", String.valueOf(formatSql));
+        // запросы дольше порога пишутся в логгер org.hibernate.SQL_SLOW, 0 выключает
+        props.put("hibernate.log_slow_query", String.valueOf(slowQueryThresholdMillis));
         props.put("hibernate.physical_naming_strategy", "org.banana.config.CustomPhysicalNamingStrategy");
 
+        // insert/update/delete копятся до flush и уходят пакетами JDBC; сортировка по сущностям
+        // не дает пакету разрываться, когда в одной транзакции чередуются разные таблицы
+        props.put("hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        props.put("hibernate.jdbc.batch_versioned_data", "true");
+        // списки in (:ids) дополняются до степени двойки, чтобы план запроса переиспользовался
+        props.put("hibernate.query.in_clause_parameter_padding", "true");
+
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        props.put("hibernate.javax.cache.uri", "classpath:ehcache.xml");
+        props.put("hibernate.generate_statistics", "true");
+
         return props;
     }
-}
\ No newline at end of file
+}
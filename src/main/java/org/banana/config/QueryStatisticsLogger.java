@@ -0,0 +1,64 @@
+package org.banana.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Периодическая сводка по шаблонам запросов из статистики Hibernate: сколько раз выполнялся каждый
+ * HQL/SQL и сколько времени занял. В лог попадают diagnostics.query-stats.top шаблонов с наибольшим
+ * суммарным временем, накопленным с момента старта
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "diagnostics.query-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatisticsLogger {
+
+    private static final String ROW = "%n%8d calls %10d ms total %8d ms avg %8d ms max %10d rows  %s";
+
+    private final SessionFactory sessionFactory;
+    private final int top;
+
+    public QueryStatisticsLogger(SessionFactory sessionFactory,
+                                 @Value("${diagnostics.query-stats.top:10}") int top) {
+        this.sessionFactory = sessionFactory;
+        this.top = top;
+    }
+
+    @Scheduled(initialDelayString = "${diagnostics.query-stats.log-interval:300000}",
+            fixedDelayString = "${diagnostics.query-stats.log-interval:300000}")
+    public void logTopQueries() {
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) return;
+
+        List<String> queries = Arrays.stream(statistics.getQueries())
+                .filter(query -> statistics.getQueryStatistics(query).getExecutionCount() > 0)
+                .sorted(Comparator.comparingLong((String query) -> statistics.getQueryStatistics(query).getExecutionTotalTime())
+                        .reversed())
+                .limit(top)
+                .toList();
+        if (queries.isEmpty()) return;
+
+        StringBuilder report = new StringBuilder("top queries by total execution time:");
+        for (String query : queries) {
+            QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+            report.append(ROW.formatted(
+                    queryStatistics.getExecutionCount(),
+                    queryStatistics.getExecutionTotalTime(),
+                    queryStatistics.getExecutionAvgTime(),
+                    queryStatistics.getExecutionMaxTime(),
+                    queryStatistics.getExecutionRowCount(),
+                    query.replaceAll("\\s+", " ")));
+        }
+        log.info(report.toString());
+    }
+}
@@ -4,8 +4,10 @@ import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Path;
 import lombok.extern.slf4j.Slf4j;
+import org.banana.exception.AbstractBadRequestException;
 import org.banana.exception.AbstractConflictException;
 import org.banana.exception.AbstractNotFoundException;
+import org.banana.exception.AbstractServiceUnavailableException;
 import org.banana.exception.SaleHistoryAccessDeniedException;
 import org.banana.exception.UserDeleteCommentException;
 import org.springframework.http.HttpHeaders;
@@ -46,11 +48,21 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
         return buildErrorResponse(ex, request, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(AbstractBadRequestException.class)
+    protected ResponseEntity<Object> handleBadRequestException(RuntimeException ex, WebRequest request) {
+        return buildErrorResponse(ex, request, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(AbstractConflictException.class)
     protected ResponseEntity<Object> handleConflictDataException(RuntimeException ex, WebRequest request) {
         return buildErrorResponse(ex, request, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(AbstractServiceUnavailableException.class)
+    protected ResponseEntity<Object> handleServiceUnavailableException(RuntimeException ex, WebRequest request) {
+        return buildErrorResponse(ex, request, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler({
             SaleHistoryAccessDeniedException.class,
             AccessDeniedException.class,
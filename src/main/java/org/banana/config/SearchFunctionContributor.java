@@ -0,0 +1,36 @@
+package org.banana.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.sqm.function.SqmFunctionRegistry;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Регистрирует в HQL функции полнотекстового и нечеткого поиска PostgreSQL.
+ * Подключается через META-INF/services/org.hibernate.boot.model.FunctionContributor
+ */
+public class SearchFunctionContributor implements FunctionContributor {
+
+    public static final String SEARCH_CONFIGURATION = "russian";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        SqmFunctionRegistry registry = functionContributions.getFunctionRegistry();
+        BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN);
+        BasicType<Double> doubleType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+
+        // fts_match(a.searchVector, text) - совпадение по GIN-индексу на search_vector
+        registry.registerPattern("fts_match",
+                "(?1 @@ websearch_to_tsquery('" + SEARCH_CONFIGURATION + "', ?2))", booleanType);
+        // fts_rank(a.searchVector, text) - релевантность с учетом весов A/B
+        registry.registerPattern("fts_rank",
+                "ts_rank_cd(?1, websearch_to_tsquery('" + SEARCH_CONFIGURATION + "', ?2))", doubleType);
+        // trgm_match(text, text) - нечеткое совпадение по GIN-индексу gin_trgm_ops
+        registry.registerPattern("trgm_match", "(?2 <% ?1)", booleanType);
+        // trgm_similarity(text, text) - степень нечеткого совпадения
+        registry.registerPattern("trgm_similarity", "word_similarity(?2, ?1)", doubleType);
+    }
+}
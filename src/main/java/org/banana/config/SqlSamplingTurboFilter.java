@@ -0,0 +1,44 @@
+package org.banana.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выборочный лог SQL вместе с параметрами. Из выражений, которые Hibernate пишет в org.hibernate.SQL,
+ * в лог попадает доля sampleRate (0..1), а параметры из org.hibernate.orm.jdbc.bind - только для
+ * попавших в выборку выражений того же потока. При sampleRate = 0 оба логгера выключены полностью,
+ * и Hibernate не тратит время на подготовку строк
+ */
+@Getter
+@Setter
+public class SqlSamplingTurboFilter extends TurboFilter {
+
+    private static final String SQL_LOGGER = "org.hibernate.SQL";
+    private static final String BIND_LOGGER = "org.hibernate.orm.jdbc.bind";
+
+    private final ThreadLocal<Boolean> statementSampled = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private double sampleRate;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        String name = logger.getName();
+        boolean isSql = SQL_LOGGER.equals(name);
+        if (!isSql && !BIND_LOGGER.equals(name)) return FilterReply.NEUTRAL;
+        if (sampleRate <= 0) return FilterReply.DENY;
+
+        if (isSql) {
+            // проверка isDebugEnabled пропускается, решение о выборке принимается на самом выражении
+            if (format == null) return FilterReply.ACCEPT;
+            statementSampled.set(ThreadLocalRandom.current().nextDouble() < sampleRate);
+        }
+        return statementSampled.get() ? FilterReply.ACCEPT : FilterReply.DENY;
+    }
+}
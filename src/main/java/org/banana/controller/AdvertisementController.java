@@ -9,9 +9,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.banana.dto.advertisement.AdvertisementPageResponseDto;
 import org.banana.dto.advertisement.AdvertisementRequestDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 import org.banana.service.AdvertisementService;
@@ -75,6 +77,26 @@ public class AdvertisementController {
         return ResponseEntity.ok(advertisementService.findAllFiltered(filter, page, size));
     }
 
+    @Operation(summary = "Лента объявлений", description = "Возвращает страницу объявлений по фильтру с пагинацией по курсору. "
+            + "Для следующей страницы передается nextCursor из предыдущего ответа",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница объявлений успешно возвращена",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = AdvertisementPageResponseDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Неверные параметры фильтрации, размер страницы или курсор", content = @Content)
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Курсор следующей страницы, не передается для первой страницы"),
+                    @Parameter(in = ParameterIn.QUERY, name = "size", description = "Размер страницы", example = "20")
+            }
+    )
+    @PostMapping("/feed")
+    public ResponseEntity<AdvertisementPageResponseDto> getAdvertisementFeed(
+            @Valid @RequestBody AdvertisementFilterDto filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return ResponseEntity.ok(advertisementService.findAllFilteredByCursor(filter, cursor, size));
+    }
+
     @Operation(summary = "Создать объявление", description = "Добавляет новое объявление с указанными данными",
             responses = {
                     @ApiResponse(responseCode = "201", description = "Объявление успешно создано",
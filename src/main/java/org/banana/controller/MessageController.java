@@ -1,6 +1,8 @@
 package org.banana.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -8,30 +10,45 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.banana.dto.conversation.ConversationPageResponseDto;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.dto.message.MessageBatchSendRequestDto;
+import org.banana.dto.message.MessageChatResponseDto;
+import org.banana.dto.message.MessageChatsRequestDto;
 import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageMarkReadRequestDto;
 import org.banana.dto.message.MessageResponseDto;
 import org.banana.dto.message.MessageSendRequestDto;
 import org.banana.service.MessageService;
+import org.banana.service.MessageStreamService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/message")
 @RequiredArgsConstructor
+@Validated
 @Tag(name = "Сообщения", description = "Методы для работы с сообщениями")
 @ApiResponses({@ApiResponse(responseCode = "401", description = "Не корректный JWT или его отсутствие", content = @Content),})
 public class MessageController {
 
     private final MessageService messageService;
+    private final MessageStreamService messageStreamService;
 
     @Operation(
             summary = "Отправить сообщение",
@@ -64,6 +81,37 @@ public class MessageController {
                 .body(created);
     }
 
+    @Operation(
+            summary = "Отправить несколько сообщений",
+            description = "Отправка до 100 сообщений разным получателям и по разным объявлениям в одной транзакции. "
+                          + "Если хотя бы одно сообщение нельзя отправить, не отправляется ни одно",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "201",
+                            description = "Сообщения успешно отправлены, в порядке запроса",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = MessageResponseDto.class)))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Невалидные входные данные", content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Нельзя отправить одно из сообщений", content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Один из получателей или одно из объявлений не найдены", content = @Content
+                    )
+            }
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<List<MessageResponseDto>> sendMessages(@RequestBody @Valid MessageBatchSendRequestDto requestDto) {
+        List<MessageResponseDto> created = messageService.addMessages(requestDto);
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(created);
+    }
+
     @Operation(
             summary = "Получить историю сообщений",
             description = "Возвращает пагинированный список сообщений с фильтрацией по времени и статусу прочтения",
@@ -92,6 +140,71 @@ public class MessageController {
         return ResponseEntity.ok(list);
     }
 
+    @Operation(
+            summary = "Последние сообщения нескольких переписок",
+            description = "Возвращает до limit последних сообщений каждой из переданных переписок одним запросом, "
+                          + "в порядке переданных переписок. Для переписки без сообщений возвращается пустой список",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Сообщения по перепискам",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = MessageChatResponseDto.class)))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Невалидные параметры запроса", content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Нельзя иметь чат с самим собой", content = @Content
+                    ),
+            }
+    )
+    @PostMapping("/chats")
+    public ResponseEntity<List<MessageChatResponseDto>> getLatestMessages(@RequestBody @Valid MessageChatsRequestDto requestDto) {
+        return ResponseEntity.ok(messageService.getLatestMessages(requestDto));
+    }
+
+    @Operation(
+            summary = "Список переписок",
+            description = "Возвращает чаты текущего пользователя с последним сообщением и количеством непрочитанных, "
+                          + "сначала самые свежие. Для следующей страницы передается nextCursor из предыдущего ответа",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Страница переписок",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ConversationPageResponseDto.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Неверный размер страницы или курсор", content = @Content
+                    )
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Курсор следующей страницы, не передается для первой страницы"),
+                    @Parameter(in = ParameterIn.QUERY, name = "size", description = "Размер страницы", example = "20")
+            }
+    )
+    @GetMapping("/conversations")
+    public ResponseEntity<ConversationPageResponseDto> getConversations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return ResponseEntity.ok(messageService.getConversations(cursor, size));
+    }
+
+    @Operation(
+            summary = "Количество непрочитанных сообщений",
+            description = "Возвращает сумму непрочитанных сообщений текущего пользователя во всех переписках для значка",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Количество непрочитанных",
+                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = UnreadCountResponseDto.class)))
+            }
+    )
+    @GetMapping("/unread-count")
+    public ResponseEntity<UnreadCountResponseDto> getUnreadCount() {
+        return ResponseEntity.ok(messageService.getUnreadCount());
+    }
+
     @Operation(
             summary = "Пометить сообщения как прочитанные",
             description = "Обновление статуса прочтения сообщений до указанного времени и ID",
@@ -116,4 +229,21 @@ public class MessageController {
         messageService.markReadUpTo(dto);
         return ResponseEntity.noContent().build();
     }
+
+    @Operation(
+            summary = "Подписаться на новые сообщения",
+            description = "Поток Server-Sent Events вместо опроса /chat. JWT передается в заголовке Authorization. "
+                          + "События: message - новое сообщение (MessageResponseDto), read - собеседник прочитал "
+                          + "сообщения (MessageReadReceiptDto). Раз в несколько секунд приходит комментарий-heartbeat",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Поток событий открыт",
+                            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE))
+            }
+    )
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return messageStreamService.subscribe();
+    }
 }
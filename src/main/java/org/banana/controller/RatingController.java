@@ -32,16 +32,19 @@ public class RatingController {
 
     @Operation(
             summary = "Оценить пользователя",
-            description = "Добавление или обновление оценки пользователю. Обновление актуального рейтинга пользователя происходит асинхронно с задержкой 15 минут.",
+            description = "Добавление или обновление оценки пользователю. По умолчанию оценка записывается и рейтинг пересчитывается в рамках запроса. "
+                    + "При включенной пакетной записи (rating.batch.enabled) оценка только ставится в очередь: рейтинг пересчитывается после сброса очереди, "
+                    + "существование оцениваемого пользователя не проверяется, и оценка несуществующему пользователю отбрасывается при записи.",
             responses = {
                     @ApiResponse(
                             responseCode = "201",
-                            description = "Оценка принята, будет обновлена в течение 15 минут",
-                            content = @Content(schema = @Schema(implementation = String.class, example = "User rating will be updated in 15 minutes."))
+                            description = "Оценка записана, рейтинг обновлен. При пакетной записи - оценка принята в очередь (User rating will be updated shortly.)",
+                            content = @Content(schema = @Schema(implementation = String.class, example = "User rating updated."))
                     ),
                     @ApiResponse(responseCode = "400", description = "Невалидные входные данные", content = @Content),
                     @ApiResponse(responseCode = "409", description = "Попытка оценить самого себя", content = @Content),
-                    @ApiResponse(responseCode = "404", description = "Пользователь не найден", content = @Content)
+                    @ApiResponse(responseCode = "404", description = "Пользователь не найден. Только без пакетной записи", content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Очередь пакетной записи оценок переполнена. Только при пакетной записи", content = @Content)
             }
     )
     @PostMapping("")
@@ -51,16 +54,19 @@ public class RatingController {
 
     @Operation(
             summary = "Удалить оценку",
-            description = "Удаление ранее поставленной оценки пользователю. Обновление актуального рейтинга пользователя происходит асинхронно с задержкой 15 минут.",
+            description = "Удаление ранее поставленной оценки пользователю. По умолчанию оценка удаляется и рейтинг пересчитывается в рамках запроса. "
+                    + "При включенной пакетной записи (rating.batch.enabled) удаление только ставится в очередь: рейтинг пересчитывается после сброса очереди, "
+                    + "а существование пользователя не проверяется.",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
-                            description = "Оценка удалена, изменения вступят в силу в течение 15 минут",
-                            content = @Content(schema = @Schema(implementation = String.class, example = "User rating will be updated in 15 minutes."))
+                            description = "Оценка удалена, рейтинг обновлен. При пакетной записи - удаление принято в очередь (User rating will be updated shortly.)",
+                            content = @Content(schema = @Schema(implementation = String.class, example = "User rating updated."))
                     ),
                     @ApiResponse(responseCode = "400", description = "Невалидный UUID пользователя", content = @Content),
                     @ApiResponse(responseCode = "409", description = "Попытка удалить оценку самого себя", content = @Content),
-                    @ApiResponse(responseCode = "404", description = "Пользователь не найден", content = @Content)
+                    @ApiResponse(responseCode = "404", description = "Пользователь не найден. Только без пакетной записи", content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Очередь пакетной записи оценок переполнена. Только при пакетной записи", content = @Content)
             }
     )
     @DeleteMapping("/{userId}")
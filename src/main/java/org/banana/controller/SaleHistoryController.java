@@ -11,32 +11,48 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.banana.dto.history.SaleHistoryAddRequestDto;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
+import org.banana.dto.history.SaleHistoryExportFormat;
+import org.banana.dto.history.SaleHistoryPageResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
+import org.banana.service.SaleHistoryExportService;
 import org.banana.service.SaleHistoryService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/sale-history")
 @RequiredArgsConstructor
+@Validated
 @Tag(name = "История продаж", description = "Методы для работы с историей продаж")
 @ApiResponses({@ApiResponse(responseCode = "401", description = "Не корректный JWT или его отсутствие", content = @Content),})
 public class SaleHistoryController {
 
     private final SaleHistoryService saleHistoryService;
+    private final SaleHistoryExportService saleHistoryExportService;
 
     @Operation(
             summary = "Добавить запись о продаже",
@@ -78,6 +94,96 @@ public class SaleHistoryController {
         return ResponseEntity.ok(sales);
     }
 
+    @Operation(
+            summary = "Страница истории продаж по объявлению",
+            description = "Продажи объявления за период с пагинацией по курсору, сначала самые свежие. "
+                    + "Для следующей страницы передается nextCursor из предыдущего ответа",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница продаж",
+                            content = @Content(schema = @Schema(implementation = SaleHistoryPageResponseDto.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Неверный размер страницы или курсор", content = @Content),
+                    @ApiResponse(responseCode = "403", description = "Нет прав на просмотр истории", content = @Content),
+                    @ApiResponse(responseCode = "404", description = "Объявление не найдено", content = @Content)
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.PATH, name = "adId", description = "UUID объявления",
+                            required = true, schema = @Schema(type = "string", format = "uuid")),
+                    @Parameter(in = ParameterIn.QUERY, name = "from", description = "Первый день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "to", description = "Последний день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Курсор следующей страницы, не передается для первой страницы"),
+                    @Parameter(in = ParameterIn.QUERY, name = "size", description = "Размер страницы", example = "20")
+            }
+    )
+    @GetMapping("/advertisement/{adId}/page")
+    public ResponseEntity<SaleHistoryPageResponseDto> getSalesPageByAdvertisement(
+            @PathVariable("adId") UUID advertisementId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return ResponseEntity.ok(saleHistoryService.getSalesPageByAdvertisementId(advertisementId, from, to, cursor, size));
+    }
+
+    @Operation(
+            summary = "Мои покупки",
+            description = "Покупки текущего пользователя за период с пагинацией по курсору, сначала самые свежие. "
+                    + "Для следующей страницы передается nextCursor из предыдущего ответа",
+            security = @SecurityRequirement(name = "bearer-jwt"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница покупок",
+                            content = @Content(schema = @Schema(implementation = SaleHistoryPageResponseDto.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Неверный размер страницы или курсор", content = @Content)
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.QUERY, name = "from", description = "Первый день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "to", description = "Последний день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Курсор следующей страницы, не передается для первой страницы"),
+                    @Parameter(in = ParameterIn.QUERY, name = "size", description = "Размер страницы", example = "20")
+            }
+    )
+    @GetMapping("/purchases")
+    public ResponseEntity<SaleHistoryPageResponseDto> getPurchases(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size) {
+        return ResponseEntity.ok(saleHistoryService.getPurchases(from, to, cursor, size));
+    }
+
+    @Operation(
+            summary = "Получить продажи объявления по дням",
+            description = "Выручка и количество проданных единиц за каждый день периода, дни без продаж пропускаются. "
+                    + "По умолчанию последние 30 дней",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Продажи по дням",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = SaleHistoryDailyTotalResponseDto.class)))
+                    ),
+                    @ApiResponse(responseCode = "403", description = "Нет прав на просмотр истории", content = @Content),
+                    @ApiResponse(responseCode = "404", description = "Объявление не найдено", content = @Content)
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.PATH, name = "adId", description = "UUID объявления",
+                            required = true, schema = @Schema(type = "string", format = "uuid")),
+                    @Parameter(in = ParameterIn.QUERY, name = "from", description = "Первый день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "to", description = "Последний день периода",
+                            schema = @Schema(type = "string", format = "date"))
+            }
+    )
+    @GetMapping("/advertisement/{adId}/daily")
+    public ResponseEntity<List<SaleHistoryDailyTotalResponseDto>> getDailyTotalsByAdvertisement(
+            @PathVariable("adId") UUID advertisementId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(saleHistoryService.getDailyTotals(advertisementId, from, to));
+    }
+
     @Operation(
             summary = "Получить агрегированную статистику",
             description = "Суммарная информация по продажам для всех объявлений пользователя",
@@ -96,6 +202,45 @@ public class SaleHistoryController {
         return ResponseEntity.ok(totals);
     }
 
+    @Operation(
+            summary = "Выгрузить продажи",
+            description = "Потоковая выгрузка всех продаж по объявлениям пользователя в CSV или NDJSON без ограничения "
+                    + "количества. Продажи идут по объявлениям, внутри объявления по времени",
+            security = @SecurityRequirement(name = "bearer-jwt"),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Файл с продажами", content = {
+                            @Content(mediaType = "text/csv"),
+                            @Content(mediaType = "application/x-ndjson",
+                                    schema = @Schema(implementation = SaleHistoryResponseDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Невалидные входные данные", content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Идет слишком много выгрузок", content = @Content)
+            },
+            parameters = {
+                    @Parameter(in = ParameterIn.QUERY, name = "format", description = "Формат выгрузки, по умолчанию CSV",
+                            schema = @Schema(implementation = SaleHistoryExportFormat.class)),
+                    @Parameter(in = ParameterIn.QUERY, name = "from", description = "Первый день периода",
+                            schema = @Schema(type = "string", format = "date")),
+                    @Parameter(in = ParameterIn.QUERY, name = "to", description = "Последний день периода, по умолчанию сегодня",
+                            schema = @Schema(type = "string", format = "date"))
+            }
+    )
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportSales(
+            @RequestParam(defaultValue = "CSV") SaleHistoryExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        saleHistoryExportService.reserveExport();
+        StreamingResponseBody body = outputStream -> saleHistoryExportService.exportSales(format, from, to, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("sales." + format.getFileExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     @Operation(
             summary = "Отменить запись о продаже",
             description = "Отмена записи о продаже товара из объявления с возвратом количества проданных единиц",
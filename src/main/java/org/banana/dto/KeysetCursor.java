@@ -0,0 +1,42 @@
+package org.banana.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.banana.exception.InvalidCursorException;
+import org.banana.util.CursorCodec;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Позиция для keyset-пагинации по времени и id: история продаж (время продажи, id продажи),
+ * список переписок (дата последнего сообщения, id переписки).
+ * Клиенту передается в виде непрозрачной строки ({@link CursorCodec})
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class KeysetCursor {
+
+    private static final int PARTS = 2;
+
+    private final LocalDateTime dateTime;
+    private final UUID id;
+
+    public static KeysetCursor decode(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, PARTS);
+        try {
+            return new KeysetCursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    public String encode() {
+        return CursorCodec.encode(dateTime.toString(), id.toString());
+    }
+}
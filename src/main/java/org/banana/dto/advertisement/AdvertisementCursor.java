@@ -0,0 +1,76 @@
+package org.banana.dto.advertisement;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.banana.exception.InvalidCursorException;
+import org.banana.util.CursorCodec;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Позиция в ленте объявлений для keyset-пагинации.
+ * Значения соответствуют ключу сортировки ленты: продвижение, рейтинг продавца, количество оценок,
+ * дата создания и id объявления. Отсутствующий рейтинг считается нулевым, что сохраняет порядок NULLS LAST.
+ * Клиенту передается в виде непрозрачной строки ({@link CursorCodec})
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class AdvertisementCursor {
+
+    private static final int PARTS = 5;
+
+    private final boolean promoted;
+    private final BigDecimal averageRating;
+    private final int ratingCount;
+    private final LocalDateTime createDate;
+    private final UUID id;
+
+    public static AdvertisementCursor of(AdvertisementResponseDto dto) {
+        BigDecimal averageRating = BigDecimal.ZERO;
+        int ratingCount = 0;
+        if (dto.getUserResponseDto() != null) {
+            if (dto.getUserResponseDto().getAverageRating() != null)
+                averageRating = dto.getUserResponseDto().getAverageRating();
+            if (dto.getUserResponseDto().getRatingCount() != null)
+                ratingCount = dto.getUserResponseDto().getRatingCount();
+        }
+        return new AdvertisementCursor(dto.isPromoted(), averageRating, ratingCount, dto.getCreateDate(), dto.getId());
+    }
+
+    public static AdvertisementCursor decode(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, PARTS);
+        try {
+            return new AdvertisementCursor(
+                    parseBoolean(parts[0], cursor),
+                    new BigDecimal(parts[1]),
+                    Integer.parseInt(parts[2]),
+                    LocalDateTime.parse(parts[3]),
+                    UUID.fromString(parts[4])
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    public String encode() {
+        return CursorCodec.encode(
+                String.valueOf(promoted),
+                averageRating.toPlainString(),
+                String.valueOf(ratingCount),
+                createDate.toString(),
+                id.toString());
+    }
+
+    private static boolean parseBoolean(String value, String cursor) {
+        if ("true".equals(value)) return true;
+        if ("false".equals(value)) return false;
+        throw new InvalidCursorException(cursor);
+    }
+}
@@ -20,9 +20,12 @@ public class AdvertisementFilterDto {
     @Schema(description = "Список UUID типов объявлений для фильтрации", example = "[\"6b1e2d88-4f8b-11ec-81d3-0242ac130003\"]")
     private List<UUID> advertisementTypeIds;
 
-    @Schema(description = "Поисковая фраза в заголовке или описании", example = "гараж")
+    @Schema(description = "Поисковая фраза в заголовке или описании (полнотекстовый поиск, результаты ранжируются по релевантности)", example = "гараж")
     private String searchParam;
 
+    @Schema(description = "Нечеткий поиск по заголовку: учитывать опечатки и начало слова", example = "false")
+    private boolean fuzzySearch = false;
+
     @Schema(description = "Минимальная цена для фильтрации", example = "0.00")
     @DecimalMin("0.00")
     private BigDecimal minPrice;
@@ -0,0 +1,21 @@
+package org.banana.dto.advertisement;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Страница ленты объявлений")
+public class AdvertisementPageResponseDto {
+
+    @Schema(description = "Объявления на странице")
+    private List<AdvertisementResponseDto> content;
+
+    @Schema(description = "Курсор для получения следующей страницы, null если страница последняя", example = "ZmFsc2V8NC41MHwxMHwyMDI1LTA1LTIwVDE0OjMwfDNmYTg1ZjY0LTU3MTctNDU2Mi1iM2ZjLTJjOTYzZjY2YWZhNg")
+    private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package org.banana.dto.conversation;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Страница списка переписок")
+public class ConversationPageResponseDto {
+
+    @Schema(description = "Переписки на странице, сначала с самым свежим сообщением")
+    private List<ConversationResponseDto> content;
+
+    @Schema(description = "Курсор для получения следующей страницы, null если страница последняя", example = "MjAyNS0wNS0yMFQxNDozMHwzZmE4NWY2NC01NzE3LTQ1NjItYjNmYy0yYzk2M2Y2NmFmYTY")
+    private String nextCursor;
+}
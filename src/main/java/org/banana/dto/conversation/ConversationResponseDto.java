@@ -0,0 +1,43 @@
+package org.banana.dto.conversation;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Чат в списке переписок текущего пользователя")
+public class ConversationResponseDto {
+
+    @Schema(description = "ID переписки", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID id;
+
+    @Schema(description = "ID собеседника, передается как secondUserId при запросе сообщений чата", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID secondUserId;
+
+    @Schema(description = "ID объявления, по которому идет переписка. null, если чат без привязки к объявлению", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID advertisementId;
+
+    @Schema(description = "ID последнего сообщения", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID lastMessageId;
+
+    @Schema(description = "ID отправителя последнего сообщения", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID lastMessageSenderId;
+
+    @Schema(description = "Текст последнего сообщения", example = "Добрый день, гараж хочу...")
+    private String lastMessageText;
+
+    @Schema(description = "Дата и время последнего сообщения", example = "2023-10-05T14:30:00")
+    private LocalDateTime lastMessageDateTime;
+
+    @Schema(description = "Количество непрочитанных текущим пользователем сообщений", example = "3")
+    private int unreadCount;
+
+    @Schema(description = "Количество сообщений в переписке", example = "42")
+    private long messageCount;
+}
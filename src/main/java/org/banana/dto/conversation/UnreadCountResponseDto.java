@@ -0,0 +1,19 @@
+package org.banana.dto.conversation;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Непрочитанные сообщения текущего пользователя во всех переписках")
+public class UnreadCountResponseDto {
+
+    @Schema(description = "Количество непрочитанных сообщений", example = "7")
+    private long unreadMessagesCount;
+
+    @Schema(description = "Количество переписок с непрочитанными сообщениями", example = "2")
+    private long unreadConversationsCount;
+}
@@ -0,0 +1,21 @@
+package org.banana.dto.history;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Schema(description = "Продажи объявления за день")
+public class SaleHistoryDailyTotalResponseDto {
+
+    @Schema(description = "День продаж", example = "2023-10-05")
+    private final LocalDate saleDate;
+
+    @Schema(description = "Выручка за день", example = "15000.00")
+    private final BigDecimal total;
+
+    @Schema(description = "Количество проданных за день единиц", example = "3")
+    private final Long totalQuantity;
+}
@@ -0,0 +1,24 @@
+package org.banana.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "DTO для отправки нескольких сообщений одним запросом")
+public class MessageBatchSendRequestDto {
+
+    @Schema(description = "Сообщения в порядке отправки (1-100)")
+    @NotEmpty
+    @Size(max = 100)
+    private List<@NotNull @Valid MessageSendRequestDto> messages;
+}
@@ -0,0 +1,23 @@
+package org.banana.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Переписка текущего пользователя с собеседником")
+public class MessageChatRequestDto {
+
+    @Schema(description = "ID собеседника", example = "550e8400-e29b-41d4-a716-446655440000")
+    @NotNull
+    private UUID secondUserId;
+
+    @Schema(description = "ID объявления (для переписки по объявлению)", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID advertisementId;
+}
@@ -0,0 +1,25 @@
+package org.banana.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Последние сообщения переписки")
+public class MessageChatResponseDto {
+
+    @Schema(description = "ID собеседника", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID secondUserId;
+
+    @Schema(description = "ID объявления", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID advertisementId;
+
+    @Schema(description = "Сообщения, первым идет самое старое из выборки")
+    private List<MessageResponseDto> messages;
+}
@@ -0,0 +1,31 @@
+package org.banana.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Запрос последних сообщений нескольких переписок")
+public class MessageChatsRequestDto {
+
+    @Schema(description = "Переписки (1-50)")
+    @NotEmpty
+    @Size(max = 50)
+    private List<@NotNull @Valid MessageChatRequestDto> chats;
+
+    @Schema(description = "Количество последних сообщений каждой переписки (1-100)", defaultValue = "10")
+    @Min(1)
+    @Max(100)
+    private int limit = 10;
+}
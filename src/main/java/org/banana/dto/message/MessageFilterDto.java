@@ -31,6 +31,14 @@ public class MessageFilterDto {
     @Null
     private Long unreadMessagesCount;
 
+    @Schema(hidden = true)
+    @Null
+    private LocalDateTime lastReadDateTime;
+
+    @Schema(hidden = true)
+    @Null
+    private UUID lastReadMessageId;
+
     @Schema(description = "Дата и время для курсора пагинации", example = "2023-10-05T14:30:00")
     private LocalDateTime cursorDateTime;
 
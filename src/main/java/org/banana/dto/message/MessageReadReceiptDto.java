@@ -0,0 +1,28 @@
+package org.banana.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Уведомление о прочтении сообщений собеседником")
+public class MessageReadReceiptDto {
+
+    @Schema(description = "ID пользователя, прочитавшего сообщения", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID readerId;
+
+    @Schema(description = "ID объявления, по которому идет переписка", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID advertisementId;
+
+    @Schema(description = "Прочитаны все сообщения до этого времени включительно", example = "2023-10-05T14:30:00")
+    private LocalDateTime upToDateTime;
+
+    @Schema(description = "ID последнего прочитанного сообщения", example = "550e8400-e29b-41d4-a716-446655440000")
+    private UUID upToMessageId;
+}
@@ -71,6 +71,27 @@ public class Advertisement {
     private LocalDateTime createDate;
     private LocalDateTime closeDate;
 
+    /**
+     * Снимок среднего рейтинга продавца для сортировки ленты, 0 если оценок нет.
+     * Заполняется в базе данных при создании объявления и при каждом изменении оценок продавца
+     */
+    @Column(insertable = false, updatable = false)
+    private BigDecimal sellerRating;
+
+    /**
+     * Снимок количества оценок продавца для сортировки ленты
+     */
+    @Column(insertable = false, updatable = false)
+    private Integer sellerRatingCount;
+
+    /**
+     * Поисковый вектор заголовка и описания (V1.5), заполняется триггером. Явный аргумент fts_match и fts_rank
+     * в запросах поиска. Читается при загрузке сущности, ленты и поиск строят DTO и его не выбирают
+     */
+    @ToString.Exclude
+    @Column(insertable = false, updatable = false)
+    private String searchVector;
+
     @Override
     public final boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,105 @@
+package org.banana.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Сводка переписки двух пользователей (по объявлению или без него) для списка чатов.
+ * Пара хранится упорядоченной: firstUserId меньше secondUserId, id считается через ConversationKey
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Entity
+public class Conversation {
+
+    @Id
+    @Column(name = "conversation_id", updatable = false, nullable = false)
+    private UUID id;
+
+    @NotNull
+    private UUID firstUserId;
+
+    @NotNull
+    private UUID secondUserId;
+
+    private UUID advertisementId;
+
+    @NotNull
+    private UUID lastMessageId;
+
+    @NotNull
+    private UUID lastMessageSenderId;
+
+    @NotNull
+    private String lastMessageText;
+
+    @NotNull
+    private LocalDateTime lastMessageDateTime;
+
+    @NotNull
+    private Integer firstUserUnreadCount = 0;
+
+    @NotNull
+    private Integer secondUserUnreadCount = 0;
+
+    @NotNull
+    private Long messageCount = 0L;
+
+    /**
+     * Отметка прочтения: дата и id последнего прочитанного участником сообщения. null, если участник еще ничего не читал
+     */
+    private LocalDateTime firstUserLastReadDateTime;
+
+    private UUID firstUserLastReadMessageId;
+
+    private LocalDateTime secondUserLastReadDateTime;
+
+    private UUID secondUserLastReadMessageId;
+
+    public UUID getPeerId(UUID userId) {
+        return firstUserId.equals(userId) ? secondUserId : firstUserId;
+    }
+
+    public int getUnreadCount(UUID userId) {
+        return firstUserId.equals(userId) ? firstUserUnreadCount : secondUserUnreadCount;
+    }
+
+    public LocalDateTime getLastReadDateTime(UUID userId) {
+        return firstUserId.equals(userId) ? firstUserLastReadDateTime : secondUserLastReadDateTime;
+    }
+
+    public UUID getLastReadMessageId(UUID userId) {
+        return firstUserId.equals(userId) ? firstUserLastReadMessageId : secondUserLastReadMessageId;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        Conversation that = (Conversation) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+}
@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.banana.util.ConversationKey;
 import org.hibernate.annotations.UuidGenerator;
 import org.hibernate.proxy.HibernateProxy;
 
@@ -44,10 +45,15 @@ public class Message {
     @NotNull
     private LocalDateTime messageDateTime;
 
+    /**
+     * Ключ переписки, см. ConversationKey. Вычисляется из участников и объявления
+     */
     @NotNull
-    private Boolean isRead = false;
+    @Column(updatable = false)
+    private UUID conversationKey;
 
     public Message(UUID advertisementId, UUID senderId, UUID recipientId, String messageText, LocalDateTime messageDateTime) {
+        this.conversationKey = ConversationKey.of(senderId, recipientId, advertisementId);
         this.advertisementId = advertisementId;
         this.senderId = senderId;
         this.recipientId = recipientId;
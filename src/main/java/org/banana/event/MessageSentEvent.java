@@ -0,0 +1,17 @@
+package org.banana.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.banana.dto.message.MessageResponseDto;
+
+/**
+ * Сообщение сохранено. Публикуется внутри транзакции отправки, подписчикам доставляется после коммита
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MessageSentEvent {
+
+    private final MessageResponseDto message;
+}
@@ -0,0 +1,23 @@
+package org.banana.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.banana.dto.message.MessageReadReceiptDto;
+
+import java.util.UUID;
+
+/**
+ * Получатель прочитал сообщения собеседника. Уведомление о прочтении уходит отправителю сообщений после коммита
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MessagesReadEvent {
+
+    /**
+     * Отправитель прочитанных сообщений, ему адресовано уведомление
+     */
+    private final UUID senderId;
+    private final MessageReadReceiptDto receipt;
+}
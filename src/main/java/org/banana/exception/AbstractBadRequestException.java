@@ -0,0 +1,8 @@
+package org.banana.exception;
+
+public abstract class AbstractBadRequestException extends RuntimeException {
+
+    public AbstractBadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package org.banana.exception;
+
+public abstract class AbstractServiceUnavailableException extends RuntimeException {
+
+    public AbstractServiceUnavailableException(String message) {
+        super(message);
+    }
+}
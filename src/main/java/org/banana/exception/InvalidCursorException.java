@@ -0,0 +1,10 @@
+package org.banana.exception;
+
+public class InvalidCursorException extends AbstractBadRequestException {
+
+    private static final String MESSAGE = "Cursor <<%s>> is invalid.";
+
+    public InvalidCursorException(String cursor) {
+        super(MESSAGE.formatted(cursor));
+    }
+}
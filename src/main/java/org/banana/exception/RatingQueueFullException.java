@@ -0,0 +1,10 @@
+package org.banana.exception;
+
+public class RatingQueueFullException extends AbstractServiceUnavailableException {
+
+    private static final String MESSAGE = "Too many ratings are being processed, try again later";
+
+    public RatingQueueFullException() {
+        super(MESSAGE);
+    }
+}
@@ -0,0 +1,10 @@
+package org.banana.exception;
+
+public class SaleHistoryExportLimitExceededException extends AbstractServiceUnavailableException {
+
+    private static final String MESSAGE = "Too many sales exports are running, try again later";
+
+    public SaleHistoryExportLimitExceededException() {
+        super(MESSAGE);
+    }
+}
@@ -1,23 +1,19 @@
 package org.banana.repository;
 
+import org.banana.dto.advertisement.AdvertisementCursor;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 import org.banana.entity.Advertisement;
 import org.banana.repository.crud.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface AdvertisementRepository extends CrudRepository<Advertisement, UUID> {
 
-    /**
-     * Отсоединить объявление от сессии
-     *
-     * @param advertisement объявление которое нужно отсоединить от сессии
-     */
-    void detach(Advertisement advertisement);
-
     /**
      * Возвращает DTO объявления по идентификатору
      *
@@ -45,12 +41,22 @@ public interface AdvertisementRepository extends CrudRepository<Advertisement, U
     List<AdvertisementResponseDto> findAllFiltered(AdvertisementFilterDto filter, int page, int size);
 
     /**
-     * Изменить количество продаваемой единицы в объявлении (используется для реализации оптимистичной блокировки)
+     * Возвращает страницу ленты объявлений по фильтру начиная сразу после курсора (keyset-пагинация).
+     * Сортировка: продвижение, рейтинг продавца, количество оценок, дата создания, id объявления.
+     * Ранжирование по релевантности поиска в этом режиме не применяется
+     *
+     * @param filter фильтр по которому происходит поиск
+     * @param cursor позиция последнего объявления предыдущей страницы, null для первой страницы
+     * @param limit  максимальное количество объявлений в запросе
+     * @return список объявлений
+     */
+    List<AdvertisementResponseDto> findAllFilteredAfter(AdvertisementFilterDto filter, AdvertisementCursor cursor, int limit);
+
+    /**
+     * Возвращает владельцев объявлений одним запросом
      *
-     * @param id          идентификатор объявления
-     * @param oldQuantity старое количество
-     * @param newQuantity новое количество
-     * @return количество обновленных объявлений, если 1 то все хорошо, если 0 то что-то пошло не так.
+     * @param ids идентификаторы объявлений
+     * @return Map<UUID, UUID> идентификатор объявления -> идентификатор владельца. Несуществующих объявлений в ней нет
      */
-    int updateAdvertisementQuantity(UUID id, int oldQuantity, int newQuantity);
+    Map<UUID, UUID> findOwnerIdsByIds(Collection<UUID> ids);
 }
@@ -3,11 +3,11 @@ package org.banana.repository;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.banana.dto.advertisement.AdvertisementCursor;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 import org.banana.entity.Advertisement;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
-import org.banana.util.JpqlHelper;
 import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
@@ -22,11 +22,6 @@ import java.util.UUID;
 @Slf4j
 public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Advertisement, UUID> implements AdvertisementRepository {
 
-    public static final String UPDATE_ADVERTISEMENT_QUANTITY = """
-            update Advertisement a set a.quantity = :newQuantity
-            where a.id = :id
-            and a.quantity = :oldQuantity
-            and a.closeDate is null""";
     private static final String FIND_FULL_DTO = """
                 select new org.banana.dto.advertisement.AdvertisementResponseDto(
                 a.id,
@@ -36,8 +31,8 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
                     u.lastName,
                     u.phone,
                     u.username,
-                    ur.averageRating,
-                    ur.ratingCount
+                    nullif(a.sellerRating, 0),
+                    nullif(a.sellerRatingCount, 0)
                 ),
                 c.name,
                 at.name,
@@ -53,24 +48,24 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
             join a.city c
             join a.advertisementType at
             join a.user u
-            left join UserRatingView ur on ur.userId = u.id
             where 1=1
             """;
     public static final String FIND_FULL_DTO_BY_ID = FIND_FULL_DTO + " and a.id = :id";
+    // ключ ленты совпадает с индексами index_advertisement_feed и index_advertisement_feed_opened,
+    // отсутствие оценок хранится как 0, что эквивалентно NULLS LAST при сортировке desc
+    private static final String FEED_ORDER = " order by a.isPromoted desc, a.sellerRating desc, a.sellerRatingCount desc, a.createDate desc, a.id desc";
+    private static final String KEYSET_CONDITION = " and (a.isPromoted, a.sellerRating, a.sellerRatingCount, a.createDate, a.id)"
+            + " < (:cursorPromoted, :cursorRating, :cursorRatingCount, :cursorCreateDate, :cursorId)";
+    private static final String FIND_OWNER_IDS_BY_IDS = "select a.id, a.user.id from Advertisement a where a.id in :ids";
     private static final String FIND_FETCHED_BY_ID = "select a from Advertisement a join fetch a.city join fetch a.advertisementType join fetch a.user left join fetch a.user.userRatingView where a.id = :id";
 
     public AdvertisementRepositoryImpl() {
         super(Advertisement.class);
     }
 
-    @Override
-    public void detach(Advertisement advertisement) {
-        getSession().detach(advertisement);
-    }
-
     @Override
     public Optional<AdvertisementResponseDto> findDtoById(UUID id) {
-        log.info("findDtoById({}) in {}", id, getClass().getSimpleName());
+        log.debug("findDtoById({}) in {}", id, getClass().getSimpleName());
         return Optional.ofNullable(getSession()
                 .createQuery(FIND_FULL_DTO_BY_ID, AdvertisementResponseDto.class)
                 .setParameter("id", id)
@@ -86,17 +81,18 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
 
     @Override
     public List<AdvertisementResponseDto> findAllFiltered(@NotNull AdvertisementFilterDto filter, int page, int size) {
-        log.info("findAllFiltered() in {}", getClass().getSimpleName());
+        log.debug("findAllFiltered() in {}", getClass().getSimpleName());
         Map<String, Object> params = new HashMap<>();
-        Query<AdvertisementResponseDto> query = getAdvertisementResponseDtoQuery(filter, params);
-
-        for (Map.Entry<String, Object> entry : params.entrySet()) {
-            if (entry.getValue() instanceof Collection<?>) {
-                query.setParameterList(entry.getKey(), (Collection<?>) entry.getValue());
-            } else {
-                query.setParameter(entry.getKey(), entry.getValue());
-            }
+        StringBuilder jpql = new StringBuilder(FIND_FULL_DTO);
+        String rankOrder = appendFilterConditions(jpql, filter, params);
+        if (rankOrder.isEmpty()) {
+            jpql.append(FEED_ORDER);
+        } else {
+            jpql.append(" order by a.isPromoted desc,").append(rankOrder).append(" a.sellerRating desc, a.sellerRatingCount desc, a.createDate desc, a.id desc");
         }
+
+        Query<AdvertisementResponseDto> query = getSession().createQuery(jpql.toString(), AdvertisementResponseDto.class);
+        bindParameters(query, params);
         query.setFirstResult(page * size);
         query.setMaxResults(size);
 
@@ -104,17 +100,47 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
     }
 
     @Override
-    public int updateAdvertisementQuantity(UUID id, int oldQuantity, int newQuantity) {
-        return getSession().createMutationQuery(UPDATE_ADVERTISEMENT_QUANTITY)
-                .setParameter("id", id)
-                .setParameter("oldQuantity", oldQuantity)
-                .setParameter("newQuantity", newQuantity)
-                .executeUpdate();
+    public List<AdvertisementResponseDto> findAllFilteredAfter(@NotNull AdvertisementFilterDto filter, AdvertisementCursor cursor, int limit) {
+        log.debug("findAllFilteredAfter({}) in {}", cursor, getClass().getSimpleName());
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder jpql = new StringBuilder(FIND_FULL_DTO);
+        appendFilterConditions(jpql, filter, params);
+
+        if (cursor != null) {
+            jpql.append(KEYSET_CONDITION);
+            params.put("cursorPromoted", cursor.isPromoted());
+            params.put("cursorRating", cursor.getAverageRating());
+            params.put("cursorRatingCount", cursor.getRatingCount());
+            params.put("cursorCreateDate", cursor.getCreateDate());
+            params.put("cursorId", cursor.getId());
+        }
+        jpql.append(FEED_ORDER);
+
+        Query<AdvertisementResponseDto> query = getSession().createQuery(jpql.toString(), AdvertisementResponseDto.class);
+        bindParameters(query, params);
+        query.setMaxResults(limit);
+
+        return query.getResultList();
+    }
+
+    @Override
+    public Map<UUID, UUID> findOwnerIdsByIds(Collection<UUID> ids) {
+        log.debug("findOwnerIdsByIds({}) in {}", ids.size(), getClass().getSimpleName());
+        if (ids.isEmpty()) return Map.of();
+        Map<UUID, UUID> owners = new HashMap<>();
+        getSession().createQuery(FIND_OWNER_IDS_BY_IDS, Object[].class)
+                .setParameterList("ids", ids)
+                .getResultList()
+                .forEach(row -> owners.put((UUID) row[0], (UUID) row[1]));
+        return owners;
     }
 
-    private Query<AdvertisementResponseDto> getAdvertisementResponseDtoQuery(AdvertisementFilterDto filter, Map<String, Object> params) {
-        StringBuilder jpql = new StringBuilder();
-        jpql.append(FIND_FULL_DTO);
+    /**
+     * Добавляет условия фильтра в запрос
+     *
+     * @return часть сортировки по релевантности для поискового запроса (пустая строка если поиска нет)
+     */
+    private String appendFilterConditions(StringBuilder jpql, AdvertisementFilterDto filter, Map<String, Object> params) {
         if (filter.isOnlyOpened())
             jpql.append(" and a.closeDate is null");
 
@@ -128,9 +154,16 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
             params.put("typeIds", filter.getAdvertisementTypeIds());
         }
 
+        String rankOrder = "";
         if (StringUtils.isNotBlank(filter.getSearchParam())) {
-            jpql.append(" and (lower(a.title) like :search escape '\\' or lower(a.description) like :search escape '\\')");
-            params.put("search", "%" + JpqlHelper.formatSearchParam(filter.getSearchParam()) + "%");
+            if (filter.isFuzzySearch()) {
+                jpql.append(" and (fts_match(a.searchVector, :search) = true or trgm_match(a.title, :search) = true)");
+                rankOrder = " fts_rank(a.searchVector, :search) + trgm_similarity(a.title, :search) desc,";
+            } else {
+                jpql.append(" and fts_match(a.searchVector, :search) = true");
+                rankOrder = " fts_rank(a.searchVector, :search) desc,";
+            }
+            params.put("search", filter.getSearchParam().trim());
         }
 
         if (filter.getMinPrice() != null) {
@@ -142,9 +175,16 @@ public class AdvertisementRepositoryImpl extends AbstractCrudRepositoryImpl<Adve
             jpql.append(" and a.price <= :maxPrice");
             params.put("maxPrice", filter.getMaxPrice());
         }
+        return rankOrder;
+    }
 
-        jpql.append(" order by a.isPromoted desc, ur.averageRating desc NULLS LAST, ur.ratingCount desc NULLS LAST, a.createDate desc");
-
-        return getSession().createQuery(jpql.toString(), AdvertisementResponseDto.class);
+    private void bindParameters(Query<?> query, Map<String, Object> params) {
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (entry.getValue() instanceof Collection<?>) {
+                query.setParameterList(entry.getKey(), (Collection<?>) entry.getValue());
+            } else {
+                query.setParameter(entry.getKey(), entry.getValue());
+            }
+        }
     }
 }
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.banana.dto.advertisement.type.AdvertisementTypeDto;
 import org.banana.entity.AdvertisementType;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.banana.config.HibernateConfig;
 import org.banana.util.JpqlHelper;
 import org.springframework.stereotype.Repository;
 
@@ -25,21 +26,26 @@ public class AdvertisementTypeRepositoryImpl extends AbstractCrudRepositoryImpl<
 
     @Override
     public List<AdvertisementTypeDto> findByNameLike(String pattern) {
-        log.info("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
+        log.debug("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
         return getSession().createQuery(FIND_ALL_DTO_BY_NAME, AdvertisementTypeDto.class)
+                .setCacheable(true)
+                .setCacheRegion(HibernateConfig.REFERENCE_DATA_QUERY_REGION)
                 .setParameter("pattern", "%" + JpqlHelper.formatSearchParam(pattern) + "%")
                 .getResultList();
     }
 
     @Override
     public List<AdvertisementTypeDto> findAllDto() {
-        log.info("findAllDto() in {}", getClass().getSimpleName());
-        return getSession().createQuery(FIND_ALL_DTO, AdvertisementTypeDto.class).getResultList();
+        log.debug("findAllDto() in {}", getClass().getSimpleName());
+        return getSession().createQuery(FIND_ALL_DTO, AdvertisementTypeDto.class)
+                .setCacheable(true)
+                .setCacheRegion(HibernateConfig.REFERENCE_DATA_QUERY_REGION)
+                .getResultList();
     }
 
     @Override
     public boolean existsByName(String name) {
-        log.info("existsByName({}) in {}", name, getClass().getSimpleName());
+        log.debug("existsByName({}) in {}", name, getClass().getSimpleName());
         Integer result = getSession().createQuery(EXISTS_BY_NAME, Integer.class)
                 .setParameter("name", name)
                 .getSingleResultOrNull();
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.banana.dto.city.CityDto;
 import org.banana.entity.City;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.banana.config.HibernateConfig;
 import org.banana.util.JpqlHelper;
 import org.springframework.stereotype.Repository;
 
@@ -24,22 +25,27 @@ public class CityRepositoryImpl extends AbstractCrudRepositoryImpl<City, UUID> i
 
     @Override
     public List<CityDto> findAllDto() {
-        log.info("findAllDto() in {}", this.getClass().getSimpleName());
-        return getSession().createQuery(FIND_ALL_DTO, CityDto.class).getResultList();
+        log.debug("findAllDto() in {}", this.getClass().getSimpleName());
+        return getSession().createQuery(FIND_ALL_DTO, CityDto.class)
+                .setCacheable(true)
+                .setCacheRegion(HibernateConfig.REFERENCE_DATA_QUERY_REGION)
+                .getResultList();
     }
 
 
     @Override
     public List<CityDto> findByNameLike(String pattern) {
-        log.info("findByNameLike() in {}", this.getClass().getSimpleName());
+        log.debug("findByNameLike() in {}", this.getClass().getSimpleName());
         return getSession().createQuery(FIND_ALL_DTO_BY_NAME, CityDto.class)
+                .setCacheable(true)
+                .setCacheRegion(HibernateConfig.REFERENCE_DATA_QUERY_REGION)
                 .setParameter("pattern", JpqlHelper.formatSearchParam(pattern) + "%")
                 .getResultList();
     }
 
     @Override
     public boolean existsByName(String name) {
-        log.info("entering `existsByName` method in {}", this.getClass().getSimpleName());
+        log.debug("entering `existsByName` method in {}", this.getClass().getSimpleName());
         Integer result = getSession().createQuery(EXISTS_BY_NAME, Integer.class)
                 .setParameter("name", name)
                 .getSingleResultOrNull();
@@ -37,7 +37,7 @@ public class CommentRepositoryImpl extends AbstractCrudRepositoryImpl<Comment, U
 
     @Override
     public Optional<Comment> findFetchedById(UUID id) {
-        log.info("findFetchedById({})", id);
+        log.debug("findFetchedById({})", id);
         return getSession()
                 .createQuery(FIND_BY_ID, Comment.class)
                 .setParameter("id", id)
@@ -47,7 +47,7 @@ public class CommentRepositoryImpl extends AbstractCrudRepositoryImpl<Comment, U
 
     @Override
     public List<CommentResponseDto> findAllRootCommentsByAdvertisementId(UUID advertisementId, int offset, int limit) {
-        log.info("findAllRootCommentsByAdvertisementId({}, {}, {})", advertisementId, offset, limit);
+        log.debug("findAllRootCommentsByAdvertisementId({}, {}, {})", advertisementId, offset, limit);
         return getSession().createQuery(FIND_DTO_BY_ROOT_COMMENT_ID_IS_NULL, CommentResponseDto.class)
                 .setParameter("advertisementId", advertisementId)
                 .setFirstResult(offset)
@@ -57,7 +57,7 @@ public class CommentRepositoryImpl extends AbstractCrudRepositoryImpl<Comment, U
 
     @Override
     public List<CommentResponseDto> findAllCommentsInRootIds(List<UUID> rootCommentIds) {
-        log.info("findAllCommentsInRootIds({})", rootCommentIds);
+        log.debug("findAllCommentsInRootIds({})", rootCommentIds);
         return getSession().createQuery(FIND_DTO_ALL_COMMENTS_IN_ROOT_IDS, CommentResponseDto.class)
                 .setParameter("rootCommentIds", rootCommentIds).getResultList();
     }
@@ -0,0 +1,76 @@
+package org.banana.repository;
+
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.entity.Conversation;
+import org.banana.entity.Message;
+import org.banana.repository.crud.CrudRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public interface ConversationRepository extends CrudRepository<Conversation, UUID> {
+
+    /**
+     * Учитывает сообщение в переписке, создавая ее при первом сообщении.
+     * Отправитель считается прочитавшим переписку до своего сообщения: его отметка прочтения переносится
+     * на сообщение, а счетчик непрочитанных уменьшается на прочитанные этим сообщения собеседника.
+     * Счетчик получателя увеличивается на единицу. Сообщение может прийти не по порядку: последнее сообщение
+     * и отметки не сдвигаются назад, а сообщение раньше отметки получателя не увеличивает его счетчик
+     *
+     * @param message сохраненное сообщение
+     * @return int - количество сообщений, которые отправитель не прочитал до отправки
+     */
+    int applyMessage(Message message);
+
+    /**
+     * То же, что applyMessage, для пакета сообщений одним запросом: сообщения сворачиваются по переписке,
+     * и каждая переписка обновляется один раз - ее последним сообщением и числом сообщений пакета
+     *
+     * @param messages сохраненные сообщения одного отправителя
+     * @return Map<UUID, Integer> - количество сообщений, которые отправитель не прочитал до отправки, по ключу переписки
+     */
+    Map<UUID, Integer> applyMessages(List<Message> messages);
+
+    /**
+     * Переносит отметку прочтения участника на указанное сообщение и уменьшает его счетчик непрочитанных
+     * на количество сообщений собеседника между прежней и новой отметкой. Отметка не сдвигается назад
+     *
+     * @param conversationId идентификатор переписки
+     * @param readerId       идентификатор пользователя, который прочитал сообщения
+     * @param upToDateTime   дата и время сообщения, до которого прочитана переписка
+     * @param upToMessageId  идентификатор сообщения, до которого прочитана переписка включительно
+     * @return int - количество впервые прочитанных сообщений
+     */
+    int markReadUpTo(UUID conversationId, UUID readerId, LocalDateTime upToDateTime, UUID upToMessageId);
+
+    /**
+     * Возвращает ключи уже начатых переписок из переданных одним запросом по первичному ключу
+     *
+     * @param ids ключи переписок, см. ConversationKey
+     * @return Set<UUID> ключи переписок, в которых есть хотя бы одно сообщение
+     */
+    Set<UUID> findExistingIds(Collection<UUID> ids);
+
+    /**
+     * Возвращает переписки пользователя, начиная с самого свежего сообщения
+     *
+     * @param userId идентификатор пользователя
+     * @param after  курсор, после которого нужно вернуть переписки. Может быть null для первой страницы
+     * @param limit  максимальное количество переписок
+     * @return List<Conversation> - переписки пользователя
+     */
+    List<Conversation> findAllByUserIdAfter(UUID userId, KeysetCursor after, int limit);
+
+    /**
+     * Возвращает количество непрочитанных пользователем сообщений и переписок с ними
+     *
+     * @param userId идентификатор пользователя
+     * @return UnreadCountResponseDto - сумма счетчиков непрочитанных по перепискам пользователя
+     */
+    UnreadCountResponseDto countUnreadByUserId(UUID userId);
+}
@@ -0,0 +1,310 @@
+package org.banana.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.entity.Conversation;
+import org.banana.entity.Message;
+import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.banana.util.ConversationKey;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+@Slf4j
+@Repository
+public class ConversationRepositoryImpl extends AbstractCrudRepositoryImpl<Conversation, UUID> implements ConversationRepository {
+
+    // сообщения пакета сворачиваются по переписке (latest): в переписку записывается самое позднее сообщение и их число.
+    // Отправитель прочитал переписку до своего сообщения: его отметка переносится на сообщение, а счетчик уменьшается
+    // на сообщения собеседника между прежней отметкой и этим сообщением (newly_read, как в MARK_READ_UP_TO).
+    // Сообщения могут применяться не в порядке времени, поэтому последнее сообщение и отметки меняются, только если
+    // сообщение позже (по дате и идентификатору) текущих значений, а счетчик получателя растет только на сообщения
+    // позже его отметки прочтения (received). previous блокирует строки в порядке ключа до вставки
+    private static final String UPSERT_LAST_MESSAGES = """
+            with batch (conversation_id, first_user_id, second_user_id, advertisement_id, message_id, sender_id,
+                        message_text, message_date_time, sender_first) as (
+                values %%s
+            ), latest as (
+                select distinct on (b.conversation_id) b.*, count(*) over (partition by b.conversation_id) as message_count
+                from batch b
+                order by b.conversation_id, b.message_date_time desc, b.message_id desc
+            ), previous as (
+                select c.conversation_id,
+                       case when l.sender_first
+                            then c.first_user_last_read_date_time else c.second_user_last_read_date_time end as sender_read_date_time,
+                       case when l.sender_first
+                            then c.first_user_last_read_message_id else c.second_user_last_read_message_id end as sender_read_message_id,
+                       case when l.sender_first
+                            then c.second_user_last_read_date_time else c.first_user_last_read_date_time end as recipient_read_date_time,
+                       case when l.sender_first
+                            then c.second_user_last_read_message_id else c.first_user_last_read_message_id end as recipient_read_message_id
+                from conversation c
+                join latest l on l.conversation_id = c.conversation_id
+                order by c.conversation_id
+                for update of c
+            ), newly_read as (
+                select p.conversation_id, cast(count(m.message_id) as integer) as read_count
+                from previous p
+                join latest l on l.conversation_id = p.conversation_id
+                left join message m on m.conversation_key = p.conversation_id
+                                   and m.sender_id <> l.sender_id
+                                   and (m.message_date_time, m.message_id)
+                                       > (coalesce(p.sender_read_date_time, cast('-infinity' as timestamp)),
+                                          coalesce(p.sender_read_message_id, cast('00000000-0000-0000-0000-000000000000' as uuid)))
+                                   and (m.message_date_time, m.message_id) < (l.message_date_time, l.message_id)
+                group by p.conversation_id
+            ), received as (
+                select b.conversation_id, cast(count(*) as integer) as unread_count
+                from batch b
+                left join previous p on p.conversation_id = b.conversation_id
+                where (b.message_date_time, b.message_id)
+                      > (coalesce(p.recipient_read_date_time, cast('-infinity' as timestamp)),
+                         coalesce(p.recipient_read_message_id, cast('00000000-0000-0000-0000-000000000000' as uuid)))
+                group by b.conversation_id
+            ), upserted as (
+                insert into conversation (conversation_id, first_user_id, second_user_id, advertisement_id,
+                                          last_message_id, last_message_sender_id, last_message_text, last_message_date_time,
+                                          first_user_unread_count, second_user_unread_count, message_count,
+                                          first_user_last_read_date_time, first_user_last_read_message_id,
+                                          second_user_last_read_date_time, second_user_last_read_message_id)
+                select l.conversation_id, l.first_user_id, l.second_user_id, l.advertisement_id,
+                       l.message_id, l.sender_id, l.message_text, l.message_date_time,
+                       case when l.sender_first then 0 else coalesce(r.unread_count, 0) end,
+                       case when l.sender_first then coalesce(r.unread_count, 0) else 0 end,
+                       l.message_count,
+                       case when l.sender_first then l.message_date_time end,
+                       case when l.sender_first then l.message_id end,
+                       case when l.sender_first then null else l.message_date_time end,
+                       case when l.sender_first then null else l.message_id end
+                from latest l
+                left join received r on r.conversation_id = l.conversation_id
+                order by l.conversation_id
+                on conflict (conversation_id) do update
+                    set last_message_id                  = case when %1$s then excluded.last_message_id
+                                                                else conversation.last_message_id end,
+                        last_message_sender_id           = case when %1$s then excluded.last_message_sender_id
+                                                                else conversation.last_message_sender_id end,
+                        last_message_text                = case when %1$s then excluded.last_message_text
+                                                                else conversation.last_message_text end,
+                        last_message_date_time           = case when %1$s then excluded.last_message_date_time
+                                                                else conversation.last_message_date_time end,
+                        first_user_unread_count          = case when excluded.last_message_sender_id = conversation.first_user_id
+                                                                then greatest(conversation.first_user_unread_count - %4$s, 0)
+                                                                else conversation.first_user_unread_count
+                                                                     + excluded.first_user_unread_count end,
+                        second_user_unread_count         = case when excluded.last_message_sender_id = conversation.second_user_id
+                                                                then greatest(conversation.second_user_unread_count - %4$s, 0)
+                                                                else conversation.second_user_unread_count
+                                                                     + excluded.second_user_unread_count end,
+                        message_count                    = conversation.message_count + excluded.message_count,
+                        first_user_last_read_date_time   = case when excluded.last_message_sender_id = conversation.first_user_id
+                                                                 and %2$s
+                                                                then excluded.last_message_date_time
+                                                                else conversation.first_user_last_read_date_time end,
+                        first_user_last_read_message_id  = case when excluded.last_message_sender_id = conversation.first_user_id
+                                                                 and %2$s
+                                                                then excluded.last_message_id
+                                                                else conversation.first_user_last_read_message_id end,
+                        second_user_last_read_date_time  = case when excluded.last_message_sender_id = conversation.second_user_id
+                                                                 and %3$s
+                                                                then excluded.last_message_date_time
+                                                                else conversation.second_user_last_read_date_time end,
+                        second_user_last_read_message_id = case when excluded.last_message_sender_id = conversation.second_user_id
+                                                                 and %3$s
+                                                                then excluded.last_message_id
+                                                                else conversation.second_user_last_read_message_id end
+                returning conversation_id
+            )
+            select u.conversation_id, coalesce(n.read_count, 0) as read_count
+            from upserted u
+            left join newly_read n on n.conversation_id = u.conversation_id""".formatted(
+            "(excluded.last_message_date_time, excluded.last_message_id)"
+            + " > (conversation.last_message_date_time, conversation.last_message_id)",
+            afterReadMark("first_user"),
+            afterReadMark("second_user"),
+            "(select n.read_count from newly_read n where n.conversation_id = excluded.conversation_id)");
+    private static final String LAST_MESSAGE_ROW = """
+            (cast(:conversationId%1$d as uuid), cast(:firstUserId%1$d as uuid), cast(:secondUserId%1$d as uuid),
+             cast(:advertisementId%1$d as uuid), cast(:messageId%1$d as uuid), cast(:senderId%1$d as uuid),
+             cast(:messageText%1$d as text), cast(:messageDateTime%1$d as timestamp), cast(:senderFirst%1$d as boolean))""";
+    // сообщения собеседника между прежней и новой отметкой - один диапазон индекса переписки (V1.9);
+    // строка переписки блокируется, чтобы параллельное прочтение не вычло те же сообщения дважды
+    private static final String MARK_READ_UP_TO = """
+            with reader as (
+                select c.conversation_id,
+                       c.first_user_id = cast(:readerId as uuid) as is_first,
+                       case when c.first_user_id = cast(:readerId as uuid)
+                            then c.first_user_last_read_date_time else c.second_user_last_read_date_time end as read_date_time,
+                       case when c.first_user_id = cast(:readerId as uuid)
+                            then c.first_user_last_read_message_id else c.second_user_last_read_message_id end as read_message_id
+                from conversation c
+                where c.conversation_id = cast(:conversationId as uuid)
+                for update
+            ), newly_read as (
+                select cast(count(*) as integer) as read_count
+                from reader r
+                join message m on m.conversation_key = r.conversation_id
+                where m.sender_id <> cast(:readerId as uuid)
+                  and (m.message_date_time, m.message_id)
+                      > (coalesce(r.read_date_time, cast('-infinity' as timestamp)),
+                         coalesce(r.read_message_id, cast('00000000-0000-0000-0000-000000000000' as uuid)))
+                  and (m.message_date_time, m.message_id)
+                      <= (cast(:upToDateTime as timestamp), cast(:upToMessageId as uuid))
+            )
+            update conversation c
+            set first_user_last_read_date_time   = case when r.is_first then cast(:upToDateTime as timestamp)
+                                                        else c.first_user_last_read_date_time end,
+                first_user_last_read_message_id  = case when r.is_first then cast(:upToMessageId as uuid)
+                                                        else c.first_user_last_read_message_id end,
+                second_user_last_read_date_time  = case when r.is_first then c.second_user_last_read_date_time
+                                                        else cast(:upToDateTime as timestamp) end,
+                second_user_last_read_message_id = case when r.is_first then c.second_user_last_read_message_id
+                                                        else cast(:upToMessageId as uuid) end,
+                first_user_unread_count          = case when r.is_first then greatest(c.first_user_unread_count - n.read_count, 0)
+                                                        else c.first_user_unread_count end,
+                second_user_unread_count         = case when r.is_first then c.second_user_unread_count
+                                                        else greatest(c.second_user_unread_count - n.read_count, 0) end
+            from reader r, newly_read n
+            where c.conversation_id = r.conversation_id
+              and n.read_count > 0
+            returning n.read_count""";
+    // каждая ветка - отдельный диапазон по своему индексу, общий порядок наводится уже на 2 * limit строках
+    private static final String SELECT_BY_USER_SIDE = """
+            (select c.*
+             from conversation c
+             where c.%1$s = cast(:userId as uuid)%2$s
+             order by c.last_message_date_time desc, c.conversation_id desc
+             limit :limit)""";
+    private static final String AFTER_CURSOR = """
+
+               and (c.last_message_date_time, c.conversation_id) < (cast(:cursorDateTime as timestamp), cast(:cursorId as uuid))""";
+    private static final String SELECT_BY_USER = """
+            %s
+            union all
+            %s
+            order by last_message_date_time desc, conversation_id desc
+            limit :limit""";
+
+    private static final String COUNT_UNREAD_BY_USER = """
+            select coalesce(sum(u.unread_count), 0), count(*)
+            from (
+                select c.first_user_unread_count as unread_count
+                from conversation c
+                where c.first_user_id = cast(:userId as uuid) and c.first_user_unread_count > 0
+                union all
+                select c.second_user_unread_count
+                from conversation c
+                where c.second_user_id = cast(:userId as uuid) and c.second_user_unread_count > 0
+            ) u""";
+
+    private static final String FIND_EXISTING_IDS = "select c.id from Conversation c where c.id in :ids";
+
+    public ConversationRepositoryImpl() {
+        super(Conversation.class);
+    }
+
+    // сообщение позже отметки прочтения участника; отметки еще нет - любое сообщение позже
+    private static String afterReadMark(String userPrefix) {
+        return ("(excluded.last_message_date_time, excluded.last_message_id)"
+                + " > (coalesce(conversation.%1$s_last_read_date_time, cast('-infinity' as timestamp)),"
+                + " coalesce(conversation.%1$s_last_read_message_id, cast('00000000-0000-0000-0000-000000000000' as uuid)))")
+                .formatted(userPrefix);
+    }
+
+    @Override
+    public int applyMessage(Message message) {
+        return applyMessages(List.of(message)).getOrDefault(message.getConversationKey(), 0);
+    }
+
+    @Override
+    public Map<UUID, Integer> applyMessages(List<Message> messages) {
+        log.debug("applyMessages({}) in {}", messages.size(), getClass().getSimpleName());
+        Map<UUID, Integer> readCounts = new HashMap<>();
+        if (messages.isEmpty()) return readCounts;
+
+        StringJoiner rows = new StringJoiner(", ");
+        for (int i = 0; i < messages.size(); i++) {
+            rows.add(LAST_MESSAGE_ROW.formatted(i));
+        }
+        NativeQuery<Object[]> query = getSession()
+                .createNativeQuery(UPSERT_LAST_MESSAGES.formatted(rows), Object[].class)
+                .addScalar("conversation_id", UUID.class)
+                .addScalar("read_count", Integer.class);
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            UUID senderId = message.getSenderId();
+            UUID recipientId = message.getRecipientId();
+            boolean senderFirst = ConversationKey.isFirst(senderId, recipientId);
+            query.setParameter("conversationId" + i, message.getConversationKey())
+                    .setParameter("firstUserId" + i, senderFirst ? senderId : recipientId)
+                    .setParameter("secondUserId" + i, senderFirst ? recipientId : senderId)
+                    .setParameter("advertisementId" + i, message.getAdvertisementId(), UUID.class)
+                    .setParameter("messageId" + i, message.getId())
+                    .setParameter("senderId" + i, senderId)
+                    .setParameter("messageText" + i, message.getMessageText())
+                    .setParameter("messageDateTime" + i, message.getMessageDateTime())
+                    .setParameter("senderFirst" + i, senderFirst);
+        }
+        for (Object[] row : query.getResultList()) {
+            readCounts.put((UUID) row[0], (Integer) row[1]);
+        }
+        return readCounts;
+    }
+
+    @Override
+    public int markReadUpTo(UUID conversationId, UUID readerId, LocalDateTime upToDateTime, UUID upToMessageId) {
+        log.debug("markReadUpTo({}, {}, {}, {}) in {}", conversationId, readerId, upToDateTime, upToMessageId, getClass().getSimpleName());
+        Integer readCount = getSession().createNativeQuery(MARK_READ_UP_TO, Integer.class)
+                .setParameter("conversationId", conversationId)
+                .setParameter("readerId", readerId)
+                .setParameter("upToDateTime", upToDateTime)
+                .setParameter("upToMessageId", upToMessageId)
+                .getSingleResultOrNull();
+        return readCount == null ? 0 : readCount;
+    }
+
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        log.debug("findExistingIds({}) in {}", ids.size(), getClass().getSimpleName());
+        if (ids.isEmpty()) return Set.of();
+        return new HashSet<>(getSession().createQuery(FIND_EXISTING_IDS, UUID.class)
+                .setParameterList("ids", ids)
+                .getResultList());
+    }
+
+    @Override
+    public List<Conversation> findAllByUserIdAfter(UUID userId, KeysetCursor after, int limit) {
+        log.debug("findAllByUserIdAfter({}, {}, {}) in {}", userId, after, limit, getClass().getSimpleName());
+        String condition = after == null ? "" : AFTER_CURSOR;
+        String sql = SELECT_BY_USER.formatted(
+                SELECT_BY_USER_SIDE.formatted("first_user_id", condition),
+                SELECT_BY_USER_SIDE.formatted("second_user_id", condition));
+        NativeQuery<Conversation> query = getSession().createNativeQuery(sql, Conversation.class)
+                .setParameter("userId", userId)
+                .setParameter("limit", limit);
+        if (after != null) {
+            query.setParameter("cursorDateTime", after.getDateTime())
+                    .setParameter("cursorId", after.getId());
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public UnreadCountResponseDto countUnreadByUserId(UUID userId) {
+        log.debug("countUnreadByUserId({}) in {}", userId, getClass().getSimpleName());
+        Object[] row = getSession().createNativeQuery(COUNT_UNREAD_BY_USER, Object[].class)
+                .setParameter("userId", userId)
+                .getSingleResult();
+        return new UnreadCountResponseDto(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+    }
+}
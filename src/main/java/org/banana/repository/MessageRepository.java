@@ -5,69 +5,73 @@ import org.banana.dto.message.MessageResponseDto;
 import org.banana.entity.Message;
 import org.banana.repository.crud.CrudRepository;
 
-import java.time.LocalDateTime;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface MessageRepository extends CrudRepository<Message, UUID> {
 
     /**
-     * Возвращает количество сообщений в чате
+     * Возвращает список сообщений по фильтру из чата
      *
-     * @param secondUserId    идентификатор пользователя с которым переписывается текущий пользователь чате
-     * @param currentUserId   идентификатор текущего пользователя который запрашивает количество сообщений в чате
-     * @param advertisementId идентификатор объявления. Может быть null, если чат между двумя пользователями без привязки к объявлению
-     * @return long - количество сообщений в чате
+     * @param filter фильтр MessageFilterDto
+     * @return List<MessageResponseDto> - список сообщений по фильтру
      */
-    long countMessagesInChat(UUID secondUserId, UUID currentUserId, UUID advertisementId);
+    List<MessageResponseDto> findAllByFilter(MessageFilterDto filter);
 
     /**
-     * Отмечает сообщения как прочитанные по определенное сообщение
+     * Сохраняет новые сообщения пакетными insert-ами JDBC
      *
-     * @param senderId        идентификатор отправителя. Тот чьи сообщения мы хотим прочитать
-     * @param recipientId     идентификатор получателя. Наш текущий пользователь
-     * @param advertisementId идентификатор объявления. Может быть null, если чат между двумя пользователями без привязки к объявлению
-     * @param upToDateTime    дата и время, до которого нужно отметить сообщения прочитанными
-     * @param upToMessageId   идентификатор сообщения, до которого нужно отметить сообщения прочитанными включительно
-     * @return int - количество отмеченных сообщений
+     * @param messages новые сообщения без идентификаторов
+     * @return List<Message> - те же сообщения с присвоенными идентификаторами
      */
-    int markMessagesReadUpTo(UUID senderId, UUID recipientId, UUID advertisementId, LocalDateTime upToDateTime, UUID upToMessageId);
+    List<Message> insertAll(List<Message> messages);
 
     /**
-     * Отмечает все сообщения как прочитанные
+     * Возвращает последние сообщения нескольких переписок одним запросом
      *
-     * @param fromUserId      идентификатор отправителя. Тот чьи сообщения мы хотим прочитать
-     * @param toUserId        идентификатор получателя. Наш текущий пользователь
-     * @param advertisementId идентификатор объявления. Может быть null, если чат между двумя пользователями без привязки к объявлению
-     * @return int - количество отмеченных сообщений
+     * @param conversationKeys ключи переписок, см. ConversationKey
+     * @param limit            максимальное количество сообщений каждой переписки
+     * @return Map<UUID, List<MessageResponseDto>> - ключ переписки -> сообщения, где первый элемент самое старое
+     * сообщение из выборки. Переписок без сообщений в ней нет
      */
-    int markAllMessagesRead(UUID fromUserId, UUID toUserId, UUID advertisementId);
+    Map<UUID, List<MessageResponseDto>> findLatestByConversationKeys(Collection<UUID> conversationKeys, int limit);
 
     /**
-     * Проверяет, существует ли чат между двумя пользователями
+     * Создает месячные секции message, которых еще нет (V1.13)
      *
-     * @param user1           идентификатор первого пользователя в чате
-     * @param user2           идентификатор второго пользователя в чате
-     * @param advertisementId идентификатор объявления. Может быть null, если чат между двумя пользователями без привязки к объявлению
-     * @return true, если чат существует, иначе false
+     * @param from первый месяц
+     * @param to   последний месяц включительно
+     * @return int - количество созданных секций
      */
-    boolean chatExists(UUID user1, UUID user2, UUID advertisementId);
+    int createPartitions(LocalDate from, LocalDate to);
 
     /**
-     * Возвращает количество непрочитанных сообщений для текущего пользователя в чате
+     * Находит секции message за месяцы раньше указанной даты, в том числе уже отсоединенные, но не перенесенные
+     * в архив (V1.21)
      *
-     * @param secondUserId    идентификатор пользователя с которым переписывается текущий пользователь
-     * @param currentUserId   идентификатор текущего пользователя
-     * @param advertisementId идентификатор объявления. Может быть null, если чат между двумя пользователями без привязки к объявлению
-     * @return long - количество непрочитанных сообщений
+     * @param before дата, месяцы до месяца которой архивируются
+     * @return List<String> - имена секций по порядку месяцев
      */
-    long getUnreadMessagesCount(UUID secondUserId, UUID currentUserId, UUID advertisementId);
+    List<String> findPartitionsToArchive(LocalDate before);
 
     /**
-     * Возвращает список сообщений по фильтру из чата
+     * Отсоединяет секцию от message. Должен выполняться в отдельной транзакции: detach держит access exclusive
+     * на message до ее конца
      *
-     * @param filter фильтр MessageFilterDto
-     * @return List<MessageResponseDto> - список сообщений по фильтру
+     * @param partition         имя секции
+     * @param lockTimeoutMillis сколько ждать блокировку message, прежде чем отказаться
+     * @return int - 1 если секция отсоединена, 0 если она уже была отсоединена
      */
-    List<MessageResponseDto> findAllByFilter(MessageFilterDto filter);
+    int detachPartition(String partition, int lockTimeoutMillis);
+
+    /**
+     * Переносит отсоединенную секцию в message_archive, правит сводку переписок и удаляет секцию
+     *
+     * @param partition имя отсоединенной секции
+     * @return int - количество перенесенных в архив сообщений
+     */
+    int archiveDetachedPartition(String partition);
 }
@@ -5,29 +5,29 @@ import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageResponseDto;
 import org.banana.entity.Message;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.banana.util.ConversationKey;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
 import java.util.UUID;
 
 @Repository
 @Slf4j
 public class MessageRepositoryImpl extends AbstractCrudRepositoryImpl<Message, UUID> implements MessageRepository {
 
-    public static final String CHAT_EXISTS = """
-            select 1
-            from Message m
-            where
-              (
-                (m.senderId = :user1 and m.recipientId = :user2)
-                or
-                (m.senderId = :user2 and m.recipientId = :user1)
-              )
-            and (m.advertisementId = :advertisementId or (m.advertisementId is null and :advertisementId is null))
-            """;
+    // все запросы чата ограничены одной перепиской по conversation_key и читают диапазон
+    // индекса (conversation_key, message_date_time, message_id); направление собеседников уточняется по senderId
     public static final String SELECT_MESSAGES_BY_AD_FIRST_USER_AND_SECOND_USER = """
             select new org.banana.dto.message.MessageResponseDto(
                 m.id,
@@ -36,169 +36,252 @@ public class MessageRepositoryImpl extends AbstractCrudRepositoryImpl<Message, U
                 m.recipientId,
                 m.messageText,
                 m.messageDateTime,
-                m.isRead
+                case
+                    when m.recipientId = c.firstUserId
+                         and (m.messageDateTime < c.firstUserLastReadDateTime
+                              or (m.messageDateTime = c.firstUserLastReadDateTime and m.id <= c.firstUserLastReadMessageId))
+                    then true
+                    when m.recipientId = c.secondUserId
+                         and (m.messageDateTime < c.secondUserLastReadDateTime
+                              or (m.messageDateTime = c.secondUserLastReadDateTime and m.id <= c.secondUserLastReadMessageId))
+                    then true
+                    else false
+                end
             )
             from Message m
-            where
-              (
-                (m.senderId = :secondUserId and m.recipientId = :currentUserId)
-                or
-                (m.senderId = :currentUserId and m.recipientId = :secondUserId)
-              )
-              and (m.advertisementId = :advertisementId or (m.advertisementId is null and :advertisementId is null))
+            left join Conversation c on c.id = m.conversationKey
+            where m.conversationKey = :conversationKey
             """;
 
-    public static final String COUNT_MESSAGES = """
-            select count(m)
-            from Message m
-            where m.senderId = :secondUserId
-            and m.recipientId = :currentUserId
-            and (m.advertisementId = :advertisementId or (m.advertisementId is null and :advertisementId is null))""";
-
-    public static final String COUNT_UNREAD_MESSAGES = COUNT_MESSAGES + """
-            and m.isRead = false
+    private static final String BEFORE_CURSOR = """
+            and (
+                m.messageDateTime < :cursorDateTime
+                or (m.messageDateTime = :cursorDateTime and m.id < :cursorMessageId)
+            )
+            order by m.messageDateTime desc, m.id desc
+            """;
+    private static final String AFTER_CURSOR = """
+            and (
+                m.messageDateTime > :cursorDateTime
+                or (m.messageDateTime = :cursorDateTime and m.id > :cursorMessageId)
+            )
+            order by m.messageDateTime asc, m.id asc
+            """;
+    private static final String FROM_CURSOR = """
+            and (
+                m.messageDateTime > :cursorDateTime
+                or (m.messageDateTime = :cursorDateTime and m.id >= :cursorMessageId)
+            )
+            order by m.messageDateTime asc, m.id asc
             """;
-    private static final String UPDATE_MARK_READ = """
-            update Message m
-            set m.isRead = true
-            where m.senderId = :senderId
-              and m.recipientId = :recipientId
-              and (
-                    m.advertisementId = :advertisementId
-                    or (m.advertisementId is null and :advertisementId is null)
-                  )
-              and m.isRead = false
+    private static final String LATEST = """
+            order by m.messageDateTime desc, m.id desc
             """;
-    private static final String UPDATE_MARK_READ_UP_TO = UPDATE_MARK_READ + """
-               and m.messageDateTime < :upToDateTime || (m.messageDateTime = :upToDateTime and m.id <= :upToMessageId)
+    private static final String OLDEST = """
+            order by m.messageDateTime asc, m.id asc
             """;
+    // сообщения собеседника после отметки прочтения - начало диапазона индекса переписки, поиск не зависит от длины истории
+    private static final String SELECT_FIRST_UNREAD = """
+            select m
+            from Message m
+            where m.conversationKey = :conversationKey
+              and m.senderId = :senderId
+            """;
+
+    // по каждому ключу lateral читает limit строк с конца диапазона индекса переписки, прочтение считается
+    // по отметкам из сводки так же, как в SELECT_MESSAGES_BY_AD_FIRST_USER_AND_SECOND_USER
+    private static final String SELECT_LATEST_BY_CONVERSATION_KEYS = """
+            select k.conversation_key,
+                   m.message_id,
+                   m.advertisement_id,
+                   m.sender_id,
+                   m.recipient_id,
+                   m.message_text,
+                   m.message_date_time,
+                   case
+                       when m.recipient_id = c.first_user_id
+                            and (m.message_date_time, m.message_id)
+                                <= (c.first_user_last_read_date_time, c.first_user_last_read_message_id)
+                       then true
+                       when m.recipient_id = c.second_user_id
+                            and (m.message_date_time, m.message_id)
+                                <= (c.second_user_last_read_date_time, c.second_user_last_read_message_id)
+                       then true
+                       else false
+                   end as is_read
+            from (values %s) as k(conversation_key)
+            cross join lateral (
+                select *
+                from message m
+                where m.conversation_key = k.conversation_key
+                order by m.message_date_time desc, m.message_id desc
+                limit :limit
+            ) m
+            left join conversation c on c.conversation_id = k.conversation_key
+            order by k.conversation_key, m.message_date_time, m.message_id""";
+    private static final String CONVERSATION_KEY_ROW = "(cast(:k%d as uuid))";
+    private static final String CREATE_PARTITIONS = "select create_message_partitions(cast(:from as date), cast(:to as date))";
+    private static final String FIND_PARTITIONS_TO_ARCHIVE = "select p from message_partitions_before(cast(:before as date)) p";
+    private static final String DETACH_PARTITION = "select detach_message_partition(:partition, :lockTimeoutMillis)";
+    private static final String ARCHIVE_DETACHED_PARTITION = "select archive_detached_message_partition(:partition)";
 
     public MessageRepositoryImpl() {
         super(Message.class);
     }
 
     @Override
-    public long countMessagesInChat(UUID secondUserId, UUID currentUserId, UUID advertisementId) {
-        log.info("entering countMessagesInChat({}, {}, {}) in {}", secondUserId, currentUserId, advertisementId, getClass().getSimpleName());
-        return getSession().createQuery(COUNT_MESSAGES, Long.class)
-                .setParameter("secondUserId", secondUserId)
-                .setParameter("currentUserId", currentUserId)
-                .setParameter("advertisementId", advertisementId)
-                .getSingleResultOrNull();
+    public List<MessageResponseDto> findAllByFilter(MessageFilterDto filter) {
+        log.debug("entering findAllByFilter({}) in {}", filter, getClass().getSimpleName());
+        UUID conversationKey = ConversationKey.of(filter.getSecondUserId(), filter.getCurrentUserId(), filter.getAdvertisementId());
+        LocalDateTime cursorDateTime = filter.getCursorDateTime();
+        UUID cursorMessageId = filter.getCursorMessageId();
+
+        if (cursorDateTime != null && cursorMessageId != null) {
+            boolean isBefore = filter.getIsBefore() != null && filter.getIsBefore();
+            List<MessageResponseDto> list = findPage(conversationKey, isBefore ? BEFORE_CURSOR : AFTER_CURSOR,
+                    cursorDateTime, cursorMessageId, filter.getLimit());
+            if (isBefore) {
+                Collections.reverse(list);
+            }
+            return list;
+        }
+
+        if (filter.getUnreadMessagesCount() != null && filter.getUnreadMessagesCount() > 0) {
+            Message firstUnread = findFirstUnread(conversationKey, filter.getSecondUserId(),
+                    filter.getLastReadDateTime(), filter.getLastReadMessageId());
+            if (firstUnread != null) {
+                log.debug("seeking to first unread message: {}", firstUnread.getId());
+                return findAroundFirstUnread(filter, conversationKey, firstUnread);
+            }
+        }
+
+        List<MessageResponseDto> list = findPage(conversationKey, LATEST, null, null, filter.getLimit());
+        Collections.reverse(list);
+        return list;
     }
 
     @Override
-    public int markMessagesReadUpTo(UUID senderId, UUID recipientId, UUID advertisementId, LocalDateTime upToDateTime, UUID upToMessageId) {
-        log.info("entering markMessagesReadUpTo({}, {}, {}, {}) in {}", recipientId, senderId, advertisementId, upToDateTime, getClass().getSimpleName());
-        return getSession()
-                .createMutationQuery(UPDATE_MARK_READ_UP_TO)
-                .setParameter("recipientId", recipientId)
-                .setParameter("senderId", senderId)
-                .setParameter("advertisementId", advertisementId)
-                .setParameter("upToDateTime", upToDateTime)
-                .setParameter("upToMessageId", upToMessageId)
-                .executeUpdate();
+    public List<Message> insertAll(List<Message> messages) {
+        log.debug("entering insertAll({}) in {}", messages.size(), getClass().getSimpleName());
+        if (messages.isEmpty()) return messages;
+
+        Session session = getSession();
+        // идентификатор генерируется приложением, поэтому insert-ы откладываются до flush
+        // и уходят пакетами по hibernate.jdbc.batch_size
+        messages.forEach(session::persist);
+        session.flush();
+        return messages;
     }
 
     @Override
-    public int markAllMessagesRead(UUID senderId, UUID recipientId, UUID advertisementId) {
-        log.info("entering markAllMessagesRead({}, {}, {}) in {}", senderId, recipientId, advertisementId, getClass().getSimpleName());
-        return getSession()
-                .createMutationQuery(UPDATE_MARK_READ)
-                .setParameter("senderId", senderId)
-                .setParameter("recipientId", recipientId)
-                .setParameter("advertisementId", advertisementId)
-                .executeUpdate();
+    public Map<UUID, List<MessageResponseDto>> findLatestByConversationKeys(Collection<UUID> conversationKeys, int limit) {
+        log.debug("entering findLatestByConversationKeys({}, {}) in {}", conversationKeys.size(), limit, getClass().getSimpleName());
+        Map<UUID, List<MessageResponseDto>> result = new LinkedHashMap<>();
+        if (conversationKeys.isEmpty()) return result;
+
+        StringJoiner rows = new StringJoiner(", ");
+        for (int i = 0; i < conversationKeys.size(); i++) {
+            rows.add(CONVERSATION_KEY_ROW.formatted(i));
+        }
+        NativeQuery<Object[]> query = getSession()
+                .createNativeQuery(SELECT_LATEST_BY_CONVERSATION_KEYS.formatted(rows), Object[].class)
+                .addScalar("conversation_key", UUID.class)
+                .addScalar("message_id", UUID.class)
+                .addScalar("advertisement_id", UUID.class)
+                .addScalar("sender_id", UUID.class)
+                .addScalar("recipient_id", UUID.class)
+                .addScalar("message_text", String.class)
+                .addScalar("message_date_time", LocalDateTime.class)
+                .addScalar("is_read", Boolean.class)
+                .setParameter("limit", limit);
+        int i = 0;
+        for (UUID conversationKey : conversationKeys) {
+            query.setParameter("k" + i++, conversationKey);
+        }
+        for (Object[] row : query.getResultList()) {
+            result.computeIfAbsent((UUID) row[0], key -> new ArrayList<>()).add(new MessageResponseDto(
+                    (UUID) row[1],
+                    (UUID) row[2],
+                    (UUID) row[3],
+                    (UUID) row[4],
+                    (String) row[5],
+                    (LocalDateTime) row[6],
+                    (Boolean) row[7]
+            ));
+        }
+        return result;
     }
 
     @Override
-    public boolean chatExists(UUID user1, UUID user2, UUID advertisementId) {
-        log.info("entering chatExists({}, {}, {}) in {}", user1, user2, advertisementId, getClass().getSimpleName());
-        Integer result = getSession().createQuery(CHAT_EXISTS, Integer.class)
-                .setParameter("user1", user1)
-                .setParameter("user2", user2)
-                .setParameter("advertisementId", advertisementId)
-                .setMaxResults(1)
-                .getSingleResultOrNull();
-        return result != null;
+    public int createPartitions(LocalDate from, LocalDate to) {
+        log.debug("entering createPartitions({}, {}) in {}", from, to, getClass().getSimpleName());
+        return getSession().createNativeQuery(CREATE_PARTITIONS, Integer.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getSingleResult();
     }
 
     @Override
-    public long getUnreadMessagesCount(UUID secondUserId, UUID currentUserId, UUID advertisementId) {
-        log.info("entering getUnreadMessagesCount({}, {}, {}) in {}", secondUserId, currentUserId, advertisementId, getClass().getSimpleName());
-        return getSession().createQuery(COUNT_UNREAD_MESSAGES, Long.class)
-                .setParameter("secondUserId", secondUserId)
-                .setParameter("currentUserId", currentUserId)
-                .setParameter("advertisementId", advertisementId)
-                .getSingleResultOrNull();
+    public List<String> findPartitionsToArchive(LocalDate before) {
+        log.debug("entering findPartitionsToArchive({}) in {}", before, getClass().getSimpleName());
+        return getSession().createNativeQuery(FIND_PARTITIONS_TO_ARCHIVE, String.class)
+                .setParameter("before", before)
+                .getResultList();
     }
 
     @Override
-    public List<MessageResponseDto> findAllByFilter(MessageFilterDto filter) {
-        log.info("entering findAllByFilter({}) in {}", filter, getClass().getSimpleName());
-        UUID advertisementId = filter.getAdvertisementId();
-        LocalDateTime cursorDateTime = filter.getCursorDateTime();
-        UUID cursorMessageId = filter.getCursorMessageId();
-        int offset = 0;
-        Query<MessageResponseDto> query = getFindAllByFilterQuery(filter, cursorDateTime, cursorMessageId)
-                .setParameter("secondUserId", filter.getSecondUserId())
-                .setParameter("currentUserId", filter.getCurrentUserId())
-                .setParameter("advertisementId", advertisementId);
-
-        if (cursorDateTime != null && cursorMessageId != null) {
-            query.setParameter("cursorDateTime", cursorDateTime).setParameter("cursorMessageId", cursorMessageId);
-        } else if (filter.getUnreadMessagesCount() != null && filter.getUnreadMessagesCount() > 0) {
-            offset = calculateOffset(filter);
-            log.debug("setting offset to: {}", offset);
-            query.setFirstResult(offset);
-        }
+    public int detachPartition(String partition, int lockTimeoutMillis) {
+        log.debug("entering detachPartition({}) in {}", partition, getClass().getSimpleName());
+        return getSession().createNativeQuery(DETACH_PARTITION, Integer.class)
+                .setParameter("partition", partition)
+                .setParameter("lockTimeoutMillis", lockTimeoutMillis)
+                .getSingleResult();
+    }
 
-        query.setMaxResults(filter.getLimit());
+    @Override
+    public int archiveDetachedPartition(String partition) {
+        log.debug("entering archiveDetachedPartition({}) in {}", partition, getClass().getSimpleName());
+        return getSession().createNativeQuery(ARCHIVE_DETACHED_PARTITION, Integer.class)
+                .setParameter("partition", partition)
+                .getSingleResult();
+    }
 
-        List<MessageResponseDto> list = query.getResultList();
+    /**
+     * Страница вокруг первого непрочитанного сообщения: до limit / 1.5 непрочитанных начиная с него,
+     * остальное - прочитанные перед ним. Если прочитанных не хватает, страница добирается более новыми сообщениями
+     */
+    private List<MessageResponseDto> findAroundFirstUnread(MessageFilterDto filter, UUID conversationKey, Message firstUnread) {
+        int limit = filter.getLimit();
+        int unreadOnPage = (int) Math.min(filter.getUnreadMessagesCount(), (long) Math.floor(limit / 1.5));
 
-        if ((cursorDateTime == null || cursorMessageId == null)
-            || (filter.getIsBefore() != null && filter.getIsBefore())) {
-            Collections.reverse(list);
-        }
-
-        return list;
+        List<MessageResponseDto> page = findPage(conversationKey, BEFORE_CURSOR,
+                firstUnread.getMessageDateTime(), firstUnread.getId(), limit - unreadOnPage);
+        Collections.reverse(page);
+        page.addAll(findPage(conversationKey, FROM_CURSOR,
+                firstUnread.getMessageDateTime(), firstUnread.getId(), limit - page.size()));
+        return page;
     }
 
-    private int calculateOffset(MessageFilterDto filter) {
-        int offset = (int) (filter.getUnreadMessagesCount() - Math.floor(filter.getLimit() / 1.5));
-        if (offset > 0) {
-            long totalCount = countMessagesInChat(filter.getSecondUserId(), filter.getCurrentUserId(), filter.getAdvertisementId());
-            if ((totalCount - offset) < filter.getLimit()) {
-                offset = (int) (totalCount - filter.getLimit());
-            }
+    private Message findFirstUnread(UUID conversationKey, UUID senderId, LocalDateTime lastReadDateTime, UUID lastReadMessageId) {
+        boolean hasWatermark = lastReadDateTime != null && lastReadMessageId != null;
+        Query<Message> query = getSession()
+                .createQuery(SELECT_FIRST_UNREAD + (hasWatermark ? AFTER_CURSOR : OLDEST), Message.class)
+                .setParameter("conversationKey", conversationKey)
+                .setParameter("senderId", senderId);
+        if (hasWatermark) {
+            query.setParameter("cursorDateTime", lastReadDateTime).setParameter("cursorMessageId", lastReadMessageId);
         }
-        return Math.max(offset, 0);
+        return query.setMaxResults(1).getSingleResultOrNull();
     }
 
-    private Query<MessageResponseDto> getFindAllByFilterQuery(MessageFilterDto filter, LocalDateTime cursorDateTime, UUID cursorMessageId) {
-        StringBuilder jpql = new StringBuilder(SELECT_MESSAGES_BY_AD_FIRST_USER_AND_SECOND_USER);
+    private List<MessageResponseDto> findPage(UUID conversationKey, String condition,
+                                              LocalDateTime cursorDateTime, UUID cursorMessageId, int limit) {
+        Query<MessageResponseDto> query = getSession()
+                .createQuery(SELECT_MESSAGES_BY_AD_FIRST_USER_AND_SECOND_USER + condition, MessageResponseDto.class)
+                .setParameter("conversationKey", conversationKey);
         if (cursorDateTime != null && cursorMessageId != null) {
-            if (filter.getIsBefore() != null && filter.getIsBefore()) {
-                jpql.append("""
-                            and (
-                                m.messageDateTime < :cursorDateTime
-                                or (m.messageDateTime = :cursorDateTime and m.id < :cursorMessageId)
-                            )
-                            order by m.messageDateTime desc, m.id desc
-                        """);
-            } else {
-                jpql.append("""
-                            and (
-                                m.messageDateTime > :cursorDateTime
-                                or (m.messageDateTime = :cursorDateTime and m.id > :cursorMessageId)
-                            )
-                            order by m.messageDateTime asc, m.id asc
-                        """);
-            }
-        } else {
-            jpql.append(" order by m.messageDateTime desc, m.id desc");
+            query.setParameter("cursorDateTime", cursorDateTime).setParameter("cursorMessageId", cursorMessageId);
         }
-        return getSession().createQuery(jpql.toString(), MessageResponseDto.class);
+        return new ArrayList<>(query.setMaxResults(limit).getResultList());
     }
 }
@@ -4,6 +4,24 @@ import org.banana.entity.rating.Rating;
 import org.banana.entity.rating.RatingId;
 import org.banana.repository.crud.CrudRepository;
 
+import java.util.Collection;
+
 public interface RatingRepository extends CrudRepository<Rating, RatingId> {
 
+    /**
+     * Добавляет или обновляет оценки одним запросом (insert ... on conflict do update).
+     * Оценки пользователей, которых нет в базе данных, пропускаются
+     *
+     * @param ratings оценки, пары (user_id, rater_id) не должны повторяться
+     * @return количество добавленных или обновленных оценок
+     */
+    int upsertAll(Collection<Rating> ratings);
+
+    /**
+     * Удаляет оценки по идентификаторам одним запросом
+     *
+     * @param ids идентификаторы оценок
+     * @return количество удаленных оценок
+     */
+    int deleteAllByIds(Collection<RatingId> ids);
 }
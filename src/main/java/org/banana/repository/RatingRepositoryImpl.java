@@ -1,14 +1,70 @@
 package org.banana.repository;
 
+import lombok.extern.slf4j.Slf4j;
 import org.banana.entity.rating.Rating;
 import org.banana.entity.rating.RatingId;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.hibernate.query.MutationQuery;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.StringJoiner;
+
+@Slf4j
 @Repository
 public class RatingRepositoryImpl extends AbstractCrudRepositoryImpl<Rating, RatingId> implements RatingRepository {
 
+    private static final String UPSERT_ALL = """
+            insert into rating (user_id, rater_id, rating_value)
+            select v.user_id, v.rater_id, v.rating_value
+            from (values %s) as v(user_id, rater_id, rating_value)
+            join "user" u on u.user_id = v.user_id
+            join "user" r on r.user_id = v.rater_id
+            on conflict (user_id, rater_id) do update set rating_value = excluded.rating_value""";
+    private static final String UPSERT_VALUES_ROW = "(cast(:u%1$d as uuid), cast(:r%1$d as uuid), cast(:v%1$d as smallint))";
+    private static final String DELETE_ALL_BY_IDS = "delete from rating where (user_id, rater_id) in (%s)";
+    private static final String DELETE_ROW = "(cast(:u%1$d as uuid), cast(:r%1$d as uuid))";
+
     public RatingRepositoryImpl() {
         super(Rating.class);
     }
+
+    @Override
+    public int upsertAll(Collection<Rating> ratings) {
+        log.debug("upsertAll({}) in {}", ratings.size(), getClass().getSimpleName());
+        if (ratings.isEmpty()) return 0;
+
+        StringJoiner rows = new StringJoiner(", ");
+        for (int i = 0; i < ratings.size(); i++) {
+            rows.add(UPSERT_VALUES_ROW.formatted(i));
+        }
+        MutationQuery query = getSession().createNativeMutationQuery(UPSERT_ALL.formatted(rows));
+        int i = 0;
+        for (Rating rating : ratings) {
+            query.setParameter("u" + i, rating.getId().getUserId());
+            query.setParameter("r" + i, rating.getId().getRaterId());
+            query.setParameter("v" + i, rating.getRatingValue());
+            i++;
+        }
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deleteAllByIds(Collection<RatingId> ids) {
+        log.debug("deleteAllByIds({}) in {}", ids.size(), getClass().getSimpleName());
+        if (ids.isEmpty()) return 0;
+
+        StringJoiner rows = new StringJoiner(", ");
+        for (int i = 0; i < ids.size(); i++) {
+            rows.add(DELETE_ROW.formatted(i));
+        }
+        MutationQuery query = getSession().createNativeMutationQuery(DELETE_ALL_BY_IDS.formatted(rows));
+        int i = 0;
+        for (RatingId id : ids) {
+            query.setParameter("u" + i, id.getUserId());
+            query.setParameter("r" + i, id.getRaterId());
+            i++;
+        }
+        return query.executeUpdate();
+    }
 }
@@ -1,17 +1,23 @@
 package org.banana.repository;
 
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
 import org.banana.entity.SaleHistory;
 import org.banana.repository.crud.CrudRepository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SaleHistoryRepository extends CrudRepository<SaleHistory, UUID> {
 
     /**
-     * Возвращает агрегированные данные продаж пользователя для каждого объявления
+     * Возвращает агрегированные данные продаж пользователя для каждого объявления из итогов sale_totals
      *
      * @param currentUserId идентификатор юзера для которого нужно найти продажи
      * @return List<SaleHistoryTotalForAdvertisementsResponseDto>
@@ -25,4 +31,72 @@ public interface SaleHistoryRepository extends CrudRepository<SaleHistory, UUID>
      * @return List<SaleHistoryResponseDto> список продаж
      */
     List<SaleHistoryResponseDto> getSalesByAdvertisementId(UUID advertisementId);
+
+    /**
+     * Возвращает продажи объявления, начиная с самой свежей
+     *
+     * @param advertisementId идентификатор объявления
+     * @param from            начало периода, включительно. Может быть null
+     * @param to              конец периода, не включительно. Может быть null
+     * @param after           курсор, после которого нужно вернуть продажи. Может быть null для первой страницы
+     * @param limit           максимальное количество продаж
+     * @return List<SaleHistoryResponseDto> продажи объявления
+     */
+    List<SaleHistoryResponseDto> findAllByAdvertisementIdAfter(UUID advertisementId, LocalDateTime from, LocalDateTime to,
+                                                               KeysetCursor after, int limit);
+
+    /**
+     * Возвращает покупки пользователя, начиная с самой свежей
+     *
+     * @param buyerId идентификатор покупателя
+     * @param from    начало периода, включительно. Может быть null
+     * @param to      конец периода, не включительно. Может быть null
+     * @param after   курсор, после которого нужно вернуть покупки. Может быть null для первой страницы
+     * @param limit   максимальное количество покупок
+     * @return List<SaleHistoryResponseDto> покупки пользователя
+     */
+    List<SaleHistoryResponseDto> findAllByBuyerIdAfter(UUID buyerId, LocalDateTime from, LocalDateTime to,
+                                                       KeysetCursor after, int limit);
+
+    /**
+     * Читает продажи по всем объявлениям продавца курсором, порциями по fetch size, без сохранения
+     * в сессии. Stream нужно закрыть и прочитать до конца транзакции
+     *
+     * @param sellerId идентификатор владельца объявлений
+     * @param from     начало периода, включительно
+     * @param to       конец периода, не включительно
+     * @return Stream<SaleHistoryResponseDto> продажи по объявлениям, внутри объявления по времени
+     */
+    Stream<SaleHistoryResponseDto> streamSalesBySellerId(UUID sellerId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Возвращает продажи объявления по дням из итогов sale_daily_totals, дни без продаж пропускаются
+     *
+     * @param advertisementId идентификатор объявления
+     * @param from            первый день периода
+     * @param to              последний день периода
+     * @return List<SaleHistoryDailyTotalResponseDto> дни по возрастанию
+     */
+    List<SaleHistoryDailyTotalResponseDto> getDailyTotals(UUID advertisementId, LocalDate from, LocalDate to);
+
+    /**
+     * Одним запросом списывает количество у открытого объявления, если его хватает, и записывает продажу.
+     * Конкурентные покупки одного объявления ждут только блокировку его строки, без повторов
+     *
+     * @param advertisementId идентификатор объявления
+     * @param buyerId         идентификатор покупателя
+     * @param quantity        покупаемое количество
+     * @param saleDateTime    время продажи
+     * @return Optional<SaleHistoryResponseDto> будет пустой если объявления нет, оно закрыто или количества не хватает
+     */
+    Optional<SaleHistoryResponseDto> insertWithQuantityDecrement(UUID advertisementId, UUID buyerId, int quantity,
+                                                                 LocalDateTime saleDateTime);
+
+    /**
+     * Одним запросом удаляет продажу и возвращает ее количество открытому объявлению
+     *
+     * @param saleId идентификатор продажи
+     * @return количество обновленных объявлений, 0 если продажи уже нет или объявление закрыто
+     */
+    int deleteWithQuantityRestore(UUID saleId);
 }
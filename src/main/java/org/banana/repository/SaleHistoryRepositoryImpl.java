@@ -1,35 +1,82 @@
 package org.banana.repository;
 
 import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
 import org.banana.entity.SaleHistory;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
 public class SaleHistoryRepositoryImpl extends AbstractCrudRepositoryImpl<SaleHistory, UUID> implements SaleHistoryRepository {
 
+    // итоги поддерживает триггер (V1.15), поэтому запрос читает по строке на объявление продавца,
+    // а не все его продажи; выручка считается по текущей цене объявления
     public static final String GET_TOTAL_FOR_SALES_IN_ADVERTISEMENTS = """
-            select new org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto(
-                a.id,
+            select a.advertisement_id, a.title, a.price * t.units as total, t.units,
+                   t.first_sale_date_time, t.last_sale_date_time
+            from advertisement a
+            join sale_totals t on t.advertisement_id = a.advertisement_id
+            where a.user_id = cast(:currentUserId as uuid)
+              and t.units > 0""";
+
+    public static final String GET_DAILY_TOTALS = """
+            select d.sale_date, a.price * d.units as total, d.units
+            from sale_daily_totals d
+            join advertisement a on a.advertisement_id = d.advertisement_id
+            where d.advertisement_id = cast(:advertisementId as uuid)
+              and d.sale_date between cast(:from as date) and cast(:to as date)
+              and d.units > 0
+            order by d.sale_date""";
+
+    public static final String GET_SALES_BY_ADVERTISEMENT_ID = """
+            select new org.banana.dto.history.SaleHistoryResponseDto(
+                sh.id,
                 a.title,
-                sum(sh.quantity * sh.advertisement.price),
-                sum(sh.quantity),
-                min(sh.saleDateTime),
-                max(sh.saleDateTime)
+                a.id,
+                sh.buyerId,
+                sh.saleDateTime,
+                sh.quantity
             )
             from SaleHistory sh
             join sh.advertisement a
-            where a.user.id = :currentUserId
-            group by a.id, a.title
+            where a.id = :adId
+            order by sh.saleDateTime asc
             """;
 
-    public static final String GET_SALES_BY_ADVERTISEMENT_ID = """
+    // страница - диапазон индекса (advertisement_id | buyer_id, sale_date_time, sale_history_id) от курсора назад
+    private static final String SELECT_PAGE_BY = """
+            select sh.sale_history_id, a.title, sh.advertisement_id, sh.buyer_id, sh.sale_date_time, sh.quantity
+            from sale_history sh
+            join advertisement a on a.advertisement_id = sh.advertisement_id
+            where sh.%s = cast(:ownerId as uuid)%s
+            order by sh.sale_date_time desc, sh.sale_history_id desc
+            limit :limit""";
+    private static final String FROM_DATE_TIME = """
+
+              and sh.sale_date_time >= cast(:from as timestamp)""";
+    private static final String TO_DATE_TIME = """
+
+              and sh.sale_date_time < cast(:to as timestamp)""";
+    private static final String AFTER_CURSOR = """
+
+              and (sh.sale_date_time, sh.sale_history_id) < (cast(:cursorDateTime as timestamp), cast(:cursorId as uuid))""";
+
+    // порядок по объявлению позволяет читать каждое объявление продавца по индексу (advertisement_id, sale_date_time)
+    // без сортировки всех его продаж, поэтому первые строки приходят сразу
+    public static final String STREAM_SALES_BY_SELLER_ID = """
             select new org.banana.dto.history.SaleHistoryResponseDto(
                 sh.id,
                 a.title,
@@ -40,29 +87,197 @@ public class SaleHistoryRepositoryImpl extends AbstractCrudRepositoryImpl<SaleHi
             )
             from SaleHistory sh
             join sh.advertisement a
-            where a.id = :adId
-            order by sh.saleDateTime asc
+            where a.user.id = :sellerId
+              and sh.saleDateTime >= :from
+              and sh.saleDateTime < :to
+            order by a.id, sh.saleDateTime
             """;
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    // условие quantity >= :quantity проверяется под блокировкой строки объявления, поэтому конкурентные покупки
+    // выполняются по очереди и не уводят остаток в минус; если update не нашел строку, insert ничего не вставляет
+    private static final String INSERT_WITH_QUANTITY_DECREMENT = """
+            with updated as (
+                update advertisement
+                set quantity = quantity - :quantity
+                where advertisement_id = cast(:advertisementId as uuid)
+                  and quantity >= :quantity
+                  and close_date is null
+                returning advertisement_id, title
+            ), inserted as (
+                insert into sale_history (advertisement_id, buyer_id, sale_date_time, quantity)
+                select u.advertisement_id, cast(:buyerId as uuid), cast(:saleDateTime as timestamp), :quantity
+                from updated u
+                returning sale_history_id, advertisement_id, buyer_id, sale_date_time, quantity
+            )
+            select i.sale_history_id, u.title, i.advertisement_id, i.buyer_id, i.sale_date_time, i.quantity
+            from inserted i
+            join updated u on u.advertisement_id = i.advertisement_id""";
+
+    // продажа удаляется только у открытого объявления, вернувшееся количество прибавляется к текущему остатку
+    private static final String DELETE_WITH_QUANTITY_RESTORE = """
+            with deleted as (
+                delete from sale_history sh
+                using advertisement a
+                where sh.sale_history_id = cast(:saleId as uuid)
+                  and a.advertisement_id = sh.advertisement_id
+                  and a.close_date is null
+                returning sh.advertisement_id, sh.quantity
+            )
+            update advertisement a
+            set quantity = a.quantity + d.quantity
+            from deleted d
+            where a.advertisement_id = d.advertisement_id
+              and a.close_date is null""";
+
     public SaleHistoryRepositoryImpl() {
         super(SaleHistory.class);
     }
 
     @Override
     public List<SaleHistoryTotalForAdvertisementsResponseDto> getTotalForSalesInAdvertisements(UUID currentUserId) {
-        log.info("getTotalForSalesInAdvertisements({})", currentUserId);
+        log.debug("getTotalForSalesInAdvertisements({})", currentUserId);
         return getSession()
-                .createQuery(GET_TOTAL_FOR_SALES_IN_ADVERTISEMENTS, SaleHistoryTotalForAdvertisementsResponseDto.class)
+                .createNativeQuery(GET_TOTAL_FOR_SALES_IN_ADVERTISEMENTS, Object[].class)
+                .addScalar("advertisement_id", UUID.class)
+                .addScalar("title", String.class)
+                .addScalar("total", BigDecimal.class)
+                .addScalar("units", Long.class)
+                .addScalar("first_sale_date_time", LocalDateTime.class)
+                .addScalar("last_sale_date_time", LocalDateTime.class)
                 .setParameter("currentUserId", currentUserId)
-                .getResultList();
+                .getResultList()
+                .stream()
+                .map(row -> new SaleHistoryTotalForAdvertisementsResponseDto(
+                        (UUID) row[0],
+                        (String) row[1],
+                        (BigDecimal) row[2],
+                        (Long) row[3],
+                        (LocalDateTime) row[4],
+                        (LocalDateTime) row[5]
+                ))
+                .toList();
+    }
+
+    @Override
+    public List<SaleHistoryDailyTotalResponseDto> getDailyTotals(UUID advertisementId, LocalDate from, LocalDate to) {
+        log.debug("getDailyTotals({}, {}, {})", advertisementId, from, to);
+        return getSession()
+                .createNativeQuery(GET_DAILY_TOTALS, Object[].class)
+                .addScalar("sale_date", LocalDate.class)
+                .addScalar("total", BigDecimal.class)
+                .addScalar("units", Long.class)
+                .setParameter("advertisementId", advertisementId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList()
+                .stream()
+                .map(row -> new SaleHistoryDailyTotalResponseDto((LocalDate) row[0], (BigDecimal) row[1], (Long) row[2]))
+                .toList();
     }
 
     @Override
     public List<SaleHistoryResponseDto> getSalesByAdvertisementId(UUID advertisementId) {
-        log.info("getSalesByAdvertisementId({})", advertisementId);
+        log.debug("getSalesByAdvertisementId({})", advertisementId);
         return getSession()
                 .createQuery(GET_SALES_BY_ADVERTISEMENT_ID, SaleHistoryResponseDto.class)
                 .setParameter("adId", advertisementId)
                 .getResultList();
     }
+
+    @Override
+    public List<SaleHistoryResponseDto> findAllByAdvertisementIdAfter(UUID advertisementId, LocalDateTime from, LocalDateTime to,
+                                                                      KeysetCursor after, int limit) {
+        log.debug("findAllByAdvertisementIdAfter({}, {}, {}, {}, {})", advertisementId, from, to, after, limit);
+        return findPageBy("advertisement_id", advertisementId, from, to, after, limit);
+    }
+
+    @Override
+    public List<SaleHistoryResponseDto> findAllByBuyerIdAfter(UUID buyerId, LocalDateTime from, LocalDateTime to,
+                                                              KeysetCursor after, int limit) {
+        log.debug("findAllByBuyerIdAfter({}, {}, {}, {}, {})", buyerId, from, to, after, limit);
+        return findPageBy("buyer_id", buyerId, from, to, after, limit);
+    }
+
+    private List<SaleHistoryResponseDto> findPageBy(String ownerColumn, UUID ownerId, LocalDateTime from, LocalDateTime to,
+                                                    KeysetCursor after, int limit) {
+        String conditions = (from == null ? "" : FROM_DATE_TIME)
+                + (to == null ? "" : TO_DATE_TIME)
+                + (after == null ? "" : AFTER_CURSOR);
+        NativeQuery<Object[]> query = getSession()
+                .createNativeQuery(SELECT_PAGE_BY.formatted(ownerColumn, conditions), Object[].class)
+                .addScalar("sale_history_id", UUID.class)
+                .addScalar("title", String.class)
+                .addScalar("advertisement_id", UUID.class)
+                .addScalar("buyer_id", UUID.class)
+                .addScalar("sale_date_time", LocalDateTime.class)
+                .addScalar("quantity", Integer.class)
+                .setParameter("ownerId", ownerId)
+                .setParameter("limit", limit);
+        if (from != null) query.setParameter("from", from);
+        if (to != null) query.setParameter("to", to);
+        if (after != null) {
+            query.setParameter("cursorDateTime", after.getDateTime())
+                    .setParameter("cursorId", after.getId());
+        }
+        return query.getResultList().stream()
+                .map(row -> new SaleHistoryResponseDto(
+                        (UUID) row[0],
+                        (String) row[1],
+                        (UUID) row[2],
+                        (UUID) row[3],
+                        (LocalDateTime) row[4],
+                        (Integer) row[5]
+                ))
+                .toList();
+    }
+
+    @Override
+    public Stream<SaleHistoryResponseDto> streamSalesBySellerId(UUID sellerId, LocalDateTime from, LocalDateTime to) {
+        log.debug("streamSalesBySellerId({}, {}, {})", sellerId, from, to);
+        return getSession()
+                .createQuery(STREAM_SALES_BY_SELLER_ID, SaleHistoryResponseDto.class)
+                .setParameter("sellerId", sellerId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .setReadOnly(true)
+                .getResultStream();
+    }
+
+    @Override
+    public Optional<SaleHistoryResponseDto> insertWithQuantityDecrement(UUID advertisementId, UUID buyerId, int quantity,
+                                                                        LocalDateTime saleDateTime) {
+        log.debug("insertWithQuantityDecrement({}, {}, {}, {})", advertisementId, buyerId, quantity, saleDateTime);
+        Object[] row = getSession().createNativeQuery(INSERT_WITH_QUANTITY_DECREMENT, Object[].class)
+                .addScalar("sale_history_id", UUID.class)
+                .addScalar("title", String.class)
+                .addScalar("advertisement_id", UUID.class)
+                .addScalar("buyer_id", UUID.class)
+                .addScalar("sale_date_time", LocalDateTime.class)
+                .addScalar("quantity", Integer.class)
+                .setParameter("advertisementId", advertisementId)
+                .setParameter("buyerId", buyerId)
+                .setParameter("quantity", quantity)
+                .setParameter("saleDateTime", saleDateTime)
+                .getSingleResultOrNull();
+        if (row == null) return Optional.empty();
+        return Optional.of(new SaleHistoryResponseDto(
+                (UUID) row[0],
+                (String) row[1],
+                (UUID) row[2],
+                (UUID) row[3],
+                (LocalDateTime) row[4],
+                (Integer) row[5]
+        ));
+    }
+
+    @Override
+    public int deleteWithQuantityRestore(UUID saleId) {
+        log.debug("deleteWithQuantityRestore({})", saleId);
+        return getSession().createNativeMutationQuery(DELETE_WITH_QUANTITY_RESTORE)
+                .setParameter("saleId", saleId)
+                .executeUpdate();
+    }
 }
@@ -0,0 +1,82 @@
+package org.banana.repository;
+
+import org.banana.dto.history.SaleHistoryResponseDto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Пулы остатка объявлений в stock_reservation, которыми распоряжается StockReservationEngine
+ */
+public interface StockReservationRepository {
+
+    /**
+     * Переносит до quantity единиц из остатка открытого объявления в пул экземпляра и продлевает аренду пула
+     *
+     * @param advertisementId идентификатор объявления
+     * @param instanceId      идентификатор экземпляра приложения
+     * @param quantity        сколько единиц забрать
+     * @param leaseMillis     длительность аренды пула
+     * @param topUp           пул уже забирал единицы: пополнить только существующий пул, не создавая его заново
+     * @return сколько единиц забрано, 0 если остатка нет или объявление закрыто, -1 если пополняемого пула
+     * уже нет в базе (его освободил другой экземпляр)
+     */
+    int claim(UUID advertisementId, UUID instanceId, int quantity, long leaseMillis, boolean topUp);
+
+    /**
+     * Возвращает неиспользованные единицы пула в остаток объявления
+     *
+     * @param advertisementId идентификатор объявления
+     * @param instanceId      идентификатор экземпляра приложения
+     * @param quantity        сколько единиц вернуть
+     * @return количество обновленных объявлений
+     */
+    int release(UUID advertisementId, UUID instanceId, int quantity);
+
+    /**
+     * Записывает продажу из пула в журнал stock_reservation_sale в текущей транзакции покупки
+     *
+     * @param sale       продажа с идентификатором, выданным приложением
+     * @param instanceId идентификатор экземпляра приложения
+     * @return false, если пула экземпляра уже нет в базе (его освободил другой экземпляр) или объявление
+     * закрыто - продажа не записана
+     */
+    boolean journal(SaleHistoryResponseDto sale, UUID instanceId);
+
+    /**
+     * Переносит до limit продаж экземпляра из журнала в sale_history одним запросом и в нем же уменьшает пулы
+     * на проданное количество. Продажи объявления, которые не покрывают его пул и остаток, остаются в журнале.
+     * У удаленного покупателя buyer_id остается пустым
+     *
+     * @param instanceId идентификатор экземпляра приложения
+     * @param limit      сколько продаж перенести
+     * @return количество перенесенных продаж
+     */
+    int moveSales(UUID instanceId, int limit);
+
+    /**
+     * Продлевает аренду пулов экземпляра у открытых объявлений, пулы закрытых объявлений освободятся
+     * по истечении аренды
+     *
+     * @param instanceId  идентификатор экземпляра приложения
+     * @param leaseMillis длительность аренды
+     * @return идентификаторы открытых объявлений, пулы которых еще есть в базе
+     */
+    List<UUID> renew(UUID instanceId, long leaseMillis);
+
+    /**
+     * Удаляет пулы экземпляра, перенося их журнал в sale_history, и возвращает непроданные единицы в остаток объявлений
+     *
+     * @param instanceId идентификатор экземпляра приложения
+     * @return количество обновленных объявлений
+     */
+    int releaseAll(UUID instanceId);
+
+    /**
+     * Удаляет пулы с истекшей арендой любых экземпляров, перенося их журнал в sale_history (продажи упавшего
+     * экземпляра), и возвращает непроданные единицы в остаток объявлений
+     *
+     * @return количество обновленных объявлений
+     */
+    int releaseExpired();
+}
@@ -0,0 +1,271 @@
+package org.banana.repository;
+
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Repository
+public class StockReservationRepositoryImpl implements StockReservationRepository {
+
+    private static final String LEASE_UNTIL = "now() + make_interval(secs => cast(:leaseMillis as double precision) / 1000)";
+
+    // все запросы к пулам блокируют строки в одном порядке: пул, журнал продаж пула, объявление.
+    // Строка объявления блокируется на время переноса, поэтому конкурентные claim и покупки мимо пула
+    // (SaleHistoryRepositoryImpl) видят согласованный остаток; пул создается или пополняется в том же запросе.
+    // Пополнение (topUp) не создает пул заново: если его освободил другой экземпляр, в памяти остались единицы
+    // старого пула, и новый пул в базе их бы не покрыл
+    private static final String CLAIM = """
+            with pool as (
+                select r.advertisement_id
+                from stock_reservation r
+                where r.advertisement_id = cast(:advertisementId as uuid)
+                  and r.instance_id = cast(:instanceId as uuid)
+                for no key update
+            ), old as (
+                select a.advertisement_id, least(a.quantity, :quantity) as claimed
+                from advertisement a
+                where a.advertisement_id = cast(:advertisementId as uuid)
+                  and a.close_date is null
+                  and a.quantity > 0
+                  and (not cast(:topUp as boolean) or exists (select 1 from pool))
+                for update
+            ), claimed as (
+                update advertisement a
+                set quantity = a.quantity - o.claimed
+                from old o
+                where a.advertisement_id = o.advertisement_id
+                returning o.claimed
+            ), pooled as (
+                insert into stock_reservation (advertisement_id, instance_id, reserved_quantity, lease_until)
+                select cast(:advertisementId as uuid), cast(:instanceId as uuid), c.claimed, %s
+                from claimed c
+                on conflict (advertisement_id, instance_id) do update
+                    set reserved_quantity = stock_reservation.reserved_quantity + excluded.reserved_quantity,
+                        lease_until       = excluded.lease_until
+            )
+            select case when cast(:topUp as boolean) and not exists (select 1 from pool) then -1
+                        else cast(coalesce(sum(c.claimed), 0) as integer) end
+            from claimed c""".formatted(LEASE_UNTIL);
+
+    private static final String RELEASE = """
+            with released as (
+                update stock_reservation
+                set reserved_quantity = reserved_quantity - :quantity
+                where advertisement_id = cast(:advertisementId as uuid)
+                  and instance_id = cast(:instanceId as uuid)
+                returning advertisement_id
+            )
+            update advertisement a
+            set quantity = a.quantity + :quantity
+            from released r
+            where a.advertisement_id = r.advertisement_id""";
+
+    // продажа попадает в журнал, только пока пул экземпляра есть в базе и объявление открыто; внешний ключ
+    // на пул держит его до коммита транзакции покупки, поэтому освобождение пула дождется ее и перенесет
+    // эту продажу
+    private static final String JOURNAL_SALE = """
+            insert into stock_reservation_sale (sale_history_id, advertisement_id, instance_id, buyer_id, sale_date_time, quantity)
+            select cast(:id as uuid), r.advertisement_id, r.instance_id, cast(:buyerId as uuid),
+                   cast(:saleDateTime as timestamp), cast(:quantity as smallint)
+            from stock_reservation r
+            join advertisement a on a.advertisement_id = r.advertisement_id
+            where r.advertisement_id = cast(:advertisementId as uuid)
+              and r.instance_id = cast(:instanceId as uuid)
+              and a.close_date is null
+            for key share of r""";
+
+    // пакет продаж экземпляра переносится из журнала в sale_history, только если его покрывают пулы экземпляра
+    // и, на недостающее, остаток объявления под блокировкой строки: пул уменьшается, остаток объявления
+    // списывается в том же запросе. Непокрытые продажи остаются в журнале, продать больше остатка перенос
+    // не может. У удаленного покупателя buyer_id остается пустым, продажи удаленного объявления удалены каскадом
+    private static final String MOVE_SALES = """
+            with pool as (
+                select r.advertisement_id, r.reserved_quantity
+                from stock_reservation r
+                where r.instance_id = cast(:instanceId as uuid)
+                order by r.advertisement_id
+                for no key update
+            ), journaled as (
+                select j.sale_history_id, j.advertisement_id, j.quantity
+                from stock_reservation_sale j
+                where j.instance_id = cast(:instanceId as uuid)
+                order by j.sale_history_id
+                limit :limit
+                for update
+            ), wanted as (
+                select s.advertisement_id, sum(s.quantity) as quantity
+                from journaled s
+                group by s.advertisement_id
+            ), stock as (
+                select a.advertisement_id, a.quantity
+                from advertisement a
+                join wanted w on w.advertisement_id = a.advertisement_id
+                join pool p on p.advertisement_id = a.advertisement_id
+                where p.reserved_quantity < w.quantity
+                order by a.advertisement_id
+                for update of a
+            ), covered as (
+                select w.advertisement_id,
+                       least(w.quantity, p.reserved_quantity) as from_pool,
+                       w.quantity - least(w.quantity, p.reserved_quantity) as from_stock
+                from wanted w
+                join pool p on p.advertisement_id = w.advertisement_id
+                left join stock s on s.advertisement_id = w.advertisement_id
+                where p.reserved_quantity + coalesce(s.quantity, 0) >= w.quantity
+            ), moved as (
+                delete from stock_reservation_sale j
+                using journaled s
+                join covered c on c.advertisement_id = s.advertisement_id
+                where j.sale_history_id = s.sale_history_id
+                returning j.sale_history_id, j.advertisement_id, j.buyer_id, j.sale_date_time, j.quantity
+            ), sold as (
+                insert into sale_history (sale_history_id, advertisement_id, buyer_id, sale_date_time, quantity)
+                select m.sale_history_id, m.advertisement_id, u.user_id, m.sale_date_time, m.quantity
+                from moved m
+                left join "user" u on u.user_id = m.buyer_id
+            ), pooled as (
+                update stock_reservation r
+                set reserved_quantity = r.reserved_quantity - c.from_pool
+                from covered c
+                where r.advertisement_id = c.advertisement_id
+                  and r.instance_id = cast(:instanceId as uuid)
+                  and c.from_pool > 0
+            ), stocked as (
+                update advertisement a
+                set quantity = a.quantity - c.from_stock
+                from covered c
+                where a.advertisement_id = c.advertisement_id
+                  and c.from_stock > 0
+            )
+            select cast(count(*) as integer) from moved""";
+
+    // продлеваются только пулы открытых объявлений: пул закрытого объявления (его закрыли на другом экземпляре)
+    // дождется конца аренды и вернет непроданное в остаток, а не будет прятать его от quantity
+    private static final String RENEW = """
+            with renewed as (
+                update stock_reservation r
+                set lease_until = %s
+                from advertisement a
+                where r.instance_id = cast(:instanceId as uuid)
+                  and a.advertisement_id = r.advertisement_id
+                  and a.close_date is null
+                returning r.advertisement_id
+            )
+            select advertisement_id from renewed""".formatted(LEASE_UNTIL);
+
+    // перед удалением пулов их журнал переносится в sale_history, в остаток объявления возвращается
+    // только непроданная часть пула. Пулы блокируются, поэтому новые продажи в их журнал ждут конца запроса.
+    // Журнал пула покрыт самим пулом: продажа пишется в него только из единиц, забранных в этот пул,
+    // а CLAIM не создает заново пул, который освободили, пока его единицы оставались в памяти
+    private static final String RELEASE_WHERE = """
+            with released as (
+                select r.advertisement_id, r.instance_id, r.reserved_quantity
+                from stock_reservation r
+                where %s
+                order by r.advertisement_id, r.instance_id
+                for update
+            ), moved as (
+                delete from stock_reservation_sale j
+                using released r
+                where j.advertisement_id = r.advertisement_id
+                  and j.instance_id = r.instance_id
+                returning j.sale_history_id, j.advertisement_id, j.buyer_id, j.sale_date_time, j.quantity
+            ), sold as (
+                insert into sale_history (sale_history_id, advertisement_id, buyer_id, sale_date_time, quantity)
+                select m.sale_history_id, m.advertisement_id, u.user_id, m.sale_date_time, m.quantity
+                from moved m
+                left join "user" u on u.user_id = m.buyer_id
+            ), deleted as (
+                delete from stock_reservation s
+                using released r
+                where s.advertisement_id = r.advertisement_id
+                  and s.instance_id = r.instance_id
+            )
+            update advertisement a
+            set quantity = a.quantity + r.quantity
+            from (select p.advertisement_id, p.reserved_quantity - coalesce(m.quantity, 0) as quantity
+                  from (select advertisement_id, sum(reserved_quantity) as reserved_quantity
+                        from released group by advertisement_id) p
+                  left join (select advertisement_id, sum(quantity) as quantity
+                             from moved group by advertisement_id) m on m.advertisement_id = p.advertisement_id) r
+            where a.advertisement_id = r.advertisement_id""";
+    private static final String RELEASE_ALL = RELEASE_WHERE.formatted("r.instance_id = cast(:instanceId as uuid)");
+    private static final String RELEASE_EXPIRED = RELEASE_WHERE.formatted("r.lease_until < now()");
+
+    @PersistenceContext
+    private Session session;
+
+    @Override
+    public int claim(UUID advertisementId, UUID instanceId, int quantity, long leaseMillis, boolean topUp) {
+        log.debug("claim({}, {}, {}, {})", advertisementId, instanceId, quantity, topUp);
+        return session.createNativeQuery(CLAIM, Integer.class)
+                .setParameter("advertisementId", advertisementId)
+                .setParameter("instanceId", instanceId)
+                .setParameter("quantity", quantity)
+                .setParameter("leaseMillis", leaseMillis)
+                .setParameter("topUp", topUp)
+                .getSingleResult();
+    }
+
+    @Override
+    public int release(UUID advertisementId, UUID instanceId, int quantity) {
+        log.debug("release({}, {}, {})", advertisementId, instanceId, quantity);
+        return session.createNativeMutationQuery(RELEASE)
+                .setParameter("advertisementId", advertisementId)
+                .setParameter("instanceId", instanceId)
+                .setParameter("quantity", quantity)
+                .executeUpdate();
+    }
+
+    @Override
+    public boolean journal(SaleHistoryResponseDto sale, UUID instanceId) {
+        log.debug("journal({}, {})", sale.getId(), instanceId);
+        return session.createNativeMutationQuery(JOURNAL_SALE)
+                .setParameter("id", sale.getId())
+                .setParameter("advertisementId", sale.getAdvertisementId())
+                .setParameter("instanceId", instanceId)
+                .setParameter("buyerId", sale.getBuyerId(), UUID.class)
+                .setParameter("saleDateTime", sale.getSaleDateTime())
+                .setParameter("quantity", sale.getQuantity())
+                .executeUpdate() > 0;
+    }
+
+    @Override
+    public int moveSales(UUID instanceId, int limit) {
+        log.debug("moveSales({}, {})", instanceId, limit);
+        return session.createNativeQuery(MOVE_SALES, Integer.class)
+                .setParameter("instanceId", instanceId)
+                .setParameter("limit", limit)
+                .getSingleResult();
+    }
+
+    @Override
+    public List<UUID> renew(UUID instanceId, long leaseMillis) {
+        log.debug("renew({})", instanceId);
+        return session.createNativeQuery(RENEW, UUID.class)
+                .setParameter("instanceId", instanceId)
+                .setParameter("leaseMillis", leaseMillis)
+                .getResultList();
+    }
+
+    @Override
+    public int releaseAll(UUID instanceId) {
+        log.debug("releaseAll({})", instanceId);
+        return session.createNativeMutationQuery(RELEASE_ALL)
+                .setParameter("instanceId", instanceId)
+                .executeUpdate();
+    }
+
+    @Override
+    public int releaseExpired() {
+        log.debug("releaseExpired()");
+        return session.createNativeMutationQuery(RELEASE_EXPIRED)
+                .executeUpdate();
+    }
+}
@@ -12,9 +12,4 @@ public interface UserRatingViewRepository {
      * @return Optional<UserRatingView> если у юзера нет рейтинга, то Optional пустой
      */
     Optional<UserRatingView> findById(UUID userId);
-
-    /**
-     * Обновляет материализованное представление рейтинга
-     */
-    void updateView();
 }
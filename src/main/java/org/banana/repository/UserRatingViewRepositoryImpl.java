@@ -20,13 +20,7 @@ public class UserRatingViewRepositoryImpl implements UserRatingViewRepository {
 
     @Override
     public Optional<UserRatingView> findById(UUID userId) {
-        log.info("findById({})", userId);
+        log.debug("findById({})", userId);
         return Optional.ofNullable(session.find(UserRatingView.class, userId));
     }
-
-    @Override
-    public void updateView() {
-        log.info("updateView()");
-        session.createNativeMutationQuery("refresh materialized view concurrently user_rating_view").executeUpdate();
-    }
 }
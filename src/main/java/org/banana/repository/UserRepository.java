@@ -3,7 +3,9 @@ package org.banana.repository;
 import org.banana.entity.User;
 import org.banana.repository.crud.CrudRepository;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public interface UserRepository extends CrudRepository<User, UUID> {
@@ -61,4 +63,12 @@ public interface UserRepository extends CrudRepository<User, UUID> {
      * @return true если такой юзер есть
      */
     boolean existsByPhone(String phone);
+
+    /**
+     * Возвращает идентификаторы существующих пользователей из переданных одним запросом
+     *
+     * @param ids идентификаторы юзеров
+     * @return Set<UUID> идентификаторы, для которых пользователь есть
+     */
+    Set<UUID> findExistingIds(Collection<UUID> ids);
 }
@@ -5,7 +5,10 @@ import org.banana.entity.User;
 import org.banana.repository.crud.AbstractCrudRepositoryImpl;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -19,6 +22,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
     private static final String UPDATE_PASSWORD = "update User u set u.password = :password where u.id = :id";
     private static final String UPDATE_USERNAME = "update User u set u.username = :username where u.id = :id";
     private static final String UPDATE_PHONE = "update User u set u.phone = :phone where u.id = :id";
+    private static final String FIND_EXISTING_IDS = "select u.id from User u where u.id in :ids";
 
     public UserRepositoryImpl() {
         super(User.class);
@@ -26,7 +30,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public Optional<User> findFetchedById(UUID uuid) {
-        log.info("findFetchedById({})", uuid);
+        log.debug("findFetchedById({})", uuid);
         return Optional.ofNullable(getSession().createQuery(FIND_BY_ID, User.class)
                 .setParameter("id", uuid)
                 .getSingleResultOrNull());
@@ -34,7 +38,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public void updatePassword(UUID id, String password) {
-        log.info("updatePassword({}, ...)", id);
+        log.debug("updatePassword({}, ...)", id);
         getSession().createMutationQuery(UPDATE_PASSWORD)
                 .setParameter("password", password)
                 .setParameter("id", id)
@@ -43,7 +47,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public void updateUsername(UUID id, String username) {
-        log.info("updateUsername({}, {})", id, username);
+        log.debug("updateUsername({}, {})", id, username);
         getSession().createMutationQuery(UPDATE_USERNAME)
                 .setParameter("username", username)
                 .setParameter("id", id)
@@ -52,7 +56,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public void updatePhone(UUID id, String phone) {
-        log.info("updatePhone({}, {})", id, phone);
+        log.debug("updatePhone({}, {})", id, phone);
         getSession().createMutationQuery(UPDATE_PHONE)
                 .setParameter("phone", phone)
                 .setParameter("id", id)
@@ -61,7 +65,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public Optional<User> findByUsername(String username) {
-        log.info("findByUsername({})", username);
+        log.debug("findByUsername({})", username);
         return Optional.ofNullable(
                 getSession().createQuery(FIND_BY_USERNAME, User.class)
                         .setParameter("username", username)
@@ -71,7 +75,7 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public boolean existsByUsername(String username) {
-        log.info("existsByUsername({})", username);
+        log.debug("existsByUsername({})", username);
         Integer result = getSession().createQuery(EXISTS_BY_USERNAME, Integer.class)
                 .setParameter("username", username)
                 .getSingleResultOrNull();
@@ -80,10 +84,19 @@ public class UserRepositoryImpl extends AbstractCrudRepositoryImpl<User, UUID> i
 
     @Override
     public boolean existsByPhone(String phone) {
-        log.info("existsByPhone({})", phone);
+        log.debug("existsByPhone({})", phone);
         Integer result = getSession().createQuery(EXISTS_BY_PHONE, Integer.class)
                 .setParameter("phone", phone)
                 .getSingleResultOrNull();
         return result != null;
     }
+
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        log.debug("findExistingIds({})", ids.size());
+        if (ids.isEmpty()) return Set.of();
+        return new HashSet<>(getSession().createQuery(FIND_EXISTING_IDS, UUID.class)
+                .setParameterList("ids", ids)
+                .getResultList());
+    }
 }
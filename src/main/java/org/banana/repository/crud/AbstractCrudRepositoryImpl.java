@@ -7,6 +7,8 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
@@ -18,6 +20,8 @@ import java.util.Optional;
 public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> implements CrudRepository<T, ID> {
 
     public static final String EXISTS_BY_ID = "select 1 from %s e where e.%s = :id";
+    public static final String FIND_ALL_BY_IDS = "select e from %s e where e.%s in :ids";
+    public static final String DELETE_ALL_BY_IDS = "delete from %s e where e.%s in :ids";
     private final Class<T> entityClass;
 
     @Getter(AccessLevel.PROTECTED)
@@ -33,28 +37,42 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
 
     @Override
     public <S extends T> S save(S entity) {
-        log.info("save() in {}: {}", getClass().getSimpleName(), entity);
+        log.debug("save() in {}: {}", getClass().getSimpleName(), entity);
         return getSession().merge(entity);
     }
 
     @Override
     public <S extends T> Iterable<S> saveAll(Iterable<S> entities) {
+        log.debug("saveAll() in {}", getClass().getSimpleName());
+        Session currentSession = getSession();
+        int batchSize = getJdbcBatchSize(currentSession);
         List<S> result = new ArrayList<>();
+        List<S> batch = new ArrayList<>(batchSize);
         for (S e : entities) {
-            result.add(save(e));
+            boolean managed = isInSession(currentSession, e);
+            S merged = currentSession.merge(e);
+            result.add(merged);
+            if (!managed) batch.add(merged);
+            // каждый полный пакет сразу уходит в базу, а из контекста отсоединяются только сущности пакета,
+            // чтобы он не рос на больших списках; загруженное вызывающим кодом остается в сессии
+            if (result.size() % batchSize == 0) {
+                currentSession.flush();
+                batch.forEach(currentSession::detach);
+                batch.clear();
+            }
         }
         return result;
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        log.info("findById({}) in {}", id, getClass().getSimpleName());
+        log.debug("findById({}) in {}", id, getClass().getSimpleName());
         return Optional.ofNullable(getSession().find(entityClass, id));
     }
 
     @Override
     public boolean existsById(ID id) {
-        log.info("existsById({}) in {}", id, getClass().getSimpleName());
+        log.debug("existsById({}) in {}", id, getClass().getSimpleName());
         String query = String.format(EXISTS_BY_ID, entityClass.getSimpleName(), idAttributeName);
         Integer result = session.createQuery(query, Integer.class)
                 .setParameter("id", id)
@@ -64,7 +82,7 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
 
     @Override
     public List<T> findAll() {
-        log.info("findAll() in {}", getClass().getSimpleName());
+        log.debug("findAll() in {}", getClass().getSimpleName());
         return getSession()
                 .createQuery("from " + entityClass.getSimpleName(), entityClass)
                 .getResultList();
@@ -72,17 +90,18 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
 
     @Override
     public List<T> findAllById(Iterable<ID> ids) {
-        log.info("findAllById() in {}", getClass().getSimpleName());
-        List<T> list = new ArrayList<>();
-        for (ID id : ids) {
-            findById(id).ifPresent(list::add);
-        }
-        return list;
+        log.debug("findAllById() in {}", getClass().getSimpleName());
+        List<ID> idList = toList(ids);
+        if (idList.isEmpty()) return List.of();
+        String query = String.format(FIND_ALL_BY_IDS, entityClass.getSimpleName(), idAttributeName);
+        return getSession().createQuery(query, entityClass)
+                .setParameterList("ids", idList)
+                .getResultList();
     }
 
     @Override
     public long count() {
-        log.info("count() in {}", getClass().getSimpleName());
+        log.debug("count() in {}", getClass().getSimpleName());
         return getSession()
                 .createQuery("select COUNT(e) from " + entityClass.getSimpleName() + " e", Long.class)
                 .getSingleResult();
@@ -90,27 +109,30 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
 
     @Override
     public void deleteById(ID id) {
-        log.info("deleteAdvertisement({}) in {}", id, getClass().getSimpleName());
+        log.debug("deleteAdvertisement({}) in {}", id, getClass().getSimpleName());
         findById(id).ifPresent(getSession()::remove);
     }
 
     @Override
     public void delete(T entity) {
-        log.info("delete({}) in {}", entity, getClass().getSimpleName());
+        log.debug("delete({}) in {}", entity, getClass().getSimpleName());
         getSession().remove(entity);
     }
 
     @Override
     public void deleteAllById(Iterable<? extends ID> ids) {
-        log.info("deleteAllById() in {}", getClass().getSimpleName());
-        for (ID id : ids) {
-            deleteById(id);
-        }
+        log.debug("deleteAllById() in {}", getClass().getSimpleName());
+        List<ID> idList = toList(ids);
+        if (idList.isEmpty()) return;
+        String query = String.format(DELETE_ALL_BY_IDS, entityClass.getSimpleName(), idAttributeName);
+        getSession().createMutationQuery(query)
+                .setParameterList("ids", idList)
+                .executeUpdate();
     }
 
     @Override
     public void deleteAll(Iterable<? extends T> entities) {
-        log.info("deleteAll(entities) in {}", getClass().getSimpleName());
+        log.debug("deleteAll(entities) in {}", getClass().getSimpleName());
         for (T e : entities) {
             delete(e);
         }
@@ -118,12 +140,42 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
 
     @Override
     public void deleteAll() {
-        log.info("deleteAll() in {}", getClass().getSimpleName());
+        log.debug("deleteAll() in {}", getClass().getSimpleName());
         getSession()
                 .createMutationQuery("DELETE from " + entityClass.getSimpleName())
                 .executeUpdate();
     }
 
+    private static <E> List<E> toList(Iterable<? extends E> iterable) {
+        List<E> list = new ArrayList<>();
+        iterable.forEach(list::add);
+        return list;
+    }
+
+    /**
+     * Есть ли в сессии экземпляр с тем же идентификатором: сама сущность или загруженная ранее копия,
+     * которую вернет merge отсоединенного экземпляра
+     */
+    private static boolean isInSession(Session session, Object entity) {
+        if (session.contains(entity)) return true;
+        SessionImplementor sessionImplementor = session.unwrap(SessionImplementor.class);
+        EntityPersister persister = sessionImplementor.getEntityPersister(null, entity);
+        Object id = persister.getIdentifier(entity, sessionImplementor);
+        return id != null && sessionImplementor.getPersistenceContextInternal()
+                .getEntity(sessionImplementor.generateEntityKey(id, persister)) != null;
+    }
+
+    /**
+     * Размер пакета JDBC: заданный для сессии или общий hibernate.jdbc.batch_size
+     */
+    private static int getJdbcBatchSize(Session session) {
+        Integer batchSize = session.getJdbcBatchSize();
+        if (batchSize == null) {
+            batchSize = session.getSessionFactory().getSessionFactoryOptions().getJdbcBatchSize();
+        }
+        return Math.max(batchSize, 1);
+    }
+
     private void getIdFieldName(Class<T> entityClass) {
         Field[] fields = entityClass.getDeclaredFields();
         for (Field field : fields) {
@@ -132,6 +184,6 @@ public abstract class AbstractCrudRepositoryImpl<T, ID extends Serializable> imp
                 break;
             }
         }
-        log.info("Cached id property name for {}: {}", entityClass.getSimpleName(), idAttributeName);
+        log.debug("Cached id property name for {}: {}", entityClass.getSimpleName(), idAttributeName);
     }
 }
@@ -7,6 +7,14 @@ public interface CrudRepository<T, ID> {
 
     <S extends T> S save(S entity);
 
+    /**
+     * Сохраняет сущности пакетами JDBC. После каждого полного пакета (hibernate.jdbc.batch_size)
+     * выполняется flush, и сохраненные в нем сущности отсоединяются от сессии, поэтому возвращенные
+     * сущности могут быть отсоединенными: их дальнейшие изменения не сохранятся без повторного save.
+     * Сущности, которые уже были в сессии до вызова, и загруженные ранее в этой сессии экземпляры
+     * (в том числе те, в которые merge переносит отсоединенную копию с тем же идентификатором)
+     * остаются управляемыми
+     */
     <S extends T> Iterable<S> saveAll(Iterable<S> entities);
 
     Optional<T> findById(ID id);
@@ -15,6 +23,9 @@ public interface CrudRepository<T, ID> {
 
     List<T> findAll();
 
+    /**
+     * Находит сущности одним запросом where id in (:ids). Порядок результата не совпадает с порядком ids
+     */
     List<T> findAllById(Iterable<ID> ids);
 
     long count();
@@ -23,6 +34,10 @@ public interface CrudRepository<T, ID> {
 
     void delete(T entity);
 
+    /**
+     * Удаляет сущности одним запросом delete ... where id in (:ids), минуя контекст сессии:
+     * каскады выполняет база (on delete cascade), уже загруженные экземпляры в сессии не отсоединяются
+     */
     void deleteAllById(Iterable<? extends ID> ids);
 
     void deleteAll(Iterable<? extends T> entities);
@@ -1,5 +1,6 @@
 package org.banana.security.config;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.banana.security.dto.UserPrincipal;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -19,6 +21,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
 @Slf4j
 @Component
@@ -29,6 +32,7 @@ public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(
@@ -36,21 +40,29 @@ public class JwtFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String token = resolveToken(request);
-            if (token != null) {
-                String username = jwtService.extractUsername(token);
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    if (jwtService.validateToken(token, userDetails)) {
+            if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // подпись и срок действия проверяются один раз при разборе токена
+                Claims claims = jwtService.parseClaims(token);
+                UUID userId = UUID.fromString(claims.getSubject());
+                UserPrincipal userPrincipal = principalCache.get(userId);
 
-                        if (userDetails instanceof UserPrincipal userPrincipal)
-                            userPrincipal.erasePassword();
+                if (userPrincipal == null || !jwtService.validateClaims(claims, userPrincipal)) {
+                    String username = claims.get(JwtService.USERNAME_CLAIM, String.class);
+                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                    userPrincipal = userDetails instanceof UserPrincipal principal && principal.getId().equals(userId)
+                            ? principal : null;
+                    if (userPrincipal != null) {
+                        userPrincipal.erasePassword();
+                        principalCache.put(userPrincipal);
+                    }
+                }
 
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                if (userPrincipal != null && jwtService.validateClaims(claims, userPrincipal)) {
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(userPrincipal, null, userPrincipal.getAuthorities());
 
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                    }
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
             }
         } catch (Exception ex) {
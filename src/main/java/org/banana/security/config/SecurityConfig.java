@@ -1,6 +1,7 @@
 package org.banana.security.config;
 
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.banana.security.exception.CustomAccessDeniedHandler;
 import org.banana.security.exception.CustomAuthenticationEntryPoint;
@@ -35,6 +36,8 @@ public class SecurityConfig {
         return http.csrf(AbstractHttpConfigurer::disable)
                 .formLogin(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(request -> request
+                        // завершение асинхронных ответов (поток сообщений) уже прошло авторизацию в исходном запросе
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**",
@@ -43,8 +46,10 @@ public class SecurityConfig {
                                 "/webjars/**",
                                 "/v3/api-docs",
                                 "/api/v1/auth/login",
-                                "/api/v1/auth/register"
+                                "/api/v1/auth/register",
+                                "/actuator/health"
                         ).permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .exceptionHandling(ex -> ex
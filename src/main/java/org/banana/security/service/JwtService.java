@@ -1,6 +1,7 @@
 package org.banana.security.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -21,20 +22,26 @@ import java.util.function.Function;
 @Service
 public class JwtService {
 
+    public static final String USERNAME_CLAIM = "username";
+    public static final String ROLE_CLAIM = "role";
+    public static final String PHONE_CLAIM = "phone";
+
     public final long validPeriod; // 1 day
-    private final String secretkey;
+    private final SecretKey key;
+    private final JwtParser parser;
 
     public JwtService(@Value("${jwt.secret}") String secretkey, @Value("${jwt.period}") long validPeriod) {
-        this.secretkey = secretkey;
         this.validPeriod = validPeriod;
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretkey));
+        this.parser = Jwts.parser().verifyWith(key).build();
     }
 
     public String generateToken(UUID userId, String username, UserRole role, String phone) {
-        log.info("generateToken({}, {}, {}, {}) in {}", userId, username, role, phone, getClass().getSimpleName());
+        log.debug("generateToken({}, {}, {}, {}) in {}", userId, username, role, phone, getClass().getSimpleName());
         Map<String, Object> claims = new HashMap<>();
-        claims.put("username", username);
-        claims.put("role", role);
-        claims.put("phone", phone);
+        claims.put(USERNAME_CLAIM, username);
+        claims.put(ROLE_CLAIM, role);
+        claims.put(PHONE_CLAIM, phone);
 
         return Jwts.builder()
                 .claims()
@@ -44,13 +51,28 @@ public class JwtService {
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + validPeriod))
                 .and()
-                .signWith(getKey())
+                .signWith(key)
                 .compact();
     }
 
     public boolean validateToken(String token, UserDetails userDetails) {
-        final String userName = extractUsername(token);
-        return (userName.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateClaims(parseClaims(token), userDetails);
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена и возвращает его claims (токен разбирается один раз)
+     *
+     * @param token JWT
+     * @return claims токена
+     * @throws io.jsonwebtoken.JwtException если токен невалиден или истек
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    public boolean validateClaims(Claims claims, UserDetails userDetails) {
+        final String userName = claims.get(USERNAME_CLAIM, String.class);
+        return (userDetails.getUsername().equals(userName) && !claims.getExpiration().before(new Date()));
     }
 
     public String extractJwtId(String token) {
@@ -62,41 +84,19 @@ public class JwtService {
     }
 
     public String extractUsername(String token) {
-        return extractClaim(token, claims -> claims.get("username", String.class));
+        return extractClaim(token, claims -> claims.get(USERNAME_CLAIM, String.class));
     }
 
     public String extractPhone(String token) {
-        return extractClaim(token, claims -> claims.get("phone", String.class));
+        return extractClaim(token, claims -> claims.get(PHONE_CLAIM, String.class));
     }
 
     public String extractRole(String token) {
-        return extractClaim(token, claims -> claims.get("role", String.class));
-    }
-
-    private SecretKey getKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretkey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return extractClaim(token, claims -> claims.get(ROLE_CLAIM, String.class));
     }
 
     private <T> T extractClaim(String token, Function<Claims, T> claimResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseClaims(token);
         return claimResolver.apply(claims);
     }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
 }
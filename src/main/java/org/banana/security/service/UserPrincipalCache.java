@@ -0,0 +1,124 @@
+package org.banana.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.banana.security.dto.UserPrincipal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный кэш аутентифицированных пользователей (без пароля) с временем жизни записей.
+ * Позволяет JwtFilter не обращаться к базе данных на каждый запрос, поэтому чтение не берет блокировок:
+ * записи лежат в ConcurrentHashMap, время последнего обращения пишется в саму запись. При переполнении
+ * удаляются устаревшие записи, а если их не хватило - давно не читавшиеся; вытеснение выполняет один поток.
+ * Записи удаляются явно при изменении или удалении пользователя через {@link #invalidate(UUID)}
+ */
+@Slf4j
+@Component
+public class UserPrincipalCache {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<UUID, Entry> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public UserPrincipalCache(@Value("${jwt.principal-cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.principal-cache.max-size:10000}") int maxSize,
+                              @Value("${jwt.principal-cache.ttl:300000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @param userId идентификатор пользователя
+     * @return копия закэшированного пользователя или null если его нет в кэше, запись устарела или кэш выключен
+     */
+    public UserPrincipal get(UUID userId) {
+        if (!enabled) return null;
+        Entry entry = cache.get(userId);
+        if (entry == null) return null;
+        if (entry.isExpired(System.currentTimeMillis())) {
+            cache.remove(userId, entry);
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return copy(entry.principal);
+    }
+
+    public void put(UserPrincipal principal) {
+        if (!enabled) return;
+        UserPrincipal copy = copy(principal);
+        copy.erasePassword();
+        cache.put(principal.getId(), new Entry(copy, System.currentTimeMillis() + ttlMillis));
+        if (cache.size() > maxSize) evict();
+    }
+
+    /**
+     * Удаляет пользователя из кэша сразу и повторно после коммита текущей транзакции,
+     * чтобы параллельный запрос не закэшировал данные, прочитанные до коммита
+     *
+     * @param userId идентификатор пользователя
+     */
+    public void invalidate(UUID userId) {
+        log.debug("invalidate({}) in {}", userId, getClass().getSimpleName());
+        cache.remove(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.remove(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Сводит размер кэша к max-size. Если вытесняет другой поток, текущий не ждет его: кэш ненадолго
+     * может превысить max-size на число одновременных вставок
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+        try {
+            long now = System.currentTimeMillis();
+            cache.entrySet().removeIf(e -> e.getValue().isExpired(now));
+            while (cache.size() > maxSize) {
+                Map.Entry<UUID, Entry> eldest = null;
+                for (Map.Entry<UUID, Entry> e : cache.entrySet()) {
+                    if (eldest == null || e.getValue().lastAccess - eldest.getValue().lastAccess < 0) eldest = e;
+                }
+                if (eldest == null) break;
+                cache.remove(eldest.getKey(), eldest.getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static UserPrincipal copy(UserPrincipal principal) {
+        return new UserPrincipal(principal.getId(), principal.getFirstName(), principal.getLastName(),
+                principal.getPhone(), principal.getUsername(), principal.getPassword(), principal.getRole());
+    }
+
+    private static final class Entry {
+        private final UserPrincipal principal;
+        private final long expiresAt;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt < now;
+        }
+    }
+}
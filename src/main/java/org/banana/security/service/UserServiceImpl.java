@@ -44,11 +44,12 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
+    private final UserPrincipalCache principalCache;
 
     @Override
     @Transactional
     public String register(UserRegisterRequestDto requestDto) {
-        log.info("register({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("register({}) in {}", requestDto, getClass().getSimpleName());
 
         if (userRepository.existsByUsername(requestDto.getUsername()))
             throw new UserUsernameAlreadyExistsException(requestDto.getUsername());
@@ -67,14 +68,14 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public String verify(UserLoginRequestDto requestDto) {
-        log.info("verify({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("verify({}) in {}", requestDto, getClass().getSimpleName());
         UserPrincipal principal = (UserPrincipal) checkUserCredentialsAndReturnAuthentication(requestDto).getPrincipal();
         return jwtService.generateToken(principal.getId(), principal.getUsername(), principal.getRole(), principal.getPhone());
     }
 
     @Override
     public UserResponseDto getCurrentUser() {
-        log.info("getCurrentUser() in {}", getClass().getSimpleName());
+        log.debug("getCurrentUser() in {}", getClass().getSimpleName());
         UUID id = SecurityUtils.getCurrentUserPrincipal().getId();
 
         return userMapper.userToUserResponseDto(userRepository.findFetchedById(id)
@@ -83,7 +84,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserResponseDto findById(UUID id) {
-        log.info("findById({}) in {}", id, getClass().getSimpleName());
+        log.debug("findById({}) in {}", id, getClass().getSimpleName());
 
         User user = userRepository.findFetchedById(id).orElseThrow(() -> new UserNotFoundException(id));
 
@@ -94,7 +95,7 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public UserResponseDto updateUser(UserUpdateRequestDto userUpdateRequestDto) {
-        log.info("updateUser({}) in {}", userUpdateRequestDto, getClass().getSimpleName());
+        log.debug("updateUser({}) in {}", userUpdateRequestDto, getClass().getSimpleName());
         UserPrincipal userPrincipal = SecurityUtils.getCurrentUserPrincipal();
         String newFirstName = userUpdateRequestDto.getFirstName();
         String newLastName = userUpdateRequestDto.getLastName();
@@ -108,6 +109,7 @@ public class UserServiceImpl implements UserService {
         user.setFirstName(newFirstName);
         user.setLastName(newLastName);
         user = userRepository.save(user);
+        principalCache.invalidate(user.getId());
         log.debug("user updated: {}", user);
         return userMapper.userToUserResponseDto(user);
     }
@@ -115,13 +117,14 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public String updatePassword(UserPasswordUpdateRequestDto requestDto) {
-        log.info("updatePassword() in {}", getClass().getSimpleName());
+        log.debug("updatePassword() in {}", getClass().getSimpleName());
         UserPrincipal user = SecurityUtils.getCurrentUserPrincipal();
 
         checkUserCredentialsAndReturnAuthentication(new UserLoginRequestDto(user.getUsername(), requestDto.getOldPassword()));
 
         String encodedPass = passwordEncoder.encode(requestDto.getNewPassword());
         userRepository.updatePassword(user.getId(), encodedPass);
+        principalCache.invalidate(user.getId());
 
         log.debug("password updated for user {}", user);
         return jwtService.generateToken(user.getId(), user.getUsername(), user.getRole(), user.getPhone());
@@ -130,7 +133,7 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public String updateUsername(UserUsernameUpdateRequestDto requestDto) {
-        log.info("updateUsername({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("updateUsername({}) in {}", requestDto, getClass().getSimpleName());
         UserPrincipal user = SecurityUtils.getCurrentUserPrincipal();
 
         if (user.getUsername().equals(requestDto.getNewUsername()))
@@ -142,6 +145,7 @@ public class UserServiceImpl implements UserService {
             throw new UserUsernameAlreadyExistsException(requestDto.getNewUsername());
 
         userRepository.updateUsername(user.getId(), requestDto.getNewUsername());
+        principalCache.invalidate(user.getId());
 
         log.debug("username updated");
         return jwtService.generateToken(user.getId(), requestDto.getNewUsername(), user.getRole(), user.getPhone());
@@ -150,7 +154,7 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public String updatePhone(UserPhoneUpdateRequestDto requestDto) {
-        log.info("updatePhone({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("updatePhone({}) in {}", requestDto, getClass().getSimpleName());
         UserPrincipal user = SecurityUtils.getCurrentUserPrincipal();
 
         if (user.getPhone().equals(requestDto.getNewPhone()))
@@ -162,6 +166,7 @@ public class UserServiceImpl implements UserService {
             throw new UserPhoneAlreadyExistsException(requestDto.getNewPhone());
 
         userRepository.updatePhone(user.getId(), requestDto.getNewPhone());
+        principalCache.invalidate(user.getId());
 
         log.debug("phone updated");
         return jwtService.generateToken(user.getId(), user.getUsername(), user.getRole(), requestDto.getNewPhone());
@@ -170,7 +175,7 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public void deleteUser(UserLoginRequestDto requestDto) {
-        log.info("deleteUser({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("deleteUser({}) in {}", requestDto, getClass().getSimpleName());
         UserPrincipal currentUser = SecurityUtils.getCurrentUserPrincipal();
 
         if (!currentUser.getUsername().equals(requestDto.getUsername()))
@@ -179,6 +184,7 @@ public class UserServiceImpl implements UserService {
         checkUserCredentialsAndReturnAuthentication(requestDto);
 
         userRepository.deleteById(currentUser.getId());
+        principalCache.invalidate(currentUser.getId());
     }
 
     private Authentication checkUserCredentialsAndReturnAuthentication(UserLoginRequestDto requestDto) {
@@ -1,6 +1,7 @@
 package org.banana.service;
 
 import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.banana.dto.advertisement.AdvertisementPageResponseDto;
 import org.banana.dto.advertisement.AdvertisementRequestDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 
@@ -13,6 +14,8 @@ public interface AdvertisementService {
 
     List<AdvertisementResponseDto> findAllFiltered(AdvertisementFilterDto filter, int page, int size);
 
+    AdvertisementPageResponseDto findAllFilteredByCursor(AdvertisementFilterDto filter, String cursor, int size);
+
     void deleteAdvertisement(UUID advertisementId);
 
     AdvertisementResponseDto addAdvertisement(AdvertisementRequestDto requestDto);
@@ -2,8 +2,11 @@ package org.banana.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.banana.dto.advertisement.AdvertisementCursor;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
 import org.banana.dto.advertisement.AdvertisementMapper;
+import org.banana.dto.advertisement.AdvertisementPageResponseDto;
 import org.banana.dto.advertisement.AdvertisementRequestDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 import org.banana.entity.Advertisement;
@@ -21,6 +24,7 @@ import org.banana.repository.CityRepository;
 import org.banana.repository.UserRepository;
 import org.banana.security.UserRole;
 import org.banana.security.dto.UserPrincipal;
+import org.banana.util.KeysetPages;
 import org.banana.util.SecurityUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -45,30 +49,41 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     private final AdvertisementTypeRepository advertisementTypeRepository;
     private final UserRepository userRepository;
     private final AdvertisementMapper advertisementMapper;
+    private final StockReservationEngine stockReservationEngine;
 
     @Override
     public AdvertisementResponseDto findById(UUID advertisementId) {
-        log.info("findById({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("findById({}) in {}", advertisementId, getClass().getSimpleName());
 
         AdvertisementResponseDto advertisementResponseDto = advertisementRepository.findDtoById(advertisementId).orElseThrow(
                 () -> new AdvertisementNotFoundException(advertisementId));
-        log.info("advertisement found: {}", advertisementResponseDto);
+        log.debug("advertisement found: {}", advertisementResponseDto);
         return advertisementResponseDto;
     }
 
     @Override
     public List<AdvertisementResponseDto> findAllFiltered(AdvertisementFilterDto filter, int page, int size) {
-        log.info("findAllFiltered({}) in {}", filter, getClass().getSimpleName());
+        log.debug("findAllFiltered({}) in {}", filter, getClass().getSimpleName());
         List<AdvertisementResponseDto> allFiltered = advertisementRepository.findAllFiltered(filter, page, size);
-        log.info("advertisements found quantity: {}", allFiltered.size());
+        log.debug("advertisements found quantity: {}", allFiltered.size());
         return allFiltered;
     }
 
+    @Override
+    public AdvertisementPageResponseDto findAllFilteredByCursor(AdvertisementFilterDto filter, String cursor, int size) {
+        log.debug("findAllFilteredByCursor({}, {}) in {}", filter, cursor, getClass().getSimpleName());
+        AdvertisementCursor after = StringUtils.isBlank(cursor) ? null : AdvertisementCursor.decode(cursor);
+        // запрашиваем на одно объявление больше, чтобы узнать есть ли следующая страница
+        List<AdvertisementResponseDto> found = advertisementRepository.findAllFilteredAfter(filter, after, size + 1);
+        return KeysetPages.toPage(found, size,
+                advertisement -> AdvertisementCursor.of(advertisement).encode(), AdvertisementPageResponseDto::new);
+    }
+
 
     @Override
     @Transactional
     public void deleteAdvertisement(UUID advertisementId) {
-        log.info("deleteAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("deleteAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
 
         Advertisement advertisement = advertisementRepository.findById(advertisementId)
                 .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
@@ -81,13 +96,13 @@ public class AdvertisementServiceImpl implements AdvertisementService {
             throw new AdvertisementUpdateException(NOT_OWNER);
 
         advertisementRepository.delete(advertisement);
-        log.info("advertisement deleted: {}", advertisement);
+        log.debug("advertisement deleted: {}", advertisement);
     }
 
     @Override
     @Transactional
     public AdvertisementResponseDto addAdvertisement(AdvertisementRequestDto requestDto) {
-        log.info("addAdvertisement({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("addAdvertisement({}) in {}", requestDto, getClass().getSimpleName());
 
         AdvertisementType advertisementType = advertisementTypeRepository.findById(requestDto.getAdvertisementTypeId())
                 .orElseThrow(() -> new AdvertisementTypeNotFoundException(requestDto.getAdvertisementTypeId()));
@@ -108,14 +123,18 @@ public class AdvertisementServiceImpl implements AdvertisementService {
 
         advertisement = advertisementRepository.save(advertisement);
 
-        log.info("advertisement created: {}", advertisement);
+        log.debug("advertisement created: {}", advertisement);
         return advertisementMapper.advertisementToAdvertisementResponseDto(advertisement);
     }
 
     @Override
     @Transactional
     public AdvertisementResponseDto updateAdvertisement(UUID advertisementId, AdvertisementRequestDto requestDto) {
-        log.info("updateAdvertisement({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("updateAdvertisement({}) in {}", requestDto, getClass().getSimpleName());
+
+        // пул резервирования возвращается в остаток до чтения объявления: новое количество заменяет весь остаток,
+        // а не ложится поверх единиц пула
+        stockReservationEngine.suspend(advertisementId);
 
         Advertisement advertisement = advertisementRepository.findById(advertisementId)
                 .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
@@ -146,14 +165,17 @@ public class AdvertisementServiceImpl implements AdvertisementService {
 
         advertisement = advertisementRepository.save(advertisement);
 
-        log.info("advertisement updated: {}", advertisement);
+        log.debug("advertisement updated: {}", advertisement);
         return advertisementMapper.advertisementToAdvertisementResponseDto(advertisement);
     }
 
     @Override
     @Transactional
     public AdvertisementResponseDto closeAdvertisement(UUID advertisementId) {
-        log.info("closeAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("closeAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
+
+        // закрытое объявление не продает из пула, непроданные единицы пула возвращаются в остаток до чтения объявления
+        stockReservationEngine.suspend(advertisementId);
 
         Advertisement advertisement = advertisementRepository.findFetchedById(advertisementId)
                 .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
@@ -170,14 +192,14 @@ public class AdvertisementServiceImpl implements AdvertisementService {
         advertisement.setCloseDate(LocalDateTime.now());
         advertisement = advertisementRepository.save(advertisement);
 
-        log.info("advertisement closed: {}", advertisement);
+        log.debug("advertisement closed: {}", advertisement);
         return advertisementMapper.advertisementToAdvertisementResponseDto(advertisement);
     }
 
     @Override
     @Transactional
     public AdvertisementResponseDto reopenAdvertisement(UUID advertisementId) {
-        log.info("reopenAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("reopenAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
 
         Advertisement advertisement = advertisementRepository.findFetchedById(advertisementId)
                 .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
@@ -194,14 +216,14 @@ public class AdvertisementServiceImpl implements AdvertisementService {
         advertisement.setCloseDate(null);
         advertisement = advertisementRepository.save(advertisement);
 
-        log.info("advertisement reopened: {}", advertisement);
+        log.debug("advertisement reopened: {}", advertisement);
         return advertisementMapper.advertisementToAdvertisementResponseDto(advertisement);
     }
 
     @Override
     @Transactional
     public AdvertisementResponseDto promoteAdvertisement(UUID advertisementId) {
-        log.info("promoteAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("promoteAdvertisement({}) in {}", advertisementId, getClass().getSimpleName());
 
         Advertisement advertisement = advertisementRepository.findFetchedById(advertisementId)
                 .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
@@ -220,7 +242,7 @@ public class AdvertisementServiceImpl implements AdvertisementService {
         advertisement.setIsPromoted(true);
         advertisement = advertisementRepository.save(advertisement);
 
-        log.info("advertisement promoted: {}", advertisement);
+        log.debug("advertisement promoted: {}", advertisement);
         return advertisementMapper.advertisementToAdvertisementResponseDto(advertisement);
     }
 }
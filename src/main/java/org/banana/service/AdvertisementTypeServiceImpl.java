@@ -22,30 +22,30 @@ public class AdvertisementTypeServiceImpl implements AdvertisementTypeService {
 
     @Override
     public List<AdvertisementTypeDto> findAll() {
-        log.info("findAll() in {}", getClass().getSimpleName());
+        log.debug("findAll() in {}", getClass().getSimpleName());
         List<AdvertisementTypeDto> allDto = advertisementTypeRepository.findAllDto();
-        log.info("advertisement types found quantity: {}", allDto.size());
+        log.debug("advertisement types found quantity: {}", allDto.size());
         return allDto;
     }
 
     @Override
     public List<AdvertisementTypeDto> findByNameLike(String pattern) {
-        log.info("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
+        log.debug("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
         List<AdvertisementTypeDto> advertisementTypeDtoList = advertisementTypeRepository.findByNameLike(pattern);
-        log.info("advertisement types found by name quantity: {}", advertisementTypeDtoList.size());
+        log.debug("advertisement types found by name quantity: {}", advertisementTypeDtoList.size());
         return advertisementTypeDtoList;
     }
 
     @Override
     @Transactional
     public AdvertisementTypeDto addAdvertisementType(String name) {
-        log.info("addAdvertisementType({}) in {}", name, getClass().getSimpleName());
+        log.debug("addAdvertisementType({}) in {}", name, getClass().getSimpleName());
 
         if (advertisementTypeRepository.existsByName(name))
             throw new AdvertisementTypeAlreadyExistsException(name);
 
         AdvertisementType advertisementType = advertisementTypeRepository.save(new AdvertisementType(name));
-        log.info("AdvertisementType {} saved", advertisementType);
+        log.debug("AdvertisementType {} saved", advertisementType);
         return advertisementTypeMapper
                 .advertisementTypeToAdvertisementTypeDto(advertisementType);
     }
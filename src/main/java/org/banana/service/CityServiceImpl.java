@@ -22,30 +22,30 @@ public class CityServiceImpl implements CityService {
 
     @Override
     public List<CityDto> findAll() {
-        log.info("findAll() in {}", getClass().getSimpleName());
+        log.debug("findAll() in {}", getClass().getSimpleName());
         List<CityDto> allDto = cityRepository.findAllDto();
-        log.info("cities found quantity: {}", allDto.size());
+        log.debug("cities found quantity: {}", allDto.size());
         return allDto;
     }
 
     @Override
     public List<CityDto> findByNameLike(String pattern) {
-        log.info("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
+        log.debug("findByNameLike({}) in {}", pattern, getClass().getSimpleName());
         List<CityDto> byNameLike = cityRepository.findByNameLike(pattern);
-        log.info("cities found by name quantity: {}", byNameLike.size());
+        log.debug("cities found by name quantity: {}", byNameLike.size());
         return byNameLike;
     }
 
     @Override
     @Transactional
     public CityDto addCity(String name) {
-        log.info("addCity({}) in {}", name, getClass().getSimpleName());
+        log.debug("addCity({}) in {}", name, getClass().getSimpleName());
 
         if (cityRepository.existsByName(name))
             throw new CityAlreadyExistsException(name);
 
         City city = cityRepository.save(new City(name));
-        log.info("city saved: {}", city);
+        log.debug("city saved: {}", city);
         return cityMapper.cityToCityDto(city);
     }
 }
@@ -42,7 +42,7 @@ public class CommentServiceImpl implements CommentService {
     @Override
     @Transactional
     public CommentResponseDto addComment(CommentRequestDto requestDto) {
-        log.info("addComment({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("addComment({}) in {}", requestDto, getClass().getSimpleName());
         UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
         UUID parentCommentId = requestDto.getParentCommentId();
         UUID advertisementId = requestDto.getAdvertisementId();
@@ -77,7 +77,7 @@ public class CommentServiceImpl implements CommentService {
 
         comment = commentRepository.save(comment);
 
-        log.info("comment added: {}", comment);
+        log.debug("comment added: {}", comment);
         return commentMapper.fromCommentToCommentResponseDto(comment);
     }
 
@@ -88,7 +88,7 @@ public class CommentServiceImpl implements CommentService {
     @Override
     @Transactional
     public void deleteComment(UUID commentId) {
-        log.info("deleteComment({}) in {}", commentId, getClass().getSimpleName());
+        log.debug("deleteComment({}) in {}", commentId, getClass().getSimpleName());
         UserPrincipal currentUser = SecurityUtils.getCurrentUserPrincipal();
 
         Comment comment = commentRepository.findById(commentId)
@@ -103,14 +103,14 @@ public class CommentServiceImpl implements CommentService {
         comment.setCommenter(null);
         comment.setCommentText("Comment deleted");
 
-        log.info("comment deleted: {}", comment);
+        log.debug("comment deleted: {}", comment);
         commentRepository.save(comment);
     }
 
     @Override
     @Transactional(readOnly = true)
     public CommentResponseDto findCommentById(UUID commentId) {
-        log.info("findCommentById({}) in {}", commentId, getClass().getSimpleName());
+        log.debug("findCommentById({}) in {}", commentId, getClass().getSimpleName());
 
         Comment comment = commentRepository.findFetchedById(commentId)
                 .orElseThrow(() -> new CommentNotFoundException(commentId));
@@ -121,7 +121,7 @@ public class CommentServiceImpl implements CommentService {
     @Override
     @Transactional(readOnly = true)
     public List<CommentResponseDto> findAllByAdvertisementId(UUID advertisementId, int page, int size) {
-        log.info("findAllByAdvertisementId({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("findAllByAdvertisementId({}) in {}", advertisementId, getClass().getSimpleName());
 
         if (!advertisementRepository.existsById(advertisementId))
             throw new AdvertisementNotFoundException(advertisementId);
@@ -138,7 +138,7 @@ public class CommentServiceImpl implements CommentService {
         allComments.addAll(allRootComments);
         allComments.addAll(allCommentsInRootIds);
 
-        log.info("all comments: {}", allComments);
+        log.debug("all comments: {}", allComments);
         return allComments;
     }
 }
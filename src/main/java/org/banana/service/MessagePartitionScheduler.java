@@ -0,0 +1,79 @@
+package org.banana.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.banana.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Обслуживание месячных секций message (V1.13). При старте и раз в сутки создает секции на
+ * message.partition.months-ahead месяцев вперед, чтобы новые сообщения не попадали в секцию по умолчанию.
+ * Если включен message.archive.enabled, секции старше message.archive.after-months месяцев
+ * переносятся в message_archive и удаляются: история чата в API начинается с первого неархивного месяца.
+ * <p>
+ * Каждый шаг идет в своей короткой транзакции (V1.21): создание секций, отсоединение каждой архивной секции
+ * (access exclusive на message держится только на время detach) и перенос уже отсоединенной секции в архив.
+ * Секция, которую не удалось отсоединить за message.archive.detach-lock-timeout, архивируется следующим запуском
+ */
+@Slf4j
+@Component
+public class MessagePartitionScheduler {
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final boolean archiveEnabled;
+    private final int archiveAfterMonths;
+    private final int detachLockTimeoutMillis;
+
+    public MessagePartitionScheduler(MessageRepository messageRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${message.partition.months-ahead:3}") int monthsAhead,
+                                     @Value("${message.archive.enabled:false}") boolean archiveEnabled,
+                                     @Value("${message.archive.after-months:12}") int archiveAfterMonths,
+                                     @Value("${message.archive.detach-lock-timeout:2000}") int detachLockTimeoutMillis) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.archiveEnabled = archiveEnabled;
+        this.archiveAfterMonths = archiveAfterMonths;
+        this.detachLockTimeoutMillis = detachLockTimeoutMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${message.partition.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        LocalDate today = LocalDate.now();
+        int created = transactionTemplate.execute(
+                status -> messageRepository.createPartitions(today, today.plusMonths(monthsAhead)));
+        log.info("message partitions created: {}", created);
+
+        if (archiveEnabled) {
+            int archived = archivePartitionsBefore(today.minusMonths(archiveAfterMonths));
+            log.info("messages moved to archive: {}", archived);
+        }
+    }
+
+    private int archivePartitionsBefore(LocalDate before) {
+        List<String> partitions = transactionTemplate.execute(status -> messageRepository.findPartitionsToArchive(before));
+        int archived = 0;
+        for (String partition : partitions) {
+            try {
+                transactionTemplate.execute(status -> messageRepository.detachPartition(partition, detachLockTimeoutMillis));
+                archived += transactionTemplate.execute(status -> messageRepository.archiveDetachedPartition(partition));
+            } catch (RuntimeException e) {
+                log.error("message partition {} was not archived, it will be retried on the next run: {}",
+                        partition, e.getMessage());
+            }
+        }
+        return archived;
+    }
+}
@@ -1,5 +1,10 @@
 package org.banana.service;
 
+import org.banana.dto.conversation.ConversationPageResponseDto;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.dto.message.MessageBatchSendRequestDto;
+import org.banana.dto.message.MessageChatResponseDto;
+import org.banana.dto.message.MessageChatsRequestDto;
 import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageMarkReadRequestDto;
 import org.banana.dto.message.MessageResponseDto;
@@ -12,7 +17,15 @@ public interface MessageService {
 
     MessageResponseDto addMessage(MessageSendRequestDto requestDto);
 
+    List<MessageResponseDto> addMessages(MessageBatchSendRequestDto requestDto);
+
     void markReadUpTo(MessageMarkReadRequestDto dto);
 
     List<MessageResponseDto> getListOfMessages(MessageFilterDto filter);
+
+    List<MessageChatResponseDto> getLatestMessages(MessageChatsRequestDto requestDto);
+
+    ConversationPageResponseDto getConversations(String cursor, int size);
+
+    UnreadCountResponseDto getUnreadCount();
 }
@@ -2,27 +2,55 @@ package org.banana.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.conversation.ConversationPageResponseDto;
+import org.banana.dto.conversation.ConversationResponseDto;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.dto.message.MessageBatchSendRequestDto;
+import org.banana.dto.message.MessageChatRequestDto;
+import org.banana.dto.message.MessageChatResponseDto;
+import org.banana.dto.message.MessageChatsRequestDto;
 import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageMapper;
 import org.banana.dto.message.MessageMarkReadRequestDto;
+import org.banana.dto.message.MessageReadReceiptDto;
 import org.banana.dto.message.MessageResponseDto;
 import org.banana.dto.message.MessageSendRequestDto;
 import org.banana.entity.Advertisement;
+import org.banana.entity.Conversation;
 import org.banana.entity.Message;
+import org.banana.event.MessageSentEvent;
+import org.banana.event.MessagesReadEvent;
 import org.banana.exception.AdvertisementNotFoundException;
 import org.banana.exception.ConversationNotFoundException;
 import org.banana.exception.MessageSendException;
 import org.banana.exception.UserNotFoundException;
 import org.banana.repository.AdvertisementRepository;
+import org.banana.repository.ConversationRepository;
 import org.banana.repository.MessageRepository;
 import org.banana.repository.UserRepository;
+import org.banana.util.ConversationKey;
+import org.banana.util.KeysetPages;
 import org.banana.util.SecurityUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BinaryOperator;
 
 import static org.banana.exception.MessageSendException.MessageSendExceptionMessage.OWNER_OF_THE_ADVERTISEMENT_CANT_MESSAGE_FIRST;
 import static org.banana.exception.MessageSendException.MessageSendExceptionMessage.RECIPIENT_IS_NOT_OWNER_OF_THE_ADVERTISEMENT;
@@ -34,15 +62,21 @@ import static org.banana.exception.MessageSendException.MessageSendExceptionMess
 @RequiredArgsConstructor
 public class MessageServiceImpl implements MessageService {
 
+    // порядок сообщений в переписке: uuid в PostgreSQL сравниваются побайтово, как их строковые представления
+    private static final Comparator<Message> MESSAGE_ORDER = Comparator.comparing(Message::getMessageDateTime)
+            .thenComparing(message -> message.getId().toString());
+
     private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
     private final AdvertisementRepository advertisementRepository;
     private final UserRepository userRepository;
     private final MessageMapper messageMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
     public MessageResponseDto addMessage(MessageSendRequestDto requestDto) {
-        log.info("addMessage({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("addMessage({}) in {}", requestDto, getClass().getSimpleName());
         UUID senderId = SecurityUtils.getCurrentUserPrincipal().getId();
         UUID recipientId = requestDto.getRecipientId();
         UUID advertisementId = requestDto.getAdvertisementId();
@@ -50,9 +84,6 @@ public class MessageServiceImpl implements MessageService {
         validateRecipient(senderId, recipientId);
         validateAdvertisementRules(senderId, recipientId, advertisementId);
 
-        // Помечаем все непрочитанные текущим пользователем сообщения как прочитанные. Отправил - значит прочитал.
-        messageRepository.markAllMessagesRead(recipientId, senderId, advertisementId);
-
         Message message = new Message(
                 advertisementId,
                 senderId,
@@ -61,15 +92,73 @@ public class MessageServiceImpl implements MessageService {
                 LocalDateTime.now()
         );
         message = messageRepository.save(message);
+        // Отправил - значит прочитал: отметка прочтения отправителя переносится на его сообщение
+        int readCount = conversationRepository.applyMessage(message);
+        if (readCount > 0)
+            eventPublisher.publishEvent(new MessagesReadEvent(recipientId,
+                    new MessageReadReceiptDto(senderId, advertisementId, message.getMessageDateTime(), message.getId())));
+
+        log.debug("message saved: {}", message);
+        MessageResponseDto responseDto = messageMapper.messageToMessageResponseDto(message);
+        // получателю сообщение уйдет через поток событий только после коммита
+        eventPublisher.publishEvent(new MessageSentEvent(responseDto));
+        return responseDto;
+    }
+
+    @Override
+    @Transactional
+    public List<MessageResponseDto> addMessages(MessageBatchSendRequestDto requestDto) {
+        log.debug("addMessages({}) in {}", requestDto.getMessages().size(), getClass().getSimpleName());
+        UUID senderId = SecurityUtils.getCurrentUserPrincipal().getId();
+        List<MessageSendRequestDto> requests = requestDto.getMessages();
+
+        validateAllRecipients(senderId, requests);
+        validateAllAdvertisementRules(senderId, requests);
+
+        // выборки чата упорядочены по времени и message_id, а message_id случаен: чтобы порядок отправки внутри
+        // переписки сохранился, каждое следующее сообщение переписки в пакете получает время на миллисекунду позже
+        // (message_date_time хранится с точностью timestamp(3))
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Map<UUID, Integer> sentInConversation = new HashMap<>();
+        List<Message> messages = new ArrayList<>(requests.size());
+        for (MessageSendRequestDto request : requests) {
+            UUID conversationKey = ConversationKey.of(senderId, request.getRecipientId(), request.getAdvertisementId());
+            int index = sentInConversation.merge(conversationKey, 1, Integer::sum) - 1;
+            messages.add(new Message(
+                    request.getAdvertisementId(),
+                    senderId,
+                    request.getRecipientId(),
+                    request.getMessageText(),
+                    sentAt.plus(index, ChronoUnit.MILLIS)
+            ));
+        }
+        messageRepository.insertAll(messages);
+
+        Map<UUID, Integer> readCounts = conversationRepository.applyMessages(messages);
+        Map<UUID, Message> latestByConversation = new LinkedHashMap<>();
+        for (Message message : messages) {
+            latestByConversation.merge(message.getConversationKey(), message, BinaryOperator.maxBy(MESSAGE_ORDER));
+        }
+        latestByConversation.forEach((conversationKey, latest) -> {
+            if (readCounts.getOrDefault(conversationKey, 0) > 0)
+                eventPublisher.publishEvent(new MessagesReadEvent(latest.getRecipientId(),
+                        new MessageReadReceiptDto(senderId, latest.getAdvertisementId(), latest.getMessageDateTime(), latest.getId())));
+        });
 
-        log.info("message saved: {}", message);
-        return messageMapper.messageToMessageResponseDto(message);
+        List<MessageResponseDto> responses = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            MessageResponseDto responseDto = messageMapper.messageToMessageResponseDto(message);
+            eventPublisher.publishEvent(new MessageSentEvent(responseDto));
+            responses.add(responseDto);
+        }
+        log.debug("messages saved: {}", responses.size());
+        return responses;
     }
 
     @Override
     @Transactional
     public void markReadUpTo(MessageMarkReadRequestDto dto) {
-        log.info("markReadUpTo({}) in {}", dto, getClass().getSimpleName());
+        log.debug("markReadUpTo({}) in {}", dto, getClass().getSimpleName());
 
         UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
         UUID secondUserId = dto.getSecondUserId();
@@ -80,11 +169,30 @@ public class MessageServiceImpl implements MessageService {
         if (advertisementId != null && !advertisementRepository.existsById(advertisementId))
             throw new AdvertisementNotFoundException(advertisementId);
 
-        if (!messageRepository.chatExists(currentUserId, secondUserId, advertisementId))
+        UUID conversationKey = ConversationKey.of(currentUserId, secondUserId, advertisementId);
+        int count = conversationRepository.markReadUpTo(conversationKey, currentUserId, dto.getUpToDateTime(), dto.getUpToMessageId());
+        log.debug("messages marked as read: {}", count);
+        // ноль - либо все уже прочитано, либо переписки нет: различаем их только в этом случае, по первичному ключу
+        if (count == 0 && !conversationRepository.existsById(conversationKey))
             throw new ConversationNotFoundException(secondUserId, advertisementId);
+        if (count > 0)
+            eventPublisher.publishEvent(new MessagesReadEvent(secondUserId,
+                    new MessageReadReceiptDto(currentUserId, advertisementId, dto.getUpToDateTime(), dto.getUpToMessageId())));
+    }
 
-        int count = messageRepository.markMessagesReadUpTo(secondUserId, currentUserId, advertisementId, dto.getUpToDateTime(), dto.getUpToMessageId());
-        log.info("messages marked as read: {}", count);
+    @Override
+    @Transactional(readOnly = true)
+    public ConversationPageResponseDto getConversations(String cursor, int size) {
+        log.debug("getConversations({}, {}) in {}", cursor, size, getClass().getSimpleName());
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+        KeysetCursor after = StringUtils.isBlank(cursor) ? null : KeysetCursor.decode(cursor);
+        // запрашиваем на одну переписку больше, чтобы узнать есть ли следующая страница
+        List<ConversationResponseDto> found = conversationRepository.findAllByUserIdAfter(currentUserId, after, size + 1).stream()
+                .map(conversation -> toConversationResponseDto(conversation, currentUserId))
+                .toList();
+        return KeysetPages.toPage(found, size,
+                conversation -> new KeysetCursor(conversation.getLastMessageDateTime(), conversation.getId()).encode(),
+                ConversationPageResponseDto::new);
     }
 
 
@@ -94,23 +202,75 @@ public class MessageServiceImpl implements MessageService {
     @Override
     @Transactional(readOnly = true)
     public List<MessageResponseDto> getListOfMessages(MessageFilterDto filter) {
-        log.info("getListOfMessages({}) in {}", filter, getClass().getSimpleName());
+        log.debug("getListOfMessages({}) in {}", filter, getClass().getSimpleName());
 
         filter.setCurrentUserId(SecurityUtils.getCurrentUserPrincipal().getId());
 
         validateRecipient(filter.getCurrentUserId(), filter.getSecondUserId());
+        // счетчики читаются из сводки переписки одной строкой, без подсчета по истории сообщений
+        Optional<Conversation> conversation = conversationRepository
+                .findById(ConversationKey.of(filter.getCurrentUserId(), filter.getSecondUserId(), filter.getAdvertisementId()));
+        if (conversation.isEmpty()) {
+            log.debug("conversation not started yet");
+            return List.of();
+        }
         // если не задали курсоры, то предполагаем, что чат еще не смотрели и надо проверить есть ли непрочитанные сообщения
         if (filter.getCursorMessageId() == null && filter.getCursorDateTime() == null) {
-            long unreadMessagesCount = messageRepository
-                    .getUnreadMessagesCount(filter.getSecondUserId(), filter.getCurrentUserId(), filter.getAdvertisementId());
-            filter.setUnreadMessagesCount(unreadMessagesCount);
+            filter.setUnreadMessagesCount((long) conversation.get().getUnreadCount(filter.getCurrentUserId()));
+            filter.setLastReadDateTime(conversation.get().getLastReadDateTime(filter.getCurrentUserId()));
+            filter.setLastReadMessageId(conversation.get().getLastReadMessageId(filter.getCurrentUserId()));
         }
 
         List<MessageResponseDto> allByFilter = messageRepository.findAllByFilter(filter);
-        log.info("messages found quantity: {}", allByFilter.size());
+        log.debug("messages found quantity: {}", allByFilter.size());
         return allByFilter;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<MessageChatResponseDto> getLatestMessages(MessageChatsRequestDto requestDto) {
+        log.debug("getLatestMessages({}) in {}", requestDto, getClass().getSimpleName());
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+
+        // ключ строится от текущего пользователя, поэтому чужие переписки запросить нельзя
+        Map<UUID, MessageChatRequestDto> chats = new LinkedHashMap<>();
+        for (MessageChatRequestDto chat : requestDto.getChats()) {
+            if (currentUserId.equals(chat.getSecondUserId()))
+                throw new MessageSendException(USER_MESSAGES_THE_SAME_USER);
+            chats.putIfAbsent(ConversationKey.of(currentUserId, chat.getSecondUserId(), chat.getAdvertisementId()), chat);
+        }
+
+        Map<UUID, List<MessageResponseDto>> messages = messageRepository
+                .findLatestByConversationKeys(chats.keySet(), requestDto.getLimit());
+        return chats.entrySet().stream()
+                .map(entry -> new MessageChatResponseDto(
+                        entry.getValue().getSecondUserId(),
+                        entry.getValue().getAdvertisementId(),
+                        messages.getOrDefault(entry.getKey(), List.of())))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UnreadCountResponseDto getUnreadCount() {
+        log.debug("getUnreadCount() in {}", getClass().getSimpleName());
+        return conversationRepository.countUnreadByUserId(SecurityUtils.getCurrentUserPrincipal().getId());
+    }
+
+    private ConversationResponseDto toConversationResponseDto(Conversation conversation, UUID currentUserId) {
+        return new ConversationResponseDto(
+                conversation.getId(),
+                conversation.getPeerId(currentUserId),
+                conversation.getAdvertisementId(),
+                conversation.getLastMessageId(),
+                conversation.getLastMessageSenderId(),
+                conversation.getLastMessageText(),
+                conversation.getLastMessageDateTime(),
+                conversation.getUnreadCount(currentUserId),
+                conversation.getMessageCount()
+        );
+    }
+
     private void validateRecipient(UUID senderId, UUID recipientId) {
         if (senderId.equals(recipientId))
             throw new MessageSendException(USER_MESSAGES_THE_SAME_USER);
@@ -134,7 +294,58 @@ public class MessageServiceImpl implements MessageService {
             throw new MessageSendException(RECIPIENT_IS_NOT_OWNER_OF_THE_ADVERTISEMENT);
 
         // если мы — владелец и переписка ещё не начиналась — запрещено писать первым
-        if (isSenderOwner && !messageRepository.chatExists(senderId, recipientId, advertisementId))
+        if (isSenderOwner && !conversationRepository.existsById(ConversationKey.of(senderId, recipientId, advertisementId)))
+            throw new MessageSendException(OWNER_OF_THE_ADVERTISEMENT_CANT_MESSAGE_FIRST);
+    }
+
+    private void validateAllRecipients(UUID senderId, List<MessageSendRequestDto> requests) {
+        Set<UUID> recipientIds = new LinkedHashSet<>();
+        for (MessageSendRequestDto request : requests) {
+            if (senderId.equals(request.getRecipientId()))
+                throw new MessageSendException(USER_MESSAGES_THE_SAME_USER);
+            recipientIds.add(request.getRecipientId());
+        }
+
+        Set<UUID> existingIds = userRepository.findExistingIds(recipientIds);
+        for (UUID recipientId : recipientIds) {
+            if (!existingIds.contains(recipientId))
+                throw new UserNotFoundException(recipientId);
+        }
+    }
+
+    /**
+     * Те же правила, что и в validateAdvertisementRules, но владельцы объявлений и начатые переписки
+     * читаются одним запросом на весь пакет
+     */
+    private void validateAllAdvertisementRules(UUID senderId, List<MessageSendRequestDto> requests) {
+        Set<UUID> advertisementIds = new LinkedHashSet<>();
+        for (MessageSendRequestDto request : requests) {
+            if (request.getAdvertisementId() != null)
+                advertisementIds.add(request.getAdvertisementId());
+        }
+        if (advertisementIds.isEmpty()) return;
+
+        Map<UUID, UUID> ownerIds = advertisementRepository.findOwnerIdsByIds(advertisementIds);
+        Set<UUID> ownerConversationKeys = new HashSet<>();
+        for (MessageSendRequestDto request : requests) {
+            UUID advertisementId = request.getAdvertisementId();
+            if (advertisementId == null) continue;
+
+            UUID ownerId = ownerIds.get(advertisementId);
+            if (ownerId == null)
+                throw new AdvertisementNotFoundException(advertisementId);
+
+            boolean isSenderOwner = senderId.equals(ownerId);
+            boolean isRecipientOwner = request.getRecipientId().equals(ownerId);
+            if (!isRecipientOwner && !isSenderOwner)
+                throw new MessageSendException(RECIPIENT_IS_NOT_OWNER_OF_THE_ADVERTISEMENT);
+
+            if (isSenderOwner)
+                ownerConversationKeys.add(ConversationKey.of(senderId, request.getRecipientId(), advertisementId));
+        }
+
+        if (!ownerConversationKeys.isEmpty()
+            && !conversationRepository.findExistingIds(ownerConversationKeys).containsAll(ownerConversationKeys))
             throw new MessageSendException(OWNER_OF_THE_ADVERTISEMENT_CANT_MESSAGE_FIRST);
     }
 }
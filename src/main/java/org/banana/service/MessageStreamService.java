@@ -0,0 +1,17 @@
+package org.banana.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Доставка сообщений и уведомлений о прочтении подключенным пользователям через Server-Sent Events
+ */
+public interface MessageStreamService {
+
+    /**
+     * Подписывает текущего пользователя на поток событий: "message" - новое сообщение (MessageResponseDto),
+     * "read" - собеседник прочитал сообщения (MessageReadReceiptDto)
+     *
+     * @return SseEmitter - открытый поток событий
+     */
+    SseEmitter subscribe();
+}
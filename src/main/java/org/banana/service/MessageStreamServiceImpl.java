@@ -0,0 +1,254 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.message.MessageResponseDto;
+import org.banana.event.MessageSentEvent;
+import org.banana.event.MessagesReadEvent;
+import org.banana.util.SecurityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Брокер в памяти процесса: хранит открытые SSE-подключения по пользователям и рассылает им события
+ * после коммита транзакции, в которой сообщение сохранено или прочитано. Пользователь может держать
+ * несколько подключений (вкладки, устройства), сверх лимита закрывается самое старое.
+ * Периодический heartbeat не дает прокси закрыть простаивающее соединение и вычищает оборванные.
+ * Запись в соединения идет не в потоке запроса или планировщика, а в ограниченном пуле message-stream:
+ * у каждого подключения своя очередь событий и не больше одной задачи записи, поэтому медленный клиент
+ * не задерживает остальных. Подключение, очередь которого переполнена, закрывается
+ */
+@Slf4j
+@Service
+public class MessageStreamServiceImpl implements MessageStreamService {
+
+    static final String MESSAGE_EVENT = "message";
+    static final String READ_EVENT = "read";
+
+    private final Map<UUID, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final Executor sendExecutor;
+    private final long timeoutMillis;
+    private final int maxConnectionsPerUser;
+    private final int connectionQueueCapacity;
+    private final Counter droppedCounter;
+
+    @Autowired
+    public MessageStreamServiceImpl(MeterRegistry meterRegistry,
+                                    @Value("${message.stream.timeout:1800000}") long timeoutMillis,
+                                    @Value("${message.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                    @Value("${message.stream.send-threads:4}") int sendThreads,
+                                    @Value("${message.stream.send-queue-capacity:10000}") int sendQueueCapacity,
+                                    @Value("${message.stream.connection-queue-capacity:32}") int connectionQueueCapacity) {
+        this(meterRegistry, sendExecutor(sendThreads, sendQueueCapacity), timeoutMillis, maxConnectionsPerUser,
+                connectionQueueCapacity);
+    }
+
+    MessageStreamServiceImpl(MeterRegistry meterRegistry, Executor sendExecutor, long timeoutMillis,
+                             int maxConnectionsPerUser, int connectionQueueCapacity) {
+        this.sendExecutor = sendExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.connectionQueueCapacity = connectionQueueCapacity;
+        Gauge.builder("message.stream.connections", this, MessageStreamServiceImpl::connectionCount)
+                .description("Open message stream connections")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("message.stream.dropped")
+                .description("Message stream connections closed because their send queue was full")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sendExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        UUID userId = SecurityUtils.getCurrentUserPrincipal().getId();
+        log.debug("subscribe() in {} for user {}", getClass().getSimpleName(), userId);
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connection connection = new Connection(userId, emitter, connectionQueueCapacity);
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onTimeout(() -> remove(connection));
+        emitter.onError(e -> remove(connection));
+
+        connections.compute(userId, (id, userConnections) -> {
+            Set<Connection> result = userConnections == null ? new CopyOnWriteArraySet<>() : userConnections;
+            while (result.size() >= maxConnectionsPerUser) {
+                // CopyOnWriteArraySet сохраняет порядок добавления: первым идет самое старое подключение
+                Connection oldest = result.iterator().next();
+                result.remove(oldest);
+                oldest.emitter.complete();
+            }
+            result.add(connection);
+            return result;
+        });
+        // первое событие сразу отдает заголовки ответа, клиент понимает, что подписка активна
+        enqueue(connection, () -> SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessageSent(MessageSentEvent event) {
+        MessageResponseDto message = event.getMessage();
+        log.debug("delivering message {} to {}", message.getId(), message.getRecipientId());
+        Supplier<SseEmitter.SseEventBuilder> builder = () -> SseEmitter.event()
+                .name(MESSAGE_EVENT)
+                .id(message.getId().toString())
+                .data(message);
+        sendToUser(message.getRecipientId(), builder);
+        // остальные подключения отправителя (другие вкладки и устройства) тоже видят свое сообщение
+        sendToUser(message.getSenderId(), builder);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onMessagesRead(MessagesReadEvent event) {
+        log.debug("delivering read receipt {} to {}", event.getReceipt(), event.getSenderId());
+        sendToUser(event.getSenderId(), () -> SseEmitter.event()
+                .name(READ_EVENT)
+                .data(event.getReceipt()));
+    }
+
+    @Scheduled(fixedRateString = "${message.stream.heartbeat-interval:25000}")
+    public void heartbeat() {
+        connections.values().forEach(userConnections ->
+                userConnections.forEach(connection -> enqueue(connection, () -> SseEmitter.event().comment("ping"))));
+    }
+
+    int connectionCount() {
+        return connections.values().stream().mapToInt(Set::size).sum();
+    }
+
+    // SseEventBuilder нельзя отправлять повторно, поэтому для каждого подключения строится свое событие
+    private void sendToUser(UUID userId, Supplier<SseEmitter.SseEventBuilder> builder) {
+        Set<Connection> userConnections = connections.get(userId);
+        if (userConnections == null) return;
+        userConnections.forEach(connection -> enqueue(connection, builder));
+    }
+
+    /**
+     * Кладет событие в очередь подключения и, если запись этого подключения еще не идет, отдает ее пулу.
+     * Переполненная очередь или пул означают, что клиент не успевает читать: подключение закрывается,
+     * клиент переподключится и дочитает пропущенное через историю сообщений
+     */
+    private void enqueue(Connection connection, Supplier<SseEmitter.SseEventBuilder> builder) {
+        if (!connection.events.offer(builder.get())) {
+            drop(connection);
+            return;
+        }
+        scheduleDrain(connection);
+    }
+
+    private void scheduleDrain(Connection connection) {
+        if (!connection.draining.compareAndSet(false, true)) return;
+        try {
+            sendExecutor.execute(() -> drain(connection));
+        } catch (RejectedExecutionException e) {
+            connection.draining.set(false);
+            drop(connection);
+        }
+    }
+
+    private void drain(Connection connection) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = connection.events.poll()) != null) {
+                if (!send(connection, event)) {
+                    connection.events.clear();
+                    return;
+                }
+            }
+        } finally {
+            connection.draining.set(false);
+        }
+        // событие могло прийти между последним poll и сбросом флага
+        if (!connection.events.isEmpty()) {
+            scheduleDrain(connection);
+        }
+    }
+
+    private boolean send(Connection connection, SseEmitter.SseEventBuilder event) {
+        try {
+            connection.emitter.send(event);
+            return true;
+        } catch (IOException e) {
+            log.debug("message stream of user {} is broken: {}", connection.userId, e.getMessage());
+            remove(connection);
+            connection.emitter.completeWithError(e);
+        } catch (IllegalStateException e) {
+            // подключение уже завершено (таймаут или закрыто клиентом)
+            remove(connection);
+        }
+        return false;
+    }
+
+    private void drop(Connection connection) {
+        log.debug("message stream of user {} is too slow, closing it", connection.userId);
+        droppedCounter.increment();
+        remove(connection);
+        connection.events.clear();
+        connection.emitter.complete();
+    }
+
+    private void remove(Connection connection) {
+        connections.computeIfPresent(connection.userId, (id, userConnections) -> {
+            userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+    }
+
+    private static ExecutorService sendExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "message-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Открытое подключение пользователя с очередью еще не записанных событий
+     */
+    private static final class Connection {
+
+        private final UUID userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> events;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Connection(UUID userId, SseEmitter emitter, int queueCapacity) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.events = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+}
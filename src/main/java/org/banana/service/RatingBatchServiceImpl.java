@@ -0,0 +1,48 @@
+package org.banana.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.rating.RatingDto;
+import org.banana.exception.UserRatesTheSameUserException;
+import org.banana.util.SecurityUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Прием оценок через {@link RatingBatchWriter}: запрос не занимает соединение с базой данных,
+ * оценка записывается фоновым потоком. Оценки несуществующим пользователям при записи пропускаются
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rating.batch.enabled", havingValue = "true")
+public class RatingBatchServiceImpl implements RatingService {
+
+    private static final String RATE_ACCEPTED_MESSAGE = "User rating will be updated shortly.";
+    private final RatingBatchWriter ratingBatchWriter;
+
+    @Override
+    public String addRating(RatingDto dto) {
+        log.debug("addRating({}) in {}", dto, getClass().getSimpleName());
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+        UUID ratedUser = dto.getRatedUserId();
+
+        if (currentUserId.equals(ratedUser)) throw new UserRatesTheSameUserException();
+
+        ratingBatchWriter.submitRating(ratedUser, currentUserId, dto.getRatingValue());
+        return RATE_ACCEPTED_MESSAGE;
+    }
+
+    @Override
+    public String deleteRating(UUID ratedUserId) {
+        log.debug("deleteRating({}) in {}", ratedUserId, getClass().getSimpleName());
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+
+        if (currentUserId.equals(ratedUserId)) throw new UserRatesTheSameUserException();
+
+        ratingBatchWriter.submitDelete(ratedUserId, currentUserId);
+        return RATE_ACCEPTED_MESSAGE;
+    }
+}
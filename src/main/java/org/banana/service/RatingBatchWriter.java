@@ -0,0 +1,219 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.entity.rating.Rating;
+import org.banana.entity.rating.RatingId;
+import org.banana.exception.RatingQueueFullException;
+import org.banana.repository.RatingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенная пакетная запись оценок. Оценки и их удаление попадают в ограниченную очередь,
+ * фоновый поток забирает их пачками и записывает одним upsert и одним delete в одной транзакции.
+ * Команды для одной пары (user_id, rater_id) внутри пачки схлопываются, побеждает последняя.
+ * Если очередь заполнена дольше offer-timeout, запрос отклоняется ({@link RatingQueueFullException}).
+ * При остановке приложения очередь дописывается до конца
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rating.batch.enabled", havingValue = "true")
+public class RatingBatchWriter {
+
+    private final RatingRepository ratingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<RatingCommand> queue;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final long flushIntervalMillis;
+    private final long shutdownTimeoutMillis;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+    private Thread worker;
+
+    public RatingBatchWriter(RatingRepository ratingRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${rating.batch.queue-capacity:10000}") int queueCapacity,
+                             @Value("${rating.batch.batch-size:500}") int batchSize,
+                             @Value("${rating.batch.offer-timeout:100}") long offerTimeoutMillis,
+                             @Value("${rating.batch.flush-interval:200}") long flushIntervalMillis,
+                             @Value("${rating.batch.shutdown-timeout:10000}") long shutdownTimeoutMillis) {
+        this.ratingRepository = ratingRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        Gauge.builder("rating.batch.queue.size", queue, BlockingQueue::size)
+                .description("Ratings waiting to be written")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("rating.batch.write")
+                .description("Time to write one batch of ratings")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("rating.batch.size")
+                .description("Ratings per written batch after deduplication")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("rating.batch.rejected")
+                .description("Ratings rejected because the queue was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("rating.batch.failed")
+                .description("Ratings dropped because they could not be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "rating-batch-writer");
+        worker.start();
+        log.info("rating batch writer started");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        log.info("stopping rating batch writer, {} ratings in queue", queue.size());
+        accepting = false;
+        running = false;
+        if (worker != null) {
+            worker.join(shutdownTimeoutMillis);
+            if (worker.isAlive()) {
+                log.error("rating batch writer did not stop in {} ms, {} ratings in queue", shutdownTimeoutMillis, queue.size());
+                return;
+            }
+        }
+        flushPending();
+    }
+
+    public void submitRating(UUID userId, UUID raterId, short ratingValue) {
+        submit(new RatingCommand(new RatingId(userId, raterId), ratingValue));
+    }
+
+    public void submitDelete(UUID userId, UUID raterId) {
+        submit(new RatingCommand(new RatingId(userId, raterId), null));
+    }
+
+    /**
+     * Записывает все накопленные в очереди оценки в текущем потоке
+     */
+    void flushPending() {
+        List<RatingCommand> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void submit(RatingCommand command) {
+        boolean accepted = false;
+        if (accepting) {
+            try {
+                accepted = queue.offer(command, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!accepted) {
+            rejectedCounter.increment();
+            throw new RatingQueueFullException();
+        }
+    }
+
+    private void run() {
+        List<RatingCommand> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                RatingCommand first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("rating batch writer interrupted, {} ratings in queue", queue.size());
+                return;
+            } catch (RuntimeException e) {
+                log.error("unexpected error in rating batch writer", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<RatingCommand> batch) {
+        Map<RatingId, RatingCommand> latest = new LinkedHashMap<>();
+        for (RatingCommand command : batch) {
+            latest.put(command.id, command);
+        }
+        List<Rating> upserts = new ArrayList<>();
+        List<RatingId> deletes = new ArrayList<>();
+        for (RatingCommand command : latest.values()) {
+            if (command.ratingValue == null) deletes.add(command.id);
+            else upserts.add(new Rating(command.id, command.ratingValue));
+        }
+        batchSizeSummary.record(latest.size());
+
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                ratingRepository.upsertAll(upserts);
+                ratingRepository.deleteAllByIds(deletes);
+            }));
+        } catch (RuntimeException e) {
+            log.warn("batch of {} ratings failed, writing one by one: {}", latest.size(), e.getMessage());
+            writeOneByOne(upserts, deletes);
+        }
+    }
+
+    private void writeOneByOne(List<Rating> upserts, List<RatingId> deletes) {
+        for (Rating rating : upserts) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> ratingRepository.upsertAll(List.of(rating)));
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                log.error("rating {} dropped: {}", rating, e.getMessage());
+            }
+        }
+        for (RatingId id : deletes) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> ratingRepository.deleteAllByIds(List.of(id)));
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                log.error("rating delete {} dropped: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class RatingCommand {
+        private final RatingId id;
+        private final Short ratingValue; // null - удаление оценки
+    }
+}
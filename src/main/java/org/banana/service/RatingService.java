@@ -10,6 +10,4 @@ public interface RatingService {
     String addRating(RatingDto dto);
 
     String deleteRating(UUID ratedUserId);
-
-    void updateActualInformationAboutRating();
 }
@@ -0,0 +1,35 @@
+package org.banana.service;
+
+import org.banana.dto.history.SaleHistoryExportFormat;
+import org.banana.exception.SaleHistoryExportLimitExceededException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Потоковая выгрузка продаж по всем объявлениям текущего пользователя
+ */
+public interface SaleHistoryExportService {
+
+    /**
+     * Занимает место выгрузки в потоке запроса, до ответа: выгрузка держит соединение с базой, пока пишется
+     * ответ, поэтому одновременно их идет не больше sale.export.max-concurrent. Место освобождает {@link #exportSales}
+     *
+     * @throws SaleHistoryExportLimitExceededException если все места заняты
+     */
+    void reserveExport();
+
+    /**
+     * Пишет продажи в outputStream по мере чтения из базы, память не зависит от количества продаж.
+     * Продажи идут по объявлениям, внутри объявления по времени. Вызывается после {@link #reserveExport()}
+     * и освобождает занятое им место
+     *
+     * @param format       CSV с заголовком или NDJSON - по SaleHistoryResponseDto на строку
+     * @param from         первый день периода, без ограничения если null
+     * @param to           последний день периода, по сегодня если null
+     * @param outputStream поток ответа, не закрывается
+     * @return количество выгруженных продаж
+     */
+    long exportSales(SaleHistoryExportFormat format, LocalDate from, LocalDate to, OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,125 @@
+package org.banana.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.history.SaleHistoryExportFormat;
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.banana.exception.SaleHistoryExportLimitExceededException;
+import org.banana.repository.SaleHistoryRepository;
+import org.banana.util.SecurityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class SaleHistoryExportServiceImpl implements SaleHistoryExportService {
+
+    private static final String CSV_HEADER = "id,advertisement_id,advertisement_title,buyer_id,sale_date_time,quantity";
+    private final SaleHistoryRepository saleHistoryRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Semaphore exportPermits;
+
+    public SaleHistoryExportServiceImpl(SaleHistoryRepository saleHistoryRepository,
+                                        ObjectMapper objectMapper,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${sale.export.max-concurrent:4}") int maxConcurrentExports,
+                                        @Value("${sale.export.statement-timeout:60}") int statementTimeoutSeconds) {
+        this.saleHistoryRepository = saleHistoryRepository;
+        this.objectMapper = objectMapper;
+        // таймаут транзакции Hibernate ставит запросу выгрузки как statement timeout
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout(statementTimeoutSeconds);
+        this.exportPermits = new Semaphore(maxConcurrentExports);
+    }
+
+    private static String csvField(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void reserveExport() {
+        log.debug("reserveExport() in {}", getClass().getSimpleName());
+        if (!exportPermits.tryAcquire()) {
+            throw new SaleHistoryExportLimitExceededException();
+        }
+    }
+
+    // вызывается из потока асинхронного ответа, поэтому транзакция и курсор живут, пока пишется ответ.
+    // Место выгрузки освобождается, даже если транзакцию не удалось начать
+    @Override
+    public long exportSales(SaleHistoryExportFormat format, LocalDate from, LocalDate to, OutputStream outputStream) throws IOException {
+        log.debug("exportSales({}, {}, {}) in {}", format, from, to, getClass().getSimpleName());
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return writeSales(format, from, to, outputStream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            exportPermits.release();
+        }
+    }
+
+    private long writeSales(SaleHistoryExportFormat format, LocalDate from, LocalDate to, OutputStream outputStream) throws IOException {
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+        LocalDateTime periodStart = from == null ? LocalDate.EPOCH.atStartOfDay() : from.atStartOfDay();
+        LocalDateTime periodEnd = (to == null ? LocalDate.now() : to).plusDays(1).atStartOfDay();
+
+        // поток ответа закрывает контейнер, writer только сбрасывается
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long exported = 0;
+        try (Stream<SaleHistoryResponseDto> sales =
+                     saleHistoryRepository.streamSalesBySellerId(currentUserId, periodStart, periodEnd)) {
+            if (format == SaleHistoryExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            for (Iterator<SaleHistoryResponseDto> iterator = sales.iterator(); iterator.hasNext(); exported++) {
+                SaleHistoryResponseDto sale = iterator.next();
+                writer.write(format == SaleHistoryExportFormat.CSV ? toCsv(sale) : objectMapper.writeValueAsString(sale));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+
+        log.debug("exported sales quantity: {}", exported);
+        return exported;
+    }
+
+    private String toCsv(SaleHistoryResponseDto sale) {
+        return String.join(",",
+                sale.getId().toString(),
+                sale.getAdvertisementId().toString(),
+                csvField(sale.getAdvertisementTitle()),
+                Objects.toString(sale.getBuyerId(), ""),
+                sale.getSaleDateTime().toString(),
+                sale.getQuantity().toString());
+    }
+}
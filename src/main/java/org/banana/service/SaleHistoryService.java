@@ -1,11 +1,16 @@
 package org.banana.service;
 
 import org.banana.dto.history.SaleHistoryAddRequestDto;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
+import org.banana.dto.history.SaleHistoryPageResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
+import org.banana.exception.AdvertisementNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.SaleHistoryAccessDeniedException;
 import org.banana.exception.SaleHistoryNotFoundException;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,5 +30,42 @@ public interface SaleHistoryService {
 
     List<SaleHistoryResponseDto> getSalesByAdvertisementId(UUID advertisementId);
 
+    /**
+     * Страница продаж объявления с пагинацией по курсору, сначала самые свежие
+     *
+     * @param advertisementId идентификатор объявления
+     * @param from            первый день периода, может быть null
+     * @param to              последний день периода, может быть null
+     * @param cursor          курсор следующей страницы, null для первой страницы
+     * @param size            размер страницы
+     * @throws AdvertisementNotFoundException   если объявление не найдено
+     * @throws SaleHistoryAccessDeniedException если пользователь не является владельцем объявления или администратором
+     * @throws InvalidCursorException           если курсор не удалось разобрать
+     */
+    SaleHistoryPageResponseDto getSalesPageByAdvertisementId(UUID advertisementId, LocalDate from, LocalDate to,
+                                                             String cursor, int size);
+
+    /**
+     * Страница покупок текущего пользователя с пагинацией по курсору, сначала самые свежие
+     *
+     * @param from   первый день периода, может быть null
+     * @param to     последний день периода, может быть null
+     * @param cursor курсор следующей страницы, null для первой страницы
+     * @param size   размер страницы
+     * @throws InvalidCursorException если курсор не удалось разобрать
+     */
+    SaleHistoryPageResponseDto getPurchases(LocalDate from, LocalDate to, String cursor, int size);
+
     List<SaleHistoryTotalForAdvertisementsResponseDto> getTotalForSalesInAdvertisements();
+
+    /**
+     * Продажи объявления по дням для графиков
+     *
+     * @param advertisementId идентификатор объявления
+     * @param from            первый день периода, по умолчанию за 29 дней до to
+     * @param to              последний день периода, по умолчанию сегодня
+     * @throws AdvertisementNotFoundException   если объявление не найдено
+     * @throws SaleHistoryAccessDeniedException если пользователь не является владельцем объявления или администратором
+     */
+    List<SaleHistoryDailyTotalResponseDto> getDailyTotals(UUID advertisementId, LocalDate from, LocalDate to);
 }
@@ -2,8 +2,11 @@ package org.banana.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.banana.dto.KeysetCursor;
 import org.banana.dto.history.SaleHistoryAddRequestDto;
-import org.banana.dto.history.SaleHistoryMapper;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
+import org.banana.dto.history.SaleHistoryPageResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
 import org.banana.entity.Advertisement;
@@ -17,12 +20,15 @@ import org.banana.repository.AdvertisementRepository;
 import org.banana.repository.SaleHistoryRepository;
 import org.banana.security.UserRole;
 import org.banana.security.dto.UserPrincipal;
+import org.banana.util.KeysetPages;
 import org.banana.util.SecurityUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 
@@ -31,10 +37,24 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class SaleHistoryServiceImpl implements SaleHistoryService {
 
-    private static final int ATTEMPTS = 5;
+    private static final int DEFAULT_DAILY_PERIOD_DAYS = 30;
     private final SaleHistoryRepository saleHistoryRepository;
     private final AdvertisementRepository advertisementRepository;
-    private final SaleHistoryMapper saleHistoryMapper;
+    private final StockReservationEngine stockReservationEngine;
+
+    private static LocalDateTime startOf(LocalDate day) {
+        return day == null ? null : day.atStartOfDay();
+    }
+
+    private static LocalDateTime endOf(LocalDate day) {
+        return day == null ? null : day.plusDays(1).atStartOfDay();
+    }
+
+    // запрашивается на одну продажу больше, чтобы узнать есть ли следующая страница
+    private static SaleHistoryPageResponseDto toPage(List<SaleHistoryResponseDto> found, int size) {
+        return KeysetPages.toPage(found, size,
+                sale -> new KeysetCursor(sale.getSaleDateTime(), sale.getId()).encode(), SaleHistoryPageResponseDto::new);
+    }
 
     private static void isOwnerOrAdmin(Advertisement advertisement, UserPrincipal current) {
         boolean isOwner = advertisement.getUser().getId().equals(current.getId());
@@ -45,94 +65,67 @@ public class SaleHistoryServiceImpl implements SaleHistoryService {
     @Override
     @Transactional
     public SaleHistoryResponseDto addSale(SaleHistoryAddRequestDto requestDto) {
-        log.info("addSale({}) in {}", requestDto, getClass().getSimpleName());
+        log.debug("addSale({}) in {}", requestDto, getClass().getSimpleName());
         UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+        UUID advertisementId = requestDto.getAdvertisementId();
         Integer requestDtoQuantity = requestDto.getQuantity();
 
-        // используя оптимистичную блокировку пробуем обновить количество объявления
-        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
-            Advertisement advertisement = advertisementRepository.findById(requestDto.getAdvertisementId())
-                    .orElseThrow(() -> new AdvertisementNotFoundException(requestDto.getAdvertisementId()));
-
-            if (advertisement.getCloseDate() != null) {
-                throw new AdvertisementNotFoundException(requestDto.getAdvertisementId());
-            }
-
-            Integer advertisementQuantity = advertisement.getQuantity();
-
-            if (advertisementQuantity < requestDtoQuantity) {
-                throw new SaleHistoryAdvertisementQuantityIsLowerThanExpectedException(advertisementQuantity, requestDtoQuantity);
-            }
-
-            int rowsUpdated = advertisementRepository.updateAdvertisementQuantity(
-                    requestDto.getAdvertisementId(),
-                    advertisementQuantity,
-                    advertisementQuantity - requestDtoQuantity
-            );
-            if (rowsUpdated == 1) {
-                // если получилось обновить - выходим из цикла
-                SaleHistory saleHistory = new SaleHistory(advertisement, currentUserId, requestDtoQuantity, LocalDateTime.now());
-                saleHistory = saleHistoryRepository.save(saleHistory);
-                log.info("saleHistory created: {}", saleHistory);
-                return saleHistoryMapper.fromSaleHistoryToSaleHistoryResponseDto(saleHistory);
-            } else {
-                log.warn("attempt {} failed", attempt);
-                advertisementRepository.detach(advertisement);
-            }
+        // горячие объявления продаются из пула в памяти, остальные (и закрытые) - мимо него
+        Optional<SaleHistoryResponseDto> sale = stockReservationEngine.reserve(advertisementId, currentUserId, requestDtoQuantity);
+        if (sale.isPresent()) {
+            log.debug("saleHistory reserved: {}", sale.get());
+            return sale.get();
         }
-        // не удалось обновить за пять попыток поэтому кидаем исключение
+
+        // списание количества и запись продажи - один запрос, конкурентные покупки упорядочивает блокировка строки
+        sale = saleHistoryRepository.insertWithQuantityDecrement(
+                advertisementId, currentUserId, requestDtoQuantity, LocalDateTime.now());
+        if (sale.isPresent()) {
+            log.debug("saleHistory created: {}", sale.get());
+            return sale.get();
+        }
+
+        // покупка не прошла - читаем объявление только чтобы вернуть причину
+        Advertisement advertisement = advertisementRepository.findById(advertisementId)
+                .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
+        if (advertisement.getCloseDate() != null) {
+            throw new AdvertisementNotFoundException(advertisementId);
+        }
+        Integer advertisementQuantity = advertisement.getQuantity();
+        if (advertisementQuantity < requestDtoQuantity) {
+            throw new SaleHistoryAdvertisementQuantityIsLowerThanExpectedException(advertisementQuantity, requestDtoQuantity);
+        }
+        // количество успели вернуть между запросами
         throw new SaleHistoryUnexpectedException();
     }
 
     @Override
     @Transactional
     public void deleteSale(UUID saleId) {
-        log.info("deleteSale({}) in {}", saleId, getClass().getSimpleName());
+        log.debug("deleteSale({}) in {}", saleId, getClass().getSimpleName());
         UserPrincipal current = SecurityUtils.getCurrentUserPrincipal();
 
         SaleHistory saleHistory = saleHistoryRepository.findById(saleId)
                 .orElseThrow(() -> new SaleHistoryNotFoundException(saleId));
 
-        Integer saleHistoryQuantity = saleHistory.getQuantity();
         Advertisement advertisement = saleHistory.getAdvertisement();
-        UUID advertisementId = advertisement.getId();
 
         isOwnerOrAdmin(advertisement, current);
         if (advertisement.getCloseDate() != null) {
-            throw new AdvertisementNotFoundException(advertisementId);
+            throw new AdvertisementNotFoundException(advertisement.getId());
         }
-        // используя оптимистичную блокировку пробуем обновить количество объявления
-        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
-            if (attempt > 0) {
-                advertisement = advertisementRepository.findById(advertisementId)
-                        .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
-            }
-
-            Integer advertisementQuantity = advertisement.getQuantity();
-
-            int rowsUpdated = advertisementRepository.updateAdvertisementQuantity(
-                    advertisementId,
-                    advertisementQuantity,
-                    advertisementQuantity + saleHistoryQuantity
-            );
-            if (rowsUpdated == 1) {
-                // если получилось обновить - выходим из цикла
-                saleHistoryRepository.delete(saleHistory);
-                log.info("saleHistory deleted: {}", saleHistory);
-                return;
-            } else {
-                log.warn("attempt {} failed", attempt);
-                advertisementRepository.detach(advertisement);
-            }
+
+        // удаление продажи и возврат количества - один запрос, 0 если продажу удалили или объявление закрыли параллельно
+        if (saleHistoryRepository.deleteWithQuantityRestore(saleId) == 0) {
+            throw new SaleHistoryUnexpectedException();
         }
-        // не удалось обновить за пять попыток поэтому кидаем исключение
-        throw new SaleHistoryUnexpectedException();
+        log.debug("saleHistory deleted: {}", saleHistory);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<SaleHistoryResponseDto> getSalesByAdvertisementId(UUID advertisementId) {
-        log.info("getSalesByAdvertisementId({}) in {}", advertisementId, getClass().getSimpleName());
+        log.debug("getSalesByAdvertisementId({}) in {}", advertisementId, getClass().getSimpleName());
         UserPrincipal current = SecurityUtils.getCurrentUserPrincipal();
 
         Advertisement advertisement = advertisementRepository.findById(advertisementId)
@@ -142,16 +135,63 @@ public class SaleHistoryServiceImpl implements SaleHistoryService {
 
         List<SaleHistoryResponseDto> salesByAdvertisementId = saleHistoryRepository.getSalesByAdvertisementId(advertisementId);
 
-        log.info("salesByAdvertisementId quantity: {}", salesByAdvertisementId.size());
+        log.debug("salesByAdvertisementId quantity: {}", salesByAdvertisementId.size());
         return salesByAdvertisementId;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public SaleHistoryPageResponseDto getSalesPageByAdvertisementId(UUID advertisementId, LocalDate from, LocalDate to,
+                                                                    String cursor, int size) {
+        log.debug("getSalesPageByAdvertisementId({}, {}, {}, {}, {}) in {}",
+                advertisementId, from, to, cursor, size, getClass().getSimpleName());
+        UserPrincipal current = SecurityUtils.getCurrentUserPrincipal();
+
+        Advertisement advertisement = advertisementRepository.findById(advertisementId)
+                .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
+
+        isOwnerOrAdmin(advertisement, current);
+
+        KeysetCursor after = StringUtils.isBlank(cursor) ? null : KeysetCursor.decode(cursor);
+        return toPage(saleHistoryRepository.findAllByAdvertisementIdAfter(
+                advertisementId, startOf(from), endOf(to), after, size + 1), size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SaleHistoryPageResponseDto getPurchases(LocalDate from, LocalDate to, String cursor, int size) {
+        log.debug("getPurchases({}, {}, {}, {}) in {}", from, to, cursor, size, getClass().getSimpleName());
+        UUID currentUserId = SecurityUtils.getCurrentUserPrincipal().getId();
+        KeysetCursor after = StringUtils.isBlank(cursor) ? null : KeysetCursor.decode(cursor);
+        return toPage(saleHistoryRepository.findAllByBuyerIdAfter(
+                currentUserId, startOf(from), endOf(to), after, size + 1), size);
+    }
+
     @Override
     public List<SaleHistoryTotalForAdvertisementsResponseDto> getTotalForSalesInAdvertisements() {
-        log.info("getTotalForSalesInAdvertisements() in {}", getClass().getSimpleName());
+        log.debug("getTotalForSalesInAdvertisements() in {}", getClass().getSimpleName());
         List<SaleHistoryTotalForAdvertisementsResponseDto> totalForSalesInAdvertisements
                 = saleHistoryRepository.getTotalForSalesInAdvertisements(SecurityUtils.getCurrentUserPrincipal().getId());
-        log.info("totalForSalesInAdvertisements quantity: {}", totalForSalesInAdvertisements.size());
+        log.debug("totalForSalesInAdvertisements quantity: {}", totalForSalesInAdvertisements.size());
         return totalForSalesInAdvertisements;
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SaleHistoryDailyTotalResponseDto> getDailyTotals(UUID advertisementId, LocalDate from, LocalDate to) {
+        log.debug("getDailyTotals({}, {}, {}) in {}", advertisementId, from, to, getClass().getSimpleName());
+        UserPrincipal current = SecurityUtils.getCurrentUserPrincipal();
+
+        Advertisement advertisement = advertisementRepository.findById(advertisementId)
+                .orElseThrow(() -> new AdvertisementNotFoundException(advertisementId));
+
+        isOwnerOrAdmin(advertisement, current);
+
+        LocalDate periodEnd = to == null ? LocalDate.now() : to;
+        LocalDate periodStart = from == null ? periodEnd.minusDays(DEFAULT_DAILY_PERIOD_DAYS - 1) : from;
+        List<SaleHistoryDailyTotalResponseDto> dailyTotals = saleHistoryRepository.getDailyTotals(advertisementId, periodStart, periodEnd);
+
+        log.debug("dailyTotals quantity: {}", dailyTotals.size());
+        return dailyTotals;
+    }
 }
@@ -0,0 +1,358 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.banana.entity.Advertisement;
+import org.banana.exception.SaleHistoryAdvertisementQuantityIsLowerThanExpectedException;
+import org.banana.repository.AdvertisementRepository;
+import org.banana.repository.StockReservationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Резервирование остатка горячих объявлений в памяти. Для включенного объявления экземпляр забирает из
+ * advertisement.quantity пул из chunk-size единиц (stock_reservation), покупки списывают единицы из пула
+ * compare-and-set на счетчике, а когда остатка нет и в базе, отклоняются сразу в памяти. Проданное пишется одной
+ * строкой в журнал stock_reservation_sale в транзакции покупки, так что подтвержденная покупка уже лежит в базе.
+ * Из журнала в sale_history продажи переносятся фоновыми пакетами раз в flush-interval, в том же запросе пул
+ * уменьшается.
+ * <p>
+ * Пул держится по аренде: экземпляр продлевает ее раз в renew-interval, пулы с истекшей арендой (экземпляр
+ * упал) при старте и при каждом продлении освобождаются: их журнал переносится в sale_history, непроданное
+ * возвращается в остаток объявления. Объявления включаются списком sale.reservation.advertisement-ids
+ * или {@link #enable(UUID)}
+ */
+@Slf4j
+@Component
+public class StockReservationEngine {
+
+    private final StockReservationRepository stockReservationRepository;
+    private final AdvertisementRepository advertisementRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UUID instanceId = UUID.randomUUID();
+    private final Set<UUID> enabledIds = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Pool> pools = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int chunkSize;
+    private final int batchSize;
+    private final long leaseMillis;
+    private final long exhaustedRecheckNanos;
+
+    private final Timer flushTimer;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean accepting;
+
+    public StockReservationEngine(StockReservationRepository stockReservationRepository,
+                                  AdvertisementRepository advertisementRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${sale.reservation.advertisement-ids:}") Set<UUID> advertisementIds,
+                                  @Value("${sale.reservation.chunk-size:100}") int chunkSize,
+                                  @Value("${sale.reservation.batch-size:500}") int batchSize,
+                                  @Value("${sale.reservation.lease:60000}") long leaseMillis,
+                                  @Value("${sale.reservation.exhausted-recheck:1000}") long exhaustedRecheckMillis) {
+        this.stockReservationRepository = stockReservationRepository;
+        this.advertisementRepository = advertisementRepository;
+        // пул и перенос журнала меняются независимо от транзакции покупки: откат покупки возвращает единицы
+        // в счетчик в памяти, а не в базу
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabledIds.addAll(advertisementIds);
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.leaseMillis = leaseMillis;
+        this.exhaustedRecheckNanos = TimeUnit.MILLISECONDS.toNanos(exhaustedRecheckMillis);
+
+        Gauge.builder("sale.reservation.pending", pending, AtomicInteger::get)
+                .description("Reserved sales journaled by this instance and not yet moved to sale_history")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("sale.reservation.flush")
+                .description("Time to move one batch of reserved sales from the journal to sale_history")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("sale.reservation.rejected")
+                .description("Purchases rejected in memory because the stock was exhausted")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("sale.reservation.failed")
+                .description("Failed moves of reserved sales, the sales stay in the journal until the next flush")
+                .register(meterRegistry);
+    }
+
+    // после миграций Flyway; до этого покупки идут мимо пула. Журнал упавших экземпляров переносится
+    // в sale_history вместе с освобождением их пулов
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int released = transactionTemplate.execute(status -> stockReservationRepository.releaseExpired());
+        accepting = true;
+        log.info("stock reservation engine {} started, {} advertisements enabled, expired pools and their journal released for {} advertisements",
+                instanceId, enabledIds.size(), released);
+    }
+
+    @PreDestroy
+    public void stop() {
+        accepting = false;
+        pools.values().forEach(pool -> retire(pool, false));
+        pools.clear();
+        flush();
+        int released = transactionTemplate.execute(status -> stockReservationRepository.releaseAll(instanceId));
+        log.info("stock reservation engine {} stopped, pools released for {} advertisements", instanceId, released);
+    }
+
+    public void enable(UUID advertisementId) {
+        enabledIds.add(advertisementId);
+    }
+
+    /**
+     * Выключает резервирование объявления и возвращает неиспользованный пул в остаток
+     */
+    public void disable(UUID advertisementId) {
+        enabledIds.remove(advertisementId);
+        Pool pool = pools.remove(advertisementId);
+        if (pool != null) retire(pool, true);
+    }
+
+    /**
+     * Выключает резервирование объявления на время текущей транзакции, которая меняет объявление (закрытие,
+     * изменение количества): неиспользованный пул возвращается в остаток до того, как транзакция прочитает
+     * объявление, поэтому сохраненное количество не окажется поверх единиц пула. После завершения транзакции
+     * резервирование включается снова, новый пул заберет единицы уже из сохраненного остатка
+     */
+    public void suspend(UUID advertisementId) {
+        if (!enabledIds.contains(advertisementId)) return;
+        disable(advertisementId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    enable(advertisementId);
+                }
+            });
+        } else {
+            enable(advertisementId);
+        }
+    }
+
+    /**
+     * Продает quantity единиц из пула объявления и пишет продажу в журнал в текущей транзакции. Если транзакция
+     * покупки откатится, единицы вернутся в пул
+     *
+     * @return продажа, уже записанная в журнал, или пустой Optional, если объявление не резервируется, закрыто,
+     * удалено или пул экземпляра освобожден другим экземпляром - тогда покупка идет мимо пула
+     * @throws SaleHistoryAdvertisementQuantityIsLowerThanExpectedException если остатка не хватает
+     */
+    public Optional<SaleHistoryResponseDto> reserve(UUID advertisementId, UUID buyerId, int quantity) {
+        if (!accepting || !enabledIds.contains(advertisementId)) return Optional.empty();
+
+        Pool pool = pools.computeIfAbsent(advertisementId, Pool::new);
+        while (true) {
+            int available = pool.available.get();
+            if (available >= quantity) {
+                if (pool.available.compareAndSet(available, available - quantity)) {
+                    SaleHistoryResponseDto sale = new SaleHistoryResponseDto(
+                            UUID.randomUUID(), pool.title, advertisementId, buyerId, LocalDateTime.now(), quantity);
+                    return journal(pool, sale) ? Optional.of(sale) : Optional.empty();
+                }
+            } else if (pool.isExhausted()) {
+                rejectedCounter.increment();
+                throw new SaleHistoryAdvertisementQuantityIsLowerThanExpectedException(available, quantity);
+            } else if (!refill(pool, quantity)) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Переносит журнал экземпляра в sale_history пакетами по batch-size. Если пакет не перенесся, продажи
+     * остаются в журнале до следующего вызова
+     */
+    @Scheduled(fixedDelayString = "${sale.reservation.flush-interval:200}")
+    public synchronized void flush() {
+        try {
+            int moved;
+            do {
+                moved = flushTimer.record(() -> transactionTemplate.execute(
+                        status -> stockReservationRepository.moveSales(instanceId, batchSize)));
+                pending.addAndGet(-moved);
+            } while (moved == batchSize);
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.error("reserved sales were not moved to sale_history and stay in the journal: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Продлевает аренду пулов открытых объявлений и возвращает в остаток пулы, аренда которых истекла. Пул,
+     * которого уже нет в базе (аренда истекла, пока экземпляр не отвечал) или объявление которого закрыли
+     * на другом экземпляре, перестает продавать, его единицы возвращаются в остаток
+     */
+    @Scheduled(fixedDelayString = "${sale.reservation.renew-interval:10000}",
+            initialDelayString = "${sale.reservation.renew-interval:10000}")
+    public void renewLeases() {
+        Set<UUID> renewed = new HashSet<>(transactionTemplate.execute(
+                status -> stockReservationRepository.renew(instanceId, leaseMillis)));
+        for (Pool pool : pools.values()) {
+            if (pool.available.get() > 0 && !renewed.contains(pool.advertisementId)) {
+                log.warn("stock pool of advertisement {} was released by another instance or the advertisement closed, {} units returned",
+                        pool.advertisementId, pool.available.get());
+                pools.remove(pool.advertisementId, pool);
+                retire(pool, true);
+            }
+        }
+        int released = transactionTemplate.execute(status -> stockReservationRepository.releaseExpired());
+        if (released > 0) log.info("expired stock pools released for {} advertisements", released);
+    }
+
+    /**
+     * Пополняет пул из остатка объявления, пока другие покупки продолжают списывать текущий
+     *
+     * @return false, если объявление закрыто, удалено, пул выведен из работы или освобожден другим экземпляром
+     */
+    private boolean refill(Pool pool, int quantity) {
+        pool.lock.lock();
+        try {
+            // резервирование выключили, пока покупка шла к пулу: пул не пополняется, disable его уже не увидит
+            if (pool.retired || !enabledIds.contains(pool.advertisementId)) return false;
+            int available = pool.available.get();
+            // пул уже пополнил другой поток или остаток кончился, решение примет следующая итерация
+            if (available >= quantity || pool.isExhausted()) return true;
+
+            Integer claimed = transactionTemplate.execute(status -> {
+                if (pool.title == null) {
+                    Optional<Advertisement> advertisement = advertisementRepository.findById(pool.advertisementId);
+                    if (advertisement.isEmpty() || advertisement.get().getCloseDate() != null) return null;
+                    pool.title = advertisement.get().getTitle();
+                }
+                return stockReservationRepository.claim(pool.advertisementId, instanceId,
+                        Math.max(chunkSize, quantity - available), leaseMillis, pool.claimed);
+            });
+            if (claimed == null) {
+                pools.remove(pool.advertisementId, pool);
+                pool.retired = true;
+                return false;
+            }
+            if (claimed < 0) {
+                // пул освободили, а в памяти остались его единицы: новый пул в базе их бы не покрыл
+                log.error("stock pool of advertisement {} was released by another instance, {} units dropped",
+                        pool.advertisementId, available);
+                pools.remove(pool.advertisementId, pool);
+                retire(pool, false);
+                return false;
+            }
+            if (claimed > 0) pool.claimed = true;
+            if (pool.available.addAndGet(claimed) < quantity) {
+                pool.exhaustedUntil = System.nanoTime() + exhaustedRecheckNanos;
+            }
+            return true;
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    /**
+     * Останавливает продажи из пула. Уже проданное перенесет flush, остаток пула возвращается в объявление,
+     * если release, иначе его вернет releaseAll или истечение аренды
+     */
+    private void retire(Pool pool, boolean release) {
+        pool.lock.lock();
+        try {
+            pool.retired = true;
+            int rest = pool.available.getAndSet(0);
+            if (release && rest > 0) {
+                transactionTemplate.executeWithoutResult(
+                        status -> stockReservationRepository.release(pool.advertisementId, instanceId, rest));
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    /**
+     * Пишет продажу из пула в журнал. Единицы возвращаются в пул, если запись не удалась или транзакция
+     * покупки откатилась. Если пула уже нет в базе или объявление закрыто, пул выводится из работы, а его
+     * единицы вместе с единицами этой продажи возвращаются в остаток (освобождение несуществующего пула
+     * ничего не меняет)
+     */
+    private boolean journal(Pool pool, SaleHistoryResponseDto sale) {
+        boolean journaled;
+        try {
+            journaled = stockReservationRepository.journal(sale, instanceId);
+        } catch (RuntimeException e) {
+            giveBack(pool, sale.getQuantity());
+            throw e;
+        }
+        if (!journaled) {
+            log.warn("stock pool of advertisement {} was released by another instance or the advertisement closed, {} units returned",
+                    pool.advertisementId, pool.available.get() + sale.getQuantity());
+            pools.remove(pool.advertisementId, pool);
+            giveBack(pool, sale.getQuantity());
+            retire(pool, true);
+            return false;
+        }
+        pending.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        pending.decrementAndGet();
+                        giveBack(pool, sale.getQuantity());
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    private void giveBack(Pool pool, int quantity) {
+        pool.lock.lock();
+        try {
+            // единицы выведенного пула уже возвращены в объявление освобождением пула в базе
+            if (!pool.retired) pool.available.addAndGet(quantity);
+        } finally {
+            pool.lock.unlock();
+        }
+    }
+
+    private static final class Pool {
+        private final UUID advertisementId;
+        private final AtomicInteger available = new AtomicInteger();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile String title;
+        private volatile boolean claimed;
+        private volatile long exhaustedUntil = System.nanoTime();
+        private volatile boolean retired;
+
+        private Pool(UUID advertisementId) {
+            this.advertisementId = advertisementId;
+        }
+
+        private boolean isExhausted() {
+            return exhaustedUntil - System.nanoTime() > 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.banana.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Ключ переписки для таблицы conversation. Повторяет SQL-функцию conversation_key из миграции V1.8:
+ * md5 от упорядоченной пары пользователей и объявления, прочитанный как uuid.
+ * Порядок пары такой же, как у uuid в PostgreSQL, то есть по текстовому виду, а не UUID.compareTo
+ */
+public final class ConversationKey {
+
+    private ConversationKey() {
+    }
+
+    public static UUID of(UUID userA, UUID userB, UUID advertisementId) {
+        boolean ordered = isFirst(userA, userB);
+        UUID first = ordered ? userA : userB;
+        UUID second = ordered ? userB : userA;
+        String raw = first + ":" + second + ":" + (advertisementId == null ? "" : advertisementId.toString());
+        byte[] digest = md5(raw.getBytes(StandardCharsets.UTF_8));
+        long most = 0;
+        long least = 0;
+        for (int i = 0; i < 8; i++) {
+            most = (most << 8) | (digest[i] & 0xff);
+            least = (least << 8) | (digest[i + 8] & 0xff);
+        }
+        return new UUID(most, least);
+    }
+
+    /**
+     * @return true, если userId в паре с otherUserId хранится в колонке first_user_id
+     */
+    public static boolean isFirst(UUID userId, UUID otherUserId) {
+        return userId.toString().compareTo(otherUserId.toString()) < 0;
+    }
+
+    private static byte[] md5(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
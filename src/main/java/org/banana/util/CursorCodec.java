@@ -0,0 +1,37 @@
+package org.banana.util;
+
+import org.banana.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачная строка курсора keyset-пагинации: значения ключа сортировки через разделитель в base64url.
+ * Строка, которая не раскодируется или содержит другое число значений, - {@link InvalidCursorException}
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "|";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int parts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+        String[] values = raw.split("\\" + SEPARATOR, -1);
+        if (values.length != parts) {
+            throw new InvalidCursorException(cursor);
+        }
+        return values;
+    }
+}
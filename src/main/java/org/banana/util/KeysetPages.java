@@ -0,0 +1,24 @@
+package org.banana.util;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации из выборки, запрошенной на одну строку больше страницы: лишняя строка значит,
+ * что есть следующая страница, и курсор на нее строится по последней строке страницы
+ */
+public final class KeysetPages {
+
+    private KeysetPages() {
+    }
+
+    public static <T, P> P toPage(List<T> found, int size, Function<T, String> cursorOf,
+                                  BiFunction<List<T>, String, P> page) {
+        if (found.size() <= size) {
+            return page.apply(found, null);
+        }
+        List<T> content = found.subList(0, size);
+        return page.apply(content, cursorOf.apply(content.get(size - 1)));
+    }
+}
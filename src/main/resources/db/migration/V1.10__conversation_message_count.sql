@@ -0,0 +1,18 @@
+-- Общее количество сообщений в переписке рядом со счетчиками непрочитанных (V1.8):
+-- открытие чата читает их одной строкой по первичному ключу вместо count по истории сообщений
+alter table conversation add column if not exists message_count bigint not null default 0;
+
+update conversation c
+set message_count = m.message_count
+from (
+    select conversation_key, count(*) as message_count
+    from message
+    group by conversation_key
+) m
+where m.conversation_key = c.conversation_id;
+
+-- счетчик непрочитанных для значка: читаются только переписки, где у пользователя есть непрочитанные
+create index if not exists index_conversation_first_user_unread
+    on conversation (first_user_id) include (first_user_unread_count) where first_user_unread_count > 0;
+create index if not exists index_conversation_second_user_unread
+    on conversation (second_user_id) include (second_user_unread_count) where second_user_unread_count > 0;
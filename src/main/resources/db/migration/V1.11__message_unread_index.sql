@@ -0,0 +1,4 @@
+-- Первое непрочитанное сообщение переписки находится одним обращением к частичному индексу
+-- вместо offset по всей истории чата. В индексе только непрочитанные, поэтому он остается небольшим
+create index if not exists index_message_conversation_key_unread
+    on message (conversation_key, message_date_time, message_id) where is_read = false;
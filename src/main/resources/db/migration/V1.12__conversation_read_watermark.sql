@@ -0,0 +1,35 @@
+-- Отметка прочтения вместо флага is_read в каждом сообщении: у каждого участника переписки хранится
+-- позиция (дата, id) последнего прочитанного сообщения. Сообщение прочитано получателем, если оно не новее
+-- его отметки. Прочтение чата обновляет одну строку conversation вместо всех прочитанных сообщений
+alter table conversation add column if not exists first_user_last_read_date_time timestamp(3);
+alter table conversation add column if not exists first_user_last_read_message_id uuid;
+alter table conversation add column if not exists second_user_last_read_date_time timestamp(3);
+alter table conversation add column if not exists second_user_last_read_message_id uuid;
+
+-- отметка участника - последнее сообщение, которое он отправил сам или прочитал
+with read_position as (
+    select distinct on (r.conversation_key, r.reader_id)
+        r.conversation_key, r.reader_id, r.message_date_time, r.message_id
+    from (
+        select m.conversation_key, m.sender_id as reader_id, m.message_date_time, m.message_id
+        from message m
+        union all
+        select m.conversation_key, m.recipient_id, m.message_date_time, m.message_id
+        from message m
+        where m.is_read
+    ) r
+    order by r.conversation_key, r.reader_id, r.message_date_time desc, r.message_id desc
+)
+update conversation c
+set first_user_last_read_date_time   = coalesce(f.message_date_time, c.first_user_last_read_date_time),
+    first_user_last_read_message_id  = coalesce(f.message_id, c.first_user_last_read_message_id),
+    second_user_last_read_date_time  = coalesce(s.message_date_time, c.second_user_last_read_date_time),
+    second_user_last_read_message_id = coalesce(s.message_id, c.second_user_last_read_message_id)
+from conversation c2
+left join read_position f on f.conversation_key = c2.conversation_id and f.reader_id = c2.first_user_id
+left join read_position s on s.conversation_key = c2.conversation_id and s.reader_id = c2.second_user_id
+where c2.conversation_id = c.conversation_id;
+
+-- вместе с колонкой удаляется и частичный индекс непрочитанных (V1.11): первое непрочитанное
+-- теперь ищется по основному индексу переписки сразу после отметки
+alter table message drop column if exists is_read;
@@ -0,0 +1,121 @@
+-- Секционирование message по месяцам message_date_time: индексы растут и обслуживаются (vacuum, reindex)
+-- посекционно, а холодная история отделяется целой секцией без delete. Первичный ключ секционированной
+-- таблицы обязан включать ключ секционирования, поэтому он становится (message_id, message_date_time);
+-- message_id по-прежнему генерируется как uuid и внешних ссылок на message нет.
+-- Будущие секции создает MessagePartitionScheduler через create_message_partitions
+
+alter table message rename to message_unpartitioned;
+alter index message_pkey rename to message_unpartitioned_pkey;
+alter index index_message_conversation_key_message_date_time rename to index_message_unpartitioned_conversation_key;
+-- выборки по одному времени без ключа переписки заменяет отсечение секций
+drop index if exists index_message_message_date_time;
+
+create table message (
+    message_id uuid not null default gen_random_uuid(),
+    advertisement_id uuid,
+    sender_id uuid not null,
+    recipient_id uuid not null,
+    message_text text not null,
+    message_date_time timestamp(3) not null default now(),
+    conversation_key uuid not null,
+    primary key (message_id, message_date_time),
+    foreign key (sender_id) references "user"(user_id) on delete cascade,
+    foreign key (recipient_id) references "user"(user_id) on delete cascade,
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade,
+    check (sender_id != recipient_id)
+) partition by range (message_date_time);
+
+-- индекс создается в каждой секции, чат читает его диапазон в каждой затронутой секции по порядку месяцев
+create index if not exists index_message_conversation_key_message_date_time
+    on message (conversation_key, message_date_time, message_id);
+
+-- сообщения вне созданных месяцев не теряются, а ждут создания своей секции
+create table if not exists message_default partition of message default;
+
+-- Секция месяца message_yYYYYmMM. Строки этого месяца из message_default переносятся в нее,
+-- иначе присоединение секции упадет на проверке секции по умолчанию
+create or replace function create_message_partition(p_month date) returns integer as $$
+declare
+    v_from date := date_trunc('month', p_month)::date;
+    v_to date := (date_trunc('month', p_month) + interval '1 month')::date;
+    v_name text := 'message_' || to_char(v_from, '"y"YYYY"m"MM');
+begin
+    if to_regclass(v_name) is not null then
+        return 0;
+    end if;
+    execute format('create table %I (like message including defaults including constraints)', v_name);
+    execute format('insert into %I select * from message_default where message_date_time >= %L and message_date_time < %L',
+                   v_name, v_from, v_to);
+    delete from message_default where message_date_time >= v_from and message_date_time < v_to;
+    execute format('alter table message attach partition %I for values from (%L) to (%L)', v_name, v_from, v_to);
+    return 1;
+end
+$$ language plpgsql;
+
+-- Секции всех месяцев с p_from по p_to включительно, возвращает количество созданных
+create or replace function create_message_partitions(p_from date, p_to date) returns integer as $$
+    select coalesce(sum(create_message_partition(m::date)), 0)::integer
+    from generate_series(date_trunc('month', p_from), date_trunc('month', p_to), interval '1 month') m
+$$ language sql;
+
+-- Архив холодной истории: одна строка на переписку и месяц, сообщения месяца лежат одним jsonb,
+-- который TOAST хранит сжатым. Индекса чата у архива нет, он читается только целиком по переписке
+create table if not exists message_archive (
+    conversation_key uuid not null,
+    archive_month date not null,
+    message_count integer not null,
+    messages jsonb not null,
+    primary key (conversation_key, archive_month)
+);
+
+-- Переносит в архив секции месяцев раньше p_before и удаляет их целиком. Возвращает количество
+-- перенесенных сообщений. Секция по умолчанию не архивируется
+create or replace function archive_message_partitions(p_before date) returns integer as $$
+declare
+    v_partition record;
+    v_month date;
+    v_count integer;
+    v_total integer := 0;
+begin
+    for v_partition in
+        select c.relname
+        from pg_inherits i
+        join pg_class c on c.oid = i.inhrelid
+        where i.inhparent = 'message'::regclass
+          and c.relname ~ '^message_y[0-9]{4}m[0-9]{2}$'
+        order by c.relname
+    loop
+        v_month := to_date(substr(v_partition.relname, 10), 'YYYY"m"MM');
+        continue when (v_month + interval '1 month')::date > date_trunc('month', p_before)::date;
+
+        execute format('alter table message detach partition %I', v_partition.relname);
+        execute format($sql$
+            insert into message_archive (conversation_key, archive_month, message_count, messages)
+            select m.conversation_key, %L, count(*),
+                   jsonb_agg(to_jsonb(m) - 'conversation_key' order by m.message_date_time, m.message_id)
+            from %I m
+            group by m.conversation_key
+            on conflict (conversation_key, archive_month) do update
+                set message_count = message_archive.message_count + excluded.message_count,
+                    messages      = message_archive.messages || excluded.messages
+            $sql$, v_month, v_partition.relname);
+        execute format('select count(*) from %I', v_partition.relname) into v_count;
+        execute format('drop table %I', v_partition.relname);
+        v_total := v_total + v_count;
+    end loop;
+    return v_total;
+end
+$$ language plpgsql;
+
+select create_message_partitions(
+    coalesce((select min(message_date_time)::date from message_unpartitioned), current_date),
+    (current_date + interval '3 months')::date);
+
+insert into message (message_id, advertisement_id, sender_id, recipient_id, message_text, message_date_time, conversation_key)
+select message_id, advertisement_id, sender_id, recipient_id, message_text, message_date_time, conversation_key
+from message_unpartitioned;
+
+drop table message_unpartitioned;
+
+comment on table message is 'range-partitioned by month of message_date_time, partitions are created by MessagePartitionScheduler';
+comment on table message_archive is 'archived message partitions, one jsonb array per conversation and month';
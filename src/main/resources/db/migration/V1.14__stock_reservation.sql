@@ -0,0 +1,17 @@
+-- Пулы остатка горячих объявлений, которые StockReservationEngine забрал из advertisement.quantity и раздает
+-- покупателям в памяти. Пока пул существует, его единицы не видны в quantity объявления: остаток объявления
+-- равен quantity плюс сумма reserved_quantity его пулов. Экземпляр приложения продлевает lease_until своих пулов,
+-- пул с истекшей арендой (экземпляр упал или завис) возвращается в quantity любым живым экземпляром
+create table if not exists stock_reservation (
+    advertisement_id uuid not null,
+    instance_id uuid not null,
+    reserved_quantity integer not null check (reserved_quantity >= 0),
+    lease_until timestamp(3) not null,
+    primary key (advertisement_id, instance_id),
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade
+);
+
+-- поиск пулов с истекшей арендой при старте и при каждом продлении
+create index if not exists index_stock_reservation_lease_until on stock_reservation (lease_until);
+
+comment on table stock_reservation is 'advertisement stock handed to an application instance by StockReservationEngine, leased';
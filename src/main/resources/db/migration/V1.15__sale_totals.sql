@@ -0,0 +1,104 @@
+-- Итоги продаж по объявлению и по дням вместо группировки всей sale_history на каждый запрос статистики.
+-- Как и user_rating_summary (V1.7), итоги обновляются триггером в той же транзакции, что и продажа,
+-- поэтому их одинаково поддерживают покупка одним запросом, пакетная запись StockReservationEngine и отмена.
+-- Выручка не хранится: цена у объявления одна, выручка = price * units считается при чтении, как и раньше
+-- по текущей цене объявления
+
+-- продажи объявления по времени: история продаж, пересчет первой и последней продажи после отмены
+create index if not exists index_sale_history_advertisement_id_sale_date_time
+    on sale_history (advertisement_id, sale_date_time);
+
+create table if not exists sale_totals (
+    advertisement_id uuid primary key,
+    units bigint not null default 0,
+    first_sale_date_time timestamp(3),
+    last_sale_date_time timestamp(3),
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade
+);
+
+create table if not exists sale_daily_totals (
+    advertisement_id uuid not null,
+    sale_date date not null,
+    units bigint not null default 0,
+    primary key (advertisement_id, sale_date),
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade
+);
+
+insert into sale_totals (advertisement_id, units, first_sale_date_time, last_sale_date_time)
+select advertisement_id, sum(quantity), min(sale_date_time), max(sale_date_time)
+from sale_history
+group by advertisement_id
+on conflict (advertisement_id) do nothing;
+
+insert into sale_daily_totals (advertisement_id, sale_date, units)
+select advertisement_id, sale_date_time::date, sum(quantity)
+from sale_history
+group by advertisement_id, sale_date_time::date
+on conflict (advertisement_id, sale_date) do nothing;
+
+-- Триггер на оператор, а не на строку: пакет продаж одного объявления дает одно обновление итогов.
+-- Итоги блокируются в порядке advertisement_id, чтобы параллельные пакеты не ждали друг друга по кругу
+create or replace function sale_totals_update() returns trigger as $$
+begin
+    if tg_op in ('DELETE', 'UPDATE') then
+        -- первая и последняя продажа пересчитываются по индексу, sale_history уже без удаленных строк
+        update sale_totals t
+        set units                = t.units - o.units,
+            first_sale_date_time = (select min(sh.sale_date_time) from sale_history sh where sh.advertisement_id = t.advertisement_id),
+            last_sale_date_time  = (select max(sh.sale_date_time) from sale_history sh where sh.advertisement_id = t.advertisement_id)
+        from (select advertisement_id, sum(quantity) as units
+              from old_sales group by advertisement_id order by advertisement_id) o
+        where t.advertisement_id = o.advertisement_id;
+
+        update sale_daily_totals d
+        set units = d.units - o.units
+        from (select advertisement_id, sale_date_time::date as sale_date, sum(quantity) as units
+              from old_sales group by advertisement_id, sale_date_time::date) o
+        where d.advertisement_id = o.advertisement_id
+          and d.sale_date = o.sale_date;
+    end if;
+
+    if tg_op in ('INSERT', 'UPDATE') then
+        insert into sale_totals (advertisement_id, units, first_sale_date_time, last_sale_date_time)
+        select advertisement_id, sum(quantity), min(sale_date_time), max(sale_date_time)
+        from new_sales
+        group by advertisement_id
+        order by advertisement_id
+        on conflict (advertisement_id) do update
+            set units                = sale_totals.units + excluded.units,
+                first_sale_date_time = least(sale_totals.first_sale_date_time, excluded.first_sale_date_time),
+                last_sale_date_time  = greatest(sale_totals.last_sale_date_time, excluded.last_sale_date_time);
+
+        insert into sale_daily_totals (advertisement_id, sale_date, units)
+        select advertisement_id, sale_date_time::date, sum(quantity)
+        from new_sales
+        group by advertisement_id, sale_date_time::date
+        order by advertisement_id, sale_date_time::date
+        on conflict (advertisement_id, sale_date) do update
+            set units = sale_daily_totals.units + excluded.units;
+    end if;
+    return null;
+end
+$$ language plpgsql;
+
+-- таблицы переходов нельзя объявить у триггера на несколько событий, поэтому триггеров три
+drop trigger if exists trigger_sale_totals_insert on sale_history;
+create trigger trigger_sale_totals_insert
+    after insert on sale_history
+    referencing new table as new_sales
+    for each statement execute function sale_totals_update();
+
+drop trigger if exists trigger_sale_totals_delete on sale_history;
+create trigger trigger_sale_totals_delete
+    after delete on sale_history
+    referencing old table as old_sales
+    for each statement execute function sale_totals_update();
+
+drop trigger if exists trigger_sale_totals_update on sale_history;
+create trigger trigger_sale_totals_update
+    after update on sale_history
+    referencing old table as old_sales new table as new_sales
+    for each statement execute function sale_totals_update();
+
+comment on table sale_totals is 'units and first/last sale per advertisement, maintained by trigger_sale_totals_*';
+comment on table sale_daily_totals is 'units sold per advertisement and day, maintained by trigger_sale_totals_*';
@@ -0,0 +1,12 @@
+-- Страницы истории продаж объявления и покупок пользователя читаются по (sale_date_time, sale_history_id)
+-- от курсора: индекс с id в конце отдает страницу диапазоном без сортировки, в том числе при равном времени.
+-- Индекс по объявлению из V1.15 заменяется расширенным, пересчет первой и последней продажи в триггере
+-- sale_totals_update использует его так же
+create index if not exists index_sale_history_advertisement_id_sale_date_time_id
+    on sale_history (advertisement_id, sale_date_time, sale_history_id);
+
+drop index if exists index_sale_history_advertisement_id_sale_date_time;
+
+-- покупки пользователя: до этого buyer_id не был проиндексирован вовсе
+create index if not exists index_sale_history_buyer_id_sale_date_time_id
+    on sale_history (buyer_id, sale_date_time, sale_history_id);
@@ -0,0 +1,97 @@
+-- trigger_rating_summary_update (V1.7) срабатывал на каждую строку rating и каждый раз переписывал снимок рейтинга
+-- во всех объявлениях продавца: N оценок продавца в одном операторе (пакет RatingBatchWriter) давали N * M обновлений
+-- его M объявлений, и ни одно не HOT, потому что seller_rating входит в index_advertisement_feed.
+-- Как и sale_totals (V1.15), итог теперь обновляется триггером на оператор по таблицам переходов: изменения
+-- сворачиваются по продавцу, и итог и объявления каждого затронутого продавца обновляются один раз за оператор
+
+create or replace function user_rating_summary_apply_all(p_user_ids uuid[], p_sum_deltas bigint[], p_count_deltas bigint[])
+    returns void as $$
+begin
+    insert into user_rating_summary (user_id, rating_sum, rating_count)
+    select d.user_id, d.sum_delta, d.count_delta
+    from unnest(p_user_ids, p_sum_deltas, p_count_deltas) as d(user_id, sum_delta, count_delta)
+    where d.count_delta > 0
+    on conflict (user_id) do update
+        set rating_sum   = user_rating_summary.rating_sum + excluded.rating_sum,
+            rating_count = user_rating_summary.rating_count + excluded.rating_count;
+
+    -- при каскадном удалении пользователя строки может уже не быть, вставлять ее нельзя
+    update user_rating_summary s
+    set rating_sum   = s.rating_sum + d.sum_delta,
+        rating_count = s.rating_count + d.count_delta
+    from unnest(p_user_ids, p_sum_deltas, p_count_deltas) as d(user_id, sum_delta, count_delta)
+    where d.count_delta <= 0
+      and s.user_id = d.user_id;
+
+    -- снимок рейтинга продавца в объявлениях (V1.6), строки с тем же снимком не переписываются
+    update advertisement a
+    set seller_rating       = r.seller_rating,
+        seller_rating_count = r.rating_count
+    from (select s.user_id,
+                 case when s.rating_count > 0 then s.rating_sum::numeric / s.rating_count else 0 end as seller_rating,
+                 s.rating_count
+          from user_rating_summary s
+          where s.user_id = any (p_user_ids)) r
+    where a.user_id = r.user_id
+      and (a.seller_rating, a.seller_rating_count) is distinct from (r.seller_rating, r.rating_count);
+end
+$$ language plpgsql;
+
+-- таблицы переходов видны только в своей ветке: в триггере на insert нет old_ratings, на delete - new_ratings
+create or replace function rating_summary_update() returns trigger as $$
+declare
+    v_user_ids     uuid[];
+    v_sum_deltas   bigint[];
+    v_count_deltas bigint[];
+begin
+    if tg_op = 'INSERT' then
+        select array_agg(d.user_id), array_agg(d.sum_delta), array_agg(d.count_delta)
+        into v_user_ids, v_sum_deltas, v_count_deltas
+        from (select user_id, sum(rating_value) as sum_delta, count(*) as count_delta
+              from new_ratings
+              group by user_id) d;
+    elsif tg_op = 'DELETE' then
+        select array_agg(d.user_id), array_agg(d.sum_delta), array_agg(d.count_delta)
+        into v_user_ids, v_sum_deltas, v_count_deltas
+        from (select user_id, -sum(rating_value) as sum_delta, -count(*) as count_delta
+              from old_ratings
+              group by user_id) d;
+    else
+        -- update без изменения оценки и получателя дает нулевые разности и ничего не трогает
+        select array_agg(d.user_id), array_agg(d.sum_delta), array_agg(d.count_delta)
+        into v_user_ids, v_sum_deltas, v_count_deltas
+        from (select c.user_id, sum(c.rating_value) as sum_delta, sum(c.rating_count) as count_delta
+              from (select user_id, rating_value, 1 as rating_count from new_ratings
+                    union all
+                    select user_id, -rating_value, -1 from old_ratings) c
+              group by c.user_id
+              having sum(c.rating_value) <> 0 or sum(c.rating_count) <> 0) d;
+    end if;
+
+    if v_user_ids is not null then
+        perform user_rating_summary_apply_all(v_user_ids, v_sum_deltas, v_count_deltas);
+    end if;
+    return null;
+end
+$$ language plpgsql;
+
+-- у триггера с таблицами переходов не может быть списка колонок (update of ...) и нескольких событий
+drop trigger if exists trigger_rating_summary_update on rating;
+drop function if exists user_rating_summary_apply(uuid, integer, integer);
+
+create trigger trigger_rating_summary_insert
+    after insert on rating
+    referencing new table as new_ratings
+    for each statement execute function rating_summary_update();
+
+create trigger trigger_rating_summary_delete
+    after delete on rating
+    referencing old table as old_ratings
+    for each statement execute function rating_summary_update();
+
+create trigger trigger_rating_summary_update
+    after update on rating
+    referencing old table as old_ratings new table as new_ratings
+    for each statement execute function rating_summary_update();
+
+comment on table user_rating_summary is 'sum and count of rating.rating_value per user, maintained by trigger_rating_summary_*';
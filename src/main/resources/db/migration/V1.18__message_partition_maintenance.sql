@@ -0,0 +1,102 @@
+-- Обслуживание секций message (V1.13) без гонок и расхождения со сводкой переписок.
+-- create_message_partition проверял наличие секции и создавал ее без блокировки: два экземпляра приложения
+-- при старте падали на create table. Создание и архивация секций теперь сериализуются транзакционной
+-- advisory-блокировкой. archive_message_partitions удалял сообщения, но оставлял в conversation их число
+-- и непрочитанные из них, а отметки прочтения указывали на удаленные строки. Теперь в той же транзакции
+-- из сводки вычитаются архивные сообщения, а отметки внутри архивного месяца сбрасываются: все оставшиеся
+-- сообщения переписки позже них, поэтому пустая отметка считает непрочитанным ровно то же, что и прежняя.
+-- last_message_* - копия сообщения в самой переписке, она остается и для полностью архивной переписки
+
+create or replace function lock_message_partitions() returns void as $$
+    select pg_advisory_xact_lock(hashtext('message_partitions'))
+$$ language sql;
+
+create or replace function create_message_partition(p_month date) returns integer as $$
+declare
+    v_from date := date_trunc('month', p_month)::date;
+    v_to date := (date_trunc('month', p_month) + interval '1 month')::date;
+    v_name text := 'message_' || to_char(v_from, '"y"YYYY"m"MM');
+begin
+    perform lock_message_partitions();
+    if to_regclass(v_name) is not null then
+        return 0;
+    end if;
+    execute format('create table %I (like message including defaults including constraints)', v_name);
+    execute format('insert into %I select * from message_default where message_date_time >= %L and message_date_time < %L',
+                   v_name, v_from, v_to);
+    delete from message_default where message_date_time >= v_from and message_date_time < v_to;
+    execute format('alter table message attach partition %I for values from (%L) to (%L)', v_name, v_from, v_to);
+    return 1;
+end
+$$ language plpgsql;
+
+create or replace function archive_message_partitions(p_before date) returns integer as $$
+declare
+    v_partition record;
+    v_month date;
+    v_to timestamp;
+    v_count integer;
+    v_total integer := 0;
+begin
+    perform lock_message_partitions();
+    for v_partition in
+        select c.relname
+        from pg_inherits i
+        join pg_class c on c.oid = i.inhrelid
+        where i.inhparent = 'message'::regclass
+          and c.relname ~ '^message_y[0-9]{4}m[0-9]{2}$'
+        order by c.relname
+    loop
+        v_month := to_date(substr(v_partition.relname, 10), 'YYYY"m"MM');
+        v_to := v_month + interval '1 month';
+        continue when v_to::date > date_trunc('month', p_before)::date;
+
+        execute format('alter table message detach partition %I', v_partition.relname);
+        execute format($sql$
+            insert into message_archive (conversation_key, archive_month, message_count, messages)
+            select m.conversation_key, %L, count(*),
+                   jsonb_agg(to_jsonb(m) - 'conversation_key' order by m.message_date_time, m.message_id)
+            from %I m
+            group by m.conversation_key
+            on conflict (conversation_key, archive_month) do update
+                set message_count = message_archive.message_count + excluded.message_count,
+                    messages      = message_archive.messages || excluded.messages
+            $sql$, v_month, v_partition.relname);
+        -- непрочитанные участником - сообщения собеседника после его отметки прочтения
+        execute format($sql$
+            update conversation c
+            set message_count                    = greatest(c.message_count - a.message_count, 0),
+                first_user_unread_count          = greatest(c.first_user_unread_count - a.first_user_unread_count, 0),
+                second_user_unread_count         = greatest(c.second_user_unread_count - a.second_user_unread_count, 0),
+                first_user_last_read_date_time   = case when c.first_user_last_read_date_time < %2$L
+                                                        then null else c.first_user_last_read_date_time end,
+                first_user_last_read_message_id  = case when c.first_user_last_read_date_time < %2$L
+                                                        then null else c.first_user_last_read_message_id end,
+                second_user_last_read_date_time  = case when c.second_user_last_read_date_time < %2$L
+                                                        then null else c.second_user_last_read_date_time end,
+                second_user_last_read_message_id = case when c.second_user_last_read_date_time < %2$L
+                                                        then null else c.second_user_last_read_message_id end
+            from (select m.conversation_key,
+                         count(*) as message_count,
+                         count(*) filter (where m.sender_id = cv.second_user_id
+                                            and (m.message_date_time, m.message_id)
+                                                > (coalesce(cv.first_user_last_read_date_time, '-infinity'::timestamp),
+                                                   coalesce(cv.first_user_last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid)))
+                             as first_user_unread_count,
+                         count(*) filter (where m.sender_id = cv.first_user_id
+                                            and (m.message_date_time, m.message_id)
+                                                > (coalesce(cv.second_user_last_read_date_time, '-infinity'::timestamp),
+                                                   coalesce(cv.second_user_last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid)))
+                             as second_user_unread_count
+                  from %1$I m
+                  join conversation cv on cv.conversation_id = m.conversation_key
+                  group by m.conversation_key) a
+            where c.conversation_id = a.conversation_key
+            $sql$, v_partition.relname, v_to);
+        execute format('select count(*) from %I', v_partition.relname) into v_count;
+        execute format('drop table %I', v_partition.relname);
+        v_total := v_total + v_count;
+    end loop;
+    return v_total;
+end
+$$ language plpgsql;
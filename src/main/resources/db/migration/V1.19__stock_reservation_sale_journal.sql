@@ -0,0 +1,25 @@
+-- Журнал продаж из пулов StockReservationEngine (V1.14). Продажа из пула пишется сюда в транзакции покупки,
+-- до ответа покупателю, а в sale_history ее переносит фоновый пакет. Раньше принятая продажа жила только
+-- в памяти экземпляра и терялась при его падении или при ошибке записи пакета.
+-- Строка журнала ссылается на пул, из которого продана: пул нельзя удалить (releaseAll, releaseExpired),
+-- пока его продажи не перенесены, поэтому освобождение пула сначала переносит журнал, а вставка в журнал
+-- ждет, пока пул освобождается, и не проходит, если пула уже нет
+create table if not exists stock_reservation_sale (
+    sale_history_id uuid primary key,
+    advertisement_id uuid not null,
+    instance_id uuid not null,
+    buyer_id uuid,
+    sale_date_time timestamp(3) not null,
+    quantity smallint not null check (quantity > 0),
+    foreign key (advertisement_id, instance_id) references stock_reservation (advertisement_id, instance_id),
+    -- продажи удаленного объявления удаляются вместе с его историей продаж
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade
+);
+
+-- перенос пакета продаж экземпляра и проверка ссылок при удалении пула
+create index if not exists index_stock_reservation_sale_instance_id
+    on stock_reservation_sale (instance_id, sale_history_id);
+create index if not exists index_stock_reservation_sale_advertisement_id_instance_id
+    on stock_reservation_sale (advertisement_id, instance_id);
+
+comment on table stock_reservation_sale is 'sales taken from stock_reservation pools and acknowledged to the buyer, not yet moved to sale_history';
@@ -0,0 +1,82 @@
+-- sale_totals_update (V1.15) рассчитывал на order by в подзапросе update ... from, но порядок, в котором update
+-- берет блокировки строк, задает план соединения, а не порядок подзапроса: параллельные пакеты продаж
+-- нескольких объявлений могли ждать друг друга по кругу. Теперь строки итогов, которые есть до обновления,
+-- сначала явно блокируются select ... order by ... for update, и обновление идет уже по заблокированным.
+-- Новые строки вставляет insert ... select ... order by, он обрабатывает строки в порядке выборки
+
+create or replace function sale_totals_update() returns trigger as $$
+begin
+    -- таблицы переходов видны только в своей ветке: в триггере на insert нет old_sales, на delete - new_sales
+    if tg_op = 'INSERT' then
+        perform 1 from sale_totals t
+        where t.advertisement_id in (select advertisement_id from new_sales)
+        order by t.advertisement_id
+        for update;
+        perform 1 from sale_daily_totals d
+        where (d.advertisement_id, d.sale_date) in (select advertisement_id, sale_date_time::date from new_sales)
+        order by d.advertisement_id, d.sale_date
+        for update;
+    elsif tg_op = 'DELETE' then
+        perform 1 from sale_totals t
+        where t.advertisement_id in (select advertisement_id from old_sales)
+        order by t.advertisement_id
+        for update;
+        perform 1 from sale_daily_totals d
+        where (d.advertisement_id, d.sale_date) in (select advertisement_id, sale_date_time::date from old_sales)
+        order by d.advertisement_id, d.sale_date
+        for update;
+    else
+        perform 1 from sale_totals t
+        where t.advertisement_id in (select advertisement_id from old_sales
+                                     union
+                                     select advertisement_id from new_sales)
+        order by t.advertisement_id
+        for update;
+        perform 1 from sale_daily_totals d
+        where (d.advertisement_id, d.sale_date) in (select advertisement_id, sale_date_time::date from old_sales
+                                                    union
+                                                    select advertisement_id, sale_date_time::date from new_sales)
+        order by d.advertisement_id, d.sale_date
+        for update;
+    end if;
+
+    if tg_op in ('DELETE', 'UPDATE') then
+        -- первая и последняя продажа пересчитываются по индексу, sale_history уже без удаленных строк
+        update sale_totals t
+        set units                = t.units - o.units,
+            first_sale_date_time = (select min(sh.sale_date_time) from sale_history sh where sh.advertisement_id = t.advertisement_id),
+            last_sale_date_time  = (select max(sh.sale_date_time) from sale_history sh where sh.advertisement_id = t.advertisement_id)
+        from (select advertisement_id, sum(quantity) as units
+              from old_sales group by advertisement_id) o
+        where t.advertisement_id = o.advertisement_id;
+
+        update sale_daily_totals d
+        set units = d.units - o.units
+        from (select advertisement_id, sale_date_time::date as sale_date, sum(quantity) as units
+              from old_sales group by advertisement_id, sale_date_time::date) o
+        where d.advertisement_id = o.advertisement_id
+          and d.sale_date = o.sale_date;
+    end if;
+
+    if tg_op in ('INSERT', 'UPDATE') then
+        insert into sale_totals (advertisement_id, units, first_sale_date_time, last_sale_date_time)
+        select advertisement_id, sum(quantity), min(sale_date_time), max(sale_date_time)
+        from new_sales
+        group by advertisement_id
+        order by advertisement_id
+        on conflict (advertisement_id) do update
+            set units                = sale_totals.units + excluded.units,
+                first_sale_date_time = least(sale_totals.first_sale_date_time, excluded.first_sale_date_time),
+                last_sale_date_time  = greatest(sale_totals.last_sale_date_time, excluded.last_sale_date_time);
+
+        insert into sale_daily_totals (advertisement_id, sale_date, units)
+        select advertisement_id, sale_date_time::date, sum(quantity)
+        from new_sales
+        group by advertisement_id, sale_date_time::date
+        order by advertisement_id, sale_date_time::date
+        on conflict (advertisement_id, sale_date) do update
+            set units = sale_daily_totals.units + excluded.units;
+    end if;
+    return null;
+end
+$$ language plpgsql;
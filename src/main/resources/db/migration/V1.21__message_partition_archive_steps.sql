@@ -0,0 +1,113 @@
+-- archive_message_partitions (V1.18) отсоединял секцию и правил сводку переписок в одной транзакции: detach
+-- держал access exclusive на message до ее конца, а markReadUpTo, заблокировав строку conversation, ждал
+-- message - взаимная блокировка. DETACH PARTITION CONCURRENTLY у message недоступен из-за секции по умолчанию,
+-- поэтому архивация разбита на короткие транзакции, по две на секцию. Первая только отсоединяет секцию
+-- с lock_timeout и строк не блокирует. Вторая переносит уже отдельную таблицу в message_archive, правит сводку
+-- и удаляет таблицу. Между ними markReadUpTo может сдвинуть отметку прочтения и уже не видеть архивные
+-- сообщения, поэтому непрочитанные не вычитаются, а пересчитываются по оставшимся в message сообщениям.
+-- Отсоединенная, но не перенесенная секция (сбой между транзакциями) подбирается следующим запуском
+
+drop function if exists archive_message_partitions(date);
+
+create or replace function message_partitions_before(p_before date) returns setof text as $$
+    select c.relname::text
+    from pg_class c
+    where c.relkind = 'r'
+      and c.relname ~ '^message_y[0-9]{4}m[0-9]{2}$'
+      and pg_table_is_visible(c.oid)
+      and (to_date(substr(c.relname, 10), 'YYYY"m"MM') + interval '1 month')::date <= date_trunc('month', p_before)::date
+      and not exists (select 1 from pg_inherits i where i.inhrelid = c.oid and i.inhparent <> 'message'::regclass)
+    order by c.relname
+$$ language sql stable;
+
+create or replace function detach_message_partition(p_name text, p_lock_timeout_millis integer) returns integer as $$
+begin
+    perform lock_message_partitions();
+    if not exists (select 1 from pg_inherits i
+                   where i.inhparent = 'message'::regclass
+                     and i.inhrelid = to_regclass(p_name)) then
+        return 0;
+    end if;
+    -- в очереди за access exclusive detach задерживает все запросы к message: ждать дольше таймаута нельзя,
+    -- секция отсоединится следующим запуском
+    perform set_config('lock_timeout', p_lock_timeout_millis || 'ms', true);
+    execute format('alter table message detach partition %I', p_name);
+    return 1;
+end
+$$ language plpgsql;
+
+create or replace function archive_detached_message_partition(p_name text) returns integer as $$
+declare
+    v_month date := to_date(substr(p_name, 10), 'YYYY"m"MM');
+    v_to timestamp := to_date(substr(p_name, 10), 'YYYY"m"MM') + interval '1 month';
+    v_count integer;
+begin
+    perform lock_message_partitions();
+    if to_regclass(p_name) is null then
+        return 0;
+    end if;
+    if exists (select 1 from pg_inherits i where i.inhrelid = to_regclass(p_name)) then
+        raise exception 'message partition % is still attached', p_name;
+    end if;
+
+    execute format($sql$
+        insert into message_archive (conversation_key, archive_month, message_count, messages)
+        select m.conversation_key, %L, count(*),
+               jsonb_agg(to_jsonb(m) - 'conversation_key' order by m.message_date_time, m.message_id)
+        from %I m
+        group by m.conversation_key
+        on conflict (conversation_key, archive_month) do update
+            set message_count = message_archive.message_count + excluded.message_count,
+                messages      = message_archive.messages || excluded.messages
+        $sql$, v_month, p_name);
+
+    -- строки переписок блокируются в порядке ключа отдельным запросом: следующие запросы берут новый снимок
+    -- и видят сообщения, закоммиченные, пока блокировка ждала
+    execute format($sql$
+        select 1 from conversation c
+        where c.conversation_id in (select m.conversation_key from %I m)
+        order by c.conversation_id
+        for update
+        $sql$, p_name);
+
+    -- отметки внутри архивного месяца сбрасываются: все оставшиеся сообщения переписки позже них
+    execute format($sql$
+        update conversation c
+        set message_count                    = greatest(c.message_count - a.message_count, 0),
+            first_user_last_read_date_time   = case when c.first_user_last_read_date_time < %2$L
+                                                    then null else c.first_user_last_read_date_time end,
+            first_user_last_read_message_id  = case when c.first_user_last_read_date_time < %2$L
+                                                    then null else c.first_user_last_read_message_id end,
+            second_user_last_read_date_time  = case when c.second_user_last_read_date_time < %2$L
+                                                    then null else c.second_user_last_read_date_time end,
+            second_user_last_read_message_id = case when c.second_user_last_read_date_time < %2$L
+                                                    then null else c.second_user_last_read_message_id end
+        from (select m.conversation_key, count(*) as message_count
+              from %1$I m
+              group by m.conversation_key) a
+        where c.conversation_id = a.conversation_key
+        $sql$, p_name, v_to);
+
+    -- непрочитанные участником - сообщения собеседника после его отметки прочтения
+    execute format($sql$
+        update conversation c
+        set first_user_unread_count  = (select count(*) from message m
+                                        where m.conversation_key = c.conversation_id
+                                          and m.sender_id = c.second_user_id
+                                          and (m.message_date_time, m.message_id)
+                                              > (coalesce(c.first_user_last_read_date_time, '-infinity'::timestamp),
+                                                 coalesce(c.first_user_last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid))),
+            second_user_unread_count = (select count(*) from message m
+                                        where m.conversation_key = c.conversation_id
+                                          and m.sender_id = c.first_user_id
+                                          and (m.message_date_time, m.message_id)
+                                              > (coalesce(c.second_user_last_read_date_time, '-infinity'::timestamp),
+                                                 coalesce(c.second_user_last_read_message_id, '00000000-0000-0000-0000-000000000000'::uuid)))
+        where c.conversation_id in (select m.conversation_key from %I m)
+        $sql$, p_name);
+
+    execute format('select count(*) from %I', p_name) into v_count;
+    execute format('drop table %I', p_name);
+    return v_count;
+end
+$$ language plpgsql;
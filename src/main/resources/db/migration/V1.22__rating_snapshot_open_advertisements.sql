@@ -0,0 +1,45 @@
+-- user_rating_summary_apply_all (V1.17) переписывал снимок рейтинга во всех объявлениях продавца, в том числе
+-- закрытых: у продавца с длинной историей каждое изменение оценок обновляло (и не HOT, см. V1.17) строки,
+-- которые лента открытых объявлений не показывает. Теперь снимок обновляется только в открытых объявлениях,
+-- а при повторном открытии объявление получает текущий рейтинг продавца тем же триггером, что и при создании (V1.6)
+
+create or replace function user_rating_summary_apply_all(p_user_ids uuid[], p_sum_deltas bigint[], p_count_deltas bigint[])
+    returns void as $$
+begin
+    insert into user_rating_summary (user_id, rating_sum, rating_count)
+    select d.user_id, d.sum_delta, d.count_delta
+    from unnest(p_user_ids, p_sum_deltas, p_count_deltas) as d(user_id, sum_delta, count_delta)
+    where d.count_delta > 0
+    on conflict (user_id) do update
+        set rating_sum   = user_rating_summary.rating_sum + excluded.rating_sum,
+            rating_count = user_rating_summary.rating_count + excluded.rating_count;
+
+    -- при каскадном удалении пользователя строки может уже не быть, вставлять ее нельзя
+    update user_rating_summary s
+    set rating_sum   = s.rating_sum + d.sum_delta,
+        rating_count = s.rating_count + d.count_delta
+    from unnest(p_user_ids, p_sum_deltas, p_count_deltas) as d(user_id, sum_delta, count_delta)
+    where d.count_delta <= 0
+      and s.user_id = d.user_id;
+
+    -- снимок рейтинга продавца в открытых объявлениях (V1.6), строки с тем же снимком не переписываются
+    update advertisement a
+    set seller_rating       = r.seller_rating,
+        seller_rating_count = r.rating_count
+    from (select s.user_id,
+                 case when s.rating_count > 0 then s.rating_sum::numeric / s.rating_count else 0 end as seller_rating,
+                 s.rating_count
+          from user_rating_summary s
+          where s.user_id = any (p_user_ids)) r
+    where a.user_id = r.user_id
+      and a.close_date is null
+      and (a.seller_rating, a.seller_rating_count) is distinct from (r.seller_rating, r.rating_count);
+end
+$$ language plpgsql;
+
+drop trigger if exists trigger_advertisement_seller_rating_reopen on advertisement;
+create trigger trigger_advertisement_seller_rating_reopen
+    before update of close_date on advertisement
+    for each row
+    when (old.close_date is not null and new.close_date is null)
+    execute function advertisement_seller_rating_init();
@@ -0,0 +1,26 @@
+-- Полнотекстовый поиск по объявлениям: заголовок имеет больший вес (A), чем описание (B)
+create extension if not exists pg_trgm;
+
+alter table advertisement add column if not exists search_vector tsvector;
+
+create or replace function advertisement_search_vector_update() returns trigger as $$
+begin
+    new.search_vector :=
+            setweight(to_tsvector('russian', coalesce(new.title, '')), 'A') ||
+            setweight(to_tsvector('russian', coalesce(new.description, '')), 'B');
+    return new;
+end
+$$ language plpgsql;
+
+drop trigger if exists trigger_advertisement_search_vector on advertisement;
+create trigger trigger_advertisement_search_vector
+    before insert or update of title, description on advertisement
+    for each row execute function advertisement_search_vector_update();
+
+update advertisement
+set search_vector = setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+                    setweight(to_tsvector('russian', coalesce(description, '')), 'B');
+
+create index if not exists index_advertisement_search_vector on advertisement using gin (search_vector);
+-- нечеткий поиск по заголовку (опечатки, начало слова) через оператор <% (word_similarity)
+create index if not exists index_advertisement_title_trgm on advertisement using gin (title gin_trgm_ops);
@@ -0,0 +1,38 @@
+-- Снимок рейтинга продавца в объявлении, чтобы сортировка ленты обслуживалась индексом без join с user_rating_view.
+-- 0 означает что оценок нет (оценки бывают только от 1 до 5)
+alter table advertisement add column if not exists seller_rating numeric not null default 0;
+alter table advertisement add column if not exists seller_rating_count integer not null default 0;
+
+update advertisement a
+set seller_rating       = ur.average_rating,
+    seller_rating_count = ur.rating_count
+from user_rating_view ur
+where ur.user_id = a.user_id;
+
+-- новое объявление сразу получает текущий рейтинг продавца, дальше снимок обновляется вместе с user_rating_view
+create or replace function advertisement_seller_rating_init() returns trigger as $$
+begin
+    select coalesce(ur.average_rating, 0), coalesce(ur.rating_count, 0)
+    into new.seller_rating, new.seller_rating_count
+    from user_rating_view ur
+    where ur.user_id = new.user_id;
+    if not found then
+        new.seller_rating := 0;
+        new.seller_rating_count := 0;
+    end if;
+    return new;
+end
+$$ language plpgsql;
+
+drop trigger if exists trigger_advertisement_seller_rating_init on advertisement;
+create trigger trigger_advertisement_seller_rating_init
+    before insert on advertisement
+    for each row execute function advertisement_seller_rating_init();
+
+-- лента с фильтром по городу и типу
+create index if not exists index_advertisement_feed
+    on advertisement ((close_date is null), city_id, advertisement_type_id, is_promoted, seller_rating, seller_rating_count, create_date, advertisement_id);
+-- лента открытых объявлений без фильтра по городу и типу
+create index if not exists index_advertisement_feed_opened
+    on advertisement (is_promoted, seller_rating, seller_rating_count, create_date, advertisement_id)
+    where close_date is null;
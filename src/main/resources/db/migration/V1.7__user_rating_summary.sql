@@ -0,0 +1,74 @@
+-- Инкрементальная агрегация рейтинга вместо периодического refresh materialized view:
+-- сумма и количество оценок пользователя обновляются триггером в той же транзакции, что и сама оценка
+create table if not exists user_rating_summary (
+    user_id uuid primary key,
+    rating_sum bigint not null default 0,
+    rating_count integer not null default 0,
+    foreign key (user_id) references "user"(user_id) on delete cascade
+);
+
+insert into user_rating_summary (user_id, rating_sum, rating_count)
+select user_id, sum(rating_value), count(*)
+from rating
+group by user_id
+on conflict (user_id) do nothing;
+
+-- прежняя форма чтения: строки только для пользователей с оценками
+drop materialized view if exists user_rating_view;
+create view user_rating_view as
+    select
+        user_id,
+        rating_sum::numeric / rating_count as average_rating,
+        rating_count
+    from user_rating_summary
+    where rating_count > 0;
+
+create or replace function user_rating_summary_apply(p_user_id uuid, p_sum_delta integer, p_count_delta integer) returns void as $$
+begin
+    if p_count_delta > 0 then
+        insert into user_rating_summary (user_id, rating_sum, rating_count)
+        values (p_user_id, p_sum_delta, p_count_delta)
+        on conflict (user_id) do update
+            set rating_sum   = user_rating_summary.rating_sum + excluded.rating_sum,
+                rating_count = user_rating_summary.rating_count + excluded.rating_count;
+    else
+        -- при каскадном удалении пользователя строки может уже не быть, вставлять ее нельзя
+        update user_rating_summary
+        set rating_sum   = rating_sum + p_sum_delta,
+            rating_count = rating_count + p_count_delta
+        where user_id = p_user_id;
+    end if;
+
+    -- снимок рейтинга продавца в объявлениях (V1.6) теперь обновляется сразу
+    update advertisement a
+    set seller_rating       = case when s.rating_count > 0 then s.rating_sum::numeric / s.rating_count else 0 end,
+        seller_rating_count = s.rating_count
+    from user_rating_summary s
+    where s.user_id = p_user_id
+      and a.user_id = p_user_id;
+end
+$$ language plpgsql;
+
+create or replace function rating_summary_update() returns trigger as $$
+begin
+    if tg_op = 'INSERT' then
+        perform user_rating_summary_apply(new.user_id, new.rating_value, 1);
+    elsif tg_op = 'DELETE' then
+        perform user_rating_summary_apply(old.user_id, -old.rating_value, -1);
+    elsif new.user_id = old.user_id then
+        perform user_rating_summary_apply(new.user_id, new.rating_value - old.rating_value, 0);
+    else
+        perform user_rating_summary_apply(old.user_id, -old.rating_value, -1);
+        perform user_rating_summary_apply(new.user_id, new.rating_value, 1);
+    end if;
+    return null;
+end
+$$ language plpgsql;
+
+drop trigger if exists trigger_rating_summary_update on rating;
+create trigger trigger_rating_summary_update
+    after insert or update of rating_value, user_id or delete on rating
+    for each row execute function rating_summary_update();
+
+comment on table user_rating_summary is 'sum and count of rating.rating_value per user, maintained by trigger_rating_summary_update';
+comment on view user_rating_view is 'average rating per user over user_rating_summary';
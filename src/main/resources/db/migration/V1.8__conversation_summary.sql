@@ -0,0 +1,59 @@
+-- Сводка переписок для списка чатов: одна строка на неупорядоченную пару пользователей и объявление.
+-- Хранит последнее сообщение и счетчики непрочитанных у каждого участника, обновляется приложением
+-- в той же транзакции, что и отправка/прочтение сообщений
+
+-- Детерминированный ключ переписки. Тот же ключ считает org.banana.util.ConversationKey,
+-- порядок пары определяется сравнением uuid, совпадающим с сравнением их текстового вида
+create or replace function conversation_key(p_user_a uuid, p_user_b uuid, p_advertisement_id uuid) returns uuid as $$
+    select md5(least(p_user_a, p_user_b)::text || ':' || greatest(p_user_a, p_user_b)::text || ':'
+               || coalesce(p_advertisement_id::text, ''))::uuid
+$$ language sql immutable;
+
+create table if not exists conversation (
+    conversation_id uuid primary key,
+    first_user_id uuid not null,
+    second_user_id uuid not null,
+    advertisement_id uuid,
+    last_message_id uuid not null,
+    last_message_sender_id uuid not null,
+    last_message_text text not null,
+    last_message_date_time timestamp(3) not null,
+    first_user_unread_count integer not null default 0,
+    second_user_unread_count integer not null default 0,
+    check (first_user_id < second_user_id),
+    foreign key (first_user_id) references "user"(user_id) on delete cascade,
+    foreign key (second_user_id) references "user"(user_id) on delete cascade,
+    foreign key (advertisement_id) references advertisement(advertisement_id) on delete cascade
+);
+
+-- список чатов пользователя: он может стоять в паре как первым, так и вторым
+create index if not exists index_conversation_first_user_last_message
+    on conversation (first_user_id, last_message_date_time desc, conversation_id desc);
+create index if not exists index_conversation_second_user_last_message
+    on conversation (second_user_id, last_message_date_time desc, conversation_id desc);
+
+insert into conversation (conversation_id, first_user_id, second_user_id, advertisement_id,
+                          last_message_id, last_message_sender_id, last_message_text, last_message_date_time,
+                          first_user_unread_count, second_user_unread_count)
+select distinct on (k.conversation_id)
+    k.conversation_id,
+    k.first_user_id,
+    k.second_user_id,
+    k.advertisement_id,
+    k.message_id,
+    k.sender_id,
+    k.message_text,
+    k.message_date_time,
+    count(*) filter (where not k.is_read and k.recipient_id = k.first_user_id) over (partition by k.conversation_id),
+    count(*) filter (where not k.is_read and k.recipient_id = k.second_user_id) over (partition by k.conversation_id)
+from (
+    select conversation_key(m.sender_id, m.recipient_id, m.advertisement_id) as conversation_id,
+           least(m.sender_id, m.recipient_id) as first_user_id,
+           greatest(m.sender_id, m.recipient_id) as second_user_id,
+           m.*
+    from message m
+) k
+order by k.conversation_id, k.message_date_time desc, k.message_id desc
+on conflict (conversation_id) do nothing;
+
+comment on table conversation is 'last message and per-participant unread counters per chat, maintained by MessageServiceImpl';
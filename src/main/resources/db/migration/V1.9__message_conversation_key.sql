@@ -0,0 +1,16 @@
+-- Ключ переписки в самом сообщении: чат выбирается одним диапазоном по индексу вместо
+-- (sender = a and recipient = b) or (sender = b and recipient = a) и сравнения advertisement_id с учетом null.
+-- Значение совпадает с conversation.conversation_id (V1.8), его заполняет приложение через ConversationKey
+alter table message add column if not exists conversation_key uuid;
+
+update message
+set conversation_key = conversation_key(sender_id, recipient_id, advertisement_id)
+where conversation_key is null;
+
+alter table message alter column conversation_key set not null;
+
+create index if not exists index_message_conversation_key_message_date_time
+    on message (conversation_key, message_date_time, message_id);
+
+-- все запросы чата теперь идут по ключу переписки
+drop index if exists index_message_advertisement_id_sender_id_recipient_id;
@@ -0,0 +1,52 @@
+package org.banana.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlSamplingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger sqlLogger = context.getLogger("org.hibernate.SQL");
+    private final Logger bindLogger = context.getLogger("org.hibernate.orm.jdbc.bind");
+    private final SqlSamplingTurboFilter filter = new SqlSamplingTurboFilter();
+
+    @Test
+    void decide_whenSampleRateIsZero_thenDenySqlAndBindings() {
+        filter.setSampleRate(0);
+
+        assertEquals(FilterReply.DENY, filter.decide(null, sqlLogger, Level.DEBUG, null, null, null));
+        assertEquals(FilterReply.DENY, filter.decide(null, bindLogger, Level.TRACE, null, null, null));
+    }
+
+    @Test
+    void decide_whenStatementSampled_thenAcceptItsBindings() {
+        filter.setSampleRate(1);
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(null, sqlLogger, Level.DEBUG, null, null, null));
+        assertEquals(FilterReply.ACCEPT, filter.decide(null, sqlLogger, Level.DEBUG, "select 1", null, null));
+        assertEquals(FilterReply.ACCEPT, filter.decide(null, bindLogger, Level.TRACE, null, null, null));
+    }
+
+    @Test
+    void decide_whenStatementNotSampled_thenDenyItsBindings() {
+        filter.setSampleRate(1);
+        filter.decide(null, sqlLogger, Level.DEBUG, "select 1", null, null);
+        filter.setSampleRate(Double.MIN_VALUE);
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(null, sqlLogger, Level.DEBUG, null, null, null));
+        assertEquals(FilterReply.DENY, filter.decide(null, sqlLogger, Level.DEBUG, "select 2", null, null));
+        assertEquals(FilterReply.DENY, filter.decide(null, bindLogger, Level.TRACE, "binding parameter", null, null));
+    }
+
+    @Test
+    void decide_whenOtherLogger_thenNeutral() {
+        filter.setSampleRate(1);
+
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, context.getLogger("org.banana"), Level.INFO, "text", null, null));
+    }
+}
@@ -2,14 +2,17 @@ package org.banana.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.banana.dto.advertisement.AdvertisementPageResponseDto;
 import org.banana.dto.advertisement.AdvertisementRequestDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
 import org.banana.exception.AdvertisementNotFoundException;
 import org.banana.exception.AdvertisementTypeNotFoundException;
 import org.banana.exception.AdvertisementUpdateException;
 import org.banana.exception.CityNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.service.AdvertisementService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -63,6 +66,9 @@ class AdvertisementControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     @Test
     @WithMockUser(username = "bob")
     void getAdvertisementById_whenAdvertisementExists_thenReturnsAdvertisement() throws Exception {
@@ -156,6 +162,49 @@ class AdvertisementControllerTest {
                 .andExpect(result -> assertTrue(result.getResponse().getContentAsString().contains("\"errors\":{\"minPrice\":\"must be greater than or equal to 0.00\",\"maxPrice\":\"must be greater than or equal to 0.00\"}")));
     }
 
+    @Test
+    @WithMockUser(username = "bob")
+    void getAdvertisementFeed_whenFilterIsValid_thenReturnsPage() throws Exception {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        AdvertisementPageResponseDto page = new AdvertisementPageResponseDto(Collections.emptyList(), "next");
+        when(advertisementService.findAllFilteredByCursor(filter, "cursor", 5)).thenReturn(page);
+
+        mvc.perform(post("/api/v1/advertisement/feed")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(filter))
+                        .param("cursor", "cursor")
+                        .param("size", "5")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+    }
+
+    @Test
+    @WithMockUser(username = "bob")
+    void getAdvertisementFeed_whenCursorIsInvalid_thenReturnsBadRequest() throws Exception {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        when(advertisementService.findAllFilteredByCursor(filter, "broken", 20)).thenThrow(new InvalidCursorException("broken"));
+
+        mvc.perform(post("/api/v1/advertisement/feed")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(filter))
+                        .param("cursor", "broken")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "bob")
+    void getAdvertisementFeed_whenSizeIsInvalid_thenReturnsBadRequest() throws Exception {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        mvc.perform(post("/api/v1/advertisement/feed")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(filter))
+                        .param("size", "101")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser
     void createAdvertisement_whenValid_thenCreated() throws Exception {
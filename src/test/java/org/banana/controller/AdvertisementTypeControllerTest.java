@@ -5,6 +5,7 @@ import org.banana.dto.advertisement.type.AdvertisementTypeDto;
 import org.banana.exception.AdvertisementTypeAlreadyExistsException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.service.AdvertisementTypeService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,6 +43,9 @@ class AdvertisementTypeControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -7,6 +7,7 @@ import org.banana.security.config.SecurityConfig;
 import org.banana.security.dto.UserLoginRequestDto;
 import org.banana.security.dto.UserRegisterRequestDto;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.security.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,6 +46,9 @@ public class AuthControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     @Test
     public void login_whenValidRequest_thenStatus200AndReturnToken() throws Exception {
         UserLoginRequestDto requestDto = new UserLoginRequestDto("john.doe@example.com", "password123");
@@ -9,6 +9,7 @@ import org.banana.exception.CommentNotFoundException;
 import org.banana.exception.UserDeleteCommentException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.service.CommentService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +55,9 @@ class CommentControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     // --- addComment ---
 
     @Test
@@ -1,16 +1,25 @@
 package org.banana.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.banana.dto.conversation.ConversationPageResponseDto;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.dto.message.MessageBatchSendRequestDto;
+import org.banana.dto.message.MessageChatRequestDto;
+import org.banana.dto.message.MessageChatResponseDto;
+import org.banana.dto.message.MessageChatsRequestDto;
 import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageMarkReadRequestDto;
 import org.banana.dto.message.MessageResponseDto;
 import org.banana.dto.message.MessageSendRequestDto;
 import org.banana.exception.ConversationNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.MessageSendException;
 import org.banana.exception.UserNotFoundException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.service.MessageService;
+import org.banana.service.MessageStreamService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -21,17 +30,21 @@ import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import static org.banana.exception.MessageSendException.MessageSendExceptionMessage.USER_MESSAGES_THE_SAME_USER;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MessageController.class)
@@ -50,9 +63,15 @@ class MessageControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     @MockitoBean
     private MessageService messageService;
 
+    @MockitoBean
+    private MessageStreamService messageStreamService;
+
     // --- addMessage ---
 
     @Test
@@ -131,6 +150,99 @@ class MessageControllerTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    // --- sendMessages ---
+
+    @Test
+    @WithMockUser
+    void sendMessages_whenValid_thenCreated() throws Exception {
+        MessageSendRequestDto message = new MessageSendRequestDto();
+        message.setRecipientId(UUID.randomUUID());
+        message.setMessageText("Hello");
+        MessageBatchSendRequestDto req = new MessageBatchSendRequestDto(List.of(message));
+
+        MessageResponseDto resp = new MessageResponseDto();
+        resp.setId(UUID.randomUUID());
+        when(messageService.addMessages(req)).thenReturn(List.of(resp));
+
+        mvc.perform(post("/api/v1/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(objectMapper.writeValueAsString(List.of(resp))));
+    }
+
+    @Test
+    @WithMockUser
+    void sendMessages_whenEmpty_thenBadRequest() throws Exception {
+        MessageBatchSendRequestDto req = new MessageBatchSendRequestDto(List.of());
+
+        mvc.perform(post("/api/v1/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("messages")));
+    }
+
+    @Test
+    @WithMockUser
+    void sendMessages_whenOneMessageInvalid_thenBadRequest() throws Exception {
+        MessageSendRequestDto valid = new MessageSendRequestDto();
+        valid.setRecipientId(UUID.randomUUID());
+        valid.setMessageText("Hello");
+        MessageBatchSendRequestDto req = new MessageBatchSendRequestDto(List.of(valid, new MessageSendRequestDto()));
+
+        mvc.perform(post("/api/v1/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("recipientId")));
+    }
+
+    @Test
+    @WithMockUser
+    void sendMessages_whenServiceThrowsNotFoundException_thenNotFound() throws Exception {
+        MessageSendRequestDto message = new MessageSendRequestDto();
+        message.setRecipientId(UUID.randomUUID());
+        message.setMessageText("Hello");
+        MessageBatchSendRequestDto req = new MessageBatchSendRequestDto(List.of(message));
+
+        when(messageService.addMessages(req)).thenThrow(new UserNotFoundException(message.getRecipientId()));
+
+        mvc.perform(post("/api/v1/message/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isNotFound());
+    }
+
+    // --- getLatestMessages ---
+
+    @Test
+    @WithMockUser
+    void getLatestMessages_whenValid_thenOk() throws Exception {
+        MessageChatsRequestDto req = new MessageChatsRequestDto(List.of(new MessageChatRequestDto(UUID.randomUUID(), null)), 5);
+        List<MessageChatResponseDto> resp = List.of(new MessageChatResponseDto(
+                req.getChats().get(0).getSecondUserId(), null, List.of(new MessageResponseDto())));
+        when(messageService.getLatestMessages(req)).thenReturn(resp);
+
+        mvc.perform(post("/api/v1/message/chats")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(resp)));
+    }
+
+    @Test
+    @WithMockUser
+    void getLatestMessages_whenLimitOutOfRange_thenBadRequest() throws Exception {
+        MessageChatsRequestDto req = new MessageChatsRequestDto(List.of(new MessageChatRequestDto(UUID.randomUUID(), null)), 0);
+
+        mvc.perform(post("/api/v1/message/chats")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("limit")));
+    }
+
     // --- getMessages ---
 
     @Test
@@ -247,4 +359,85 @@ class MessageControllerTest {
                         .content(objectMapper.writeValueAsString(dto)))
                 .andExpect(status().isUnauthorized());
     }
-}
\ No newline at end of file
+
+    // --- conversations ---
+
+    @Test
+    @WithMockUser
+    void getConversations_whenValid_thenReturnsPage() throws Exception {
+        ConversationPageResponseDto page = new ConversationPageResponseDto(Collections.emptyList(), "next");
+        when(messageService.getConversations("cursor", 5)).thenReturn(page);
+
+        mvc.perform(get("/api/v1/message/conversations")
+                        .param("cursor", "cursor")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+    }
+
+    @Test
+    @WithMockUser
+    void getConversations_whenCursorIsInvalid_thenReturnsBadRequest() throws Exception {
+        when(messageService.getConversations("broken", 20)).thenThrow(new InvalidCursorException("broken"));
+
+        mvc.perform(get("/api/v1/message/conversations")
+                        .param("cursor", "broken"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void getConversations_whenSizeIsInvalid_thenReturnsBadRequest() throws Exception {
+        mvc.perform(get("/api/v1/message/conversations")
+                        .param("size", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithAnonymousUser
+    void getConversations_whenAnonymous_thenUnauthorized() throws Exception {
+        mvc.perform(get("/api/v1/message/conversations"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- unread count ---
+
+    @Test
+    @WithMockUser
+    void getUnreadCount_whenAuthenticated_thenReturnsCounters() throws Exception {
+        UnreadCountResponseDto counters = new UnreadCountResponseDto(7, 2);
+        when(messageService.getUnreadCount()).thenReturn(counters);
+
+        mvc.perform(get("/api/v1/message/unread-count"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(counters)));
+    }
+
+    @Test
+    @WithAnonymousUser
+    void getUnreadCount_whenAnonymous_thenUnauthorized() throws Exception {
+        mvc.perform(get("/api/v1/message/unread-count"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- stream ---
+
+    @Test
+    @WithMockUser
+    void stream_whenAuthenticated_thenAsyncEventStreamStarted() throws Exception {
+        when(messageStreamService.subscribe()).thenReturn(new SseEmitter());
+
+        mvc.perform(get("/api/v1/message/stream")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    @WithAnonymousUser
+    void stream_whenAnonymous_thenUnauthorized() throws Exception {
+        mvc.perform(get("/api/v1/message/stream")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+    }
+}
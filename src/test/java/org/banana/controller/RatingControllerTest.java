@@ -6,6 +6,7 @@ import org.banana.exception.UserNotFoundException;
 import org.banana.exception.UserRatesTheSameUserException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.service.RatingService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +48,9 @@ class RatingControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     // --- addRating ---
 
     @Test
@@ -56,13 +60,13 @@ class RatingControllerTest {
         dto.setRatedUserId(UUID.randomUUID());
         dto.setRatingValue((short) 4);
 
-        when(ratingService.addRating(dto)).thenReturn("User rating will be update in 15 minutes.");
+        when(ratingService.addRating(dto)).thenReturn("User rating updated.");
 
         mvc.perform(post("/api/v1/rating")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(dto)))
                 .andExpect(status().isCreated())
-                .andExpect(content().string(containsString("User rating will be update in 15 minutes.")));
+                .andExpect(content().string(containsString("User rating updated.")));
     }
 
     @Test
@@ -121,11 +125,11 @@ class RatingControllerTest {
     @WithMockUser
     void removeRating_whenValid_thenOk() throws Exception {
         UUID userId = UUID.randomUUID();
-        when(ratingService.deleteRating(userId)).thenReturn("User rating will be update in 15 minutes.");
+        when(ratingService.deleteRating(userId)).thenReturn("User rating updated.");
 
         mvc.perform(delete("/api/v1/rating/{userId}", userId))
                 .andExpect(status().isOk())
-                .andExpect(content().string(containsString("User rating will be update in 15 minutes.")));
+                .andExpect(content().string(containsString("User rating updated.")));
     }
 
     @Test
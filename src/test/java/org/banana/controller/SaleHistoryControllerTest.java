@@ -2,39 +2,59 @@ package org.banana.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.banana.dto.history.SaleHistoryAddRequestDto;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
+import org.banana.dto.history.SaleHistoryExportFormat;
+import org.banana.dto.history.SaleHistoryPageResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
 import org.banana.exception.AdvertisementNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.SaleHistoryAccessDeniedException;
 import org.banana.exception.SaleHistoryAdvertisementQuantityIsLowerThanExpectedException;
+import org.banana.exception.SaleHistoryExportLimitExceededException;
 import org.banana.exception.SaleHistoryNotFoundException;
 import org.banana.exception.SaleHistoryUnexpectedException;
 import org.banana.security.config.SecurityConfig;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
+import org.banana.service.SaleHistoryExportService;
 import org.banana.service.SaleHistoryService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(SaleHistoryController.class)
@@ -50,12 +70,18 @@ class SaleHistoryControllerTest {
     @MockitoBean
     private SaleHistoryService saleHistoryService;
 
+    @MockitoBean
+    private SaleHistoryExportService saleHistoryExportService;
+
     @MockitoBean
     private JwtService jwtService;
 
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     // --- addSale ---
 
     @Test
@@ -180,6 +206,127 @@ class SaleHistoryControllerTest {
                 .andExpect(status().isUnauthorized());
     }
 
+    // --- getDailyTotals ---
+
+    @Test
+    @WithMockUser
+    void getDailyTotals_whenPeriodGiven_thenOk() throws Exception {
+        UUID adId = UUID.randomUUID();
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 31);
+        List<SaleHistoryDailyTotalResponseDto> daily = List.of(
+                new SaleHistoryDailyTotalResponseDto(LocalDate.of(2024, 1, 5), new BigDecimal("300"), 3L)
+        );
+        when(saleHistoryService.getDailyTotals(adId, from, to)).thenReturn(daily);
+
+        mvc.perform(get("/api/v1/sale-history/advertisement/{adId}/daily", adId)
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(daily)));
+    }
+
+    @Test
+    @WithMockUser
+    void getDailyTotals_whenAccessDenied_thenForbidden() throws Exception {
+        UUID adId = UUID.randomUUID();
+        when(saleHistoryService.getDailyTotals(adId, null, null)).thenThrow(new SaleHistoryAccessDeniedException());
+
+        mvc.perform(get("/api/v1/sale-history/advertisement/{adId}/daily", adId))
+                .andExpect(status().isForbidden());
+    }
+
+    // --- getSalesPageByAdvertisement / getPurchases ---
+
+    @Test
+    @WithMockUser
+    void getSalesPageByAdvertisement_whenPeriodAndCursorGiven_thenOk() throws Exception {
+        UUID adId = UUID.randomUUID();
+        SaleHistoryPageResponseDto page = new SaleHistoryPageResponseDto(List.of(new SaleHistoryResponseDto(
+                UUID.randomUUID(), "Title", adId, UUID.randomUUID(), LocalDateTime.of(2024, 1, 5, 10, 0), 1)), "next");
+        when(saleHistoryService.getSalesPageByAdvertisementId(
+                adId, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), "cursor", 10)).thenReturn(page);
+
+        mvc.perform(get("/api/v1/sale-history/advertisement/{adId}/page", adId)
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31")
+                        .param("cursor", "cursor")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+    }
+
+    @Test
+    @WithMockUser
+    void getPurchases_whenDefaultPage_thenOk() throws Exception {
+        SaleHistoryPageResponseDto page = new SaleHistoryPageResponseDto(List.of(), null);
+        when(saleHistoryService.getPurchases(null, null, null, 20)).thenReturn(page);
+
+        mvc.perform(get("/api/v1/sale-history/purchases"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(page)));
+    }
+
+    @Test
+    @WithMockUser
+    void getPurchases_whenSizeTooLarge_thenBadRequest() throws Exception {
+        mvc.perform(get("/api/v1/sale-history/purchases").param("size", "101"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void getPurchases_whenCursorInvalid_thenBadRequest() throws Exception {
+        when(saleHistoryService.getPurchases(null, null, "bad", 20)).thenThrow(new InvalidCursorException("bad"));
+
+        mvc.perform(get("/api/v1/sale-history/purchases").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // --- exportSales ---
+
+    @Test
+    @WithMockUser
+    void exportSales_whenNdjsonAndPeriodGiven_thenStreamsFile() throws Exception {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 31);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write("{\"quantity\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(saleHistoryExportService).exportSales(eq(SaleHistoryExportFormat.NDJSON), eq(from), eq(to), any());
+
+        MvcResult result = mvc.perform(get("/api/v1/sale-history/export")
+                        .param("format", "NDJSON")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("sales.ndjson")))
+                .andExpect(content().string("{\"quantity\":1}\n"));
+    }
+
+    @Test
+    @WithMockUser
+    void exportSales_whenTooManyExportsRunning_thenServiceUnavailable() throws Exception {
+        doThrow(new SaleHistoryExportLimitExceededException()).when(saleHistoryExportService).reserveExport();
+
+        mvc.perform(get("/api/v1/sale-history/export"))
+                .andExpect(status().isServiceUnavailable());
+
+        verify(saleHistoryExportService, never()).exportSales(any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser
+    void exportSales_whenFormatUnknown_thenBadRequest() throws Exception {
+        mvc.perform(get("/api/v1/sale-history/export").param("format", "XML"))
+                .andExpect(status().isBadRequest());
+    }
+
     // --- getTotals ---
 
     @Test
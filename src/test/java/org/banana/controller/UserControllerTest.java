@@ -13,6 +13,7 @@ import org.banana.security.dto.UserPasswordUpdateRequestDto;
 import org.banana.security.dto.UserPhoneUpdateRequestDto;
 import org.banana.security.dto.UserUsernameUpdateRequestDto;
 import org.banana.security.service.JwtService;
+import org.banana.security.service.UserPrincipalCache;
 import org.banana.security.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -56,6 +57,9 @@ class UserControllerTest {
     @MockitoBean
     private UserDetailsService userDetailsService;
 
+    @MockitoBean
+    private UserPrincipalCache userPrincipalCache;
+
     // --- findById ---
     @Test
     @WithMockUser
@@ -0,0 +1,309 @@
+package org.banana.repository;
+
+import org.banana.config.HibernateConfig;
+import org.flywaydb.core.Flyway;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.orm.hibernate5.HibernateTransactionManager;
+import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Общая основа тестов репозиториев на PostgreSQL из Testcontainers. Контейнер один на все классы,
+ * каждому классу создается своя база с миграциями Flyway. Репозитории работают через SessionFactory,
+ * собранную production-настройкой {@link HibernateConfig}, поэтому тесты выполняют и объясняют (EXPLAIN)
+ * ровно тот SQL, который строит Hibernate, а не его копию
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class AbstractRepositoryTest {
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final List<RecordedStatement> RECORDED = Collections.synchronizedList(new ArrayList<>());
+    private static volatile boolean recording;
+
+    private static String jdbcUrl;
+    private static SessionFactory sessionFactory;
+    private static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void startDatabase() throws SQLException {
+        if (!POSTGRES.isRunning()) {
+            POSTGRES.start();
+        }
+        String database = "test_" + UUID.randomUUID().toString().replace("-", "");
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("create database " + database);
+        }
+        jdbcUrl = "jdbc:postgresql://%s:%d/%s".formatted(POSTGRES.getHost(),
+                POSTGRES.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), database);
+
+        Flyway.configure()
+                .dataSource(jdbcUrl, POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(jdbcUrl);
+        dataSource.setUser(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        dataSource.setReWriteBatchedInserts(true);
+
+        HibernateConfig config = new HibernateConfig();
+        ReflectionTestUtils.setField(config, "jdbcBatchSize", 50);
+        LocalSessionFactoryBean factoryBean = config.sessionFactory(recording(dataSource));
+        // кэш второго уровня общий для JVM и между базами разных классов не нужен
+        Properties properties = factoryBean.getHibernateProperties();
+        properties.put("hibernate.cache.use_second_level_cache", "false");
+        properties.put("hibernate.cache.use_query_cache", "false");
+        properties.remove("hibernate.cache.region.factory_class");
+        try {
+            factoryBean.afterPropertiesSet();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        sessionFactory = factoryBean.getObject();
+        transactionTemplate = new TransactionTemplate(new HibernateTransactionManager(sessionFactory));
+    }
+
+    @AfterAll
+    static void closeDatabase() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    /**
+     * Подставляет репозиторию сессию текущей транзакции, как это делает @PersistenceContext в приложении
+     */
+    protected static <R> R repository(R repository) {
+        Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Session of current transaction";
+                    default -> invoke(sessionFactory.getCurrentSession(), method, args);
+                });
+        ReflectionTestUtils.setField(repository, "session", session);
+        return repository;
+    }
+
+    protected static <T> T inTransaction(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    protected static void inTransaction(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> work.run());
+    }
+
+    /**
+     * Выполняет запрос репозитория и возвращает планы всех выполненных им операторов по порядку.
+     * Параметры подставляются в SQL литералами, поэтому план строится для конкретных значений
+     */
+    protected static List<String> explainAll(Supplier<?> query) throws SQLException {
+        RECORDED.clear();
+        recording = true;
+        try {
+            inTransaction(query);
+        } finally {
+            recording = false;
+        }
+        List<String> plans = new ArrayList<>();
+        for (RecordedStatement statement : List.copyOf(RECORDED)) {
+            plans.add(explain(statement.inline()));
+        }
+        return plans;
+    }
+
+    /**
+     * План последнего оператора, выполненного запросом репозитория
+     */
+    protected static String explainExecuted(Supplier<?> query) throws SQLException {
+        List<String> plans = explainAll(query);
+        if (plans.isEmpty()) {
+            throw new IllegalStateException("query did not execute any statement");
+        }
+        return plans.get(plans.size() - 1);
+    }
+
+    protected static String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("explain " + sql)) {
+            while (resultSet.next()) {
+                plan.append(resultSet.getString(1)).append(System.lineSeparator());
+            }
+        }
+        return plan.toString();
+    }
+
+    protected static Connection connect() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    protected static void execute(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    protected static int executeUpdate(String sql, Object... parameters) throws SQLException {
+        try (Connection connection = connect(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Первая колонка первой строки запроса или null, если строк нет
+     */
+    protected static <T> T queryForObject(String sql, Class<T> type, Object... parameters) throws SQLException {
+        try (Connection connection = connect(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getObject(1, type) : null;
+            }
+        }
+    }
+
+    /**
+     * Пользователи user1@example.com ... userN@example.com, идентификаторы возвращаются в порядке username
+     */
+    protected static List<UUID> insertUsers(int count) throws SQLException {
+        execute("""
+                insert into "user" (first_name, last_name, phone, username, password, role)
+                select 'first' || i, 'last' || i, '+7900' || i, 'user' || i || '@example.com', 'password', 'ROLE_USER'
+                from generate_series(1, %d) i""".formatted(count));
+        List<UUID> ids = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select user_id from \"user\" order by username")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getObject(1, UUID.class));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Объявление продавца в первом городе и первом типе из справочников
+     */
+    protected static UUID insertAdvertisement(UUID sellerId, int quantity) throws SQLException {
+        return queryForObject("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity)
+                values (?, (select min(city_id::text)::uuid from city),
+                        (select min(advertisement_type_id::text)::uuid from advertisement_type),
+                        'title', 'description', 100, ?)
+                returning advertisement_id""", UUID.class, sellerId, quantity);
+    }
+
+    private static DataSource recording(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                result instanceof Connection connection ? proxy(Connection.class, connection, (m, a, r) ->
+                        r instanceof PreparedStatement statement && m.getName().startsWith("prepare")
+                                ? recording(statement, (String) a[0]) : r) : result);
+    }
+
+    private static PreparedStatement recording(PreparedStatement statement, String sql) {
+        Map<Integer, Object> parameters = new TreeMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        parameters.put(index, name.equals("setNull") ? null : args[1]);
+                    } else if (name.equals("clearParameters")) {
+                        parameters.clear();
+                    } else if (recording && args == null
+                            && (name.equals("addBatch") || name.startsWith("execute") && !name.equals("executeBatch"))) {
+                        RECORDED.add(new RecordedStatement(sql, new TreeMap<>(parameters)));
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ResultMapper mapper) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> mapper.map(method, args, invoke(target, method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object[] args, Object result);
+    }
+
+    /**
+     * Оператор, отправленный Hibernate в базу, с параметрами по номерам
+     */
+    private record RecordedStatement(String sql, Map<Integer, Object> parameters) {
+
+        /**
+         * SQL с параметрами, подставленными литералами вместо ? вне строк и идентификаторов в кавычках
+         */
+        String inline() {
+            StringBuilder result = new StringBuilder();
+            int index = 0;
+            char quote = 0;
+            for (char c : sql.toCharArray()) {
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                    result.append(c);
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                    result.append(c);
+                } else if (c == '?') {
+                    result.append(literal(parameters.get(++index)));
+                } else {
+                    result.append(c);
+                }
+            }
+            return result.toString();
+        }
+
+        private static String literal(Object value) {
+            if (value == null) return "null";
+            if (value instanceof Number || value instanceof Boolean) return value.toString();
+            return "'" + value.toString().replace("'", "''") + "'";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.banana.repository;
+
+import org.banana.dto.advertisement.AdvertisementCursor;
+import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет по EXPLAIN запросов ленты из AdvertisementRepositoryImpl, что лента объявлений читается
+ * по индексу в нужном порядке, а не сортирует всю отфильтрованную выборку
+ */
+class AdvertisementFeedPlanTest extends AbstractRepositoryTest {
+
+    private static final int LIMIT = 21;
+
+    private static AdvertisementRepositoryImpl advertisementRepository;
+    private static UUID cityId;
+    private static UUID typeId;
+    private static UUID otherCityId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        advertisementRepository = repository(new AdvertisementRepositoryImpl());
+        execute("select setseed(0.42)");
+        insertUsers(500);
+        execute("""
+                insert into rating (user_id, rater_id, rating_value)
+                select u.user_id, r.user_id, 1 + floor(random() * 5)::int
+                from "user" u
+                join "user" r on r.user_id <> u.user_id
+                where random() < 0.02""");
+        execute("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity,
+                                           is_promoted, create_date, close_date)
+                select u.ids[1 + i % cardinality(u.ids)],
+                       c.ids[1 + i % cardinality(c.ids)],
+                       t.ids[1 + (i / 7) % cardinality(t.ids)],
+                       'title ' || i, 'description ' || i, 100 + i % 1000, 1 + i % 10,
+                       random() < 0.01,
+                       now() - make_interval(mins => i),
+                       case when random() < 0.1 then now() end
+                from generate_series(1, 100000) i,
+                     (select array_agg(user_id) as ids from "user") u,
+                     (select array_agg(city_id) as ids from city) c,
+                     (select array_agg(advertisement_type_id) as ids from advertisement_type) t""");
+        execute("analyze");
+
+        cityId = queryForObject(
+                "select city_id from advertisement group by city_id, advertisement_type_id order by count(*) desc limit 1",
+                UUID.class);
+        typeId = queryForObject(
+                "select advertisement_type_id from advertisement group by city_id, advertisement_type_id order by count(*) desc limit 1",
+                UUID.class);
+        otherCityId = queryForObject("select city_id from city where city_id <> ? order by city_id limit 1", UUID.class, cityId);
+    }
+
+    @Test
+    void feedOfOpenedAdvertisements_usesIndexOrder() throws SQLException {
+        String plan = explainExecuted(() -> advertisementRepository.findAllFiltered(new AdvertisementFilterDto(), 0, LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_advertisement_feed"), plan);
+    }
+
+    @Test
+    void feedFilteredByCityAndType_usesIndexOrder() throws SQLException {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        filter.setCityIds(List.of(cityId));
+        filter.setAdvertisementTypeIds(List.of(typeId));
+
+        String plan = explainExecuted(() -> advertisementRepository.findAllFilteredAfter(filter, null, LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_advertisement_feed"), plan);
+    }
+
+    /**
+     * Несколько значений в IN дают несколько диапазонов index_advertisement_feed, и общего порядка индекс
+     * не дает: план либо идет по index_advertisement_feed_opened с фильтром по городам, либо читает диапазоны
+     * выбранных городов и сортирует все их строки, а не только страницу. Проверяется только, что полного
+     * перебора таблицы нет ни в одном варианте
+     */
+    @Test
+    void feedFilteredBySeveralCities_readsIndexRanges() throws SQLException {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        filter.setCityIds(List.of(cityId, otherCityId));
+        filter.setAdvertisementTypeIds(List.of(typeId));
+
+        String plan = explainExecuted(() -> advertisementRepository.findAllFilteredAfter(filter, null, LIMIT));
+
+        assertFalse(plan.contains("Seq Scan on advertisement"), plan);
+        assertTrue(plan.contains("index_advertisement_feed"), plan);
+    }
+
+    @Test
+    void feedPageAfterCursor_usesIndexOrder() throws SQLException {
+        AdvertisementCursor cursor = new AdvertisementCursor(false, new BigDecimal("3.5"), 10,
+                LocalDateTime.now().minusDays(1), UUID.randomUUID());
+
+        String plan = explainExecuted(() -> advertisementRepository.findAllFilteredAfter(new AdvertisementFilterDto(), cursor, LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_advertisement_feed"), plan);
+    }
+}
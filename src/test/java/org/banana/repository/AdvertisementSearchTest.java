@@ -0,0 +1,91 @@
+package org.banana.repository;
+
+import org.banana.dto.advertisement.AdvertisementFilterDto;
+import org.banana.dto.advertisement.AdvertisementResponseDto;
+import org.banana.entity.Advertisement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поиск объявлений функциями fts_match, fts_rank, trgm_match и trgm_similarity из SearchFunctionContributor
+ * по search_vector и индексам миграции V1.5
+ */
+class AdvertisementSearchTest extends AbstractRepositoryTest {
+
+    private static AdvertisementRepositoryImpl advertisementRepository;
+    private static UUID laptopInTitleId;
+    private static UUID laptopInDescriptionId;
+    private static UUID bicycleId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        advertisementRepository = repository(new AdvertisementRepositoryImpl());
+        UUID sellerId = insertUsers(1).get(0);
+        laptopInTitleId = insertAdvertisement(sellerId, "Игровой ноутбук", "Мощная видеокарта, 32 ГБ памяти");
+        laptopInDescriptionId = insertAdvertisement(sellerId, "Сумка", "Подходит для ноутбука с диагональю 15 дюймов");
+        bicycleId = insertAdvertisement(sellerId, "Горный велосипед", "Алюминиевая рама, 21 скорость");
+    }
+
+    @Test
+    void search_whenWordInTitleAndDescription_thenFindBothAndRankTitleFirst() {
+        List<AdvertisementResponseDto> found = search("ноутбуки", false);
+
+        assertEquals(List.of(laptopInTitleId, laptopInDescriptionId), ids(found));
+    }
+
+    @Test
+    void search_whenPhraseExcludesWord_thenApplyWebSearchSyntax() {
+        List<AdvertisementResponseDto> found = search("ноутбук -сумка", false);
+
+        assertEquals(List.of(laptopInTitleId), ids(found));
+    }
+
+    @Test
+    void search_whenTitleHasTypo_thenFindOnlyWithFuzzySearch() {
+        assertTrue(search("велосипет", false).isEmpty());
+
+        assertEquals(List.of(bicycleId), ids(search("велосипет", true)));
+    }
+
+    @Test
+    void save_whenSearchVectorLoaded_thenKeepVectorFilledByTrigger() throws SQLException {
+        Advertisement advertisement = inTransaction(() -> advertisementRepository.findById(bicycleId).orElseThrow());
+        assertTrue(advertisement.getSearchVector().contains("велосипед"), advertisement.getSearchVector());
+
+        // столбец только для чтения: сохранение не пишет его даже после изменения в памяти
+        advertisement.setSearchVector(null);
+        advertisement.setPrice(new BigDecimal("200"));
+        inTransaction(() -> advertisementRepository.save(advertisement));
+
+        assertTrue(queryForObject("select search_vector is not null from advertisement where advertisement_id = ?",
+                Boolean.class, bicycleId));
+    }
+
+    private static List<AdvertisementResponseDto> search(String searchParam, boolean fuzzySearch) {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        filter.setSearchParam(searchParam);
+        filter.setFuzzySearch(fuzzySearch);
+        return inTransaction(() -> advertisementRepository.findAllFiltered(filter, 0, 10));
+    }
+
+    private static List<UUID> ids(List<AdvertisementResponseDto> advertisements) {
+        return advertisements.stream().map(AdvertisementResponseDto::getId).toList();
+    }
+
+    private static UUID insertAdvertisement(UUID sellerId, String title, String description) throws SQLException {
+        return queryForObject("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity)
+                values (?, (select min(city_id::text)::uuid from city),
+                        (select min(advertisement_type_id::text)::uuid from advertisement_type),
+                        ?, ?, 100, 1)
+                returning advertisement_id""", UUID.class, sellerId, title, description);
+    }
+}
@@ -0,0 +1,146 @@
+package org.banana.repository;
+
+import org.banana.entity.Conversation;
+import org.banana.entity.Message;
+import org.banana.util.ConversationKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сводка переписки из ConversationRepositoryImpl.applyMessages: пакет обновляет каждую переписку один раз, а когда
+ * сообщения применяются не в порядке времени, последнее сообщение и отметки прочтения не сдвигаются назад,
+ * и счетчики непрочитанных остаются равными числу сообщений собеседника после отметки
+ */
+class ConversationLastMessageTest extends AbstractRepositoryTest {
+
+    private static MessageRepositoryImpl messageRepository;
+    private static ConversationRepositoryImpl conversationRepository;
+    private static List<UUID> users;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        messageRepository = repository(new MessageRepositoryImpl());
+        conversationRepository = repository(new ConversationRepositoryImpl());
+        users = insertUsers(7);
+    }
+
+    @Test
+    void applyMessage_whenOlderMessageAppliedLast_thenKeepLastMessageAndRecipientCounter() {
+        UUID firstId = users.get(0);
+        UUID secondId = users.get(1);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Message first = send(firstId, secondId, now.minusMinutes(3));
+        Message reply = send(secondId, firstId, now.minusMinutes(1));
+        // отправлено раньше ответа, но применяется после него
+        Message late = send(firstId, secondId, now.minusMinutes(2));
+
+        assertEquals(0, apply(first));
+        assertEquals(1, apply(reply));
+        assertEquals(0, apply(late));
+
+        Conversation conversation = conversation(firstId, secondId);
+        assertEquals(reply.getId(), conversation.getLastMessageId());
+        assertEquals(3L, conversation.getMessageCount());
+        assertEquals(reply.getId(), readMessageId(conversation, secondId));
+        assertEquals(0, unreadCount(conversation, secondId));
+        // отметка отправителя сдвинулась вперед на его позднее сообщение, ответ собеседника им не прочитан
+        assertEquals(late.getId(), readMessageId(conversation, firstId));
+        assertEquals(1, unreadCount(conversation, firstId));
+    }
+
+    @Test
+    void applyMessage_whenMessageOlderThanSenderReadMark_thenKeepReadMarkAndCounter() {
+        UUID firstId = users.get(2);
+        UUID secondId = users.get(3);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Message incoming = send(secondId, firstId, now.minusMinutes(3));
+        Message answer = send(firstId, secondId, now.minusMinutes(2));
+        Message incomingAfterAnswer = send(secondId, firstId, now.minusMinutes(1));
+        Message late = send(firstId, secondId, now.minusMinutes(4));
+
+        apply(incoming);
+        assertEquals(1, apply(answer));
+        apply(incomingAfterAnswer);
+        assertEquals(0, apply(late));
+
+        Conversation conversation = conversation(firstId, secondId);
+        assertEquals(incomingAfterAnswer.getId(), conversation.getLastMessageId());
+        assertEquals(answer.getId(), readMessageId(conversation, firstId));
+        assertEquals(1, unreadCount(conversation, firstId));
+        // сообщение раньше отметки получателя уже не может быть для него непрочитанным
+        assertEquals(0, unreadCount(conversation, secondId));
+    }
+
+    @Test
+    void applyMessages_whenBatchToSeveralConversations_thenApplyEachConversationOnce() {
+        UUID senderId = users.get(4);
+        UUID partnerId = users.get(5);
+        UUID newPartnerId = users.get(6);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        apply(send(partnerId, senderId, now.minusMinutes(1)));
+        List<Message> batch = List.of(
+                new Message(null, senderId, partnerId, "first", now),
+                new Message(null, senderId, newPartnerId, "second", now),
+                new Message(null, senderId, partnerId, "third", now));
+
+        Map<UUID, Integer> readCounts = inTransaction(() -> {
+            messageRepository.insertAll(batch);
+            return conversationRepository.applyMessages(batch);
+        });
+
+        UUID partnerKey = ConversationKey.of(senderId, partnerId, null);
+        UUID newPartnerKey = ConversationKey.of(senderId, newPartnerId, null);
+        assertEquals(Map.of(partnerKey, 1, newPartnerKey, 0), readCounts);
+
+        Conversation conversation = conversation(senderId, partnerId);
+        // при равном времени порядок задает message_id
+        UUID latestId = batch.get(0).getId().toString().compareTo(batch.get(2).getId().toString()) > 0
+                ? batch.get(0).getId()
+                : batch.get(2).getId();
+        assertEquals(latestId, conversation.getLastMessageId());
+        assertEquals(3L, conversation.getMessageCount());
+        assertEquals(latestId, readMessageId(conversation, senderId));
+        assertEquals(0, unreadCount(conversation, senderId));
+        assertEquals(2, unreadCount(conversation, partnerId));
+
+        Conversation newConversation = conversation(senderId, newPartnerId);
+        assertEquals(batch.get(1).getId(), newConversation.getLastMessageId());
+        assertEquals(1L, newConversation.getMessageCount());
+        assertEquals(1, unreadCount(newConversation, newPartnerId));
+    }
+
+    private static Message send(UUID senderId, UUID recipientId, LocalDateTime dateTime) {
+        Message message = new Message(null, senderId, recipientId, "text", dateTime);
+        inTransaction(() -> messageRepository.insertAll(List.of(message)));
+        return message;
+    }
+
+    private static int apply(Message message) {
+        return inTransaction(() -> conversationRepository.applyMessage(message));
+    }
+
+    private static Conversation conversation(UUID firstId, UUID secondId) {
+        return inTransaction(() -> conversationRepository.findById(ConversationKey.of(firstId, secondId, null)).orElseThrow());
+    }
+
+    private static UUID readMessageId(Conversation conversation, UUID userId) {
+        return userId.equals(conversation.getFirstUserId())
+                ? conversation.getFirstUserLastReadMessageId()
+                : conversation.getSecondUserLastReadMessageId();
+    }
+
+    private static int unreadCount(Conversation conversation, UUID userId) {
+        return userId.equals(conversation.getFirstUserId())
+                ? conversation.getFirstUserUnreadCount()
+                : conversation.getSecondUserUnreadCount();
+    }
+}
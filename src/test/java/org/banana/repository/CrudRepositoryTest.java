@@ -0,0 +1,162 @@
+package org.banana.repository;
+
+import org.banana.entity.City;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пакетные операции AbstractCrudRepositoryImpl на примере CityRepositoryImpl: saveAll пакетами JDBC,
+ * findAllById и deleteAllById одним запросом, пустые списки без обращения к базе
+ */
+class CrudRepositoryTest extends AbstractRepositoryTest {
+
+    // больше двух пакетов hibernate.jdbc.batch_size (50 в AbstractRepositoryTest)
+    private static final int CITIES = 120;
+
+    private static CityRepositoryImpl cityRepository;
+
+    @BeforeAll
+    static void setUp() {
+        cityRepository = repository(new CityRepositoryImpl());
+    }
+
+    @Test
+    void saveAll_whenSeveralBatches_thenSaveAllAndKeepEntitiesLoadedBeforeManaged() throws SQLException {
+        UUID loadedId = queryForObject("select city_id from city order by name limit 1", UUID.class);
+        long countBefore = inTransaction(() -> cityRepository.count());
+
+        List<City> saved = inTransaction(() -> {
+            City loaded = cityRepository.findById(loadedId).orElseThrow();
+            List<City> result = toList(cityRepository.saveAll(newCities("saveAll")));
+            // изменение загруженной до saveAll сущности уходит в базу при коммите, она не отсоединена
+            loaded.setName("renamed after saveAll");
+            return result;
+        });
+
+        assertEquals(CITIES, saved.size());
+        saved.forEach(city -> assertNotNull(city.getId()));
+        assertEquals(countBefore + CITIES, inTransaction(() -> cityRepository.count()));
+        assertEquals("renamed after saveAll", queryForObject("select name from city where city_id = ?", String.class, loadedId));
+    }
+
+    @Test
+    void saveAll_whenDetachedCopyOfLoadedEntity_thenKeepLoadedInstanceManaged() throws SQLException {
+        UUID loadedId = queryForObject("select city_id from city order by name limit 1", UUID.class);
+
+        inTransaction(() -> {
+            City loaded = cityRepository.findById(loadedId).orElseThrow();
+            List<City> cities = newCities("saveAll copy");
+            // копия попадает в первый полный пакет, после которого сущности пакета отсоединяются
+            cities.add(0, new City(loadedId, "renamed by saveAll"));
+
+            List<City> result = toList(cityRepository.saveAll(cities));
+
+            assertSame(loaded, result.get(0));
+            loaded.setName("renamed after saveAll copy");
+        });
+
+        assertEquals("renamed after saveAll copy", queryForObject("select name from city where city_id = ?", String.class, loadedId));
+    }
+
+    @Test
+    void saveAll_whenEmpty_thenExecuteNothing() throws SQLException {
+        List<String> plans = explainAll(() -> {
+            assertFalse(cityRepository.saveAll(List.<City>of()).iterator().hasNext());
+            return null;
+        });
+
+        assertTrue(plans.isEmpty(), plans::toString);
+    }
+
+    @Test
+    void findAllById_whenSomeIdsMissing_thenReturnFoundInOneQuery() throws SQLException {
+        List<UUID> ids = saveCities("findAllById");
+        List<UUID> requested = new ArrayList<>(ids);
+        requested.add(UUID.randomUUID());
+
+        List<String> plans = explainAll(() -> {
+            Set<UUID> found = new HashSet<>();
+            cityRepository.findAllById(requested).forEach(city -> found.add(city.getId()));
+            assertEquals(new HashSet<>(ids), found);
+            return found;
+        });
+
+        assertEquals(1, plans.size(), plans::toString);
+    }
+
+    @Test
+    void findAllById_whenEmpty_thenExecuteNothing() throws SQLException {
+        List<String> plans = explainAll(() -> {
+            assertTrue(cityRepository.findAllById(List.of()).isEmpty());
+            return null;
+        });
+
+        assertTrue(plans.isEmpty(), plans::toString);
+    }
+
+    @Test
+    void deleteAllById_whenEntityLoaded_thenDeleteInOneStatementBypassingSession() throws SQLException {
+        List<UUID> ids = saveCities("deleteAllById");
+
+        inTransaction(() -> {
+            City loaded = cityRepository.findById(ids.get(0)).orElseThrow();
+
+            cityRepository.deleteAllById(ids);
+
+            assertFalse(cityRepository.existsById(ids.get(0)));
+            // экземпляр в сессии не отсоединен: find по-прежнему отдает его из контекста
+            assertSame(loaded, cityRepository.findById(ids.get(0)).orElseThrow());
+        });
+        assertEquals(0L, queryForObject("select count(*) from city where name like 'deleteAllById%'", Long.class));
+
+        List<UUID> more = saveCities("deleteAllById again");
+        List<String> plans = explainAll(() -> {
+            cityRepository.deleteAllById(more);
+            return null;
+        });
+        assertEquals(1, plans.size(), plans::toString);
+    }
+
+    @Test
+    void deleteAllById_whenEmpty_thenExecuteNothing() throws SQLException {
+        List<String> plans = explainAll(() -> {
+            cityRepository.deleteAllById(List.of());
+            return null;
+        });
+
+        assertTrue(plans.isEmpty(), plans::toString);
+    }
+
+    private static List<UUID> saveCities(String prefix) {
+        return inTransaction(() -> toList(cityRepository.saveAll(newCities(prefix)))).stream()
+                .map(City::getId)
+                .toList();
+    }
+
+    private static List<City> newCities(String prefix) {
+        List<City> cities = new ArrayList<>(CITIES);
+        for (int i = 0; i < CITIES; i++) {
+            cities.add(new City(prefix + " " + i));
+        }
+        return cities;
+    }
+
+    private static <E> List<E> toList(Iterable<E> iterable) {
+        List<E> list = new ArrayList<>();
+        iterable.forEach(list::add);
+        return list;
+    }
+}
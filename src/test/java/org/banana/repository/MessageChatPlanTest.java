@@ -0,0 +1,123 @@
+package org.banana.repository;
+
+import org.banana.dto.message.MessageFilterDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет по EXPLAIN запросов MessageRepositoryImpl и подсчета прочитанных в ConversationRepositoryImpl,
+ * что запросы чата читают один диапазон индекса по conversation_key, а не перебирают все сообщения пользователей.
+ * message секционирована по месяцам (V1.13), поэтому индекс в плане - индекс секции, а порядок
+ * по нескольким секциям дает Merge Append без отдельной сортировки
+ */
+class MessageChatPlanTest extends AbstractRepositoryTest {
+
+    // индексы секций называются по секции и колонкам, например message_y2025m05_conversation_key_message_date_time_...
+    private static final String INDEX = "conversation_key_message_date_time";
+    // узел сортировки, а не строка "Sort Key" у Merge Append
+    private static final Pattern SORT_NODE = Pattern.compile("^\\s*(->\\s+)?(Incremental )?Sort\\s+\\(", Pattern.MULTILINE);
+
+    private static MessageRepositoryImpl messageRepository;
+    private static ConversationRepositoryImpl conversationRepository;
+    private static UUID conversationKey;
+    private static UUID senderId;
+    private static UUID recipientId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        messageRepository = repository(new MessageRepositoryImpl());
+        conversationRepository = repository(new ConversationRepositoryImpl());
+        insertUsers(500);
+        // 2000 переписок по 100 сообщений, половина без объявления
+        execute("""
+                insert into message (advertisement_id, sender_id, recipient_id, message_text, message_date_time,
+                                     conversation_key)
+                select null,
+                       case when i % 2 = 0 then u.ids[1 + k % 500] else u.ids[1 + (k + 1 + k / 500) % 500] end,
+                       case when i % 2 = 0 then u.ids[1 + (k + 1 + k / 500) % 500] else u.ids[1 + k % 500] end,
+                       'message ' || i,
+                       now() - make_interval(secs => i),
+                       conversation_key(u.ids[1 + k % 500], u.ids[1 + (k + 1 + k / 500) % 500], null)
+                from generate_series(1, 200000) i
+                cross join lateral (select i % 2000 as k) c,
+                     (select array_agg(user_id) as ids from "user") u""");
+        execute("analyze");
+
+        String latest = "select %s from message order by message_date_time desc limit 1";
+        conversationKey = queryForObject(latest.formatted("conversation_key"), UUID.class);
+        senderId = queryForObject(latest.formatted("sender_id"), UUID.class);
+        recipientId = queryForObject(latest.formatted("recipient_id"), UUID.class);
+    }
+
+    @Test
+    void lastMessagesOfChat_usesIndexOrder() throws SQLException {
+        String plan = explainExecuted(() -> messageRepository.findAllByFilter(filter()));
+
+        assertFalse(SORT_NODE.matcher(plan).find(), plan);
+        assertTrue(plan.contains(INDEX), plan);
+    }
+
+    @Test
+    void messagesOfChatAfterCursor_usesIndexOrder() throws SQLException {
+        MessageFilterDto filter = filter();
+        filter.setCursorDateTime(LocalDateTime.now().minusDays(1));
+        filter.setCursorMessageId(UUID.randomUUID());
+        filter.setIsBefore(false);
+
+        String plan = explainExecuted(() -> messageRepository.findAllByFilter(filter));
+
+        assertFalse(SORT_NODE.matcher(plan).find(), plan);
+        assertTrue(plan.contains(INDEX), plan);
+    }
+
+    @Test
+    void firstUnreadAfterReadWatermark_usesIndexOrder() throws SQLException {
+        MessageFilterDto filter = filter();
+        filter.setUnreadMessagesCount(5L);
+        filter.setLastReadDateTime(LocalDateTime.now().minusHours(1));
+        filter.setLastReadMessageId(UUID.randomUUID());
+
+        // первый оператор ищет первое непрочитанное, следующие читают страницу вокруг него
+        List<String> plans = explainAll(() -> messageRepository.findAllByFilter(filter));
+
+        assertFalse(plans.isEmpty());
+        for (String plan : plans) {
+            assertFalse(SORT_NODE.matcher(plan).find(), plan);
+            assertTrue(plan.contains(INDEX), plan);
+        }
+    }
+
+    @Test
+    void messagesReadBetweenWatermarks_usesIndexRange() throws SQLException {
+        String plan = explainExecuted(() -> conversationRepository.markReadUpTo(
+                conversationKey, recipientId, LocalDateTime.now(), UUID.randomUUID()));
+
+        assertTrue(plan.contains(INDEX), plan);
+    }
+
+    @Test
+    void latestMessagesOfSeveralChats_readsIndexPerChat() throws SQLException {
+        String plan = explainExecuted(() -> messageRepository.findLatestByConversationKeys(
+                List.of(conversationKey, UUID.randomUUID()), 10));
+
+        assertFalse(plan.contains("Seq Scan on message"), plan);
+        assertTrue(plan.contains(INDEX), plan);
+    }
+
+    private static MessageFilterDto filter() {
+        MessageFilterDto filter = new MessageFilterDto();
+        filter.setLimit(20);
+        filter.setCurrentUserId(recipientId);
+        filter.setSecondUserId(senderId);
+        return filter;
+    }
+}
@@ -0,0 +1,218 @@
+package org.banana.repository;
+
+import org.banana.dto.message.MessageFilterDto;
+import org.banana.dto.message.MessageResponseDto;
+import org.banana.entity.Conversation;
+import org.banana.entity.Message;
+import org.banana.util.ConversationKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Секционирование message по месяцам (V1.13): создание секций, перенос строк из секции по умолчанию,
+ * постраничное чтение чата через границу месяцев запросом MessageRepositoryImpl и архивация старых секций
+ * вместе с поправкой сводки переписок (V1.18), по шагам в отдельных транзакциях (V1.21)
+ */
+class MessagePartitionTest extends AbstractRepositoryTest {
+
+    private static MessageRepositoryImpl messageRepository;
+    private static ConversationRepositoryImpl conversationRepository;
+    private static UUID firstUserId;
+    private static UUID secondUserId;
+    private static UUID readerId;
+    private static UUID writerId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        messageRepository = repository(new MessageRepositoryImpl());
+        conversationRepository = repository(new ConversationRepositoryImpl());
+        List<UUID> users = insertUsers(4);
+        firstUserId = users.get(0);
+        secondUserId = users.get(1);
+        readerId = users.get(2);
+        writerId = users.get(3);
+    }
+
+    @Test
+    void migration_createsPartitionsForCurrentAndNextMonths() throws SQLException {
+        LocalDate today = LocalDate.now();
+
+        assertNotNull(partitionOf(today));
+        assertNotNull(partitionOf(today.plusMonths(3)));
+    }
+
+    @Test
+    void createPartitions_whenMessagesInDefaultPartition_thenMoveThemToNewPartition() throws SQLException {
+        LocalDateTime future = LocalDateTime.now().plusYears(5).withDayOfMonth(15);
+        UUID messageId = insertMessage(future);
+        assertEquals("message_default", partitionOfMessage(messageId));
+
+        assertEquals(1, createPartitions(future.toLocalDate(), future.toLocalDate()));
+
+        assertEquals(partitionName(future.toLocalDate()), partitionOfMessage(messageId));
+        assertEquals(0, createPartitions(future.toLocalDate(), future.toLocalDate()));
+    }
+
+    @Test
+    void pagesBeforeCursor_whenChatCrossesMonthBoundary_thenReturnAllMessagesInOrder() {
+        createPartitions(LocalDate.of(2019, 12, 1), LocalDate.of(2020, 1, 1));
+        List<UUID> expected = new ArrayList<>();
+        LocalDateTime boundary = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = -5; i <= 5; i++) {
+            expected.add(insertMessage(boundary.plusMinutes(i)));
+        }
+
+        List<UUID> found = new ArrayList<>();
+        MessageFilterDto filter = new MessageFilterDto();
+        filter.setLimit(3);
+        filter.setIsBefore(true);
+        filter.setCurrentUserId(firstUserId);
+        filter.setSecondUserId(secondUserId);
+        filter.setCursorDateTime(boundary.plusDays(1));
+        filter.setCursorMessageId(new UUID(0, 0));
+        while (true) {
+            List<MessageResponseDto> page = inTransaction(() -> messageRepository.findAllByFilter(filter));
+            if (page.isEmpty()) break;
+            found.addAll(0, page.stream().map(MessageResponseDto::getId).toList());
+            filter.setCursorDateTime(page.get(0).getMessageDateTime());
+            filter.setCursorMessageId(page.get(0).getId());
+        }
+
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void archivePartitions_whenMonthIsOld_thenMoveItsMessagesToArchiveAndDropPartition() throws SQLException {
+        LocalDate month = LocalDate.of(2010, 5, 1);
+        createPartitions(month, month);
+        for (int i = 0; i < 3; i++) {
+            insertMessage(month.atStartOfDay().plusHours(i));
+        }
+
+        int archived = archivePartitionsBefore(LocalDate.of(2010, 6, 1));
+
+        assertEquals(3, archived);
+        assertNull(partitionOf(month));
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("""
+                     select message_count, jsonb_array_length(messages) from message_archive
+                     where conversation_key = ? and archive_month = ?""")) {
+            statement.setObject(1, ConversationKey.of(firstUserId, secondUserId, null));
+            statement.setObject(2, month);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                assertEquals(3, resultSet.getInt(1));
+                assertEquals(3, resultSet.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    void archivePartitions_whenConversationHasArchivedMessages_thenSubtractThemFromSummary() throws SQLException {
+        LocalDate month = LocalDate.of(2009, 3, 1);
+        createPartitions(month, month);
+        sendAndApply(readerId, writerId, month.atStartOfDay().plusDays(9));
+        Message answer = sendAndApply(writerId, readerId, month.atStartOfDay().plusDays(10));
+        sendAndApply(writerId, readerId, month.atStartOfDay().plusDays(19));
+        UUID conversationKey = ConversationKey.of(readerId, writerId, null);
+        inTransaction(() -> conversationRepository.markReadUpTo(conversationKey, readerId,
+                answer.getMessageDateTime(), answer.getId()));
+        Message recent = sendAndApply(writerId, readerId, LocalDateTime.now());
+
+        int archived = archivePartitionsBefore(month.plusMonths(1));
+
+        assertEquals(3, archived);
+        Conversation conversation = inTransaction(() -> conversationRepository.findById(conversationKey).orElseThrow());
+        boolean readerFirst = readerId.equals(conversation.getFirstUserId());
+        assertEquals(1L, conversation.getMessageCount());
+        assertEquals(recent.getId(), conversation.getLastMessageId());
+        // непрочитанное архивное сообщение вычтено, осталось только новое
+        assertEquals(1, readerFirst ? conversation.getFirstUserUnreadCount() : conversation.getSecondUserUnreadCount());
+        assertNull(readerFirst ? conversation.getFirstUserLastReadMessageId() : conversation.getSecondUserLastReadMessageId());
+        assertEquals(0, readerFirst ? conversation.getSecondUserUnreadCount() : conversation.getFirstUserUnreadCount());
+        assertEquals(recent.getId(),
+                readerFirst ? conversation.getSecondUserLastReadMessageId() : conversation.getFirstUserLastReadMessageId());
+    }
+
+    @Test
+    void archiveDetachedPartition_whenReaderMarkedReadAfterDetach_thenRecountUnreadFromRemainingMessages() throws SQLException {
+        LocalDate month = LocalDate.of(2008, 7, 1);
+        createPartitions(month, month);
+        UUID firstReaderId = insertUsers(1).get(0);
+        sendAndApply(writerId, firstReaderId, month.atStartOfDay().plusDays(3));
+        Message recent = sendAndApply(writerId, firstReaderId, LocalDateTime.now());
+        UUID conversationKey = ConversationKey.of(firstReaderId, writerId, null);
+        String partition = partitionName(month);
+
+        assertEquals(1, (int) inTransaction(() -> messageRepository.detachPartition(partition, 1000)));
+        // отметка прочтения сдвигается, когда архивного сообщения в message уже нет: markReadUpTo его не вычитает
+        inTransaction(() -> conversationRepository.markReadUpTo(conversationKey, firstReaderId,
+                recent.getMessageDateTime(), recent.getId()));
+        assertEquals(0, (int) inTransaction(() -> messageRepository.detachPartition(partition, 1000)));
+        int archived = inTransaction(() -> messageRepository.archiveDetachedPartition(partition));
+
+        assertEquals(1, archived);
+        assertNull(partitionOf(month));
+        Conversation conversation = inTransaction(() -> conversationRepository.findById(conversationKey).orElseThrow());
+        assertEquals(1L, conversation.getMessageCount());
+        assertEquals(0, conversation.getFirstUserUnreadCount());
+        assertEquals(0, conversation.getSecondUserUnreadCount());
+    }
+
+    /**
+     * Архивация по шагам, как в MessagePartitionScheduler: каждая секция отсоединяется и переносится
+     * в своих транзакциях
+     */
+    private static int archivePartitionsBefore(LocalDate before) {
+        int archived = 0;
+        for (String partition : inTransaction(() -> messageRepository.findPartitionsToArchive(before))) {
+            inTransaction(() -> messageRepository.detachPartition(partition, 1000));
+            archived += inTransaction(() -> messageRepository.archiveDetachedPartition(partition));
+        }
+        return archived;
+    }
+
+    private static Message sendAndApply(UUID senderId, UUID recipientId, LocalDateTime messageDateTime) {
+        Message message = new Message(null, senderId, recipientId, "text", messageDateTime);
+        inTransaction(() -> {
+            messageRepository.insertAll(List.of(message));
+            conversationRepository.applyMessage(message);
+        });
+        return message;
+    }
+
+    private static UUID insertMessage(LocalDateTime messageDateTime) {
+        Message message = new Message(null, firstUserId, secondUserId, "text", messageDateTime);
+        return inTransaction(() -> messageRepository.insertAll(List.of(message)).get(0).getId());
+    }
+
+    private static int createPartitions(LocalDate from, LocalDate to) {
+        return inTransaction(() -> messageRepository.createPartitions(from, to));
+    }
+
+    private static String partitionOf(LocalDate month) throws SQLException {
+        return queryForObject("select to_regclass(?)::text", String.class, partitionName(month));
+    }
+
+    private static String partitionOfMessage(UUID messageId) throws SQLException {
+        return queryForObject("select tableoid::regclass::text from message where message_id = ?", String.class, messageId);
+    }
+
+    private static String partitionName(LocalDate month) {
+        return "message_y%04dm%02d".formatted(month.getYear(), month.getMonthValue());
+    }
+}
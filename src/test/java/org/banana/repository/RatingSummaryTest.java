@@ -0,0 +1,132 @@
+package org.banana.repository;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Итог оценок user_rating_summary и снимок рейтинга в объявлениях (V1.17): триггер на оператор держит их равными
+ * группировке rating и обновляет каждое открытое объявление продавца один раз за оператор, сколько бы оценок тот
+ * ни изменил. Закрытое объявление получает снимок при повторном открытии (V1.22)
+ */
+class RatingSummaryTest extends AbstractRepositoryTest {
+
+    private static final int ADVERTISEMENTS = 5;
+
+    private static List<UUID> users;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        users = insertUsers(50);
+    }
+
+    @Test
+    void ratingsInOneStatement_updateEachAdvertisementOfSellerOnce() throws SQLException {
+        UUID sellerId = users.get(0);
+        for (int i = 0; i < ADVERTISEMENTS; i++) {
+            insertAdvertisement(sellerId, 1);
+        }
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("""
+                    insert into rating (user_id, rater_id, rating_value)
+                    select '%s', u.user_id, 1 + u.n %% 5
+                    from (select user_id, row_number() over (order by user_id) as n from "user" where user_id <> '%1$s') u"""
+                    .formatted(sellerId));
+            try (ResultSet resultSet = statement.executeQuery(
+                    "select n_tup_upd from pg_stat_xact_user_tables where relname = 'advertisement'")) {
+                resultSet.next();
+                assertEquals(ADVERTISEMENTS, resultSet.getLong(1));
+            }
+            connection.commit();
+        }
+
+        assertSummaryEqualsGroupBy(sellerId);
+    }
+
+    @Test
+    void ratingsUpdatedMovedAndDeleted_keepSummaryAndSnapshotEqualGroupBy() throws SQLException {
+        UUID sellerId = users.get(1);
+        UUID otherSellerId = users.get(2);
+        insertAdvertisement(sellerId, 1);
+        insertAdvertisement(otherSellerId, 1);
+        for (int i = 3; i < 13; i++) {
+            executeUpdate("insert into rating (user_id, rater_id, rating_value) values (?, ?, ?)", sellerId, users.get(i), 1 + i % 5);
+        }
+        assertSummaryEqualsGroupBy(sellerId);
+
+        executeUpdate("update rating set rating_value = 5 where user_id = ? and rating_value < 3", sellerId);
+        assertSummaryEqualsGroupBy(sellerId);
+
+        executeUpdate("update rating set user_id = ? where user_id = ? and rating_value = 5", otherSellerId, sellerId);
+        assertSummaryEqualsGroupBy(sellerId);
+        assertSummaryEqualsGroupBy(otherSellerId);
+
+        executeUpdate("delete from rating where user_id = ?", sellerId);
+        assertEquals(0, queryForObject("select rating_count from user_rating_summary where user_id = ?", Integer.class, sellerId));
+        assertSnapshot(sellerId, BigDecimal.ZERO, 0);
+        assertNull(queryForObject("select average_rating from user_rating_view where user_id = ?", BigDecimal.class, sellerId));
+    }
+
+    @Test
+    void ratingsOfSellerWithClosedAdvertisement_updateOnlyOpenedAndRefreshClosedOnReopen() throws SQLException {
+        UUID sellerId = users.get(13);
+        UUID openedId = insertAdvertisement(sellerId, 1);
+        UUID closedId = insertAdvertisement(sellerId, 1);
+        executeUpdate("update advertisement set close_date = now() where advertisement_id = ?", closedId);
+
+        executeUpdate("insert into rating (user_id, rater_id, rating_value) values (?, ?, 4)", sellerId, users.get(14));
+
+        assertEquals(1, queryForObject("select seller_rating_count from advertisement where advertisement_id = ?", Integer.class, openedId));
+        assertEquals(0, queryForObject("select seller_rating_count from advertisement where advertisement_id = ?", Integer.class, closedId));
+
+        executeUpdate("update advertisement set close_date = null where advertisement_id = ?", closedId);
+
+        assertSummaryEqualsGroupBy(sellerId);
+    }
+
+    private static void assertSummaryEqualsGroupBy(UUID userId) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("""
+                     select sum(r.rating_value), count(*), sum(r.rating_value)::numeric / count(*),
+                            s.rating_sum, s.rating_count
+                     from rating r
+                     join user_rating_summary s on s.user_id = r.user_id
+                     where r.user_id = ?
+                     group by s.rating_sum, s.rating_count""")) {
+            statement.setObject(1, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                assertEquals(resultSet.getLong(1), resultSet.getLong(4));
+                assertEquals(resultSet.getInt(2), resultSet.getInt(5));
+                assertSnapshot(userId, resultSet.getBigDecimal(3), resultSet.getInt(2));
+            }
+        }
+    }
+
+    private static void assertSnapshot(UUID sellerId, BigDecimal averageRating, int ratingCount) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(
+                     "select seller_rating, seller_rating_count from advertisement where user_id = ?")) {
+            statement.setObject(1, sellerId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    assertEquals(0, averageRating.compareTo(resultSet.getBigDecimal(1)), resultSet.getBigDecimal(1) + " != " + averageRating);
+                    assertEquals(ratingCount, resultSet.getInt(2));
+                }
+            }
+        }
+    }
+}
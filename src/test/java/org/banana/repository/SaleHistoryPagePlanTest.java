@@ -0,0 +1,84 @@
+package org.banana.repository;
+
+import org.banana.dto.KeysetCursor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверяет по EXPLAIN запросов SaleHistoryRepositoryImpl, что страницы продаж объявления и покупок
+ * пользователя читаются диапазоном индекса (V1.16) в нужном порядке, а не сортируют все продажи
+ */
+class SaleHistoryPagePlanTest extends AbstractRepositoryTest {
+
+    private static final int LIMIT = 21;
+
+    private static SaleHistoryRepositoryImpl saleHistoryRepository;
+    private static UUID advertisementId;
+    private static UUID buyerId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        saleHistoryRepository = repository(new SaleHistoryRepositoryImpl());
+        execute("select setseed(0.42)");
+        insertUsers(500);
+        execute("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity)
+                select u.ids[1 + i % cardinality(u.ids)],
+                       (select min(city_id::text)::uuid from city),
+                       (select min(advertisement_type_id::text)::uuid from advertisement_type),
+                       'title ' || i, 'description ' || i, 100, 1000
+                from generate_series(1, 2000) i,
+                     (select array_agg(user_id) as ids from "user") u""");
+        execute("""
+                insert into sale_history (advertisement_id, buyer_id, sale_date_time, quantity)
+                select a.ids[1 + floor(random() * cardinality(a.ids))::int],
+                       u.ids[1 + floor(random() * cardinality(u.ids))::int],
+                       now() - make_interval(mins => i),
+                       1
+                from generate_series(1, 200000) i,
+                     (select array_agg(advertisement_id) as ids from advertisement) a,
+                     (select array_agg(user_id) as ids from "user") u""");
+        execute("analyze");
+
+        advertisementId = queryForObject(
+                "select advertisement_id from sale_history group by 1 order by count(*) desc limit 1", UUID.class);
+        buyerId = queryForObject(
+                "select buyer_id from sale_history group by 1 order by count(*) desc limit 1", UUID.class);
+    }
+
+    @Test
+    void salesOfAdvertisement_usesIndexOrder() throws SQLException {
+        String plan = explainExecuted(() -> saleHistoryRepository.findAllByAdvertisementIdAfter(
+                advertisementId, null, null, null, LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_sale_history_advertisement_id_sale_date_time_id"), plan);
+    }
+
+    @Test
+    void salesOfAdvertisementForPeriodAfterCursor_usesIndexOrder() throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        String plan = explainExecuted(() -> saleHistoryRepository.findAllByAdvertisementIdAfter(
+                advertisementId, now.minusDays(30), now, new KeysetCursor(now.minusDays(1), UUID.randomUUID()), LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_sale_history_advertisement_id_sale_date_time_id"), plan);
+    }
+
+    @Test
+    void purchasesOfBuyerForPeriodAfterCursor_usesIndexOrder() throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        String plan = explainExecuted(() -> saleHistoryRepository.findAllByBuyerIdAfter(
+                buyerId, now.minusDays(30), now, new KeysetCursor(now.minusDays(1), UUID.randomUUID()), LIMIT));
+
+        assertFalse(plan.contains("Sort"), plan);
+        assertTrue(plan.contains("index_sale_history_buyer_id_sale_date_time_id"), plan);
+    }
+}
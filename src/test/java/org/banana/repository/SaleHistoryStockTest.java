@@ -0,0 +1,110 @@
+package org.banana.repository;
+
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Покупка и отмена продажи одним запросом в SaleHistoryRepositoryImpl: параллельные покупки одного
+ * объявления не уводят остаток в минус и не теряют продаж, а отмена возвращает количество
+ */
+class SaleHistoryStockTest extends AbstractRepositoryTest {
+
+    private static SaleHistoryRepositoryImpl saleHistoryRepository;
+    private static UUID sellerId;
+    private static UUID buyerId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        saleHistoryRepository = repository(new SaleHistoryRepositoryImpl());
+        List<UUID> users = insertUsers(2);
+        sellerId = users.get(0);
+        buyerId = users.get(1);
+    }
+
+    @Test
+    void insertWithQuantityDecrement_whenBuyersCompete_thenSellExactlyAvailableQuantity() throws Exception {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> purchases = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                purchases.add(() -> buy(advertisementId, 1) != null);
+            }
+            int sold = 0;
+            for (Future<Boolean> purchase : executor.invokeAll(purchases)) {
+                sold += purchase.get() ? 1 : 0;
+            }
+
+            assertEquals(10, sold);
+            assertEquals(0, quantityOf(advertisementId));
+            assertEquals(10, salesOf(advertisementId));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void insertWithQuantityDecrement_whenQuantityIsLow_thenInsertNothing() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 2);
+
+        assertTrue(inTransaction(() -> saleHistoryRepository.insertWithQuantityDecrement(
+                advertisementId, buyerId, 3, LocalDateTime.now())).isEmpty());
+        assertEquals(2, quantityOf(advertisementId));
+        assertEquals(0, salesOf(advertisementId));
+    }
+
+    @Test
+    void deleteWithQuantityRestore_whenSaleExists_thenReturnQuantityOnce() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 5);
+        UUID saleId = buy(advertisementId, 3);
+
+        assertEquals(1, deleteSale(saleId));
+        assertEquals(0, deleteSale(saleId));
+        assertEquals(5, quantityOf(advertisementId));
+        assertEquals(0, salesOf(advertisementId));
+    }
+
+    @Test
+    void deleteWithQuantityRestore_whenAdvertisementClosed_thenKeepSale() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 5);
+        UUID saleId = buy(advertisementId, 3);
+        executeUpdate("update advertisement set close_date = now() where advertisement_id = ?", advertisementId);
+
+        assertEquals(0, deleteSale(saleId));
+        assertEquals(2, quantityOf(advertisementId));
+        assertEquals(1, salesOf(advertisementId));
+    }
+
+    private static UUID buy(UUID advertisementId, int quantity) {
+        return inTransaction(() -> saleHistoryRepository
+                .insertWithQuantityDecrement(advertisementId, buyerId, quantity, LocalDateTime.now())
+                .map(SaleHistoryResponseDto::getId)
+                .orElse(null));
+    }
+
+    private static int deleteSale(UUID saleId) {
+        return inTransaction(() -> saleHistoryRepository.deleteWithQuantityRestore(saleId));
+    }
+
+    private static int quantityOf(UUID advertisementId) throws SQLException {
+        return queryForObject("select quantity from advertisement where advertisement_id = ?", Integer.class, advertisementId);
+    }
+
+    private static int salesOf(UUID advertisementId) throws SQLException {
+        return queryForObject("select count(*) from sale_history where advertisement_id = ?", Long.class, advertisementId).intValue();
+    }
+}
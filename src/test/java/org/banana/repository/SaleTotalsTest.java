@@ -0,0 +1,169 @@
+package org.banana.repository;
+
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Итоги продаж sale_totals и sale_daily_totals (V1.15): триггер держит их равными группировке sale_history
+ * при вставке по одной и пакетом, отмене и изменении продажи, а статистика продавца читает итоги,
+ * не трогая sale_history
+ */
+class SaleTotalsTest extends AbstractRepositoryTest {
+
+    // прежний запрос статистики, с которым сверяются итоги
+    private static final String TOTALS_BY_GROUP_BY = """
+            select sum(sh.quantity), min(sh.sale_date_time), max(sh.sale_date_time)
+            from sale_history sh
+            where sh.advertisement_id = ?""";
+
+    private static SaleHistoryRepositoryImpl saleHistoryRepository;
+    private static UUID sellerId;
+    private static UUID buyerId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        saleHistoryRepository = repository(new SaleHistoryRepositoryImpl());
+        List<UUID> users = insertUsers(200);
+        sellerId = users.get(0);
+        buyerId = users.get(1);
+    }
+
+    @Test
+    void totals_whenSalesInsertedDeletedAndUpdated_thenEqualGroupBy() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 1000);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 12, 0);
+        UUID first = buy(advertisementId, start, 2);
+        buy(advertisementId, start.plusHours(1), 1);
+        executeUpdate("""
+                insert into sale_history (advertisement_id, buyer_id, sale_date_time, quantity)
+                select ?, ?, ? + make_interval(days => i), i
+                from generate_series(1, 5) i""", advertisementId, buyerId, Timestamp.valueOf(start));
+        assertTotalsEqualGroupBy(advertisementId);
+        assertEquals(3, dailyUnits(advertisementId, LocalDate.of(2024, 3, 1)));
+
+        assertEquals(1, inTransaction(() -> saleHistoryRepository.deleteWithQuantityRestore(first)));
+        assertTotalsEqualGroupBy(advertisementId);
+        assertEquals(1, dailyUnits(advertisementId, LocalDate.of(2024, 3, 1)));
+
+        executeUpdate("update sale_history set quantity = quantity + 10 where advertisement_id = ? and quantity = 5", advertisementId);
+        assertTotalsEqualGroupBy(advertisementId);
+        assertEquals(15, dailyUnits(advertisementId, LocalDate.of(2024, 3, 6)));
+
+        executeUpdate("delete from sale_history where advertisement_id = ?", advertisementId);
+        assertEquals(0L, queryForObject("select units from sale_totals where advertisement_id = ?", Long.class, advertisementId));
+        assertNull(queryForObject("select first_sale_date_time from sale_totals where advertisement_id = ?",
+                Timestamp.class, advertisementId));
+        assertTrue(inTransaction(() -> saleHistoryRepository.getTotalForSalesInAdvertisements(sellerId)).stream()
+                .noneMatch(total -> total.getAdvertisementId().equals(advertisementId)));
+    }
+
+    /**
+     * Пакеты продаж одних и тех же объявлений в разном порядке из параллельных транзакций: итоги блокируются
+     * в порядке advertisement_id (V1.20), поэтому пакеты ждут друг друга, но не взаимно
+     */
+    @Test
+    void totals_whenBatchesOfSameAdvertisementsRunConcurrently_thenNoDeadlockAndEqualGroupBy() throws Exception {
+        List<UUID> advertisementIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            advertisementIds.add(insertAdvertisement(sellerId, 1000));
+        }
+        LocalDateTime start = LocalDateTime.of(2024, 4, 1, 12, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> batches = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                List<UUID> order = new ArrayList<>(advertisementIds);
+                if (i % 2 == 1) Collections.reverse(order);
+                batches.add(() -> executeUpdate("""
+                        insert into sale_history (advertisement_id, buyer_id, sale_date_time, quantity)
+                        select a.advertisement_id, ?, ?, 1
+                        from unnest(?::uuid[]) with ordinality a(advertisement_id, n)
+                        order by a.n""", buyerId, Timestamp.valueOf(start),
+                        order.stream().map(UUID::toString).toArray(String[]::new)));
+            }
+            for (Future<Integer> batch : executor.invokeAll(batches)) {
+                assertEquals(advertisementIds.size(), batch.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (UUID advertisementId : advertisementIds) {
+            assertTotalsEqualGroupBy(advertisementId);
+            assertEquals(40, dailyUnits(advertisementId, start.toLocalDate()));
+        }
+    }
+
+    @Test
+    void totalsOfSeller_readsTotalsWithoutScanningSales() throws SQLException {
+        execute("""
+                insert into advertisement (user_id, city_id, advertisement_type_id, title, description, price, quantity)
+                select u.ids[1 + i % cardinality(u.ids)],
+                       (select min(city_id::text)::uuid from city),
+                       (select min(advertisement_type_id::text)::uuid from advertisement_type),
+                       'title ' || i, 'description ' || i, 100, 1000
+                from generate_series(1, 20000) i,
+                     (select array_agg(user_id) as ids from "user") u""");
+        execute("""
+                insert into sale_history (advertisement_id, buyer_id, sale_date_time, quantity)
+                select a.advertisement_id, '%s', now() - make_interval(hours => s), 1
+                from advertisement a, generate_series(1, 10) s""".formatted(buyerId));
+        execute("analyze");
+
+        String plan = explainExecuted(() -> saleHistoryRepository.getTotalForSalesInAdvertisements(sellerId));
+
+        assertFalse(plan.contains("sale_history"), plan);
+        assertTrue(plan.contains("index_advertisement_user_id"), plan);
+    }
+
+    private static UUID buy(UUID advertisementId, LocalDateTime saleDateTime, int quantity) {
+        return inTransaction(() -> saleHistoryRepository
+                .insertWithQuantityDecrement(advertisementId, buyerId, quantity, saleDateTime)
+                .map(SaleHistoryResponseDto::getId)
+                .orElseThrow());
+    }
+
+    private static void assertTotalsEqualGroupBy(UUID advertisementId) throws SQLException {
+        try (Connection connection = connect();
+             PreparedStatement expected = connection.prepareStatement(TOTALS_BY_GROUP_BY);
+             PreparedStatement actual = connection.prepareStatement(
+                     "select units, first_sale_date_time, last_sale_date_time from sale_totals where advertisement_id = ?")) {
+            expected.setObject(1, advertisementId);
+            actual.setObject(1, advertisementId);
+            try (ResultSet expectedRow = expected.executeQuery(); ResultSet actualRow = actual.executeQuery()) {
+                expectedRow.next();
+                actualRow.next();
+                assertEquals(expectedRow.getLong(1), actualRow.getLong(1));
+                assertEquals(expectedRow.getTimestamp(2), actualRow.getTimestamp(2));
+                assertEquals(expectedRow.getTimestamp(3), actualRow.getTimestamp(3));
+            }
+        }
+    }
+
+    private static long dailyUnits(UUID advertisementId, LocalDate saleDate) throws SQLException {
+        return queryForObject("select units from sale_daily_totals where advertisement_id = ? and sale_date = ?",
+                Long.class, advertisementId, saleDate);
+    }
+}
@@ -0,0 +1,176 @@
+package org.banana.repository;
+
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Журнал продаж из пулов (V1.19) в StockReservationRepositoryImpl: продажа пишется в журнал только при живом
+ * пуле и переносится в sale_history, только если ее покрывают пул и остаток объявления, освобождение пула сначала
+ * переносит его журнал, а пополнение не создает освобожденный пул заново
+ */
+class StockReservationJournalTest extends AbstractRepositoryTest {
+
+    private static final long LEASE_MILLIS = 60000;
+
+    private static StockReservationRepositoryImpl stockReservationRepository;
+    private static UUID sellerId;
+    private static UUID buyerId;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        stockReservationRepository = repository(new StockReservationRepositoryImpl());
+        List<UUID> users = insertUsers(2);
+        sellerId = users.get(0);
+        buyerId = users.get(1);
+    }
+
+    @Test
+    void moveSales_whenSalesJournaled_thenWriteThemAndShrinkPool() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        assertEquals(5, claim(advertisementId, instanceId, 5));
+        assertTrue(journal(advertisementId, instanceId, 2));
+        assertTrue(journal(advertisementId, instanceId, 1));
+
+        assertEquals(1, (int) inTransaction(() -> stockReservationRepository.moveSales(instanceId, 1)));
+        assertEquals(1, (int) inTransaction(() -> stockReservationRepository.moveSales(instanceId, 10)));
+        assertEquals(0, (int) inTransaction(() -> stockReservationRepository.moveSales(instanceId, 10)));
+
+        assertEquals(3, soldOf(advertisementId));
+        assertEquals(0, journaledOf(advertisementId));
+        assertEquals(2, reservedOf(advertisementId, instanceId));
+        assertEquals(5, quantityOf(advertisementId));
+    }
+
+    @Test
+    void moveSales_whenPoolDoesNotCover_thenTakeRestFromStockOrKeepSalesInJournal() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(advertisementId, instanceId, 5);
+        journal(advertisementId, instanceId, 8);
+
+        assertEquals(1, (int) inTransaction(() -> stockReservationRepository.moveSales(instanceId, 10)));
+        assertEquals(0, reservedOf(advertisementId, instanceId));
+        assertEquals(2, quantityOf(advertisementId));
+
+        journal(advertisementId, instanceId, 3);
+
+        assertEquals(0, (int) inTransaction(() -> stockReservationRepository.moveSales(instanceId, 10)));
+        assertEquals(8, soldOf(advertisementId));
+        assertEquals(1, journaledOf(advertisementId));
+        assertEquals(2, quantityOf(advertisementId));
+    }
+
+    @Test
+    void claim_whenToppedUpPoolReleased_thenDoNotRecreateIt() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(advertisementId, instanceId, 5);
+        inTransaction(() -> stockReservationRepository.releaseAll(instanceId));
+
+        assertEquals(-1, (int) inTransaction(() -> stockReservationRepository.claim(
+                advertisementId, instanceId, 5, LEASE_MILLIS, true)));
+        assertEquals(10, quantityOf(advertisementId));
+        assertEquals(5, (int) inTransaction(() -> stockReservationRepository.claim(
+                advertisementId, instanceId, 5, LEASE_MILLIS, false)));
+        assertEquals(5, (int) inTransaction(() -> stockReservationRepository.claim(
+                advertisementId, instanceId, 5, LEASE_MILLIS, true)));
+        assertEquals(10, reservedOf(advertisementId, instanceId));
+    }
+
+    @Test
+    void journal_whenPoolReleased_thenWriteNothing() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(advertisementId, instanceId, 5);
+        inTransaction(() -> stockReservationRepository.releaseAll(instanceId));
+
+        assertFalse(journal(advertisementId, instanceId, 1));
+        assertEquals(0, journaledOf(advertisementId));
+        assertEquals(10, quantityOf(advertisementId));
+    }
+
+    @Test
+    void journal_whenAdvertisementClosed_thenWriteNothing() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(advertisementId, instanceId, 5);
+        executeUpdate("update advertisement set close_date = now() where advertisement_id = ?", advertisementId);
+
+        assertFalse(journal(advertisementId, instanceId, 1));
+        assertEquals(0, journaledOf(advertisementId));
+    }
+
+    @Test
+    void renew_whenAdvertisementClosed_thenLetPoolExpire() throws SQLException {
+        UUID openId = insertAdvertisement(sellerId, 10);
+        UUID closedId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(openId, instanceId, 5);
+        claim(closedId, instanceId, 5);
+        executeUpdate("update advertisement set close_date = now() where advertisement_id = ?", closedId);
+
+        assertEquals(List.of(openId), inTransaction(() -> stockReservationRepository.renew(instanceId, 0)));
+        executeUpdate("update stock_reservation set lease_until = now() - interval '1 second' where advertisement_id = ?", closedId);
+        inTransaction(() -> stockReservationRepository.releaseExpired());
+
+        assertEquals(10, quantityOf(closedId));
+        assertEquals(5, reservedOf(openId, instanceId));
+    }
+
+    @Test
+    void releaseExpired_whenJournalNotMoved_thenWriteSalesAndReturnOnlyUnsoldUnits() throws SQLException {
+        UUID advertisementId = insertAdvertisement(sellerId, 10);
+        UUID instanceId = UUID.randomUUID();
+        claim(advertisementId, instanceId, 5);
+        journal(advertisementId, instanceId, 2);
+        journal(advertisementId, instanceId, 1);
+        executeUpdate("update stock_reservation set lease_until = now() - interval '1 second' where instance_id = ?", instanceId);
+
+        inTransaction(() -> stockReservationRepository.releaseExpired());
+
+        assertEquals(3, soldOf(advertisementId));
+        assertEquals(0, journaledOf(advertisementId));
+        assertEquals(7, quantityOf(advertisementId));
+        assertEquals(0L, queryForObject("select count(*) from stock_reservation where instance_id = ?", Long.class, instanceId));
+    }
+
+    private static int claim(UUID advertisementId, UUID instanceId, int quantity) {
+        return inTransaction(() -> stockReservationRepository.claim(advertisementId, instanceId, quantity, LEASE_MILLIS, false));
+    }
+
+    private static boolean journal(UUID advertisementId, UUID instanceId, int quantity) {
+        SaleHistoryResponseDto sale = new SaleHistoryResponseDto(
+                UUID.randomUUID(), "title", advertisementId, buyerId, LocalDateTime.now(), quantity);
+        return inTransaction(() -> stockReservationRepository.journal(sale, instanceId));
+    }
+
+    private static int quantityOf(UUID advertisementId) throws SQLException {
+        return queryForObject("select quantity from advertisement where advertisement_id = ?", Integer.class, advertisementId);
+    }
+
+    private static int reservedOf(UUID advertisementId, UUID instanceId) throws SQLException {
+        return queryForObject("select reserved_quantity from stock_reservation where advertisement_id = ? and instance_id = ?",
+                Integer.class, advertisementId, instanceId);
+    }
+
+    private static int soldOf(UUID advertisementId) throws SQLException {
+        return queryForObject("select coalesce(sum(quantity), 0) from sale_history where advertisement_id = ?",
+                Long.class, advertisementId).intValue();
+    }
+
+    private static int journaledOf(UUID advertisementId) throws SQLException {
+        return queryForObject("select count(*) from stock_reservation_sale where advertisement_id = ?",
+                Long.class, advertisementId).intValue();
+    }
+}
@@ -1,6 +1,7 @@
 package org.banana.security.service;
 
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import org.banana.security.UserRole;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -78,4 +79,31 @@ class JwtServiceTest {
         assertThat(jwtService.extractRole(token)).isEqualTo(role.name());
         assertThat(jwtService.extractJwtId(token)).isNotNull();
     }
+
+    @Test
+    void parseClaims_whenValidToken_thenShouldReturnAllClaims() {
+        var claims = jwtService.parseClaims(token);
+
+        assertThat(claims.getSubject()).isEqualTo(userId.toString());
+        assertThat(claims.get(JwtService.USERNAME_CLAIM, String.class)).isEqualTo(username);
+        assertThat(claims.get(JwtService.PHONE_CLAIM, String.class)).isEqualTo(phone);
+        assertThat(claims.get(JwtService.ROLE_CLAIM, String.class)).isEqualTo(role.name());
+    }
+
+    @Test
+    void parseClaims_whenTokenSignedWithAnotherKey_thenShouldThrowJwtException() {
+        String otherSecret = Base64.getEncoder().encodeToString("otherotherotherotherotherotherot".getBytes());
+        String foreignToken = new JwtService(otherSecret, 86_400_000).generateToken(userId, username, role, phone);
+
+        assertThatThrownBy(() -> jwtService.parseClaims(foreignToken))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void validateClaims_whenUsernameMatches_thenShouldReturnTrueOtherwiseFalse() {
+        var claims = jwtService.parseClaims(token);
+
+        assertThat(jwtService.validateClaims(claims, new User(username, "", new java.util.ArrayList<>()))).isTrue();
+        assertThat(jwtService.validateClaims(claims, new User("someoneElse", "", new java.util.ArrayList<>()))).isFalse();
+    }
 }
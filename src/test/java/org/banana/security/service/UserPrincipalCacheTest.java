@@ -0,0 +1,108 @@
+package org.banana.security.service;
+
+import org.banana.security.UserRole;
+import org.banana.security.dto.UserPrincipal;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserPrincipalCacheTest {
+
+    private UserPrincipal principal(UUID id) {
+        return new UserPrincipal(id, "John", "Doe", "123", "user@example.com", "password", UserRole.ROLE_USER);
+    }
+
+    @Test
+    void get_whenPrincipalPut_thenReturnsCopyWithoutPassword() {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 10, 60_000);
+        UserPrincipal principal = principal(UUID.randomUUID());
+
+        cache.put(principal);
+        UserPrincipal cached = cache.get(principal.getId());
+
+        assertThat(cached).isNotSameAs(principal);
+        assertThat(cached.getUsername()).isEqualTo(principal.getUsername());
+        assertThat(cached.getFirstName()).isEqualTo(principal.getFirstName());
+        assertThat(cached.getPassword()).isNull();
+        assertThat(principal.getPassword()).isEqualTo("password");
+    }
+
+    @Test
+    void get_whenInvalidated_thenReturnsNull() {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 10, 60_000);
+        UserPrincipal principal = principal(UUID.randomUUID());
+        cache.put(principal);
+
+        cache.invalidate(principal.getId());
+
+        assertThat(cache.get(principal.getId())).isNull();
+    }
+
+    @Test
+    void get_whenEntryExpired_thenReturnsNull() {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 10, -1);
+        UserPrincipal principal = principal(UUID.randomUUID());
+        cache.put(principal);
+
+        assertThat(cache.get(principal.getId())).isNull();
+    }
+
+    @Test
+    void put_whenMaxSizeExceeded_thenEvictsLeastRecentlyUsed() {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 2, 60_000);
+        UserPrincipal first = principal(UUID.randomUUID());
+        UserPrincipal second = principal(UUID.randomUUID());
+        UserPrincipal third = principal(UUID.randomUUID());
+
+        cache.put(first);
+        cache.put(second);
+        cache.get(first.getId());
+        cache.put(third);
+
+        assertThat(cache.get(first.getId())).isNotNull();
+        assertThat(cache.get(second.getId())).isNull();
+        assertThat(cache.get(third.getId())).isNotNull();
+    }
+
+    @Test
+    void get_whenDisabled_thenAlwaysReturnsNull() {
+        UserPrincipalCache cache = new UserPrincipalCache(false, 10, 60_000);
+        UserPrincipal principal = principal(UUID.randomUUID());
+        cache.put(principal);
+
+        assertThat(cache.get(principal.getId())).isNull();
+    }
+
+    @Test
+    void put_whenCalledConcurrently_thenKeepsEntriesReadable() throws Exception {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 100, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        UserPrincipal principal = principal(UUID.randomUUID());
+                        cache.put(principal);
+                        UserPrincipal cached = cache.get(principal.getId());
+                        if (cached != null) assertThat(cached.getId()).isEqualTo(principal.getId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        UserPrincipal last = principal(UUID.randomUUID());
+        cache.put(last);
+        assertThat(cache.get(last.getId())).isNotNull();
+    }
+}
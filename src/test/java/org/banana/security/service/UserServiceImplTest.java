@@ -68,6 +68,9 @@ class UserServiceImplTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UserPrincipalCache principalCache;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -207,6 +210,7 @@ class UserServiceImplTest {
         verify(userMapper).userToUserResponseDto(captor.getValue());
         assertThat(captor.getValue().getFirstName()).isEqualTo(requestDto.getFirstName());
         assertThat(captor.getValue().getLastName()).isEqualTo(requestDto.getLastName());
+        verify(principalCache).invalidate(USER_ID);
     }
 
     @Test
@@ -226,6 +230,7 @@ class UserServiceImplTest {
         when(passwordEncoder.encode(dto.getNewPassword())).thenReturn("new-pass-encoded");
         assertThat(userService.updatePassword(dto)).isEqualTo("token");
         verify(userRepository).updatePassword(USER_ID, "new-pass-encoded");
+        verify(principalCache).invalidate(USER_ID);
     }
 
     @Test
@@ -265,6 +270,7 @@ class UserServiceImplTest {
         assertThat(token).isEqualTo("token");
 
         verify(userRepository).updateUsername(USER_ID, "new-username");
+        verify(principalCache).invalidate(USER_ID);
     }
 
     @Test
@@ -301,6 +307,7 @@ class UserServiceImplTest {
 
         assertThat(userService.updatePhone(dto)).isEqualTo("token");
         verify(userRepository).updatePhone(USER_ID, dto.getNewPhone());
+        verify(principalCache).invalidate(USER_ID);
     }
 
 
@@ -325,6 +332,7 @@ class UserServiceImplTest {
         UserLoginRequestDto dto = new UserLoginRequestDto(user.getUsername(), user.getPassword());
         userService.deleteUser(dto);
         verify(userRepository).deleteById(USER_ID);
+        verify(principalCache).invalidate(USER_ID);
     }
 
     private void whenGoodCredentialsGiven() {
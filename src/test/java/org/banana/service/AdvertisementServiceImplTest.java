@@ -1,9 +1,12 @@
 package org.banana.service;
 
+import org.banana.dto.advertisement.AdvertisementCursor;
 import org.banana.dto.advertisement.AdvertisementFilterDto;
 import org.banana.dto.advertisement.AdvertisementMapper;
+import org.banana.dto.advertisement.AdvertisementPageResponseDto;
 import org.banana.dto.advertisement.AdvertisementRequestDto;
 import org.banana.dto.advertisement.AdvertisementResponseDto;
+import org.banana.dto.user.UserResponseDto;
 import org.banana.entity.Advertisement;
 import org.banana.entity.AdvertisementType;
 import org.banana.entity.City;
@@ -12,6 +15,7 @@ import org.banana.exception.AdvertisementNotFoundException;
 import org.banana.exception.AdvertisementTypeNotFoundException;
 import org.banana.exception.AdvertisementUpdateException;
 import org.banana.exception.CityNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.UserNotFoundException;
 import org.banana.repository.AdvertisementRepository;
 import org.banana.repository.AdvertisementTypeRepository;
@@ -24,6 +28,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -48,6 +53,7 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -72,6 +78,9 @@ class AdvertisementServiceImplTest {
     @Mock
     private AdvertisementMapper advertisementMapper;
 
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
     private UUID userId;
     private UserPrincipal principal;
 
@@ -138,6 +147,59 @@ class AdvertisementServiceImplTest {
         assertSame(dtos, result);
     }
 
+    // -------- findAllFilteredByCursor --------
+
+    @Test
+    void findAllFilteredByCursor_whenLastPage_thenNextCursorIsNull() {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        List<AdvertisementResponseDto> dtos = List.of(new AdvertisementResponseDto());
+        when(advertisementRepository.findAllFilteredAfter(filter, null, 3)).thenReturn(dtos);
+
+        AdvertisementPageResponseDto result = advertisementService.findAllFilteredByCursor(filter, null, 2);
+
+        assertEquals(dtos, result.getContent());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void findAllFilteredByCursor_whenMoreResults_thenReturnsCursorOfLastElement() {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        AdvertisementResponseDto first = new AdvertisementResponseDto();
+        first.setId(UUID.randomUUID());
+        AdvertisementResponseDto last = new AdvertisementResponseDto();
+        last.setId(UUID.randomUUID());
+        last.setPromoted(true);
+        last.setCreateDate(LocalDateTime.of(2025, 5, 20, 14, 30, 0, 123_000_000));
+        last.setUserResponseDto(new UserResponseDto(userId, "f", "l", "p", "u", new BigDecimal("4.50"), 10));
+        AdvertisementResponseDto extra = new AdvertisementResponseDto();
+        when(advertisementRepository.findAllFilteredAfter(filter, null, 3)).thenReturn(List.of(first, last, extra));
+
+        AdvertisementPageResponseDto result = advertisementService.findAllFilteredByCursor(filter, "", 2);
+
+        assertEquals(List.of(first, last), result.getContent());
+        AdvertisementCursor cursor = AdvertisementCursor.decode(result.getNextCursor());
+        assertEquals(new AdvertisementCursor(true, new BigDecimal("4.50"), 10, last.getCreateDate(), last.getId()), cursor);
+    }
+
+    @Test
+    void findAllFilteredByCursor_whenCursorGiven_thenSearchesAfterIt() {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+        AdvertisementCursor cursor = new AdvertisementCursor(false, BigDecimal.ZERO, 0, LocalDateTime.of(2025, 1, 1, 0, 0), UUID.randomUUID());
+        when(advertisementRepository.findAllFilteredAfter(filter, cursor, 21)).thenReturn(Collections.emptyList());
+
+        AdvertisementPageResponseDto result = advertisementService.findAllFilteredByCursor(filter, cursor.encode(), 20);
+
+        assertTrue(result.getContent().isEmpty());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void findAllFilteredByCursor_whenCursorIsInvalid_thenThrows() {
+        AdvertisementFilterDto filter = new AdvertisementFilterDto();
+
+        assertThrows(InvalidCursorException.class, () -> advertisementService.findAllFilteredByCursor(filter, "not-a-cursor", 20));
+    }
+
     // -------- deleteAdvertisement --------
 
     @Test
@@ -291,6 +353,9 @@ class AdvertisementServiceImplTest {
         assertEquals(req.getDescription(), toSave.getDescription());
         assertEquals(req.getPrice(), toSave.getPrice());
         assertEquals(req.getQuantity(), toSave.getQuantity());
+        InOrder inOrder = inOrder(stockReservationEngine, advertisementRepository);
+        inOrder.verify(stockReservationEngine).suspend(adId);
+        inOrder.verify(advertisementRepository).findById(adId);
     }
 
     @Test
@@ -408,6 +473,9 @@ class AdvertisementServiceImplTest {
         advertisementService.closeAdvertisement(adId);
 
         assertNotNull(advertisement.getCloseDate());
+        InOrder inOrder = inOrder(stockReservationEngine, advertisementRepository);
+        inOrder.verify(stockReservationEngine).suspend(adId);
+        inOrder.verify(advertisementRepository).findFetchedById(adId);
     }
 
     @Test
@@ -1,22 +1,35 @@
 package org.banana.service;
 
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.conversation.ConversationPageResponseDto;
+import org.banana.dto.conversation.UnreadCountResponseDto;
+import org.banana.dto.message.MessageBatchSendRequestDto;
+import org.banana.dto.message.MessageChatRequestDto;
+import org.banana.dto.message.MessageChatResponseDto;
+import org.banana.dto.message.MessageChatsRequestDto;
 import org.banana.dto.message.MessageFilterDto;
 import org.banana.dto.message.MessageMapper;
 import org.banana.dto.message.MessageMarkReadRequestDto;
 import org.banana.dto.message.MessageResponseDto;
 import org.banana.dto.message.MessageSendRequestDto;
 import org.banana.entity.Advertisement;
+import org.banana.entity.Conversation;
 import org.banana.entity.Message;
 import org.banana.entity.User;
+import org.banana.event.MessageSentEvent;
+import org.banana.event.MessagesReadEvent;
 import org.banana.exception.AdvertisementNotFoundException;
 import org.banana.exception.ConversationNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.MessageSendException;
 import org.banana.exception.UserNotFoundException;
 import org.banana.repository.AdvertisementRepository;
+import org.banana.repository.ConversationRepository;
 import org.banana.repository.MessageRepository;
 import org.banana.repository.UserRepository;
 import org.banana.security.UserRole;
 import org.banana.security.dto.UserPrincipal;
+import org.banana.util.ConversationKey;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,12 +38,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -43,7 +59,11 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -57,6 +77,9 @@ class MessageServiceImplTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private ConversationRepository conversationRepository;
+
     @Mock
     private AdvertisementRepository advertisementRepository;
 
@@ -66,6 +89,9 @@ class MessageServiceImplTest {
     @Mock
     private MessageMapper messageMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private MessageServiceImpl messageService;
 
@@ -145,7 +171,7 @@ class MessageServiceImplTest {
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(ad));
-        when(messageRepository.chatExists(currentUserId, recipientId, advertisementId)).thenReturn(false);
+        when(conversationRepository.existsById(ConversationKey.of(currentUserId, recipientId, advertisementId))).thenReturn(false);
 
         MessageSendException exception = assertThrows(MessageSendException.class, () -> messageService.addMessage(request));
 
@@ -169,16 +195,44 @@ class MessageServiceImplTest {
         ArgumentCaptor<Message> messageArgumentCaptor = ArgumentCaptor.forClass(Message.class);
         when(userRepository.existsById(recipientId)).thenReturn(true);
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(ad));
-        when(messageRepository.chatExists(currentUserId, recipientId, advertisementId)).thenReturn(true);
+        when(conversationRepository.existsById(ConversationKey.of(currentUserId, recipientId, advertisementId))).thenReturn(true);
         when(messageRepository.save(messageArgumentCaptor.capture())).thenReturn(savedMessage);
         when(messageMapper.messageToMessageResponseDto(savedMessage)).thenReturn(expectedDto);
 
         MessageResponseDto result = messageService.addMessage(request);
-        verify(messageRepository).markAllMessagesRead(recipientId, currentUserId, advertisementId);
+        verify(conversationRepository).applyMessage(savedMessage);
         assertEquals(currentUserId, messageArgumentCaptor.getValue().getSenderId());
         assertEquals(recipientId, messageArgumentCaptor.getValue().getRecipientId());
         assertEquals(advertisementId, messageArgumentCaptor.getValue().getAdvertisementId());
+        assertEquals(ConversationKey.of(currentUserId, recipientId, advertisementId), messageArgumentCaptor.getValue().getConversationKey());
         assertNotNull(result);
+
+        ArgumentCaptor<MessageSentEvent> eventCaptor = ArgumentCaptor.forClass(MessageSentEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(expectedDto, eventCaptor.getValue().getMessage());
+    }
+
+    @Test
+    void addMessage_whenUnreadMessagesMarkedRead_thenPublishReadReceipt() {
+        MessageSendRequestDto request = new MessageSendRequestDto();
+        request.setRecipientId(recipientId);
+
+        Message savedMessage = new Message(null, currentUserId, recipientId, "text", LocalDateTime.now());
+        savedMessage.setId(UUID.randomUUID());
+        when(userRepository.existsById(recipientId)).thenReturn(true);
+        when(messageRepository.save(any(Message.class))).thenReturn(savedMessage);
+        when(conversationRepository.applyMessage(savedMessage)).thenReturn(3);
+        when(messageMapper.messageToMessageResponseDto(savedMessage)).thenReturn(new MessageResponseDto());
+
+        messageService.addMessage(request);
+
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(eventCaptor.capture());
+        MessagesReadEvent readEvent = (MessagesReadEvent) eventCaptor.getAllValues().get(0);
+        assertEquals(recipientId, readEvent.getSenderId());
+        assertEquals(currentUserId, readEvent.getReceipt().getReaderId());
+        assertEquals(savedMessage.getId(), readEvent.getReceipt().getUpToMessageId());
+        assertTrue(eventCaptor.getAllValues().get(1) instanceof MessageSentEvent);
     }
 
     @Test
@@ -201,7 +255,7 @@ class MessageServiceImplTest {
         when(messageMapper.messageToMessageResponseDto(savedMessage)).thenReturn(expectedDto);
 
         MessageResponseDto result = messageService.addMessage(request);
-        verify(messageRepository).markAllMessagesRead(recipientId, currentUserId, advertisementId);
+        verify(conversationRepository).applyMessage(savedMessage);
         assertEquals(currentUserId, messageArgumentCaptor.getValue().getSenderId());
         assertEquals(recipientId, messageArgumentCaptor.getValue().getRecipientId());
         assertEquals(advertisementId, messageArgumentCaptor.getValue().getAdvertisementId());
@@ -227,7 +281,7 @@ class MessageServiceImplTest {
         when(messageMapper.messageToMessageResponseDto(savedMessage)).thenReturn(expectedDto);
 
         MessageResponseDto result = messageService.addMessage(request);
-        verify(messageRepository, never()).chatExists(any(), any(), any());
+        verify(conversationRepository, never()).existsById(any());
         verify(advertisementRepository, never()).findById(any());
         assertEquals(currentUserId, messageArgumentCaptor.getValue().getSenderId());
         assertEquals(recipientId, messageArgumentCaptor.getValue().getRecipientId());
@@ -274,9 +328,10 @@ class MessageServiceImplTest {
         dto.setSecondUserId(recipientId);
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
-        when(messageRepository.chatExists(any(), any(), any())).thenReturn(false);
+        when(conversationRepository.existsById(ConversationKey.of(currentUserId, recipientId, null))).thenReturn(false);
 
         assertThrows(ConversationNotFoundException.class, () -> messageService.markReadUpTo(dto));
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -287,12 +342,14 @@ class MessageServiceImplTest {
         dto.setUpToMessageId(UUID.randomUUID());
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
-        when(messageRepository.chatExists(currentUserId, recipientId, null)).thenReturn(true);
+        when(conversationRepository.existsById(ConversationKey.of(currentUserId, recipientId, null))).thenReturn(true);
 
         messageService.markReadUpTo(dto);
 
         verify(advertisementRepository, never()).existsById(any());
-        verify(messageRepository).markMessagesReadUpTo(recipientId, currentUserId, null, dto.getUpToDateTime(), dto.getUpToMessageId());
+        verify(conversationRepository).markReadUpTo(ConversationKey.of(currentUserId, recipientId, null), currentUserId,
+                dto.getUpToDateTime(), dto.getUpToMessageId());
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -304,12 +361,21 @@ class MessageServiceImplTest {
         dto.setUpToMessageId(UUID.randomUUID());
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
-        when(messageRepository.chatExists(currentUserId, recipientId, advertisementId)).thenReturn(true);
         when(advertisementRepository.existsById(advertisementId)).thenReturn(true);
 
+        when(conversationRepository.markReadUpTo(ConversationKey.of(currentUserId, recipientId, advertisementId), currentUserId,
+                dto.getUpToDateTime(), dto.getUpToMessageId()))
+                .thenReturn(2);
+
         messageService.markReadUpTo(dto);
 
-        verify(messageRepository).markMessagesReadUpTo(recipientId, currentUserId, advertisementId, dto.getUpToDateTime(), dto.getUpToMessageId());
+        verify(conversationRepository, never()).existsById(any());
+
+        ArgumentCaptor<MessagesReadEvent> eventCaptor = ArgumentCaptor.forClass(MessagesReadEvent.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(recipientId, eventCaptor.getValue().getSenderId());
+        assertEquals(currentUserId, eventCaptor.getValue().getReceipt().getReaderId());
+        assertEquals(dto.getUpToMessageId(), eventCaptor.getValue().getReceipt().getUpToMessageId());
     }
 
     @Test
@@ -331,18 +397,34 @@ class MessageServiceImplTest {
     }
 
     @Test
-    void getListOfMessages_whenCursorNull_thenSetUnreadCount() {
+    void getListOfMessages_whenConversationNotExist_thenReturnEmptyListWithoutReadingMessages() {
         MessageFilterDto filter = new MessageFilterDto();
         filter.setSecondUserId(recipientId);
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
-        when(messageRepository.getUnreadMessagesCount(recipientId, currentUserId, null))
-                .thenReturn(5L);
+        when(conversationRepository.findById(ConversationKey.of(currentUserId, recipientId, null))).thenReturn(Optional.empty());
+
+        List<MessageResponseDto> result = messageService.getListOfMessages(filter);
+
+        assertTrue(result.isEmpty());
+        verify(messageRepository, never()).findAllByFilter(any());
+    }
+
+    @Test
+    void getListOfMessages_whenCursorNull_thenSetUnreadCountFromConversation() {
+        MessageFilterDto filter = new MessageFilterDto();
+        filter.setSecondUserId(recipientId);
+        filter.setAdvertisementId(advertisementId);
+        Conversation conversation = conversation(LocalDateTime.now());
+
+        when(userRepository.existsById(recipientId)).thenReturn(true);
+        when(conversationRepository.findById(conversation.getId())).thenReturn(Optional.of(conversation));
 
         messageService.getListOfMessages(filter);
 
-        assertEquals(5L, filter.getUnreadMessagesCount());
-        verify(messageRepository).getUnreadMessagesCount(recipientId, currentUserId, null);
+        assertEquals(3L, filter.getUnreadMessagesCount());
+        assertEquals(conversation.getLastReadDateTime(currentUserId), filter.getLastReadDateTime());
+        assertEquals(conversation.getLastReadMessageId(currentUserId), filter.getLastReadMessageId());
         verify(messageRepository).findAllByFilter(filter);
     }
 
@@ -354,12 +436,256 @@ class MessageServiceImplTest {
         filter.setCursorDateTime(LocalDateTime.now());
 
         when(userRepository.existsById(recipientId)).thenReturn(true);
+        when(conversationRepository.findById(ConversationKey.of(currentUserId, recipientId, null)))
+                .thenReturn(Optional.of(new Conversation()));
         when(messageRepository.findAllByFilter(filter)).thenReturn(List.of());
 
         List<MessageResponseDto> result = messageService.getListOfMessages(filter);
 
         assertNotNull(result);
-        verify(messageRepository, never()).getUnreadMessagesCount(any(), any(), any());
+        assertNull(filter.getUnreadMessagesCount());
         verify(messageRepository).findAllByFilter(filter);
     }
-}
\ No newline at end of file
+
+    @Test
+    void addMessages_whenOneRecipientNotFound_thenThrowUserNotFoundExceptionAndSaveNothing() {
+        UUID missingRecipientId = UUID.randomUUID();
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, null), sendRequest(missingRecipientId, null)));
+
+        when(userRepository.findExistingIds(Set.of(recipientId, missingRecipientId))).thenReturn(Set.of(recipientId));
+
+        UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> messageService.addMessages(request));
+
+        assertTrue(exception.getMessage().contains(missingRecipientId.toString()));
+        verify(messageRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void addMessages_whenOneRecipientIsSender_thenThrowMessageSendException() {
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, null), sendRequest(currentUserId, null)));
+
+        MessageSendException exception = assertThrows(MessageSendException.class, () -> messageService.addMessages(request));
+
+        assertThat(exception.getMessage()).contains(USER_MESSAGES_THE_SAME_USER.getDescription());
+        verify(userRepository, never()).findExistingIds(any());
+    }
+
+    @Test
+    void addMessages_whenSenderIsOwnerAndOneChatNotExist_thenThrowMessageSendException() {
+        UUID secondRecipientId = UUID.randomUUID();
+        UUID startedKey = ConversationKey.of(currentUserId, recipientId, advertisementId);
+        UUID notStartedKey = ConversationKey.of(currentUserId, secondRecipientId, advertisementId);
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, advertisementId), sendRequest(secondRecipientId, advertisementId)));
+
+        when(userRepository.findExistingIds(Set.of(recipientId, secondRecipientId))).thenReturn(Set.of(recipientId, secondRecipientId));
+        when(advertisementRepository.findOwnerIdsByIds(Set.of(advertisementId))).thenReturn(Map.of(advertisementId, currentUserId));
+        when(conversationRepository.findExistingIds(Set.of(startedKey, notStartedKey))).thenReturn(Set.of(startedKey));
+
+        MessageSendException exception = assertThrows(MessageSendException.class, () -> messageService.addMessages(request));
+
+        assertTrue(exception.getMessage().contains(OWNER_OF_THE_ADVERTISEMENT_CANT_MESSAGE_FIRST.getDescription()));
+        verify(messageRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void addMessages_whenAdvertisementNotExist_thenThrowAdvertisementNotFoundException() {
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(sendRequest(recipientId, advertisementId)));
+
+        when(userRepository.findExistingIds(Set.of(recipientId))).thenReturn(Set.of(recipientId));
+        when(advertisementRepository.findOwnerIdsByIds(Set.of(advertisementId))).thenReturn(Map.of());
+
+        assertThrows(AdvertisementNotFoundException.class, () -> messageService.addMessages(request));
+        verify(messageRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void addMessages_whenValidRequest_thenInsertAllInRequestOrderAndApplyOnce() {
+        UUID secondRecipientId = UUID.randomUUID();
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, advertisementId), sendRequest(secondRecipientId, null)));
+
+        when(userRepository.findExistingIds(Set.of(recipientId, secondRecipientId))).thenReturn(Set.of(recipientId, secondRecipientId));
+        when(advertisementRepository.findOwnerIdsByIds(Set.of(advertisementId))).thenReturn(Map.of(advertisementId, recipientId));
+        when(conversationRepository.applyMessages(anyList())).thenReturn(Map.of());
+        when(messageMapper.messageToMessageResponseDto(any(Message.class))).thenReturn(new MessageResponseDto());
+
+        List<MessageResponseDto> result = messageService.addMessages(request);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Message>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).insertAll(messagesCaptor.capture());
+        List<Message> messages = messagesCaptor.getValue();
+        assertEquals(2, messages.size());
+        assertEquals(recipientId, messages.get(0).getRecipientId());
+        assertEquals(secondRecipientId, messages.get(1).getRecipientId());
+        assertEquals(messages.get(0).getMessageDateTime(), messages.get(1).getMessageDateTime());
+        assertEquals(2, result.size());
+        verify(conversationRepository, never()).findExistingIds(any());
+        verify(conversationRepository).applyMessages(messages);
+        verify(conversationRepository, never()).applyMessage(any(Message.class));
+        verify(eventPublisher, times(2)).publishEvent(any(MessageSentEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(MessagesReadEvent.class));
+    }
+
+    @Test
+    void addMessages_whenSeveralMessagesToOneRecipient_thenKeepSendOrderInTime() {
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, null), sendRequest(recipientId, advertisementId),
+                sendRequest(recipientId, null), sendRequest(recipientId, null)));
+
+        when(userRepository.findExistingIds(Set.of(recipientId))).thenReturn(Set.of(recipientId));
+        when(advertisementRepository.findOwnerIdsByIds(Set.of(advertisementId))).thenReturn(Map.of(advertisementId, recipientId));
+        when(conversationRepository.applyMessages(anyList())).thenReturn(Map.of());
+        when(messageMapper.messageToMessageResponseDto(any(Message.class))).thenReturn(new MessageResponseDto());
+
+        messageService.addMessages(request);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Message>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).insertAll(messagesCaptor.capture());
+        List<Message> messages = messagesCaptor.getValue();
+        assertTrue(messages.get(2).getMessageDateTime().isAfter(messages.get(0).getMessageDateTime()));
+        assertTrue(messages.get(3).getMessageDateTime().isAfter(messages.get(2).getMessageDateTime()));
+        assertEquals(messages.get(0).getMessageDateTime(), messages.get(1).getMessageDateTime());
+    }
+
+    @Test
+    void addMessages_whenUnreadMessagesMarkedRead_thenPublishOneReceiptPerConversationUpToLatestMessage() {
+        MessageBatchSendRequestDto request = new MessageBatchSendRequestDto(List.of(
+                sendRequest(recipientId, null), sendRequest(recipientId, null), sendRequest(recipientId, null)));
+        UUID conversationKey = ConversationKey.of(currentUserId, recipientId, null);
+
+        when(userRepository.findExistingIds(Set.of(recipientId))).thenReturn(Set.of(recipientId));
+        doAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            messages.forEach(message -> message.setId(UUID.randomUUID()));
+            return messages;
+        }).when(messageRepository).insertAll(anyList());
+        when(conversationRepository.applyMessages(anyList())).thenReturn(Map.of(conversationKey, 4));
+        when(messageMapper.messageToMessageResponseDto(any(Message.class))).thenReturn(new MessageResponseDto());
+
+        messageService.addMessages(request);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Message>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).insertAll(messagesCaptor.capture());
+        UUID latestId = messagesCaptor.getValue().get(2).getId();
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(4)).publishEvent(eventCaptor.capture());
+        List<MessagesReadEvent> readEvents = eventCaptor.getAllValues().stream()
+                .filter(MessagesReadEvent.class::isInstance)
+                .map(MessagesReadEvent.class::cast)
+                .toList();
+        assertEquals(1, readEvents.size());
+        assertEquals(recipientId, readEvents.get(0).getSenderId());
+        assertEquals(currentUserId, readEvents.get(0).getReceipt().getReaderId());
+        assertEquals(latestId, readEvents.get(0).getReceipt().getUpToMessageId());
+    }
+
+    @Test
+    void getLatestMessages_whenSecondUserSameAsCurrentUser_thenThrowMessageSendException() {
+        MessageChatsRequestDto request = new MessageChatsRequestDto(List.of(new MessageChatRequestDto(currentUserId, null)), 10);
+
+        assertThrows(MessageSendException.class, () -> messageService.getLatestMessages(request));
+        verify(messageRepository, never()).findLatestByConversationKeys(any(), anyInt());
+    }
+
+    @Test
+    void getLatestMessages_whenValidRequest_thenReturnChatsInRequestOrder() {
+        UUID secondUserId = UUID.randomUUID();
+        UUID withMessagesKey = ConversationKey.of(currentUserId, recipientId, advertisementId);
+        UUID emptyKey = ConversationKey.of(currentUserId, secondUserId, null);
+        MessageChatsRequestDto request = new MessageChatsRequestDto(List.of(
+                new MessageChatRequestDto(secondUserId, null), new MessageChatRequestDto(recipientId, advertisementId)), 5);
+        MessageResponseDto message = new MessageResponseDto();
+
+        when(messageRepository.findLatestByConversationKeys(Set.of(emptyKey, withMessagesKey), 5))
+                .thenReturn(Map.of(withMessagesKey, List.of(message)));
+
+        List<MessageChatResponseDto> result = messageService.getLatestMessages(request);
+
+        assertEquals(2, result.size());
+        assertEquals(secondUserId, result.get(0).getSecondUserId());
+        assertTrue(result.get(0).getMessages().isEmpty());
+        assertEquals(recipientId, result.get(1).getSecondUserId());
+        assertEquals(advertisementId, result.get(1).getAdvertisementId());
+        assertEquals(List.of(message), result.get(1).getMessages());
+    }
+
+    @Test
+    void getConversations_whenMoreThanPage_thenReturnPageWithNextCursor() {
+        Conversation newer = conversation(LocalDateTime.of(2025, 5, 20, 14, 30));
+        Conversation older = conversation(LocalDateTime.of(2025, 5, 19, 10, 0));
+        when(conversationRepository.findAllByUserIdAfter(currentUserId, null, 2)).thenReturn(List.of(newer, older));
+
+        ConversationPageResponseDto result = messageService.getConversations(null, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(newer.getId(), result.getContent().get(0).getId());
+        assertEquals(recipientId, result.getContent().get(0).getSecondUserId());
+        assertEquals(new KeysetCursor(newer.getLastMessageDateTime(), newer.getId()), KeysetCursor.decode(result.getNextCursor()));
+    }
+
+    @Test
+    void getConversations_whenLastPage_thenNextCursorIsNullAndUnreadCountOfCurrentUser() {
+        Conversation conversation = conversation(LocalDateTime.of(2025, 5, 20, 14, 30));
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2025, 5, 21, 9, 0), UUID.randomUUID());
+        when(conversationRepository.findAllByUserIdAfter(currentUserId, cursor, 21)).thenReturn(List.of(conversation));
+
+        ConversationPageResponseDto result = messageService.getConversations(cursor.encode(), 20);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(3, result.getContent().get(0).getUnreadCount());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getConversations_whenCursorInvalid_thenThrowInvalidCursorException() {
+        assertThrows(InvalidCursorException.class, () -> messageService.getConversations("not-a-cursor", 20));
+        verify(conversationRepository, never()).findAllByUserIdAfter(any(), any(), anyInt());
+    }
+
+    @Test
+    void getUnreadCount_thenReturnCountersOfCurrentUser() {
+        UnreadCountResponseDto expected = new UnreadCountResponseDto(7, 2);
+        when(conversationRepository.countUnreadByUserId(currentUserId)).thenReturn(expected);
+
+        assertEquals(expected, messageService.getUnreadCount());
+    }
+
+    private Conversation conversation(LocalDateTime lastMessageDateTime) {
+        boolean currentUserFirst = ConversationKey.isFirst(currentUserId, recipientId);
+        UUID lastMessageId = UUID.randomUUID();
+        // текущий пользователь прочитал переписку на час раньше последнего сообщения, собеседник - все
+        LocalDateTime currentUserReadDateTime = lastMessageDateTime.minusHours(1);
+        UUID currentUserReadMessageId = UUID.randomUUID();
+        return new Conversation(
+                ConversationKey.of(currentUserId, recipientId, advertisementId),
+                currentUserFirst ? currentUserId : recipientId,
+                currentUserFirst ? recipientId : currentUserId,
+                advertisementId,
+                lastMessageId,
+                recipientId,
+                "text",
+                lastMessageDateTime,
+                currentUserFirst ? 3 : 0,
+                currentUserFirst ? 0 : 3,
+                1L,
+                currentUserFirst ? currentUserReadDateTime : lastMessageDateTime,
+                currentUserFirst ? currentUserReadMessageId : lastMessageId,
+                currentUserFirst ? lastMessageDateTime : currentUserReadDateTime,
+                currentUserFirst ? lastMessageId : currentUserReadMessageId
+        );
+    }
+
+    private MessageSendRequestDto sendRequest(UUID recipient, UUID advertisement) {
+        MessageSendRequestDto request = new MessageSendRequestDto();
+        request.setRecipientId(recipient);
+        request.setAdvertisementId(advertisement);
+        request.setMessageText("text");
+        return request;
+    }
+}
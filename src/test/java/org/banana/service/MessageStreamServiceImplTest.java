@@ -0,0 +1,132 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.banana.dto.message.MessageReadReceiptDto;
+import org.banana.dto.message.MessageResponseDto;
+import org.banana.event.MessageSentEvent;
+import org.banana.event.MessagesReadEvent;
+import org.banana.security.UserRole;
+import org.banana.security.dto.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageStreamServiceImplTest {
+
+    private static final int CONNECTION_QUEUE_CAPACITY = 2;
+
+    private final UUID currentUserId = UUID.randomUUID();
+    private final UUID secondUserId = UUID.randomUUID();
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessageStreamServiceImpl messageStreamService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        messageStreamService = new MessageStreamServiceImpl(meterRegistry, Runnable::run, 60_000, 2, CONNECTION_QUEUE_CAPACITY);
+        var principal = new UserPrincipal(currentUserId, "user", "123", "phone", "username", "password", UserRole.ROLE_USER);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void subscribe_whenAuthenticated_thenRegisterConnection() {
+        SseEmitter emitter = messageStreamService.subscribe();
+
+        assertNotNull(emitter);
+        assertEquals(1, messageStreamService.connectionCount());
+        assertEquals(1.0, meterRegistry.get("message.stream.connections").gauge().value());
+    }
+
+    @Test
+    void subscribe_whenConnectionLimitReached_thenCloseOldestConnection() {
+        messageStreamService.subscribe();
+        messageStreamService.subscribe();
+        messageStreamService.subscribe();
+
+        assertEquals(2, messageStreamService.connectionCount());
+    }
+
+    @Test
+    void subscribe_whenAnonymous_thenThrowAccessDeniedException() {
+        SecurityContextHolder.clearContext();
+
+        assertThrows(AccessDeniedException.class, () -> messageStreamService.subscribe());
+        assertEquals(0, messageStreamService.connectionCount());
+    }
+
+    @Test
+    void onMessageSent_whenRecipientConnected_thenKeepConnection() {
+        messageStreamService.subscribe();
+        MessageResponseDto message = new MessageResponseDto(UUID.randomUUID(), null, secondUserId, currentUserId,
+                "Hello", LocalDateTime.now(), false);
+
+        messageStreamService.onMessageSent(new MessageSentEvent(message));
+
+        assertEquals(1, messageStreamService.connectionCount());
+    }
+
+    @Test
+    void onMessagesRead_whenSenderNotConnected_thenDoNothing() {
+        MessagesReadEvent event = new MessagesReadEvent(secondUserId,
+                new MessageReadReceiptDto(currentUserId, null, LocalDateTime.now(), UUID.randomUUID()));
+
+        assertDoesNotThrow(() -> messageStreamService.onMessagesRead(event));
+        assertEquals(0, messageStreamService.connectionCount());
+    }
+
+    @Test
+    void heartbeat_whenConnectionsOpen_thenKeepThem() {
+        messageStreamService.subscribe();
+
+        messageStreamService.heartbeat();
+
+        assertEquals(1, messageStreamService.connectionCount());
+    }
+
+    @Test
+    void heartbeat_whenConnectionQueueFull_thenDropConnection() {
+        // пул занят и не берет задачи записи: события копятся в очереди подключения
+        messageStreamService = new MessageStreamServiceImpl(meterRegistry, task -> {}, 60_000, 2, CONNECTION_QUEUE_CAPACITY);
+        messageStreamService.subscribe();
+
+        messageStreamService.heartbeat();
+        assertEquals(1, messageStreamService.connectionCount());
+
+        messageStreamService.heartbeat();
+        assertEquals(0, messageStreamService.connectionCount());
+        assertEquals(1.0, meterRegistry.get("message.stream.dropped").counter().count());
+    }
+
+    @Test
+    void subscribe_whenSendPoolRejectsTask_thenDropConnection() {
+        messageStreamService = new MessageStreamServiceImpl(meterRegistry, task -> {
+            throw new RejectedExecutionException("full");
+        }, 60_000, 2, CONNECTION_QUEUE_CAPACITY);
+
+        messageStreamService.subscribe();
+
+        assertEquals(0, messageStreamService.connectionCount());
+        assertEquals(1.0, meterRegistry.get("message.stream.dropped").counter().count());
+    }
+}
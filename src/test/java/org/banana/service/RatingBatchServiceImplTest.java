@@ -0,0 +1,89 @@
+package org.banana.service;
+
+import org.banana.dto.rating.RatingDto;
+import org.banana.exception.RatingQueueFullException;
+import org.banana.exception.UserRatesTheSameUserException;
+import org.banana.security.UserRole;
+import org.banana.security.dto.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class RatingBatchServiceImplTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID raterId = UUID.randomUUID();
+    private final short ratingValue = 4;
+
+    @Mock
+    private RatingBatchWriter ratingBatchWriter;
+
+    @InjectMocks
+    private RatingBatchServiceImpl ratingService;
+
+    @BeforeEach
+    void setupSecurityContext() {
+        var principal = new UserPrincipal(raterId, "user", "123", "phone", "username", "password", UserRole.ROLE_USER);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void addRating_whenGivenValidRatingDto_thenShouldSubmitRating() {
+        String result = ratingService.addRating(new RatingDto(userId, ratingValue));
+
+        verify(ratingBatchWriter).submitRating(userId, raterId, ratingValue);
+        assertEquals("User rating will be updated shortly.", result);
+    }
+
+    @Test
+    void addRating_whenRatingYourself_thenShouldThrowUserRatesTheSameUserException() {
+        RatingDto dto = new RatingDto(raterId, ratingValue);
+
+        assertThrows(UserRatesTheSameUserException.class, () -> ratingService.addRating(dto));
+        verifyNoInteractions(ratingBatchWriter);
+    }
+
+    @Test
+    void addRating_whenQueueIsFull_thenShouldThrowRatingQueueFullException() {
+        doThrow(new RatingQueueFullException()).when(ratingBatchWriter).submitRating(userId, raterId, ratingValue);
+        RatingDto dto = new RatingDto(userId, ratingValue);
+
+        assertThrows(RatingQueueFullException.class, () -> ratingService.addRating(dto));
+    }
+
+    @Test
+    void deleteRating_whenGivenValidUserId_thenShouldSubmitDelete() {
+        String result = ratingService.deleteRating(userId);
+
+        verify(ratingBatchWriter).submitDelete(userId, raterId);
+        assertEquals("User rating will be updated shortly.", result);
+    }
+
+    @Test
+    void deleteRating_whenGivenRemovingYourself_thenShouldThrowUserRatesTheSameUserException() {
+        assertThrows(UserRatesTheSameUserException.class, () -> ratingService.deleteRating(raterId));
+        verifyNoInteractions(ratingBatchWriter);
+    }
+}
@@ -0,0 +1,108 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.banana.entity.rating.Rating;
+import org.banana.entity.rating.RatingId;
+import org.banana.exception.RatingQueueFullException;
+import org.banana.repository.RatingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class RatingBatchWriterTest {
+
+    private final UUID firstUserId = UUID.randomUUID();
+    private final UUID secondUserId = UUID.randomUUID();
+    private final UUID raterId = UUID.randomUUID();
+
+    @Mock
+    private RatingRepository ratingRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RatingBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new RatingBatchWriter(ratingRepository, transactionManager, meterRegistry, 3, 500, 0, 200, 1000);
+    }
+
+    @Test
+    void flushPending_whenSameRatingSubmittedTwice_thenShouldWriteOnlyLatestValue() {
+        writer.submitRating(firstUserId, raterId, (short) 2);
+        writer.submitRating(firstUserId, raterId, (short) 5);
+        writer.submitDelete(secondUserId, raterId);
+
+        writer.flushPending();
+
+        verify(ratingRepository).upsertAll(List.of(new Rating(firstUserId, raterId, (short) 5)));
+        verify(ratingRepository).deleteAllByIds(List.of(new RatingId(secondUserId, raterId)));
+        assertEquals(2.0, meterRegistry.get("rating.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void flushPending_whenRatingDeletedAfterUpdate_thenShouldOnlyDelete() {
+        writer.submitRating(firstUserId, raterId, (short) 3);
+        writer.submitDelete(firstUserId, raterId);
+
+        writer.flushPending();
+
+        verify(ratingRepository).upsertAll(List.of());
+        verify(ratingRepository).deleteAllByIds(List.of(new RatingId(firstUserId, raterId)));
+    }
+
+    @Test
+    void flushPending_whenBatchFails_thenShouldWriteRatingsOneByOne() {
+        doAnswer(invocation -> {
+            if (invocation.<List<Rating>>getArgument(0).size() > 1)
+                throw new DataIntegrityViolationException("batch failed");
+            return 1;
+        }).when(ratingRepository).upsertAll(anyCollection());
+        writer.submitRating(firstUserId, raterId, (short) 3);
+        writer.submitRating(secondUserId, raterId, (short) 4);
+
+        writer.flushPending();
+
+        verify(ratingRepository).upsertAll(List.of(new Rating(firstUserId, raterId, (short) 3)));
+        verify(ratingRepository).upsertAll(List.of(new Rating(secondUserId, raterId, (short) 4)));
+        verify(ratingRepository).upsertAll(argThat(ratings -> ratings.size() == 2));
+        assertEquals(0.0, meterRegistry.get("rating.batch.failed").counter().count());
+    }
+
+    @Test
+    void submitRating_whenQueueIsFull_thenShouldThrowRatingQueueFullException() {
+        writer.submitRating(firstUserId, raterId, (short) 1);
+        writer.submitRating(firstUserId, raterId, (short) 2);
+        writer.submitRating(firstUserId, raterId, (short) 3);
+
+        assertThrows(RatingQueueFullException.class, () -> writer.submitRating(secondUserId, raterId, (short) 4));
+        assertEquals(1.0, meterRegistry.get("rating.batch.rejected").counter().count());
+        verifyNoInteractions(ratingRepository);
+    }
+
+    @Test
+    void submitRating_whenWriterStopped_thenShouldThrowRatingQueueFullException() throws InterruptedException {
+        writer.stop();
+
+        assertThrows(RatingQueueFullException.class, () -> writer.submitRating(firstUserId, raterId, (short) 4));
+    }
+}
@@ -6,7 +6,6 @@ import org.banana.entity.rating.RatingId;
 import org.banana.exception.UserNotFoundException;
 import org.banana.exception.UserRatesTheSameUserException;
 import org.banana.repository.RatingRepository;
-import org.banana.repository.UserRatingViewRepository;
 import org.banana.repository.UserRepository;
 import org.banana.security.UserRole;
 import org.banana.security.dto.UserPrincipal;
@@ -39,9 +38,6 @@ class RatingServiceImplTest {
     @Mock
     private RatingRepository ratingRepository;
 
-    @Mock
-    private UserRatingViewRepository userRatingViewRepository;
-
     @Mock
     private UserRepository userRepository;
 
@@ -68,7 +64,7 @@ class RatingServiceImplTest {
         String result = ratingService.addRating(dto);
 
         verify(ratingRepository).save(new Rating(userId, raterId, ratingValue));
-        assertEquals("User rating will be updated in 15 minutes.", result);
+        assertEquals("User rating updated.", result);
     }
 
     @Test
@@ -95,7 +91,7 @@ class RatingServiceImplTest {
         String result = ratingService.deleteRating(userId);
 
         verify(ratingRepository).deleteById(new RatingId(userId, raterId));
-        assertEquals("User rating will be updated in 15 minutes.", result);
+        assertEquals("User rating updated.", result);
     }
 
     @Test
@@ -111,10 +107,4 @@ class RatingServiceImplTest {
         assertThrows(UserNotFoundException.class, () -> ratingService.deleteRating(userId));
         verifyNoInteractions(ratingRepository);
     }
-
-    @Test
-    void updateActualInformationAboutRating_whenGivenScheduledTask_thenShouldCallRepositoryMethod() {
-        ratingService.updateActualInformationAboutRating();
-        verify(userRatingViewRepository).updateView();
-    }
 }
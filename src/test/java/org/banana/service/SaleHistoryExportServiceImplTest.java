@@ -0,0 +1,146 @@
+package org.banana.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.banana.dto.history.SaleHistoryExportFormat;
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.banana.exception.SaleHistoryExportLimitExceededException;
+import org.banana.repository.SaleHistoryRepository;
+import org.banana.security.UserRole;
+import org.banana.security.dto.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SaleHistoryExportServiceImplTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Mock
+    private SaleHistoryRepository saleHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SaleHistoryExportServiceImpl saleHistoryExportService;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        saleHistoryExportService = new SaleHistoryExportServiceImpl(saleHistoryRepository, objectMapper, transactionManager, 1, 60);
+        userId = UUID.randomUUID();
+        UserPrincipal principal = new UserPrincipal(userId, "First", "Last", "123", "user", "pass", UserRole.ROLE_USER);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void exportSales_whenCsv_thenShouldWriteHeaderAndEscapeTitle() throws Exception {
+        SaleHistoryResponseDto sale = sale("Ноутбук, \"игровой\"");
+        AtomicBoolean closed = new AtomicBoolean();
+        when(saleHistoryRepository.streamSalesBySellerId(eq(userId), any(), any()))
+                .thenReturn(Stream.of(sale).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        saleHistoryExportService.reserveExport();
+
+        long exported = saleHistoryExportService.exportSales(SaleHistoryExportFormat.CSV, null, null, out);
+
+        assertThat(exported).isEqualTo(1);
+        assertThat(closed).isTrue();
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly() && definition.getTimeout() == 60));
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,advertisement_id,advertisement_title,buyer_id,sale_date_time,quantity\n"
+                        + sale.getId() + "," + sale.getAdvertisementId() + ",\"Ноутбук, \"\"игровой\"\"\","
+                        + sale.getBuyerId() + ",2024-01-05T10:15,2\n");
+    }
+
+    @Test
+    void exportSales_whenNdjson_thenShouldWriteOneSalePerLineForPeriod() throws Exception {
+        List<SaleHistoryResponseDto> sales = List.of(sale("first"), sale("second"));
+        when(saleHistoryRepository.streamSalesBySellerId(
+                userId, LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 2, 1, 0, 0)))
+                .thenReturn(sales.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        saleHistoryExportService.reserveExport();
+
+        saleHistoryExportService.exportSales(
+                SaleHistoryExportFormat.NDJSON, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo(objectMapper.writeValueAsString(sales.get(0)));
+        assertThat(lines[1]).isEqualTo(objectMapper.writeValueAsString(sales.get(1)));
+        assertThat(lines[1]).contains("\"saleDateTime\":\"2024-01-05T10:15:00\"");
+    }
+
+    @Test
+    void exportSales_whenNoSales_thenShouldWriteOnlyCsvHeader() throws Exception {
+        when(saleHistoryRepository.streamSalesBySellerId(eq(userId), any(), any())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        saleHistoryExportService.reserveExport();
+
+        long exported = saleHistoryExportService.exportSales(SaleHistoryExportFormat.CSV, LocalDate.of(2024, 1, 1), null, out);
+
+        assertThat(exported).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo("id,advertisement_id,advertisement_title,buyer_id,sale_date_time,quantity\n");
+        verify(saleHistoryRepository).streamSalesBySellerId(
+                userId, LocalDateTime.of(2024, 1, 1, 0, 0), LocalDate.now().plusDays(1).atStartOfDay());
+    }
+
+    @Test
+    void reserveExport_whenAllExportsRunning_thenShouldThrowSaleHistoryExportLimitExceededException() {
+        saleHistoryExportService.reserveExport();
+
+        assertThrows(SaleHistoryExportLimitExceededException.class, () -> saleHistoryExportService.reserveExport());
+    }
+
+    @Test
+    void exportSales_whenExportFails_thenShouldFreeExportPlace() {
+        when(saleHistoryRepository.streamSalesBySellerId(eq(userId), any(), any()))
+                .thenThrow(new IllegalStateException("query failed"));
+        saleHistoryExportService.reserveExport();
+
+        assertThrows(IllegalStateException.class, () -> saleHistoryExportService.exportSales(
+                SaleHistoryExportFormat.CSV, null, null, new ByteArrayOutputStream()));
+
+        saleHistoryExportService.reserveExport();
+    }
+
+    private SaleHistoryResponseDto sale(String title) {
+        return new SaleHistoryResponseDto(UUID.randomUUID(), title, UUID.randomUUID(), UUID.randomUUID(),
+                LocalDateTime.of(2024, 1, 5, 10, 15), 2);
+    }
+}
@@ -1,13 +1,16 @@
 package org.banana.service;
 
+import org.banana.dto.KeysetCursor;
 import org.banana.dto.history.SaleHistoryAddRequestDto;
-import org.banana.dto.history.SaleHistoryMapper;
+import org.banana.dto.history.SaleHistoryDailyTotalResponseDto;
+import org.banana.dto.history.SaleHistoryPageResponseDto;
 import org.banana.dto.history.SaleHistoryResponseDto;
 import org.banana.dto.history.SaleHistoryTotalForAdvertisementsResponseDto;
 import org.banana.entity.Advertisement;
 import org.banana.entity.SaleHistory;
 import org.banana.entity.User;
 import org.banana.exception.AdvertisementNotFoundException;
+import org.banana.exception.InvalidCursorException;
 import org.banana.exception.SaleHistoryAccessDeniedException;
 import org.banana.exception.SaleHistoryAdvertisementQuantityIsLowerThanExpectedException;
 import org.banana.exception.SaleHistoryNotFoundException;
@@ -23,13 +26,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -38,9 +41,12 @@ import java.util.UUID;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -56,7 +62,7 @@ class SaleHistoryServiceImplTest {
     private AdvertisementRepository advertisementRepository;
 
     @Mock
-    private SaleHistoryMapper saleHistoryMapper;
+    private StockReservationEngine stockReservationEngine;
 
     @InjectMocks
     private SaleHistoryServiceImpl saleHistoryService;
@@ -91,6 +97,8 @@ class SaleHistoryServiceImplTest {
 
     @Test
     void addSale_whenAdvertisementNotFound_thenShouldThrowAdvertisementNotFoundException() {
+        when(saleHistoryRepository.insertWithQuantityDecrement(eq(advertisementId), eq(userId), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.empty());
         SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 1);
 
@@ -102,6 +110,8 @@ class SaleHistoryServiceImplTest {
     @Test
     void addSale_whenAdvertisementQuantityTooLow_thenShouldThrowSaleHistoryAdvertisementQuantityIsLowerThanExpectedException() {
         advertisement.setQuantity(1);
+        when(saleHistoryRepository.insertWithQuantityDecrement(eq(advertisementId), eq(userId), eq(5), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
 
         SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 5);
@@ -114,6 +124,8 @@ class SaleHistoryServiceImplTest {
     @Test
     void addSale_whenAdvertisementIsAlreadyClosed_thenShouldThrowSaleHistoryAdvertisementAlreadyClosedException() {
         advertisement.setCloseDate(LocalDateTime.now());
+        when(saleHistoryRepository.insertWithQuantityDecrement(eq(advertisementId), eq(userId), eq(1), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
 
         SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 1);
@@ -123,49 +135,49 @@ class SaleHistoryServiceImplTest {
     }
 
     @Test
-    void addSale_whenValidRequestAndUpdateQuantityIsSuccessful_thenShouldReturnSaleHistoryResponseDto() {
-        SaleHistory saleHistory = new SaleHistory(advertisement, userId, 2, LocalDateTime.now());
-        ArgumentCaptor<SaleHistory> historyArgumentCaptor = ArgumentCaptor.forClass(SaleHistory.class);
+    void addSale_whenQuantityDecremented_thenShouldReturnSaleWithoutLoadingAdvertisement() {
         SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 2);
-        advertisement.setQuantity(5);
-        advertisement.setCloseDate(null);
+        SaleHistoryResponseDto expected = new SaleHistoryResponseDto(
+                UUID.randomUUID(), "title", advertisementId, userId, LocalDateTime.now(), 2);
 
-        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
-        when(saleHistoryRepository.save(any(SaleHistory.class))).thenReturn(saleHistory);
-        when(advertisementRepository.updateAdvertisementQuantity(
-                advertisementId,
-                advertisement.getQuantity(),
-                advertisement.getQuantity() - dto.getQuantity()))
-                .thenReturn(1);
-        when(saleHistoryMapper.fromSaleHistoryToSaleHistoryResponseDto(saleHistory)).thenReturn(mock(SaleHistoryResponseDto.class));
+        when(saleHistoryRepository.insertWithQuantityDecrement(eq(advertisementId), eq(userId), eq(2), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(expected));
 
         SaleHistoryResponseDto response = saleHistoryService.addSale(dto);
 
-        verify(saleHistoryRepository).save(historyArgumentCaptor.capture());
-        assertThat(historyArgumentCaptor.getValue()).extracting("advertisement", "buyerId", "quantity")
-                .contains(advertisement, userId, 2);
-        assertThat(response).isNotNull();
+        assertThat(response).isEqualTo(expected);
+        verify(advertisementRepository, never()).findById(any());
     }
 
     @Test
-    void addSale_whenUpdateAdvertisementQuantityUnsuccessful_thenShouldThrowAdvertisementNotFoundException() {
+    void addSale_whenReservedFromPool_thenShouldNotTouchDatabase() {
         SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 2);
+        SaleHistoryResponseDto expected = new SaleHistoryResponseDto(
+                UUID.randomUUID(), "title", advertisementId, userId, LocalDateTime.now(), 2);
+
+        when(stockReservationEngine.reserve(advertisementId, userId, 2)).thenReturn(Optional.of(expected));
+
+        SaleHistoryResponseDto response = saleHistoryService.addSale(dto);
+
+        assertThat(response).isEqualTo(expected);
+        verifyNoInteractions(saleHistoryRepository, advertisementRepository);
+    }
 
+    @Test
+    void addSale_whenDecrementFailsButAdvertisementHasEnoughQuantity_thenShouldThrowSaleHistoryUnexpectedException() {
+        SaleHistoryAddRequestDto dto = new SaleHistoryAddRequestDto(advertisementId, 2);
+
+        when(saleHistoryRepository.insertWithQuantityDecrement(eq(advertisementId), eq(userId), eq(2), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
         when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
-        when(advertisementRepository.updateAdvertisementQuantity(
-                advertisementId,
-                advertisement.getQuantity(),
-                advertisement.getQuantity() - dto.getQuantity()))
-                .thenReturn(0);
 
         assertThatThrownBy(() -> saleHistoryService.addSale(dto)).isInstanceOf(SaleHistoryUnexpectedException.class);
     }
 
     @ParameterizedTest
     @CsvSource({"ROLE_USER", "ROLE_ADMIN"})
-    void deleteSale_whenAllValidAndUpdateQuantityIsSuccessful_thenDeletesAndRestoresQuantity(UserRole role) {
+    void deleteSale_whenAllValidAndQuantityRestored_thenDeletesInOneStatement(UserRole role) {
         UUID saleId = UUID.randomUUID();
-        advertisement.setQuantity(5);
         advertisement.setCloseDate(null);
         principal.setId(UserRole.ROLE_USER.equals(role) ? owner.getId() : UUID.randomUUID());
         principal.setRole(role);
@@ -173,35 +185,24 @@ class SaleHistoryServiceImplTest {
         sale.setId(saleId);
 
         when(saleHistoryRepository.findById(saleId)).thenReturn(Optional.of(sale));
-
-        when(advertisementRepository.updateAdvertisementQuantity(
-                advertisementId,
-                advertisement.getQuantity(),
-                advertisement.getQuantity() + sale.getQuantity()))
-                .thenReturn(1);
+        when(saleHistoryRepository.deleteWithQuantityRestore(saleId)).thenReturn(1);
 
         saleHistoryService.deleteSale(saleId);
 
-        verify(saleHistoryRepository).delete(sale);
+        verify(saleHistoryRepository).deleteWithQuantityRestore(saleId);
+        verify(saleHistoryRepository, never()).delete(any());
     }
 
     @Test
-    void deleteSale_whenUpdateAdvertisementQuantityUnsuccessful_thenShouldThrowSaleHistoryUnexpectedException() {
+    void deleteSale_whenQuantityNotRestored_thenShouldThrowSaleHistoryUnexpectedException() {
         UUID saleId = UUID.randomUUID();
-        advertisement.setQuantity(5);
         advertisement.setCloseDate(null);
         SaleHistory sale = new SaleHistory(advertisement, userId, 2, LocalDateTime.now());
         principal.setId(owner.getId());
         sale.setId(saleId);
 
         when(saleHistoryRepository.findById(saleId)).thenReturn(Optional.of(sale));
-        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
-
-        when(advertisementRepository.updateAdvertisementQuantity(
-                advertisementId,
-                advertisement.getQuantity(),
-                advertisement.getQuantity() + sale.getQuantity()))
-                .thenReturn(0);
+        when(saleHistoryRepository.deleteWithQuantityRestore(saleId)).thenReturn(0);
 
         assertThatThrownBy(() -> saleHistoryService.deleteSale(saleId))
                 .isInstanceOf(SaleHistoryUnexpectedException.class);
@@ -277,6 +278,52 @@ class SaleHistoryServiceImplTest {
     }
 
 
+    @Test
+    void getSalesPageByAdvertisementId_whenMoreThanPage_thenShouldReturnPageWithNextCursor() {
+        principal.setId(owner.getId());
+        SaleHistoryResponseDto newer = sale(LocalDateTime.of(2024, 1, 20, 14, 30));
+        SaleHistoryResponseDto older = sale(LocalDateTime.of(2024, 1, 19, 10, 0));
+
+        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
+        when(saleHistoryRepository.findAllByAdvertisementIdAfter(advertisementId,
+                LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 2, 1, 0, 0), null, 2))
+                .thenReturn(List.of(newer, older));
+
+        SaleHistoryPageResponseDto result = saleHistoryService.getSalesPageByAdvertisementId(
+                advertisementId, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), null, 1);
+
+        assertThat(result.getContent()).isEqualTo(List.of(newer));
+        assertThat(KeysetCursor.decode(result.getNextCursor()))
+                .isEqualTo(new KeysetCursor(newer.getSaleDateTime(), newer.getId()));
+    }
+
+    @Test
+    void getSalesPageByAdvertisementId_whenUserNotOwnerAndNotAdmin_thenShouldThrow() {
+        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
+
+        assertThatThrownBy(() -> saleHistoryService.getSalesPageByAdvertisementId(advertisementId, null, null, null, 20))
+                .isInstanceOf(SaleHistoryAccessDeniedException.class);
+        verify(saleHistoryRepository, never()).findAllByAdvertisementIdAfter(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getPurchases_whenLastPage_thenShouldReturnPurchasesOfCurrentUserWithoutNextCursor() {
+        KeysetCursor cursor = new KeysetCursor(LocalDateTime.of(2024, 1, 21, 9, 0), UUID.randomUUID());
+        SaleHistoryResponseDto purchase = sale(LocalDateTime.of(2024, 1, 20, 14, 30));
+        when(saleHistoryRepository.findAllByBuyerIdAfter(userId, null, null, cursor, 21)).thenReturn(List.of(purchase));
+
+        SaleHistoryPageResponseDto result = saleHistoryService.getPurchases(null, null, cursor.encode(), 20);
+
+        assertThat(result.getContent()).isEqualTo(List.of(purchase));
+        assertThat(result.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getPurchases_whenCursorInvalid_thenShouldThrowInvalidCursorException() {
+        assertThrows(InvalidCursorException.class, () -> saleHistoryService.getPurchases(null, null, "not-a-cursor", 20));
+        verify(saleHistoryRepository, never()).findAllByBuyerIdAfter(any(), any(), any(), any(), anyInt());
+    }
+
     @Test
     void getTotalForSalesInAdvertisements_shouldReturnAggregatedSales() {
         principal.setId(owner.getId());
@@ -289,4 +336,32 @@ class SaleHistoryServiceImplTest {
 
         assertThat(result).isEqualTo(expected);
     }
+
+    @Test
+    void getDailyTotals_whenPeriodNotGiven_thenShouldUseLastThirtyDays() {
+        principal.setId(owner.getId());
+        List<SaleHistoryDailyTotalResponseDto> expected = List.of();
+        LocalDate today = LocalDate.now();
+
+        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
+        when(saleHistoryRepository.getDailyTotals(advertisementId, today.minusDays(29), today)).thenReturn(expected);
+
+        List<SaleHistoryDailyTotalResponseDto> result = saleHistoryService.getDailyTotals(advertisementId, null, null);
+
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void getDailyTotals_whenUserNotOwnerAndNotAdmin_thenShouldThrowAccessDeniedException() {
+        principal.setId(UUID.randomUUID());
+
+        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
+
+        assertThatThrownBy(() -> saleHistoryService.getDailyTotals(advertisementId, null, null))
+                .isInstanceOf(SaleHistoryAccessDeniedException.class);
+    }
+
+    private SaleHistoryResponseDto sale(LocalDateTime saleDateTime) {
+        return new SaleHistoryResponseDto(UUID.randomUUID(), "title", advertisementId, userId, saleDateTime, 1);
+    }
 }
@@ -0,0 +1,301 @@
+package org.banana.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.banana.dto.history.SaleHistoryResponseDto;
+import org.banana.entity.Advertisement;
+import org.banana.exception.SaleHistoryAdvertisementQuantityIsLowerThanExpectedException;
+import org.banana.repository.AdvertisementRepository;
+import org.banana.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationEngineTest {
+
+    private final UUID advertisementId = UUID.randomUUID();
+    private final UUID buyerId = UUID.randomUUID();
+
+    @Mock
+    private StockReservationRepository stockReservationRepository;
+
+    @Mock
+    private AdvertisementRepository advertisementRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StockReservationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new StockReservationEngine(stockReservationRepository, advertisementRepository, transactionManager,
+                meterRegistry, Set.of(advertisementId), 100, 500, 60000, 60000);
+        engine.start();
+    }
+
+    @Test
+    void reserve_whenAdvertisementNotEnabled_thenShouldReturnEmpty() {
+        assertTrue(engine.reserve(UUID.randomUUID(), buyerId, 1).isEmpty());
+
+        verify(stockReservationRepository, times(0)).claim(any(), any(), anyInt(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    void reserve_whenPoolHasStock_thenShouldClaimOnceAndJournalEverySale() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), eq(100), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+
+        for (int i = 0; i < 3; i++) {
+            SaleHistoryResponseDto sale = engine.reserve(advertisementId, buyerId, 2).orElseThrow();
+            assertEquals("title", sale.getAdvertisementTitle());
+        }
+        engine.flush();
+
+        verify(stockReservationRepository).claim(eq(advertisementId), any(), eq(100), anyLong(), anyBoolean());
+        verify(stockReservationRepository, times(3)).journal(argThat(sale -> sale.getQuantity() == 2), any());
+        verify(stockReservationRepository).moveSales(any(), eq(500));
+    }
+
+    @Test
+    void reserve_whenPoolReleasedOrAdvertisementClosed_thenShouldReturnEmptyAndReturnUnits() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(false);
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+
+        verify(stockReservationRepository).release(eq(advertisementId), any(), eq(100));
+    }
+
+    @Test
+    void reserve_whenPoolReleasedBeforeTopUp_thenShouldNotRecreateIt() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), eq(false))).thenReturn(1);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), eq(true))).thenReturn(-1);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isPresent());
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+
+        verify(stockReservationRepository, never()).release(any(), any(), anyInt());
+    }
+
+    @Test
+    void reserve_whenPurchaseRolledBack_thenShouldReturnUnitsToPool() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.reserve(advertisementId, buyerId, 100);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 100).isPresent());
+
+        verify(stockReservationRepository).claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    void reserve_whenStockExhausted_thenShouldRejectInMemory() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(1, 0);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isPresent());
+        assertThrows(SaleHistoryAdvertisementQuantityIsLowerThanExpectedException.class,
+                () -> engine.reserve(advertisementId, buyerId, 1));
+        assertThrows(SaleHistoryAdvertisementQuantityIsLowerThanExpectedException.class,
+                () -> engine.reserve(advertisementId, buyerId, 1));
+
+        verify(stockReservationRepository, times(2)).claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean());
+        assertEquals(2.0, meterRegistry.get("sale.reservation.rejected").counter().count());
+    }
+
+    @Test
+    void reserve_whenAdvertisementClosed_thenShouldReturnEmpty() {
+        givenAdvertisement(LocalDateTime.now());
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+
+        verify(stockReservationRepository, times(0)).claim(any(), any(), anyInt(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    void reserve_whenBuyersCompete_thenShouldNotSellMoreThanClaimed() throws Exception {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(50, 0);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> purchases = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                purchases.add(() -> {
+                    try {
+                        return engine.reserve(advertisementId, buyerId, 1).isPresent();
+                    } catch (SaleHistoryAdvertisementQuantityIsLowerThanExpectedException e) {
+                        return false;
+                    }
+                });
+            }
+            int sold = 0;
+            for (Future<Boolean> purchase : executor.invokeAll(purchases)) {
+                sold += purchase.get() ? 1 : 0;
+            }
+
+            assertEquals(50, sold);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void disable_whenPoolHasUnsoldUnits_thenShouldReleaseThem() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+        engine.reserve(advertisementId, buyerId, 30);
+
+        engine.disable(advertisementId);
+
+        verify(stockReservationRepository).release(eq(advertisementId), any(), eq(70));
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+    }
+
+    @Test
+    void suspend_whenPoolHeld_thenShouldReleaseItAndEnableAfterTransaction() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+        engine.reserve(advertisementId, buyerId, 30);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.suspend(advertisementId);
+
+            verify(stockReservationRepository).release(eq(advertisementId), any(), eq(70));
+            assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isPresent());
+        verify(stockReservationRepository, times(2)).claim(eq(advertisementId), any(), anyInt(), anyLong(), eq(false));
+    }
+
+    @Test
+    void suspend_whenAdvertisementNotEnabled_thenShouldNotEnableIt() {
+        UUID otherId = UUID.randomUUID();
+
+        engine.suspend(otherId);
+
+        assertTrue(engine.reserve(otherId, buyerId, 1).isEmpty());
+        verifyNoInteractions(advertisementRepository);
+    }
+
+    @Test
+    void renewLeases_whenPoolNotRenewed_thenShouldReturnItsUnits() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+        when(stockReservationRepository.renew(any(), anyLong())).thenReturn(List.of());
+        engine.reserve(advertisementId, buyerId, 30);
+
+        engine.renewLeases();
+
+        verify(stockReservationRepository).release(eq(advertisementId), any(), eq(70));
+    }
+
+    @Test
+    void flush_whenFullBatchMoved_thenShouldMoveNextBatch() {
+        when(stockReservationRepository.moveSales(any(), eq(500))).thenReturn(500, 3);
+
+        engine.flush();
+
+        verify(stockReservationRepository, times(2)).moveSales(any(), eq(500));
+    }
+
+    @Test
+    void flush_whenMoveFails_thenShouldKeepSalesInJournalForNextFlush() {
+        when(stockReservationRepository.moveSales(any(), anyInt()))
+                .thenThrow(new DataIntegrityViolationException("move failed"))
+                .thenReturn(1);
+
+        engine.flush();
+        engine.flush();
+
+        verify(stockReservationRepository, times(2)).moveSales(any(), anyInt());
+        assertEquals(1.0, meterRegistry.get("sale.reservation.failed").counter().count());
+    }
+
+    @Test
+    void stop_whenSalesPending_thenShouldMoveThemAndReleaseAllPools() {
+        givenAdvertisement(null);
+        when(stockReservationRepository.claim(eq(advertisementId), any(), anyInt(), anyLong(), anyBoolean())).thenReturn(100);
+        when(stockReservationRepository.journal(any(), any())).thenReturn(true);
+        engine.reserve(advertisementId, buyerId, 1);
+
+        engine.stop();
+
+        verify(stockReservationRepository).moveSales(any(), anyInt());
+        verify(stockReservationRepository).releaseAll(any());
+        assertTrue(engine.reserve(advertisementId, buyerId, 1).isEmpty());
+    }
+
+    @Test
+    void start_shouldReleaseExpiredPools() {
+        verify(stockReservationRepository).releaseExpired();
+        verifyNoInteractions(advertisementRepository);
+    }
+
+    private void givenAdvertisement(LocalDateTime closeDate) {
+        Advertisement advertisement = new Advertisement();
+        advertisement.setId(advertisementId);
+        advertisement.setTitle("title");
+        advertisement.setCloseDate(closeDate);
+        when(advertisementRepository.findById(advertisementId)).thenReturn(Optional.of(advertisement));
+    }
+}
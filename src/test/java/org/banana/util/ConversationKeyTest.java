@@ -0,0 +1,38 @@
+package org.banana.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationKeyTest {
+
+    // UUID.compareTo сравнивает знаковые long и считает a1... меньше 0f..., в PostgreSQL порядок обратный
+    private final UUID lowUser = UUID.fromString("0f6b1c2e-3d4a-4b5c-8d6e-7f8091a2b3c4");
+    private final UUID highUser = UUID.fromString("a1b2c3d4-e5f6-4789-9abc-def012345678");
+    private final UUID advertisementId = UUID.fromString("3fa85f64-5717-4562-b3fc-2c963f66afa6");
+
+    @Test
+    void isFirst_whenUuidCompareToDisagrees_thenUsesPostgresOrder() {
+        assertTrue(highUser.compareTo(lowUser) < 0);
+        assertTrue(ConversationKey.isFirst(lowUser, highUser));
+        assertFalse(ConversationKey.isFirst(highUser, lowUser));
+    }
+
+    @Test
+    void of_whenSameValuesAsSqlFunction_thenSameKey() {
+        // select conversation_key(...) в PostgreSQL для тех же значений
+        assertEquals(UUID.fromString("591bb642-ced4-ff21-659c-aaa9f96dfc63"), ConversationKey.of(highUser, lowUser, advertisementId));
+        assertEquals(UUID.fromString("6e90e937-e618-9b21-93bb-0ee0eb959155"), ConversationKey.of(highUser, lowUser, null));
+    }
+
+    @Test
+    void of_whenUsersSwapped_thenSameKey() {
+        assertEquals(ConversationKey.of(lowUser, highUser, advertisementId), ConversationKey.of(highUser, lowUser, advertisementId));
+        assertNotEquals(ConversationKey.of(lowUser, highUser, advertisementId), ConversationKey.of(lowUser, highUser, null));
+    }
+}
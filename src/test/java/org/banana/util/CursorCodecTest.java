@@ -0,0 +1,43 @@
+package org.banana.util;
+
+import org.banana.dto.KeysetCursor;
+import org.banana.dto.advertisement.AdvertisementCursor;
+import org.banana.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CursorCodecTest {
+
+    @Test
+    void decode_whenEncoded_thenSameParts() {
+        String cursor = CursorCodec.encode("2025-05-20T14:30", "3fa85f64-5717-4562-b3fc-2c963f66afa6");
+
+        assertArrayEquals(new String[]{"2025-05-20T14:30", "3fa85f64-5717-4562-b3fc-2c963f66afa6"},
+                CursorCodec.decode(cursor, 2));
+    }
+
+    @Test
+    void decode_whenNotBase64OrOtherNumberOfParts_thenThrowInvalidCursorException() {
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decode("not base64!", 2));
+        assertThrows(InvalidCursorException.class, () -> CursorCodec.decode(CursorCodec.encode("a", "b", "c"), 2));
+    }
+
+    @Test
+    void keysetAndAdvertisementCursors_whenEncoded_thenDecodeToSameCursor() {
+        KeysetCursor keysetCursor = new KeysetCursor(LocalDateTime.of(2025, 5, 20, 14, 30), UUID.randomUUID());
+        AdvertisementCursor advertisementCursor = new AdvertisementCursor(
+                true, new BigDecimal("4.50"), 10, LocalDateTime.of(2025, 1, 1, 0, 0), UUID.randomUUID());
+
+        assertEquals(keysetCursor, KeysetCursor.decode(keysetCursor.encode()));
+        assertEquals(advertisementCursor, AdvertisementCursor.decode(advertisementCursor.encode()));
+        assertThrows(InvalidCursorException.class, () -> KeysetCursor.decode(advertisementCursor.encode()));
+        assertThrows(InvalidCursorException.class, () -> KeysetCursor.decode(CursorCodec.encode("yesterday", "id")));
+    }
+}